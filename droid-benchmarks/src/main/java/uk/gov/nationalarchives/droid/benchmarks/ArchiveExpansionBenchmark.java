@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.gov.nationalarchives.droid.core.interfaces.archive.TrueZipArchiveHandler;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ZipEntryRequestFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+
+/**
+ * Measures expanding a zip file into requests for its entries with the {@link TrueZipArchiveHandler},
+ * with entries decompressed on the walking thread, or concurrently on an entry executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ArchiveExpansionBenchmark {
+
+    @Param("1000")
+    private int entries;
+
+    @Param({"4096", "262144"})
+    private int entrySize;
+
+    @Param({"0", "4"})
+    private int entryThreads;
+
+    private Path directory;
+    private Path zip;
+    private ExecutorService entryExecutor;
+    private ClosingDroid droid;
+    private TrueZipArchiveHandler handler;
+
+    /**
+     * Writes the zip file and creates the archive handler.
+     * @throws IOException if the zip file could not be written.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("droid-archive-benchmark");
+        zip = SyntheticCorpus.writeZip(directory.resolve("entries.zip"), entries, entrySize);
+        final ZipEntryRequestFactory factory = new ZipEntryRequestFactory();
+        factory.setTempDirLocation(Files.createDirectory(directory.resolve("tmp")));
+        droid = new ClosingDroid();
+        handler = new TrueZipArchiveHandler(droid, factory, new CountingResultHandler());
+        if (entryThreads > 0) {
+            entryExecutor = Executors.newFixedThreadPool(entryThreads);
+            handler.setEntryExecutorService(entryExecutor);
+        }
+    }
+
+    /**
+     * Stops the entry executor and deletes the zip file.
+     * @throws IOException if the zip file could not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (entryExecutor != null) {
+            entryExecutor.shutdownNow();
+        }
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    /**
+     * Expands every entry of the zip file.
+     * @return The number of entries submitted so far, so the work cannot be optimised away.
+     * @throws IOException if the zip file could not be read.
+     */
+    @Benchmark
+    public long expandZip() throws IOException {
+        try (FileSystemIdentificationRequest request = FileRequests.open(zip)) {
+            handler.handle(request);
+        }
+        return droid.getSubmitted();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+
+/**
+ * An AsynchDroid which does not identify anything, but closes each request it is given,
+ * so that archive expansion can be measured without the cost of identifying the entries.
+ * The requests are already open, so the bytes of each entry have been read by the time they are submitted.
+ */
+public final class ClosingDroid implements AsynchDroid {
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong bytesSubmitted = new AtomicLong();
+
+    @Override
+    public Future<IdentificationResultCollection> submit(final IdentificationRequest request) {
+        submitted.incrementAndGet();
+        bytesSubmitted.addAndGet(request.size());
+        try {
+            request.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not close request for " + request.getIdentifier().getUri(), e);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * @return The number of requests submitted.
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * @return The total size of the requests submitted.
+     */
+    public long getBytesSubmitted() {
+        return bytesSubmitted.get();
+    }
+
+    @Override
+    public void awaitIdle() {
+    }
+
+    @Override
+    public void awaitFinished() {
+    }
+
+    @Override
+    public void save() {
+    }
+
+    @Override
+    public void replay() {
+    }
+
+    @Override
+    public void setMaxBytesToScan(final long maxBytes) {
+    }
+
+    @Override
+    public void setResultsFilter(final Filter filter) {
+    }
+
+    @Override
+    public void setIdentificationFilter(final Filter filter) {
+    }
+
+    @Override
+    public boolean passesIdentificationFilter(final IdentificationRequest request) {
+        return true;
+    }
+
+    @Override
+    public void setMatchAllExtensions(final boolean matchAllExtensions) {
+    }
+}
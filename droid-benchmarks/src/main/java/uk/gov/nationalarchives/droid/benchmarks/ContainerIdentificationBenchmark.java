@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.gov.nationalarchives.droid.container.ole2.Ole2Identifier;
+import uk.gov.nationalarchives.droid.container.zip.ZipIdentifier;
+import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
+import uk.gov.nationalarchives.droid.core.SignatureParseException;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.internal.api.ContainerApi;
+
+/**
+ * Measures identifying zip and OLE2 files against the bundled container signature file,
+ * using the identifiers configured by the {@link ContainerApi}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ContainerIdentificationBenchmark {
+
+    @Param({"65536", "4194304"})
+    private int ole2StreamSize;
+
+    private Path directory;
+    private Path wordProcessingZip;
+    private Path ole2File;
+    private ZipIdentifier zipIdentifier;
+    private Ole2Identifier ole2Identifier;
+
+    /**
+     * Creates the container identifiers and writes the container files.
+     * @throws IOException if the files could not be written.
+     * @throws SignatureParseException if the binary signature file could not be parsed.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SignatureParseException {
+        directory = Files.createTempDirectory("droid-container-benchmark");
+        wordProcessingZip = SyntheticCorpus.writeWordProcessingZip(directory.resolve("document.docx"));
+        ole2File = SyntheticCorpus.writeOle2(directory.resolve("document.doc"), ole2StreamSize);
+
+        final BinarySignatureIdentifier droidCore = new BinarySignatureIdentifier();
+        droidCore.setSignatureFile(
+                SyntheticCorpus.copyResource(SyntheticCorpus.BINARY_SIGNATURE_FILE, directory).toString());
+        droidCore.init();
+        final ContainerApi containerApi = new ContainerApi(droidCore,
+                SyntheticCorpus.copyResource(SyntheticCorpus.CONTAINER_SIGNATURE_FILE, directory));
+        zipIdentifier = containerApi.zipIdentifier();
+        ole2Identifier = containerApi.ole2Identifier();
+    }
+
+    /**
+     * Deletes the container files.
+     * @throws IOException if the files could not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    /**
+     * Identifies an Office Open XML document with the zip container signatures.
+     * @return The identification results.
+     * @throws IOException if the file could not be read.
+     */
+    @Benchmark
+    public IdentificationResultCollection identifyZipContainer() throws IOException {
+        try (FileSystemIdentificationRequest request = FileRequests.open(wordProcessingZip)) {
+            return zipIdentifier.submit(request);
+        }
+    }
+
+    /**
+     * Identifies an OLE2 compound file with the OLE2 container signatures.
+     * @return The identification results.
+     * @throws IOException if the file could not be read.
+     */
+    @Benchmark
+    public IdentificationResultCollection identifyOle2Container() throws IOException {
+        try (FileSystemIdentificationRequest request = FileRequests.open(ole2File)) {
+            return ole2Identifier.submit(request);
+        }
+    }
+}
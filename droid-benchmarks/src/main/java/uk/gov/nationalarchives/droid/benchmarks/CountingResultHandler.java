@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+
+/**
+ * A ResultHandler which persists nothing, but hands out resource ids for the results it is given,
+ * so that the archive handlers can be measured without the cost of persisting results.
+ */
+public final class CountingResultHandler implements ResultHandler {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @Override
+    public ResourceId handle(final IdentificationResultCollection result) {
+        return new ResourceId(ids.incrementAndGet(), "");
+    }
+
+    @Override
+    public ResourceId handleDirectory(final IdentificationResult result, final ResourceId parentId,
+                                      final boolean restricted) {
+        return new ResourceId(ids.incrementAndGet(), "");
+    }
+
+    /**
+     * @return The number of results handled.
+     */
+    public long getHandled() {
+        return ids.get();
+    }
+
+    @Override
+    public void handleError(final IdentificationException e) {
+    }
+
+    @Override
+    public void deleteCascade(final Long nodeId) {
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void setResultsFilter(final Filter filter) {
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
+import uk.gov.nationalarchives.droid.profile.CsvItemWriter;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+
+/**
+ * Measures formatting profile results as CSV with the {@link CsvItemWriter}, in the chunks
+ * an export reads them from the database.  The CSV is written to a writer which discards it,
+ * so only the cost of formatting is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CsvExportBenchmark {
+
+    private static final int NODES = 10000;
+    private static final int FORMATS = 50;
+    private static final int CHUNK_SIZE = 100;
+
+    @Param({"ONE_ROW_PER_FILE", "ONE_ROW_PER_FORMAT"})
+    private ExportOptions options;
+
+    @Param({"true", "false"})
+    private boolean quoteAllFields;
+
+    private List<ProfileResourceNode> nodes;
+
+    /**
+     * Creates the results to export.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        nodes = SyntheticNodes.newFileNodes(NODES, SyntheticNodes.newFormats(FORMATS));
+    }
+
+    /**
+     * Writes all the results as CSV.
+     */
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public void writeCsv() {
+        final CsvItemWriter writer = new CsvItemWriter();
+        writer.setOptions(options);
+        writer.setQuoteAllFields(quoteAllFields);
+        writer.open(new NullWriter());
+        try {
+            for (int start = 0; start < nodes.size(); start += CHUNK_SIZE) {
+                writer.write(nodes.subList(start, Math.min(start + CHUNK_SIZE, nodes.size())));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
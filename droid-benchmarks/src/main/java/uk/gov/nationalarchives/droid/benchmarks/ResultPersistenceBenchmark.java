@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+import uk.gov.nationalarchives.droid.results.handlers.JDBCBatchResultHandlerDao;
+
+/**
+ * Measures inserting profile results into an in-memory Derby database with the {@link JDBCBatchResultHandlerDao},
+ * from saving them until they have all been committed by its database writer threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ResultPersistenceBenchmark {
+
+    private static final int NODES = 10000;
+    private static final int FORMATS = 50;
+    private static final int FOLDER_ID = 1;
+    private static final String DERBY_LOG_FILE = "derby.stream.error.file";
+    private static final String INSERT_FORMAT = "INSERT INTO FORMAT (PUID,MIME_TYPE,NAME,VERSION) VALUES (?,?,?,?)";
+
+    private EmbeddedDataSource dataSource;
+    private List<Format> formats;
+    private CommittingResultHandlerDao dao;
+
+    /**
+     * Creates the database schema and its format reference data, and starts the dao.
+     * @throws SQLException if the database could not be created.
+     * @throws IOException if the file for the Derby log could not be created.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+        // Derby writes its log to the working directory unless it is told where to put it.
+        final Path derbyLog = Files.createTempFile("droid-benchmark-derby", ".log");
+        derbyLog.toFile().deleteOnExit();
+        System.setProperty(DERBY_LOG_FILE, derbyLog.toString());
+
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:droid-benchmark-" + System.nanoTime());
+        dataSource.setCreateDatabase("create");
+        formats = SyntheticNodes.newFormats(FORMATS);
+
+        dao = new CommittingResultHandlerDao(dataSource);
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(true);
+        dao.init();
+        insertFormats();
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(false);
+        dao.initialiseForNewTemplate();
+    }
+
+    /**
+     * Stops the database writer threads of the dao and drops the database.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dao.cleanup();
+        dataSource.setCreateDatabase(null);
+        dataSource.setConnectionAttributes("drop=true");
+        try {
+            dataSource.getConnection().close();
+        } catch (SQLException expected) {
+            // Derby reports a dropped database with an exception.
+        }
+    }
+
+    /**
+     * Saves results and waits until they have all been committed.
+     */
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public void saveResults() {
+        final ResourceId folder = new ResourceId(FOLDER_ID, "");
+        for (final ProfileResourceNode node : SyntheticNodes.newFileNodes(NODES, formats)) {
+            dao.save(node, folder);
+        }
+        dao.commitAndWait();
+    }
+
+    /**
+     * Inserts the formats the results are identified as, which the dao loads when it starts.
+     * @throws SQLException if the formats could not be inserted.
+     */
+    private void insertFormats() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement(INSERT_FORMAT)) {
+            for (final Format format : formats) {
+                int column = 1;
+                insert.setString(column++, format.getPuid());
+                insert.setString(column++, format.getMimeType());
+                insert.setString(column++, format.getName());
+                insert.setString(column, format.getVersion());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Lets the benchmark wait until the database writers have committed everything saved so far.
+     */
+    private static final class CommittingResultHandlerDao extends JDBCBatchResultHandlerDao {
+
+        CommittingResultHandlerDao(final DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public void commitAndWait() {
+            super.commitAndWait();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
+import uk.gov.nationalarchives.droid.core.SignatureParseException;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+
+/**
+ * Measures matching the binary signatures of the bundled signature file against a corpus of files,
+ * some of which start with the headers of common formats.  The time includes opening each request,
+ * so the cost of reading the file is measured along with the cost of matching it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SignatureMatchingBenchmark {
+
+    private static final int CORPUS_FILES = 100;
+
+    @Param({"4096", "1048576"})
+    private int fileSize;
+
+    @Param({"-1", "65536"})
+    private long maxBytesToScan;
+
+    private Path directory;
+    private List<Path> corpus;
+    private BinarySignatureIdentifier identifier;
+
+    /**
+     * Parses the signature file and writes the corpus.
+     * @throws IOException if the corpus could not be written.
+     * @throws SignatureParseException if the signature file could not be parsed.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SignatureParseException {
+        directory = Files.createTempDirectory("droid-signature-benchmark");
+        corpus = SyntheticCorpus.writeMixedFiles(directory, CORPUS_FILES, fileSize);
+        identifier = new BinarySignatureIdentifier();
+        identifier.setSignatureFile(
+                SyntheticCorpus.copyResource(SyntheticCorpus.BINARY_SIGNATURE_FILE, directory).toString());
+        identifier.init();
+        identifier.setMaxBytesToScan(maxBytesToScan);
+    }
+
+    /**
+     * Deletes the corpus.
+     * @throws IOException if the corpus could not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    /**
+     * Matches the binary signatures against every file in the corpus.
+     * @param blackhole Consumes the results.
+     * @throws IOException if a file could not be read.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_FILES)
+    public void matchBinarySignatures(final Blackhole blackhole) throws IOException {
+        for (final Path file : corpus) {
+            try (FileSystemIdentificationRequest request = FileRequests.open(file)) {
+                blackhole.consume(identifier.matchBinarySignatures(request));
+            }
+        }
+    }
+}
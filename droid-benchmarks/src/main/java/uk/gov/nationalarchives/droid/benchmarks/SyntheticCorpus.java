@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+
+/**
+ * Generates the files measured by the benchmarks, so that runs are repeatable and do not depend
+ * on a corpus of real files.  All content is derived from a fixed seed.
+ */
+public final class SyntheticCorpus {
+
+    /**
+     * The binary signature file bundled with droid-results.
+     */
+    public static final String BINARY_SIGNATURE_FILE = "DROID_SignatureFile_V96.xml";
+
+    /**
+     * The container signature file bundled with droid-container.
+     */
+    public static final String CONTAINER_SIGNATURE_FILE = "container-signature-20200121.xml";
+
+    private static final long SEED = 20220901L;
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+    private static final String BIN_EXTENSION = ".bin";
+
+    /**
+     * The start of files of some common formats, so that the corpus exercises signatures which match
+     * as well as the many which fail.  Null means the file is entirely random bytes.
+     */
+    private static final String[] HEADERS = {
+        null,
+        "%PDF-1.4\n",
+        "GIF89a",
+        "\u0089PNG\r\n\u001a\n",
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n",
+        "<!DOCTYPE html>\n<html>",
+        "{\\rtf1\\ansi",
+        "ID3\u0003\u0000",
+        "II*\u0000",
+        "PK\u0003\u0004",
+    };
+
+    private static final String WORD_DOCUMENT_XML =
+            XML_DECLARATION
+            + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\">"
+            + "<w:body><w:p><w:r><w:t>DROID benchmark</w:t></w:r></w:p></w:body></w:document>";
+
+    private static final String CONTENT_TYPES_XML =
+            XML_DECLARATION
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Override PartName=\"/word/document.xml\" ContentType=\"application/vnd.openxmlformats-"
+            + "officedocument.wordprocessingml.document.main+xml\"/></Types>";
+
+    private SyntheticCorpus() {
+    }
+
+    /**
+     * Copies a resource on the classpath to a file, as DROID reads signature files from the file system.
+     * @param resource The name of the resource.
+     * @param directory The directory to copy it into.
+     * @return The path of the copied file.
+     * @throws IOException if the resource does not exist or could not be copied.
+     */
+    public static Path copyResource(final String resource, final Path directory) throws IOException {
+        final Path target = directory.resolve(resource);
+        try (InputStream in = SyntheticCorpus.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Resource not found on the classpath: " + resource);
+            }
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    /**
+     * Writes files which start with a mix of common format headers followed by random bytes.
+     * @param directory The directory to write the files into.
+     * @param count The number of files to write.
+     * @param size The size of each file in bytes.
+     * @return The paths of the files written.
+     * @throws IOException if a file could not be written.
+     */
+    public static List<Path> writeMixedFiles(final Path directory, final int count, final int size)
+            throws IOException {
+        final Random random = new Random(SEED);
+        final List<Path> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final byte[] content = new byte[size];
+            random.nextBytes(content);
+            final String header = HEADERS[i % HEADERS.length];
+            if (header != null) {
+                final byte[] headerBytes = header.getBytes(StandardCharsets.ISO_8859_1);
+                System.arraycopy(headerBytes, 0, content, 0, Math.min(headerBytes.length, size));
+            }
+            final Path file = directory.resolve("file" + i + BIN_EXTENSION);
+            Files.write(file, content);
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Writes a zip file of random entries, some of them stored in folders.
+     * @param file The zip file to write.
+     * @param entries The number of entries in the zip file.
+     * @param entrySize The size of each entry in bytes.
+     * @return The zip file.
+     * @throws IOException if the file could not be written.
+     */
+    public static Path writeZip(final Path file, final int entries, final int entrySize) throws IOException {
+        final Random random = new Random(SEED);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < entries; i++) {
+                final String folder = i % 2 == 0 ? "" : "folder" + (i % HEADERS.length) + "/";
+                out.putNextEntry(new ZipEntry(folder + "entry" + i + BIN_EXTENSION));
+                final byte[] content = new byte[entrySize];
+                random.nextBytes(content);
+                out.write(content);
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Writes a minimal Office Open XML word processing document, which is identified by container signatures.
+     * @param file The file to write.
+     * @return The file.
+     * @throws IOException if the file could not be written.
+     */
+    public static Path writeWordProcessingZip(final Path file) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            out.write(CONTENT_TYPES_XML.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("word/document.xml"));
+            out.write(WORD_DOCUMENT_XML.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return file;
+    }
+
+    /**
+     * Writes an OLE2 compound file with a WordDocument stream of random bytes.
+     * @param file The file to write.
+     * @param streamSize The size of the WordDocument stream in bytes.
+     * @return The file.
+     * @throws IOException if the file could not be written.
+     */
+    public static Path writeOle2(final Path file, final int streamSize) throws IOException {
+        final byte[] content = new byte[streamSize];
+        new Random(SEED).nextBytes(content);
+        try (POIFSFileSystem fileSystem = new POIFSFileSystem();
+             OutputStream out = Files.newOutputStream(file)) {
+            fileSystem.createDocument(new ByteArrayInputStream(content), "WordDocument");
+            fileSystem.writeFilesystem(out);
+        }
+        return file;
+    }
+}
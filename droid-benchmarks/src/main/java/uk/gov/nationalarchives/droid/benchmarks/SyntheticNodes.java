@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.benchmarks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * Generates the profile results measured by the export and persistence benchmarks.
+ */
+public final class SyntheticNodes {
+
+    private static final long LAST_MODIFIED = 1262304000000L; // 2010-01-01
+    private static final int FILES_PER_FOLDER = 50;
+    private static final int HEX_RADIX = 16;
+    private static final int TWO_FORMATS_EVERY = 10;
+
+    private SyntheticNodes() {
+    }
+
+    /**
+     * @param count The number of formats to create.
+     * @return Formats with puids fmt/1 to fmt/count.
+     */
+    public static List<Format> newFormats(final int count) {
+        final List<Format> formats = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            final Format format = new Format();
+            format.setPuid("fmt/" + i);
+            format.setMimeType("application/x-benchmark-" + i);
+            format.setName("Benchmark Format " + i);
+            format.setVersion(Integer.toString(i));
+            formats.add(format);
+        }
+        return formats;
+    }
+
+    /**
+     * Creates unsaved results for files, each identified as one of the formats given, with every
+     * tenth file identified as two formats.
+     * @param count The number of results to create.
+     * @param formats The formats to identify the files as.
+     * @return The results, which have no ids yet.
+     */
+    public static List<ProfileResourceNode> newFileNodes(final int count, final List<Format> formats) {
+        final List<ProfileResourceNode> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String name = "file" + i + ".bin";
+            final ProfileResourceNode node = new ProfileResourceNode(
+                    URI.create("file:/benchmark/folder" + (i / FILES_PER_FOLDER) + "/" + name));
+            final NodeMetaData metaData = new NodeMetaData();
+            metaData.setName(name);
+            metaData.setExtension("bin");
+            metaData.setSize((long) i);
+            metaData.setLastModified(LAST_MODIFIED + i);
+            metaData.setLastModifiedDate(new Date(LAST_MODIFIED + i));
+            metaData.setHash(Long.toString(Long.MAX_VALUE - i, HEX_RADIX));
+            metaData.setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+            metaData.setNodeStatus(NodeStatus.DONE);
+            metaData.setResourceType(ResourceType.FILE);
+            node.setMetaData(metaData);
+            node.setExtensionMismatch(false);
+            node.setFinished(new Date());
+            node.addFormatIdentification(formats.get(i % formats.size()));
+            if (i % TWO_FORMATS_EVERY == 0) {
+                node.addFormatIdentification(formats.get((i + 1) % formats.size()));
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+}
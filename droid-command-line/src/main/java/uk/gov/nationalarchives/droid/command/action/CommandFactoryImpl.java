@@ -55,6 +55,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionFieldEnum;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionOperator;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.FilterCriterion;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportFormat;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
 
 /**
@@ -110,6 +111,7 @@ public class CommandFactoryImpl implements CommandFactory {
         cmd.setProfiles(profiles);
         cmd.setBom(bom);
         cmd.setQuoteAllFields(!cli.hasOption(CommandLineParam.QUOTE_COMMAS.getLongName()));
+        cmd.setExportFormat(getExportFormat(cli));
 
         if (cli.hasOption(CommandLineParam.COLUMNS_TO_WRITE.getLongName())) {
             String columns = String.join(SPACE, cli.getOptionValues(CommandLineParam.COLUMNS_TO_WRITE.getLongName()));
@@ -148,6 +150,7 @@ public class CommandFactoryImpl implements CommandFactory {
         cmd.setProfiles(profiles);
         cmd.setBom(bom);
         cmd.setQuoteAllFields(!cli.hasOption(CommandLineParam.QUOTE_COMMAS.getLongName()));
+        cmd.setExportFormat(getExportFormat(cli));
 
         if (cli.hasOption(CommandLineParam.COLUMNS_TO_WRITE.getLongName())) {
             String columns = String.join(SPACE, cli.getOptionValues(CommandLineParam.COLUMNS_TO_WRITE.getLongName()));
@@ -165,6 +168,18 @@ public class CommandFactoryImpl implements CommandFactory {
         return cmd;
     }
 
+    private static ExportFormat getExportFormat(final CommandLine cli) throws CommandLineSyntaxException {
+        final String exportType = cli.getOptionValue(CommandLineParam.EXPORT_OUTPUT_TYPE.toString());
+        if (exportType == null) {
+            return null;
+        }
+        final ExportFormat format = ExportFormat.forExtension(exportType);
+        if (format == null) {
+            throw new CommandLineSyntaxException("Unknown export type: " + exportType);
+        }
+        return format;
+    }
+
     /**
      * @param cli the command line
      * @throws CommandLineSyntaxException command parse exception.
@@ -230,6 +245,8 @@ public class CommandFactoryImpl implements CommandFactory {
         command.setSignatureFile(cli.getOptionValue(CommandLineParam.SIGNATURE_FILE.toString()));
         command.setResultsFilter(getResultsFilter(cli));
         command.setIdentificationFilter(getIdentificationFilter(cli));
+        command.setPreviousProfile(cli.getOptionValue(CommandLineParam.PREVIOUS_PROFILE.toString()));
+        setSignatureReport(cli, command, overrides);
         return command;
     }
 
@@ -247,9 +264,17 @@ public class CommandFactoryImpl implements CommandFactory {
         command.setSignatureFile(cli.getOptionValue(CommandLineParam.SIGNATURE_FILE.toString()));
         command.setResultsFilter(getFileOnlyResultsFilter());
         command.setIdentificationFilter(getIdentificationFilter(cli));
+        setSignatureReport(cli, command, overrides);
         return command;
     }
 
+    private void setSignatureReport(CommandLine cli, ProfileRunCommand command, PropertiesConfiguration overrides) {
+        if (cli.hasOption(CommandLineParam.SIGNATURE_REPORT.toString())) {
+            command.setSignatureReport(cli.getOptionValue(CommandLineParam.SIGNATURE_REPORT.toString()));
+            overrides.setProperty(DroidGlobalProperty.SIGNATURE_STATISTICS.getName(), true);
+        }
+    }
+
     private Filter getFileOnlyResultsFilter() {
         Object[] filterValue = new Object[]{ResourceType.FOLDER};
         FilterCriterion criterion = new BasicFilterCriterion(CriterionFieldEnum.RESOURCE_TYPE, CriterionOperator.NONE_OF, filterValue);
@@ -183,6 +183,14 @@ public enum CommandLineParam {
         }
     },
 
+    /** Set the export output type. */
+    EXPORT_OUTPUT_TYPE("et", "export-type", true, 1, I18N.EXPORT_TYPE_HELP, "export type") {
+        @Override
+        public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+
     /** Lists the reports. */
     LIST_REPORTS("l", "list-reports", I18N.LIST_REPORTS_HELP) {
         @Override
@@ -210,6 +218,22 @@ public enum CommandLineParam {
         }
     },
 
+    /** A previous profile of the same resources, whose results are copied forward for unchanged files. */
+    PREVIOUS_PROFILE("pp", "previous-profile", true, 1, I18N.PREVIOUS_PROFILE_HELP, filename()) {
+        @Override
+        public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+
+    /** A file to write a report of the cost of running each binary signature to. */
+    SIGNATURE_REPORT("sr", "signature-report", true, 1, I18N.SIGNATURE_REPORT_HELP, filename()) {
+        @Override
+        public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+
     /** Specifies the file to write CSV output to, or stdout to write to console. */
     OUTPUT_FILE("o", "output-file", true, 1, I18N.OUTPUT_FILE_HELP, "output") {
         @Override
@@ -487,6 +511,8 @@ public enum CommandLineParam {
 
         options.addOption(PROFILES.newOption());
         options.addOption(OUTPUT_FILE.newOption());
+        options.addOption(PREVIOUS_PROFILE.newOption());
+        options.addOption(SIGNATURE_REPORT.newOption());
         options.addOption(PROFILE_PROPERTY.newOption());
         options.addOption(PROPERTY_FILE.newOption());
         options.addOption(REPORT_NAME.newOption());
@@ -501,6 +527,7 @@ public enum CommandLineParam {
         options.addOption(RECURSIVE.newOption());
         options.addOption(QUIET.newOption());
         options.addOption(BOM.newOption());
+        options.addOption(EXPORT_OUTPUT_TYPE.newOption());
         options.addOption(COLUMNS_TO_WRITE.newOption());
         options.addOption(QUOTE_COMMAS.newOption());
         options.addOption(ROW_PER_FORMAT.newOption());
@@ -561,6 +588,7 @@ public enum CommandLineParam {
         options.addOption(WEB_ARCHIVE_TYPES.newOption());
         options.addOption(RECURSIVE.newOption());
         options.addOption(QUIET.newOption());
+        options.addOption(SIGNATURE_REPORT.newOption());
         return options;
     }
 
@@ -573,6 +601,8 @@ public enum CommandLineParam {
         Options options = new Options();
         options.addOption(PROFILES.newOption());
         options.addOption(OUTPUT_FILE.newOption());
+        options.addOption(PREVIOUS_PROFILE.newOption());
+        options.addOption(SIGNATURE_REPORT.newOption());
         options.addOption(RECURSIVE.newOption());
         options.addOption(SIGNATURE_FILE.newOption());
         options.addOption(CONTAINER_SIGNATURE_FILE.newOption());
@@ -605,6 +635,7 @@ public enum CommandLineParam {
         options.addOption(ANY_FILTER.newOption());
         options.addOption(ALL_FILTER.newOption());
         options.addOption(BOM.newOption());
+        options.addOption(EXPORT_OUTPUT_TYPE.newOption());
         options.addOption(QUOTE_COMMAS.newOption());
         options.addOption(COLUMNS_TO_WRITE.newOption());
         return options;
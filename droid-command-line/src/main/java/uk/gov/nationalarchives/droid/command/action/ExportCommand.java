@@ -39,6 +39,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportFormat;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportManager;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
 import uk.gov.nationalarchives.droid.profile.ProfileInstance;
@@ -57,6 +58,7 @@ public class ExportCommand implements DroidCommand {
     private String destination;
     private Filter filter;
     private ExportOptions options;
+    private ExportFormat exportFormat;
     private boolean bom;
     private boolean quoteAllFields = true;
     private String columnsToWrite;
@@ -88,7 +90,7 @@ public class ExportCommand implements DroidCommand {
             //default to UTF-8
             final String outputEncoding = "UTF-8"; //TODO set encoding from command line option
             final Future<?> fProfiles = exportManager.exportProfiles(profileIds, destination, filter,
-                    options, outputEncoding, bom, quoteAllFields, columnsToWrite);
+                    options, exportFormat, outputEncoding, bom, quoteAllFields, columnsToWrite);
             fProfiles.get();
         } catch (InterruptedException e) {
             throw new CommandExecutionException(e);
@@ -139,6 +141,22 @@ public class ExportCommand implements DroidCommand {
         this.options = opt;
     }
     
+    /**
+     *
+     * @return The export format, or null if it is chosen from the destination file name.
+     */
+    public ExportFormat getExportFormat() {
+        return exportFormat;
+    }
+
+    /**
+     *
+     * @param exportFormat The export format to write, or null to choose it from the destination file name.
+     */
+    public void setExportFormat(ExportFormat exportFormat) {
+        this.exportFormat = exportFormat;
+    }
+
     /**
      * @param profileManager the profileManager to set
      */
@@ -32,6 +32,8 @@
 package uk.gov.nationalarchives.droid.command.action;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -44,6 +46,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileExce
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileInfo;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureManager;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureType;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SignatureStatistics;
 import uk.gov.nationalarchives.droid.profile.ProfileInstance;
 import uk.gov.nationalarchives.droid.profile.ProfileManager;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceFactory;
@@ -72,6 +75,8 @@ public class ProfileRunCommand implements DroidCommand {
     private String containerSignaturesFileName;
     private Filter resultsFilter;
     private Filter identificationFilter;
+    private String previousProfile;
+    private String signatureReport;
 
     @Override
     public void execute() throws CommandExecutionException {
@@ -87,16 +92,21 @@ public class ProfileRunCommand implements DroidCommand {
                 profile.addResource(getProfileResourceFactory().getResource(resource, recursive));
             }
             profileManager.setProgressObserver(profile.getUuid(), null);
-            Future<?> future = profileManager.start(profile.getUuid());
-            future.get();
-            
             ProgressObserver progressCallback = new ProgressObserver() {
                 @Override
                 public void onProgress(Integer progress) {
                 }
             };
+            Future<?> future = start(profile, progressCallback);
+            future.get();
+            writeSignatureReport(profile.getUuid());
 
-            Thread.sleep(SLEEP_TIME);
+            // Results streamed to an output file are all written by the time the profile finishes.
+            // Only the database writer commits in the background, so give it time before saving.
+            final String outputFilePath = profile.getOutputFilePath();
+            if (outputFilePath == null || outputFilePath.isEmpty()) {
+                Thread.sleep(SLEEP_TIME);
+            }
 
             profileManager.save(profile.getUuid(), Paths.get(destination), progressCallback);
             profileManager.closeProfile(profile.getUuid());
@@ -114,6 +124,43 @@ public class ProfileRunCommand implements DroidCommand {
         
     }
 
+    /**
+     * Starts the profile, copying forward results from any previous profile.
+     * @param profile The profile to start.
+     * @param progressCallback An observer of progress opening the previous profile.
+     * @return A future which is done when the profile finishes.
+     * @throws IOException if there was a problem opening the previous profile or starting the profile.
+     */
+    private Future<?> start(ProfileInstance profile, ProgressObserver progressCallback) throws IOException {
+        if (previousProfile == null) {
+            return profileManager.start(profile.getUuid());
+        }
+        // The results of the previous profile are indexed when the profile starts, so it can be closed again.
+        ProfileInstance previous = profileManager.open(Paths.get(previousProfile), progressCallback);
+        try {
+            return profileManager.start(profile.getUuid(), previous.getUuid());
+        } finally {
+            profileManager.closeProfile(previous.getUuid());
+        }
+    }
+
+    /**
+     * Writes the cost of running each binary signature to the signature report, if one was requested.
+     * The statistics are recorded by the profile while it is open.
+     * @param profileId The id of the profile whose signature statistics are written.
+     * @throws IOException if the profile recorded no statistics or the report could not be written.
+     */
+    private void writeSignatureReport(String profileId) throws IOException {
+        if (signatureReport != null) {
+            final SignatureStatistics statistics = profileManager.getSignatureStatistics(profileId);
+            if (statistics == null) {
+                throw new IOException("No signature statistics were recorded for profile " + profileId);
+            }
+            final String report = statistics.getRankedReport();
+            Files.write(Paths.get(signatureReport), report.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
     /**
      * @return The default binary and container signatures, but will override with different ones if provided.
      * @throws SignatureFileException if there's a problem obtaining the signature files.
@@ -249,6 +296,38 @@ public class ProfileRunCommand implements DroidCommand {
         return identificationFilter;
     }
 
+    /**
+     * Sets a previous profile of the same resources, whose results are copied forward
+     * for files which have not changed since it was run.
+     * @param previousProfile the path of the previous profile, or null to identify every file.
+     */
+    public void setPreviousProfile(final String previousProfile) {
+        this.previousProfile = previousProfile;
+    }
+
+    /**
+     * @return The path of a previous profile to copy forward results from, or null if not set.
+     */
+    public String getPreviousProfile() {
+        return previousProfile;
+    }
+
+    /**
+     * Sets a file to write a ranked report of the cost of running each binary signature to.
+     * Signature statistics must also be recorded by the profile for the report to be written.
+     * @param signatureReport the path of the report, or null to write no report.
+     */
+    public void setSignatureReport(final String signatureReport) {
+        this.signatureReport = signatureReport;
+    }
+
+    /**
+     * @return The path of a report of the cost of running each binary signature, or null if not set.
+     */
+    public String getSignatureReport() {
+        return signatureReport;
+    }
+
       /**
      * Set the container signature file.
      *
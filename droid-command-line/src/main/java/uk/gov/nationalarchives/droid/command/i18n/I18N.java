@@ -61,6 +61,12 @@ public final class I18N {
     /** Profile file to write CSV output to. */
     public static final String OUTPUT_FILE_HELP = "profile.outputfile.help";
 
+    /** A previous profile to copy forward results from for files which have not changed. */
+    public static final String PREVIOUS_PROFILE_HELP = "profile.previous.help";
+
+    /** A file to write a ranked report of the cost of running each binary signature to. */
+    public static final String SIGNATURE_REPORT_HELP = "signature.report.help";
+
     /**
      * Sets CSV output to only quote fields that have a comma in them.
      */
@@ -94,6 +100,9 @@ public final class I18N {
     
     /** Report type. */
     public static final String REPORT_TYPE_HELP = "report.type.help";
+
+    /** Export type. */
+    public static final String EXPORT_TYPE_HELP = "export.type.help";
     
     /** Narrowing filter. */
     public static final String ALL_FILTER = "all.filter.help";
@@ -57,6 +57,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionFieldEnum;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionOperator;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.FilterCriterion;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportFormat;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
 import uk.gov.nationalarchives.droid.report.interfaces.ReportManager;
 import uk.gov.nationalarchives.droid.report.interfaces.ReportSpec;
@@ -137,6 +138,40 @@ public class CommandFactoryTest {
         assertEquals("out.csv", e1.getDestination());
     }
 
+    @Test
+    public void testExportCommandWithExportType() throws Exception {
+        when(context.getExportCommand(ExportOptions.ONE_ROW_PER_FILE)).thenReturn(exportCommand);
+        String[] args = new String[] {
+                "-e",
+                "out.dat",
+                "-et",
+                "parquet",
+                "-p",
+                "tmp/profile 1.droid"
+        };
+        CommandLine cli = parse(args);
+        ExportCommand e1 = (ExportCommand) factory.getExportFileCommand(cli);
+
+        assertEquals(ExportFormat.PARQUET, e1.getExportFormat());
+        assertEquals("out.dat", e1.getDestination());
+    }
+
+    @Test
+    public void testExportCommandWithoutExportTypeChoosesFormatLater() throws Exception {
+        when(context.getExportCommand(ExportOptions.ONE_ROW_PER_FORMAT)).thenReturn(exportCommand);
+        CommandLine cli = parse(new String[] {"-E", "out.parquet", "-p", "tmp/profile 1.droid"});
+        ExportCommand e1 = (ExportCommand) factory.getExportFormatCommand(cli);
+
+        assertNull(e1.getExportFormat());
+    }
+
+    @Test (expected = CommandLineSyntaxException.class)
+    public void testExportCommandWithUnknownExportType() throws Exception {
+        when(context.getExportCommand(ExportOptions.ONE_ROW_PER_FILE)).thenReturn(exportCommand);
+        CommandLine cli = parse(new String[] {"-e", "out.csv", "-et", "xlsx", "-p", "tmp/profile 1.droid"});
+        factory.getExportFileCommand(cli);
+    }
+
 
     @Test
     public void testExportCommandWithNoExportArgument() throws Exception {
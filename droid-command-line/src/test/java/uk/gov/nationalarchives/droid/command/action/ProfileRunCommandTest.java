@@ -31,11 +31,15 @@
  */
 package uk.gov.nationalarchives.droid.command.action;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Future;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -43,11 +47,14 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileInfo;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureManager;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureType;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SignatureStatistics;
 import uk.gov.nationalarchives.droid.profile.FileProfileResource;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceFactory;
 import uk.gov.nationalarchives.droid.profile.ProfileInstance;
@@ -64,6 +71,9 @@ public class ProfileRunCommandTest {
     private ProfileManager profileManager;
     private SignatureManager signatureManager;
     private ProfileResourceFactory profileResourceFactory;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
     
     @Before
     public void setup() {
@@ -116,4 +126,76 @@ public class ProfileRunCommandTest {
         verify(profileManager).closeProfile("abcde");
     }
     
+    @Test
+    public void testRunProfileCopyingForwardResultsFromAPreviousProfile() throws Exception {
+        command.setDestination("test.droid");
+        command.setResources(new String[] {"test1.txt"});
+        command.setPreviousProfile("previous.droid");
+
+        Map<SignatureType, SignatureFileInfo> sigs = new HashMap<SignatureType, SignatureFileInfo>();
+        when(signatureManager.getDefaultSignatures()).thenReturn(sigs);
+
+        ProfileInstance profileInstance = mock(ProfileInstance.class);
+        when(profileInstance.getUuid()).thenReturn("abcde");
+        when(profileManager.createProfile(sigs, null)).thenReturn(profileInstance);
+        ProfileInstance previousInstance = mock(ProfileInstance.class);
+        when(previousInstance.getUuid()).thenReturn("fghij");
+        when(profileManager.open(eq(Paths.get("previous.droid")), any(ProgressObserver.class)))
+                .thenReturn(previousInstance);
+
+        Future future = mock(Future.class);
+        when(profileManager.start("abcde", "fghij")).thenReturn(future);
+        when(profileResourceFactory.getResource("test1.txt", false))
+                .thenReturn(new FileProfileResource(Paths.get("test1.txt")));
+
+        command.execute();
+
+        verify(profileManager).start("abcde", "fghij");
+        verify(profileManager).closeProfile("fghij");
+        verify(future).get();
+        verify(profileManager).save(eq("abcde"), eq(Paths.get("test.droid")), any(ProgressObserver.class));
+        verify(profileManager).closeProfile("abcde");
+    }
+
+    @Test
+    public void testRunProfileWritesSignatureReportFromTheProfile() throws Exception {
+        Path report = temporaryFolder.getRoot().toPath().resolve("signatures.tsv");
+        command.setDestination("test.droid");
+        command.setResources(new String[] {"test1.txt"});
+        command.setSignatureReport(report.toString());
+
+        Map<SignatureType, SignatureFileInfo> sigs = new HashMap<SignatureType, SignatureFileInfo>();
+        when(signatureManager.getDefaultSignatures()).thenReturn(sigs);
+        ProfileInstance profileInstance = mock(ProfileInstance.class);
+        when(profileInstance.getUuid()).thenReturn("abcde");
+        when(profileManager.createProfile(sigs, null)).thenReturn(profileInstance);
+        when(profileManager.start("abcde")).thenReturn(mock(Future.class));
+        when(profileResourceFactory.getResource("test1.txt", false))
+                .thenReturn(new FileProfileResource(Paths.get("test1.txt")));
+
+        SignatureStatistics statistics = new SignatureStatistics();
+        when(profileManager.getSignatureStatistics("abcde")).thenReturn(statistics);
+
+        command.execute();
+
+        assertEquals(statistics.getRankedReport(), new String(Files.readAllBytes(report), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = CommandExecutionException.class)
+    public void testRunProfileFailsWhenNoSignatureStatisticsWereRecorded() throws Exception {
+        command.setDestination("test.droid");
+        command.setResources(new String[] {"test1.txt"});
+        command.setSignatureReport(temporaryFolder.getRoot().toPath().resolve("signatures.tsv").toString());
+
+        Map<SignatureType, SignatureFileInfo> sigs = new HashMap<SignatureType, SignatureFileInfo>();
+        when(signatureManager.getDefaultSignatures()).thenReturn(sigs);
+        ProfileInstance profileInstance = mock(ProfileInstance.class);
+        when(profileInstance.getUuid()).thenReturn("abcde");
+        when(profileManager.createProfile(sigs, null)).thenReturn(profileInstance);
+        when(profileManager.start("abcde")).thenReturn(mock(Future.class));
+        when(profileResourceFactory.getResource("test1.txt", false))
+                .thenReturn(new FileProfileResource(Paths.get("test1.txt")));
+
+        command.execute();
+    }
 }
@@ -31,10 +31,10 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -43,20 +43,35 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * @author rflitcroft
  * Executor service which which will block new tasks until a thread is available to service a task.
+ * <p>
+ * Tasks wait for a thread on a bounded queue, so the thread submitting them (e.g. the file walker) can keep
+ * discovering work while the pool is busy, until the queue is full.  Each queued task holds an open
+ * identification request, and so an open file, so the queue is a small multiple of the pool size:
+ * the files held open then grow with the threads rather than the heap.  When the queue is full, a submitting thread
+ * blocks until there is space, unless it is one of the pool's own threads (e.g. one expanding an archive),
+ * which runs the task itself rather than waiting on the pool it is part of.
+ * Alternatively, the pool can be set to run the task on any submitting thread when the queue is full.
+ * <p>
+ * The pool has as many threads as there are processors available, unless set otherwise.
  */
 public class BlockingThreadPoolExecutorFactory {
 
-    private static final int DEFAULT_CORE_POOL_SIZE = 10;
-    private static final int DEFAULT_MAX_CORE_POOL_SIZE = 10;
-    
-    //private static final int DEFAULT_CORE_POOL_SIZE = 4;
-    //private static final int DEFAULT_MAX_CORE_POOL_SIZE = 4;
-    
+    /**
+     * How many tasks can wait on the queue for each thread in the pool, if the queue size is not set.
+     */
+    private static final int DEFAULT_TASKS_PER_THREAD = 2;
+
     private static final int DEFAULT_KEEP_ALIVE_TIME_MILLIS = 1000;
+
+    private static final String SHUT_DOWN = "Executor has been shut down.";
     
-    private int corePoolSize = DEFAULT_CORE_POOL_SIZE;
-    private int maxPoolSize = DEFAULT_MAX_CORE_POOL_SIZE;
+    private int corePoolSize = getAvailableProcessors();
+    private int maxPoolSize = corePoolSize;
     private long keepAliveTimeMillis = DEFAULT_KEEP_ALIVE_TIME_MILLIS;
+    private int workQueueSize;
+    private int workQueueTasksPerThread = DEFAULT_TASKS_PER_THREAD;
+    private boolean blockWhenFull = true;
+    private String threadNamePrefix = "core-thread-";
     
     /**
      * Returns a new instance of a BlockingThreadPoolExecutor.
@@ -64,28 +79,77 @@ public class BlockingThreadPoolExecutorFactory {
      */
     public ThreadPoolExecutor newInstance() {
         
-        final BlockingQueue<Runnable> workQueue = new SynchronousQueue<Runnable>();
-        RejectedExecutionHandler rejectedExecutionHandler = new CallerRunsUnlessPoolShutdownPolicy();
-        
-        ThreadFactory tf = new MyThreadFactory();
+        final BlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<Runnable>(getWorkQueueSize());
+        MyThreadFactory tf = new MyThreadFactory(threadNamePrefix);
+        RejectedExecutionHandler rejectedExecutionHandler = blockWhenFull
+                ? new BlockUnlessPoolThreadPolicy(tf) : new CallerRunsUnlessPoolShutdownPolicy();
         
         ThreadPoolExecutor executor = new ThreadPoolExecutor(
                 corePoolSize, maxPoolSize, keepAliveTimeMillis, TimeUnit.MILLISECONDS, 
                 workQueue, tf, rejectedExecutionHandler);
         return executor;
     }
+
+    /**
+     * @return the number of tasks which can wait on the queue for a thread.
+     */
+    int getWorkQueueSize() {
+        if (workQueueSize > 0) {
+            return workQueueSize;
+        }
+        return Math.max(1, maxPoolSize * workQueueTasksPerThread);
+    }
+
+    private static int getAvailableProcessors() {
+        return Runtime.getRuntime().availableProcessors();
+    }
     
     private static final class CallerRunsUnlessPoolShutdownPolicy implements RejectedExecutionHandler {
         @Override
         public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
             
             if (executor.isShutdown()) {
-                throw new RejectedExecutionException("Executor has been shut down.");
+                throw new RejectedExecutionException(SHUT_DOWN);
             } 
             
             r.run();
         }
     }
+
+    private static final class BlockUnlessPoolThreadPolicy implements RejectedExecutionHandler {
+
+        private final MyThreadFactory poolThreads;
+
+        private BlockUnlessPoolThreadPolicy(MyThreadFactory poolThreads) {
+            this.poolThreads = poolThreads;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(SHUT_DOWN);
+            }
+
+            // A pool thread waiting for space on its own queue could wait forever, if all the others are doing so.
+            if (poolThreads.isPoolThread(Thread.currentThread())) {
+                r.run();
+                return;
+            }
+
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for the executor.", e);
+            }
+
+            // If the pool was shut down while waiting, the task will never run.
+            if (executor.isShutdown() && executor.getQueue().remove(r)) {
+                throw new RejectedExecutionException(SHUT_DOWN);
+            }
+        }
+    }
     
     private static final class MyThreadFactory implements ThreadFactory {
         
@@ -93,16 +157,15 @@ public class BlockingThreadPoolExecutorFactory {
         private final AtomicInteger threadNumber = new AtomicInteger(1);
         private final String namePrefix;
 
-        private MyThreadFactory() {
+        private MyThreadFactory(String namePrefix) {
             SecurityManager s = System.getSecurityManager();
             group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
-            namePrefix = "core-thread-";
+            this.namePrefix = namePrefix;
         }
 
         public Thread newThread(Runnable r) {
-            Thread t = new Thread(group, r,
-                                  namePrefix + threadNumber.getAndIncrement(),
-                                  0);
+            Thread t = new PoolThread(this, group, r,
+                                  namePrefix + threadNumber.getAndIncrement());
             
             if (t.isDaemon()) {
                 t.setDaemon(false);
@@ -112,6 +175,30 @@ public class BlockingThreadPoolExecutorFactory {
             }
             return t;
         }
+
+        boolean isPoolThread(Thread thread) {
+            return thread instanceof PoolThread && ((PoolThread) thread).factory == this;
+        }
+    }
+
+    private static final class PoolThread extends Thread {
+
+        private final MyThreadFactory factory;
+
+        private PoolThread(MyThreadFactory factory, ThreadGroup group, Runnable target, String name) {
+            super(group, target, name, 0);
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * Sets the number of threads in the pool.
+     * @param poolSize the number of threads, or zero or less for as many as there are processors available.
+     */
+    public void setPoolSize(int poolSize) {
+        final int size = poolSize > 0 ? poolSize : getAvailableProcessors();
+        this.corePoolSize = size;
+        this.maxPoolSize = size;
     }
 
     /**
@@ -136,8 +223,34 @@ public class BlockingThreadPoolExecutorFactory {
     }
 
     /**
-     * @param workQueueSize the workQueueSize to set
+     * Sets how many tasks can wait on the queue for a thread.
+     * @param workQueueSize the workQueueSize to set, or zero or less to size the queue from the pool size.
      */
     public void setWorkQueueSize(int workQueueSize) {
+        this.workQueueSize = workQueueSize;
+    }
+
+    /**
+     * Sets how many tasks can wait on the queue for each thread in the pool, if the queue size is not set.
+     * @param workQueueTasksPerThread the tasks for each thread, or zero or less for the default of 2.
+     */
+    public void setWorkQueueTasksPerThread(int workQueueTasksPerThread) {
+        this.workQueueTasksPerThread = workQueueTasksPerThread > 0 ? workQueueTasksPerThread : DEFAULT_TASKS_PER_THREAD;
+    }
+
+    /**
+     * Sets whether a thread submitting a task waits for space on a full queue, or runs the task itself.
+     * Pool threads always run the task themselves.
+     * @param blockWhenFull true if submitting threads wait for space on a full queue.
+     */
+    public void setBlockWhenFull(boolean blockWhenFull) {
+        this.blockWhenFull = blockWhenFull;
+    }
+
+    /**
+     * @param threadNamePrefix the prefix for the names of the threads in the pool.
+     */
+    public void setThreadNamePrefix(String threadNamePrefix) {
+        this.threadNamePrefix = threadNamePrefix;
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+
+/**
+ * Reads the entries of a random access archive on a pool of threads, ahead of the thread walking the archive.
+ * <p>
+ * Entries are still submitted for identification by the walking thread, in the order they were found,
+ * so the reading threads never wait for identification. At most maxEntriesInFlight entries are read
+ * and not yet submitted at any one time, which bounds the memory and temporary files held for them:
+ * the walking thread waits for the oldest entry to be read before reading any more.
+ * An instance is valid for the walk of one archive only.
+ * </p>
+ */
+final class ArchiveEntryReadAhead {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final AsynchDroid droidCore;
+    private final ExecutorService executorService;
+    private final int maxEntriesInFlight;
+    private final Deque<EntryReader> entries = new ArrayDeque<>();
+
+    /**
+     * Opens the stream of an archive entry.
+     */
+    interface EntrySource {
+        /**
+         * @return A stream over the contents of the entry.
+         * @throws IOException if the entry could not be read.
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * @param droidCore The droid core to submit entries to.
+     * @param executorService The executor to read entries on.
+     * @param maxEntriesInFlight The maximum number of entries read but not yet submitted.
+     */
+    ArchiveEntryReadAhead(AsynchDroid droidCore, ExecutorService executorService, int maxEntriesInFlight) {
+        this.droidCore = droidCore;
+        this.executorService = executorService;
+        this.maxEntriesInFlight = Math.max(1, maxEntriesInFlight);
+    }
+
+    /**
+     * Reads an entry on the executor, first submitting the oldest entry if too many are in flight.
+     * If the executor will not accept the entry, it is read on this thread.
+     * @param request The request for the entry, which is opened with the contents of the entry.
+     * @param source The source of the entry contents.
+     * @throws IOException if an earlier entry could not be read.
+     */
+    void read(final IdentificationRequest request, final EntrySource source) throws IOException {
+        if (entries.size() >= maxEntriesInFlight) {
+            submitNext();
+        }
+        final EntryReader reader = new EntryReader(request, source);
+        try {
+            reader.future = executorService.submit(reader);
+        } catch (RejectedExecutionException e) {
+            final FutureTask<IdentificationRequest> task = new FutureTask<>(reader);
+            task.run();
+            reader.future = task;
+        }
+        entries.add(reader);
+    }
+
+    /**
+     * Submits all the entries still in flight, in the order they were read.
+     * @throws IOException if an entry could not be read.
+     */
+    void finish() throws IOException {
+        while (!entries.isEmpty()) {
+            submitNext();
+        }
+    }
+
+    /**
+     * Closes any entries still in flight without submitting them, after the walk has failed.
+     * Entries still being read are waited for, so none of their temporary files are left behind.
+     * Entries whose read has not started are never opened, so there is nothing to close for them.
+     */
+    void abandon() {
+        while (!entries.isEmpty()) {
+            final EntryReader entry = entries.remove();
+            if (!entry.cancel()) {
+                final IdentificationRequest request = awaitQuietly(entry.future);
+                if (request != null) {
+                    closeQuietly(request);
+                }
+            }
+        }
+    }
+
+    private void submitNext() throws IOException {
+        final EntryReader next = entries.remove();
+        try {
+            droidCore.submit(next.future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entries.addFirst(next); // still to be closed if the walk is abandoned.
+            throw new InterruptedIOException("Interrupted while reading archive entries.");
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        }
+    }
+
+    private IdentificationRequest open(IdentificationRequest request, EntrySource source) throws IOException {
+        boolean opened = false;
+        try {
+            final InputStream in = source.open();
+            try {
+                request.open(in);
+            } finally {
+                if (in != null) {
+                    in.close();
+                }
+            }
+            opened = true;
+            return request;
+        } finally {
+            if (!opened) {
+                closeQuietly(request);
+            }
+        }
+    }
+
+    private IdentificationRequest awaitQuietly(Future<IdentificationRequest> entry) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return entry.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    return null; // a request which failed to open has already been closed.
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void closeQuietly(IdentificationRequest request) {
+        try {
+            request.close();
+        } catch (IOException e) {
+            log.warn(String.format("Error closing archive entry [%s]", request.getIdentifier().getUri()), e);
+        }
+    }
+
+    /**
+     * Reads one entry, unless it is cancelled before the read starts.
+     * A future can be cancelled while its task is running, so the entry claims the read itself:
+     * once the read has started, the entry is always opened or closed by it.
+     */
+    private final class EntryReader implements Callable<IdentificationRequest> {
+
+        private final IdentificationRequest request;
+        private final EntrySource source;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private Future<IdentificationRequest> future;
+
+        EntryReader(IdentificationRequest request, EntrySource source) {
+            this.request = request;
+            this.source = source;
+        }
+
+        @Override
+        public IdentificationRequest call() throws IOException {
+            return started.compareAndSet(false, true) ? open(request, source) : null;
+        }
+
+        /**
+         * @return Whether the entry was cancelled before its read started.
+         */
+        boolean cancel() {
+            if (started.compareAndSet(false, true)) {
+                future.cancel(false);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static IOException asIOException(Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import de.schlichtherle.truezip.rof.ReadOnlyFile;
+import de.schlichtherle.truezip.zip.ZipEntry;
+import de.schlichtherle.truezip.zip.ZipFile;
+
+/**
+ * A zip file whose entries can be decompressed by several threads at once.
+ * <p>
+ * A TrueZip ZipFile holds its lock for every read of an entry stream, which includes inflating it,
+ * so threads reading different entries only ever decompress one at a time.  This class reads the raw
+ * compressed bytes of deflated entries under that lock, but inflates them on the calling thread.
+ * Entries which are stored, encrypted or use any other compression method are read as normal.
+ * </p>
+ */
+final class ConcurrentZipFile extends ZipFile {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * @param file The zip file to read.
+     * @throws IOException if the zip file could not be read.
+     */
+    ConcurrentZipFile(ReadOnlyFile file) throws IOException {
+        super(file);
+    }
+
+    /**
+     * Returns a stream over the decompressed contents of an entry, which may be read
+     * concurrently with the streams of other entries.
+     * @param entry The entry to read.
+     * @return A stream over the contents of the entry, or null if the entry is not in this zip file.
+     * @throws IOException if the entry could not be read.
+     */
+    InputStream getConcurrentInputStream(ZipEntry entry) throws IOException {
+        if (entry.getMethod() == ZipEntry.DEFLATED && !entry.isEncrypted()) {
+            final InputStream raw = getInputStream(entry.getName(), Boolean.FALSE, false);
+            return raw == null ? null : new RawInflaterInputStream(raw);
+        }
+        return getInputStream(entry);
+    }
+
+    /**
+     * @param entry The entry to read.
+     * @return A source which opens the concurrent input stream of the entry.
+     */
+    ArchiveEntryReadAhead.EntrySource getConcurrentSource(final ZipEntry entry) {
+        return new ArchiveEntryReadAhead.EntrySource() {
+            @Override
+            public InputStream open() throws IOException {
+                return getConcurrentInputStream(entry);
+            }
+        };
+    }
+
+    /**
+     * Inflates raw deflate data, releasing the native memory of its inflater when closed.
+     */
+    private static final class RawInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+
+        RawInflaterInputStream(InputStream raw) {
+            super(raw, new Inflater(true), BUFFER_SIZE);
+        }
+
+        /**
+         * An inflater without the zlib wrapper may need an extra dummy byte after the end of the
+         * deflated data, as java.util.zip.ZipFile supplies.
+         * @throws IOException if the raw data could not be read.
+         */
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of deflated zip entry.");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
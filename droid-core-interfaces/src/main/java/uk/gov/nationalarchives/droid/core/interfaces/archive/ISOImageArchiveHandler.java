@@ -99,7 +99,7 @@ public class ISOImageArchiveHandler implements ArchiveHandler {
         // This would allow us to process ISO files no matter where they came from (e.g. in a zip file).
         // TODO: alternatively - DROID could fork the ISO code if the project has stopped making new releases.
         // The last release was back in 2015, so it may be that the project is now basically inactive.
-        if (request.getClass().isAssignableFrom(FileSystemIdentificationRequest.class)) {
+        if (request instanceof FileSystemIdentificationRequest) {
 
             FileSystemIdentificationRequest req = (FileSystemIdentificationRequest) request;
 
@@ -39,6 +39,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -52,14 +53,24 @@ import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 /**
+ * Handles zip archives.
+ * <p>
+ * If an entry executor is set, the entries of a zip file are decompressed on its threads,
+ * ahead of being submitted for identification by the thread walking the zip file.
+ * Otherwise each entry is decompressed by the walking thread before it is submitted.
+ * </p>
  * @author a-mpalmer
  *
  */
 public class TrueZipArchiveHandler implements ArchiveHandler {
 
+    private static final int DEFAULT_MAX_ENTRIES_IN_FLIGHT = 32;
+
     private AsynchDroid droidCore;
     private IdentificationRequestFactory<InputStream> factory;
     private ResultHandler resultHandler;
+    private ExecutorService entryExecutorService;
+    private int maxEntriesInFlight = DEFAULT_MAX_ENTRIES_IN_FLIGHT;
 
     /**
      * Empty bean constructor.
@@ -83,7 +94,10 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
 
     @Override
     public void handle(IdentificationRequest request) throws IOException {
-        final ZipFile zipFile = new ZipFile(new TrueZipReader(request.getWindowReader()));
+        final ConcurrentZipFile zipFile = new ConcurrentZipFile(new TrueZipReader(request.getWindowReader()));
+        final ArchiveEntryReadAhead readAhead = entryExecutorService == null ? null
+                : new ArchiveEntryReadAhead(droidCore, entryExecutorService, maxEntriesInFlight);
+        boolean finished = false;
         try {
             Iterable<ZipEntry> iterable = new Iterable<ZipEntry>() {
                 @Override
@@ -92,9 +106,17 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
                 }
             };
     
-            ZipArchiveWalker walker = new ZipArchiveWalker(request.getIdentifier(), zipFile);  
+            ZipArchiveWalker walker = new ZipArchiveWalker(request.getIdentifier(), zipFile, readAhead);
             walker.walk(iterable);
+            if (readAhead != null) {
+                readAhead.finish();
+            }
+            finished = true;
         } finally {
+            // Entries still being read need the zip file, so must be finished with before it is closed.
+            if (readAhead != null && !finished) {
+                readAhead.abandon();
+            }
             if (zipFile != null) {
                 zipFile.close();
             }
@@ -136,10 +158,12 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
      * @param file the Truezip zipFile
      * @param correlationId an ID to correlate this submission to
      * @param originatorNodeId the ID of the originator node
+     * @param readAhead reads the entry ahead of submitting it, or null to read and submit it on this thread
      * @throws IOException if there was an error accessing the input stream 'in'
      */
-    final void submit(ZipEntry entry, String entryName, URI parentName, 
-            ZipFile file, ResourceId correlationId, long originatorNodeId)
+    final void submit(ZipEntry entry, String entryName, URI parentName,
+            ConcurrentZipFile file, ResourceId correlationId, long originatorNodeId,
+            ArchiveEntryReadAhead readAhead)
         throws IOException {
         
         long size = entry.getSize();
@@ -156,16 +180,20 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
 
         IdentificationRequest request = factory.newRequest(metaData, identifier);
         if (droidCore.passesIdentificationFilter(request)) {
-            InputStream in = null;
-            try {
-                in = file.getInputStream(entry);
-                request.open(in);
-            } finally {
-                if (in != null) {
-                    in.close();
+            if (readAhead != null) {
+                readAhead.read(request, file.getConcurrentSource(entry));
+            } else {
+                InputStream in = null;
+                try {
+                    in = file.getInputStream(entry);
+                    request.open(in);
+                } finally {
+                    if (in != null) {
+                        in.close();
+                    }
                 }
+                droidCore.submit(request);
             }
-            droidCore.submit(request);
         }
     }
     
@@ -182,6 +210,22 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
     public final void setDroidCore(AsynchDroid droidCore) {
         this.droidCore = droidCore;
     }
+
+    /**
+     * @param entryExecutorService the executor to decompress zip entries on, or null to decompress
+     *                             them on the thread walking the zip file.
+     */
+    public final void setEntryExecutorService(ExecutorService entryExecutorService) {
+        this.entryExecutorService = entryExecutorService;
+    }
+
+    /**
+     * @param maxEntriesInFlight the maximum number of entries of a zip file which are decompressed
+     *                           but not yet submitted for identification.
+     */
+    public final void setMaxEntriesInFlight(int maxEntriesInFlight) {
+        this.maxEntriesInFlight = maxEntriesInFlight;
+    }
     
     /**
      * Adapts an enumeration to the Iterator interface.
@@ -228,14 +272,16 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
      */
     private final class ZipArchiveWalker extends ArchiveFileWalker<ZipEntry> {
         
-        private final ZipFile zipFile;
+        private final ConcurrentZipFile zipFile;
+        private final ArchiveEntryReadAhead readAhead;
         private final ResourceId parentId;
         private final long originatorNodeId;
         private final URI parentName;
         private final Map<String, ResourceId> directories = new HashMap<String, ResourceId>();
         
-        ZipArchiveWalker(RequestIdentifier identifier, ZipFile zipFile) {
+        ZipArchiveWalker(RequestIdentifier identifier, ConcurrentZipFile zipFile, ArchiveEntryReadAhead readAhead) {
             this.zipFile = zipFile;
+            this.readAhead = readAhead;
             this.parentId = identifier.getResourceId();
             this.parentName = identifier.getUri();
             this.originatorNodeId = identifier.getAncestorId();
@@ -298,7 +344,7 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
             entryName = (entryName == null) ? null : entryName.trim();
             entryName = FilenameUtils.getName(entryName);
             if (!entryName.isEmpty()) {
-                submit(entry, entryName, parentName, zipFile, correlationId, originatorNodeId);
+                submit(entry, entryName, parentName, zipFile, correlationId, originatorNodeId, readAhead);
             }
         }
     }
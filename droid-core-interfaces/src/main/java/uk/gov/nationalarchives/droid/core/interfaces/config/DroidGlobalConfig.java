@@ -101,6 +101,7 @@ public class DroidGlobalConfig {
 
     private Path profilesDir;
     private Path tempDir;
+    private Path signatureCacheDir;
 
     /**
      * Default Constructor. Initialises the droid home directory.
@@ -160,6 +161,9 @@ public class DroidGlobalConfig {
         
         tempDir = Paths.get(droidTempPath, "tmp");
         Files.createDirectories(tempDir);
+
+        signatureCacheDir = Paths.get(droidTempPath, "signature_cache");
+        Files.createDirectories(signatureCacheDir);
     }
 
     /**
@@ -356,6 +360,13 @@ public class DroidGlobalConfig {
     public Path getTempDir() {
         return tempDir;
     }
+
+    /**
+     * @return the directory for the binary caches of parsed signature files
+     */
+    public Path getSignatureCacheDir() {
+        return signatureCacheDir;
+    }
     
     private void createResourceFile(final Path resourceDir, final String fileName, final String resourceName) throws IOException {
         final Path resourcefile = resourceDir.resolve(fileName);
@@ -125,6 +125,9 @@ public enum DroidGlobalProperty {
     /** CSV Export one row per format. */
     CSV_EXPORT_ROW_PER_FORMAT("export.rowPerFormat", PropertyType.BOOLEAN, true),
 
+    /** Whether exports are sorted by uri, or written in the order results were added to the profile. */
+    EXPORT_SORT_BY_URI("export.sortByUri", PropertyType.BOOLEAN, true),
+
     /** The max number of bytes to scan from the beginning or
      * end of a file, or negative, meaning unlimited scanning.
      */
@@ -153,11 +156,47 @@ public enum DroidGlobalProperty {
 
     /** Whether to match all extensions, or just ones without another signature attached. */
     EXTENSION_ALL("profile.matchAllExtensions", PropertyType.BOOLEAN, true),
+
+    /** How many threads list directories ahead of the walk, or 1 or less to list them as they are walked. */
+    LISTING_THREADS("profile.listingThreads", PropertyType.INTEGER, true),
+
+    /** How many threads match signatures, or 0 for as many as there are processors. */
+    IDENTIFICATION_THREADS("profile.identificationThreads", PropertyType.INTEGER, true),
+
+    /** How many threads expand archives, or 0 for as many as there are processors. */
+    ARCHIVE_THREADS("profile.archiveThreads", PropertyType.INTEGER, true),
+
+    /** The number of files which can wait to be identified for each identification thread, or 0 for the default. */
+    WORK_QUEUE_TASKS_PER_THREAD("profile.workQueueTasksPerThread", PropertyType.INTEGER, true),
+
+    /** How many threads write results to the profile database, or 0 for as many as there are processors. */
+    DATABASE_WRITER_THREADS("profile.databaseWriterThreads", PropertyType.INTEGER, true),
+
+    /** Whether files are mapped into memory to identify them, rather than read into buffers. */
+    MEMORY_MAP_FILES("profile.memoryMapFiles", PropertyType.BOOLEAN, true),
+
+    /** Whether results are appended to a result log, and only written to the database when they are read. */
+    RESULT_LOG("profile.resultLog", PropertyType.BOOLEAN, true),
+
+    /** Whether the database indexes are dropped while a profile runs, and created once it has finished. */
+    DEFER_INDEXES("profile.deferIndexes", PropertyType.BOOLEAN, true),
+
+    /** The number of identification results cached in memory by content hash, or zero to identify every file. */
+    RESULT_CACHE_ENTRIES("profile.resultCacheEntries", PropertyType.INTEGER, true),
+
+    /** Whether identification results evicted from memory are cached in temporary files. */
+    RESULT_CACHE_ON_DISK("profile.resultCacheOnDisk", PropertyType.BOOLEAN, true),
+
+    /** Whether the cost of running each binary signature is recorded and exposed over JMX. */
+    SIGNATURE_STATISTICS("profile.signatureStatistics", PropertyType.BOOLEAN, true),
     
     /** Whether the database plays safe (=true), or gains performance
      * but loses resilience in the face of failures (=false).
      */
-    DATABASE_DURABILITY("database.durability", PropertyType.BOOLEAN, true); 
+    DATABASE_DURABILITY("database.durability", PropertyType.BOOLEAN, true),
+
+    /** The embedded database engine used for new profiles: DERBY (default) or H2. */
+    DATABASE_ENGINE("database.engine", PropertyType.TEXT, true);
     
     private static Map<String, DroidGlobalProperty> allValues = new HashMap<String, DroidGlobalProperty>(); 
     
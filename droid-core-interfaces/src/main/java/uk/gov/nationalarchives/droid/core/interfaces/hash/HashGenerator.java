@@ -33,6 +33,7 @@ package uk.gov.nationalarchives.droid.core.interfaces.hash;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 
 /**
  * @author rflitcroft
@@ -48,4 +49,11 @@ public interface HashGenerator {
      */
     String hash(InputStream in) throws IOException;
 
+    /**
+     * Creates a new message digest for the algorithm used by this hash generator,
+     * so a hash can be calculated incrementally as the bytes are read.
+     * @return a new message digest.
+     */
+    MessageDigest newMessageDigest();
+
 }
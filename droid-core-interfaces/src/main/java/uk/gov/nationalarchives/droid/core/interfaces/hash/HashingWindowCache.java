@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+
+import net.byteseek.io.reader.WindowReader;
+import net.byteseek.io.reader.cache.WindowCache;
+import net.byteseek.io.reader.windows.Window;
+
+/**
+ * A WindowCache which calculates one or more hashes of a resource as its windows are first read.
+ * <p>
+ * A WindowReader only adds a window to its cache when it has just read it from the underlying
+ * resource, so a window which arrives here in sequence with the bytes already hashed can be
+ * added to the digest while its bytes are still in memory.  Windows which arrive out of sequence
+ * (e.g. the end of a file, read while matching end of file signatures) are left to the cache
+ * being decorated, and are hashed from there when the rest of the resource is read to
+ * calculate the final hash.  Each byte is therefore read from storage only once, unless the
+ * decorated cache has discarded a window before it could be hashed.
+ * <p>
+ * Windows are expected to be read by one thread at a time, which is how identification
+ * requests are processed.
+ */
+public class HashingWindowCache implements WindowCache {
+
+    private final WindowCache cache;
+    private final MessageDigest[] digests;
+    private long hashedLength;
+    private String[] hashes;
+
+    /**
+     * Constructs a HashingWindowCache.
+     * @param cache The cache to store windows in.
+     * @param digests The message digests to calculate hashes with, all from the same reads of the resource.
+     */
+    public HashingWindowCache(final WindowCache cache, final MessageDigest... digests) {
+        this.cache = cache;
+        this.digests = digests;
+    }
+
+    @Override
+    public Window getWindow(final long position) throws IOException {
+        return cache.getWindow(position);
+    }
+
+    @Override
+    public void addWindow(final Window window) throws IOException {
+        if (window.getWindowPosition() == hashedLength) {
+            hashWindow(window);
+        }
+        cache.addWindow(window);
+    }
+
+    @Override
+    public void clear() throws IOException {
+        cache.clear();
+    }
+
+    @Override
+    public void subscribe(final WindowObserver observer) {
+        cache.subscribe(observer);
+    }
+
+    @Override
+    public boolean unsubscribe(final WindowObserver observer) {
+        return cache.unsubscribe(observer);
+    }
+
+    /**
+     * Reads any windows not yet hashed from the reader using this cache, and returns the hash of the resource
+     * calculated by the first message digest.
+     * @param reader The WindowReader which is using this cache.
+     * @return The hash of the resource, as a lower case hex string.
+     * @throws IOException If there was a problem reading the resource.
+     */
+    public String getHash(final WindowReader reader) throws IOException {
+        return getHash(reader, 0);
+    }
+
+    /**
+     * Reads any windows not yet hashed from the reader using this cache, and returns the hash of the resource
+     * calculated by one of the message digests.  Windows read for the first time are hashed as they are added
+     * to this cache; windows which were already cached are hashed here.  Every hash is finished at the same time,
+     * so asking for another one afterwards reads nothing more.
+     * @param reader The WindowReader which is using this cache.
+     * @param digestIndex The index of the message digest, in the order they were given to this cache.
+     * @return The hash of the resource, as a lower case hex string.
+     * @throws IOException If there was a problem reading the resource.
+     */
+    public String getHash(final WindowReader reader, final int digestIndex) throws IOException {
+        if (hashes != null) {
+            return hashes[digestIndex];
+        }
+        final long length = reader.length();
+        while (hashedLength < length) {
+            final long position = hashedLength;
+            final Window window = reader.getWindow(position);
+            if (window == null) {
+                break;
+            }
+            if (hashedLength == position) { // not already hashed as it was read.
+                hashWindow(window);
+            }
+        }
+        final String[] finished = new String[digests.length];
+        for (int i = 0; i < digests.length; i++) {
+            finished[i] = Hex.encodeHexString(digests[i].digest());
+        }
+        hashes = finished;
+        return hashes[digestIndex];
+    }
+
+    private void hashWindow(final Window window) throws IOException {
+        for (final MessageDigest digest : digests) {
+            digest.update(window.getArray(), 0, window.length());
+        }
+        hashedLength = window.getNextWindowPosition();
+    }
+}
@@ -33,6 +33,7 @@ package uk.gov.nationalarchives.droid.core.interfaces.hash;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 
 import org.apache.commons.codec.digest.DigestUtils;
 
@@ -51,4 +52,12 @@ public class SHA256HashGenerator implements HashGenerator {
         return DigestUtils.sha256Hex(in);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageDigest newMessageDigest() {
+        return DigestUtils.getSha256Digest();
+    }
+
 }
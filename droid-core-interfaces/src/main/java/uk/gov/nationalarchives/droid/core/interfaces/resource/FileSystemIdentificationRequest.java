@@ -34,14 +34,18 @@ package uk.gov.nationalarchives.droid.core.interfaces.resource;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
 
 import net.byteseek.io.reader.ReaderInputStream;
 import net.byteseek.io.reader.WindowReader;
-import net.byteseek.io.reader.FileReader;
 import net.byteseek.io.reader.cache.TopAndTailFixedLengthCache;
 import net.byteseek.io.reader.cache.WindowCache;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.HashingWindowCache;
 
 /**
  * Encapsulated the binary data for a file system identification request.
@@ -50,13 +54,18 @@ import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
  */
 public class FileSystemIdentificationRequest implements IdentificationRequest<Path> {
 
-    private static final int TOP_TAIL_BUFFER_CAPACITY = 8 * 1024 * 1024; // buffer 8Mb on the top and tail of files.
+    /**
+     * The number of bytes buffered at each end of a file by the default window cache.
+     */
+    protected static final int TOP_TAIL_BUFFER_CAPACITY = 8 * 1024 * 1024; // buffer 8Mb on the top and tail of files.
 
     private final String extension;
     private final String fileName;
     private final long size;
     private WindowReader fileReader;
     private final RequestIdentifier identifier;
+    private final List<HashGenerator> hashGenerators;
+    private HashingWindowCache hashingCache;
     private RequestMetaData requestMetaData;
     private Path file;
 
@@ -66,7 +75,31 @@ public class FileSystemIdentificationRequest implements IdentificationRequest<Pa
      * @param identifier the request's identifier
      */
     public FileSystemIdentificationRequest(final RequestMetaData metaData, final RequestIdentifier identifier) {
+        this(metaData, identifier, Collections.<HashGenerator>emptyList());
+    }
+
+    /**
+     * Constructs a new identification request which hashes the file as it is read.
+     * @param metaData the metaData about the binary.
+     * @param identifier the request's identifier
+     * @param hashGenerator the hash generator to hash the file with, or null if no hash is required.
+     */
+    public FileSystemIdentificationRequest(final RequestMetaData metaData, final RequestIdentifier identifier,
+                                           final HashGenerator hashGenerator) {
+        this(metaData, identifier, hashGenerator == null
+                ? Collections.<HashGenerator>emptyList() : Collections.singletonList(hashGenerator));
+    }
+
+    /**
+     * Constructs a new identification request which calculates several hashes of the file as it is read.
+     * @param metaData the metaData about the binary.
+     * @param identifier the request's identifier
+     * @param hashGenerators the hash generators to hash the file with, which may be empty if no hash is required.
+     */
+    public FileSystemIdentificationRequest(final RequestMetaData metaData, final RequestIdentifier identifier,
+                                           final List<HashGenerator> hashGenerators) {
         this.identifier = identifier;
+        this.hashGenerators = hashGenerators;
         requestMetaData = metaData;
         size = metaData.getSize();
         fileName = metaData.getName();
@@ -78,15 +111,49 @@ public class FileSystemIdentificationRequest implements IdentificationRequest<Pa
      */
     @Override
     public final void open(final Path theFile) throws IOException {
-        // Use a caching strategy that uses soft references, to allow the GC to reclaim
-        // cached file bytes in low memory conditions.
-        final WindowCache cache = new TopAndTailFixedLengthCache(theFile.toFile().length(), TOP_TAIL_BUFFER_CAPACITY);
-        fileReader = new FileReader(theFile.toFile(), cache);
-        ((FileReader) fileReader).useSoftWindows(true);
+        // The size in the request metadata was read with the other attributes of the file when it was found,
+        // so the file system is only asked for it again if it was not known.
+        final long length = size >= 0 ? size : theFile.toFile().length();
+        WindowCache cache = newWindowCache(length);
+        if (!hashGenerators.isEmpty()) {
+            final MessageDigest[] digests = new MessageDigest[hashGenerators.size()];
+            for (int i = 0; i < digests.length; i++) {
+                digests[i] = hashGenerators.get(i).newMessageDigest();
+            }
+            hashingCache = new HashingWindowCache(cache, digests);
+            cache = hashingCache;
+        }
+        fileReader = newWindowReader(theFile, length, cache);
         this.file = theFile;
         fileReader.getWindow(0); // force read of first block to generate any IO exceptions.
     }
 
+    /**
+     * Creates the cache of windows read from the file.
+     * This implementation keeps the top and tail of the file.
+     * @param length The length of the file.
+     * @return The cache of windows to read the file with.
+     */
+    protected WindowCache newWindowCache(final long length) {
+        return new TopAndTailFixedLengthCache(length, TOP_TAIL_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Creates the reader for the file.
+     * This implementation reads the file into windows with soft references, to allow the GC to reclaim
+     * them in low memory conditions, whose arrays are borrowed from the shared {@link WindowBufferPool}
+     * and returned to it when the request is closed.
+     * @param theFile The file to read.
+     * @param length The length of the file.
+     * @param cache The cache of windows to use.
+     * @return A reader for the file.
+     * @throws IOException if the file could not be opened.
+     */
+    protected WindowReader newWindowReader(final Path theFile, final long length, final WindowCache cache)
+        throws IOException {
+        return new PooledFileReader(theFile, cache);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -161,6 +228,28 @@ public class FileSystemIdentificationRequest implements IdentificationRequest<Pa
         return fileReader;
     }
 
+    /**
+     * Returns the hash of the file, if this request was constructed with a hash generator.
+     * Bytes already read during identification are not read again from the file.
+     * @return the hash of the file from the first hash generator, or null if this request does not hash the file.
+     * @throws IOException if there was a problem reading the file.
+     */
+    public String getHash() throws IOException {
+        return hashingCache == null ? null : hashingCache.getHash(fileReader);
+    }
+
+    /**
+     * Returns the hash of the file calculated by one of the hash generators this request was constructed with.
+     * Bytes already read during identification, or to calculate another hash, are not read again from the file.
+     * @param hashGenerator the hash generator to get the hash of.
+     * @return the hash of the file, or null if this request does not hash the file with the hash generator.
+     * @throws IOException if there was a problem reading the file.
+     */
+    public String getHash(final HashGenerator hashGenerator) throws IOException {
+        final int index = hashGenerators.indexOf(hashGenerator);
+        return hashingCache == null || index < 0 ? null : hashingCache.getHash(fileReader, index);
+    }
+
     /**
      * Return file associate with identification reques.
      * @return File
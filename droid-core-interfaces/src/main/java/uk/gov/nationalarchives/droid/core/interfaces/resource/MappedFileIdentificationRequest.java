@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import net.byteseek.io.reader.WindowReader;
+import net.byteseek.io.reader.cache.LeastRecentlyUsedCache;
+import net.byteseek.io.reader.cache.WindowCache;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
+
+/**
+ * An identification request for a file which is mapped into memory, rather than read into buffers.
+ * <p>
+ * Signature and container matching read the file from the operating system page cache,
+ * so only a few recently used windows of each file are held on the heap, instead of up to 8Mb
+ * at each end of the file.
+ * This suits local files, particularly large ones; files on network shares may be better read into buffers.
+ * </p>
+ * <p>
+ * Only files larger than the buffers kept at each end of a file are mapped: smaller files are read
+ * into those buffers whole in any case, and mapping every small file would hold a mapping per file in flight.
+ * </p>
+ */
+public class MappedFileIdentificationRequest extends FileSystemIdentificationRequest {
+
+    private static final int WINDOWS_TO_CACHE = 64; // 256Kb of the default 4Kb windows.
+    private static final long MIN_MAPPED_FILE_SIZE = 2L * TOP_TAIL_BUFFER_CAPACITY;
+
+    /**
+     * Constructs a new identification request.
+     * @param metaData the metaData about the binary.
+     * @param identifier the request's identifier
+     */
+    public MappedFileIdentificationRequest(final RequestMetaData metaData, final RequestIdentifier identifier) {
+        super(metaData, identifier);
+    }
+
+    /**
+     * Constructs a new identification request which hashes the file as it is read.
+     * @param metaData the metaData about the binary.
+     * @param identifier the request's identifier
+     * @param hashGenerator the hash generator to hash the file with, or null if no hash is required.
+     */
+    public MappedFileIdentificationRequest(final RequestMetaData metaData, final RequestIdentifier identifier,
+                                           final HashGenerator hashGenerator) {
+        super(metaData, identifier, hashGenerator);
+    }
+
+    /**
+     * Constructs a new identification request which calculates several hashes of the file as it is read.
+     * @param metaData the metaData about the binary.
+     * @param identifier the request's identifier
+     * @param hashGenerators the hash generators to hash the file with, which may be empty if no hash is required.
+     */
+    public MappedFileIdentificationRequest(final RequestMetaData metaData, final RequestIdentifier identifier,
+                                           final List<HashGenerator> hashGenerators) {
+        super(metaData, identifier, hashGenerators);
+    }
+
+    @Override
+    protected WindowCache newWindowCache(final long length) {
+        return isMapped(length) ? new LeastRecentlyUsedCache(WINDOWS_TO_CACHE) : super.newWindowCache(length);
+    }
+
+    @Override
+    protected WindowReader newWindowReader(final Path theFile, final long length, final WindowCache cache)
+        throws IOException {
+        if (isMapped(length)) {
+            final MappedFileReader reader = new MappedFileReader(theFile, cache);
+            cache.subscribe(reader); // stops tracking the arrays of windows the cache evicts.
+            return reader;
+        }
+        return super.newWindowReader(theFile, length, cache);
+    }
+
+    private static boolean isMapped(final long length) {
+        return length > MIN_MAPPED_FILE_SIZE;
+    }
+}
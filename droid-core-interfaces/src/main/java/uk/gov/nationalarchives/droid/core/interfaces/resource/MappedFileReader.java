@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.byteseek.io.reader.AbstractReader;
+import net.byteseek.io.reader.cache.WindowCache;
+import net.byteseek.io.reader.windows.HardWindow;
+import net.byteseek.io.reader.windows.Window;
+
+/**
+ * A WindowReader over a file which is mapped into memory, rather than read into buffers.
+ * <p>
+ * Single bytes are read directly from the mapped file.  Windows must own an array of their bytes,
+ * so they are copied from the mapped file when asked for, into arrays borrowed from a {@link WindowBufferPool}.
+ * Neither makes any calls to the file system once the file is mapped.  As a window can be copied again cheaply
+ * from the operating system page cache, the cache this reader uses need only keep a few windows.
+ * </p>
+ * <p>
+ * The arrays of windows still kept by the cache are returned to the pool when the reader is closed.
+ * Windows the cache evicts may still be in use by whatever asked for them, so their arrays are left
+ * to the garbage collector.  The reader should observe its cache, so it stops tracking evicted windows
+ * while a large file is read.
+ * </p>
+ * <p>
+ * Files larger than 1Gb are mapped in segments.  A mapping is released when it is garbage collected,
+ * not when this reader is closed; the file channel itself is closed as soon as the file is mapped.
+ * </p>
+ * <p>
+ * Reading a page of a mapped file which has since been truncated faults.  The JVM raises an InternalError
+ * for the fault, which is reported as an IOException if it is raised while a byte or a window is read,
+ * but may be raised later by compiled code.
+ * </p>
+ */
+public class MappedFileReader extends AbstractReader implements WindowCache.WindowObserver {
+
+    private static final int SEGMENT_SIZE = 1024 * 1024 * 1024;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final Path file;
+    private final long length;
+    private final WindowBufferPool pool;
+    private final Map<Long, byte[]> cachedArrays = new HashMap<>();
+    private MappedByteBuffer[] segments;
+
+    /**
+     * Maps a file into memory, copying its windows into arrays from the default pool.
+     * @param file The file to map.
+     * @param cache The cache of windows to use.
+     * @throws IOException if the file could not be mapped.
+     */
+    public MappedFileReader(final Path file, final WindowCache cache) throws IOException {
+        this(file, cache, WindowBufferPool.getDefault());
+    }
+
+    /**
+     * Maps a file into memory, copying its windows into arrays from a pool.
+     * @param file The file to map.
+     * @param cache The cache of windows to use.
+     * @param pool The pool to borrow arrays from, whose buffer size is the window size of this reader.
+     * @throws IOException if the file could not be mapped.
+     */
+    public MappedFileReader(final Path file, final WindowCache cache, final WindowBufferPool pool) throws IOException {
+        super(pool.getBufferSize(), cache);
+        this.file = file;
+        this.pool = pool;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            length = channel.size();
+            final int numSegments = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            segments = new MappedByteBuffer[numSegments];
+            for (int segment = 0; segment < numSegments; segment++) {
+                final long start = (long) segment * SEGMENT_SIZE;
+                segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(SEGMENT_SIZE, length - start));
+            }
+        }
+    }
+
+    @Override
+    public int readByte(final long position) throws IOException {
+        if (position < 0 || position >= length) {
+            return NO_BYTE_AT_POSITION;
+        }
+        final MappedByteBuffer segment = segment(position);
+        try {
+            return segment.get((int) (position % SEGMENT_SIZE)) & BYTE_MASK;
+        } catch (InternalError e) {
+            throw readFailed(e);
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public Window getWindow(final long position) throws IOException {
+        try {
+            return super.getWindow(position);
+        } catch (InternalError e) {
+            // A fault copying the window can be raised once compiled code has returned from the copy.
+            throw readFailed(e);
+        }
+    }
+
+    @Override
+    protected Window createWindow(final long windowStart) throws IOException {
+        if (windowStart < 0 || windowStart >= length) {
+            return null;
+        }
+        final int windowLength = (int) Math.min(windowSize, length - windowStart);
+        final byte[] bytes = pool.borrow();
+        int copied = 0;
+        while (copied < windowLength) {
+            final long position = windowStart + copied;
+            // Duplicate the segment, so concurrent readers do not share its position.
+            final ByteBuffer buffer = segment(position).duplicate();
+            ((Buffer) buffer).position((int) (position % SEGMENT_SIZE));
+            final int toCopy = Math.min(windowLength - copied, buffer.remaining());
+            try {
+                buffer.get(bytes, copied, toCopy);
+            } catch (InternalError e) {
+                pool.release(bytes);
+                throw readFailed(e);
+            }
+            copied += toCopy;
+        }
+        cachedArrays.put(windowStart, bytes);
+        return new HardWindow(bytes, windowStart, windowLength);
+    }
+
+    @Override
+    public void windowFree(final Window window, final WindowCache fromCache) throws IOException {
+        // Whatever asked for an evicted window may still be reading it, so its array is not returned.
+        cachedArrays.remove(window.getWindowPosition(), window.getArray());
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments = null;
+        // Only a window the cache kept can be known to be unused once this reader is closed.
+        final List<byte[]> keptArrays = new ArrayList<>(cachedArrays.size());
+        for (final Map.Entry<Long, byte[]> cachedArray : cachedArrays.entrySet()) {
+            final Window window = cache.getWindow(cachedArray.getKey());
+            if (window != null && window.getArray() == cachedArray.getValue()) {
+                keptArrays.add(cachedArray.getValue());
+            }
+        }
+        cachedArrays.clear();
+        try {
+            super.close();
+        } finally {
+            for (final byte[] array : keptArrays) {
+                pool.release(array);
+            }
+        }
+    }
+    /**
+     * @return the file mapped by this reader.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    private MappedByteBuffer segment(final long position) throws IOException {
+        final MappedByteBuffer[] mapped = segments;
+        if (mapped == null) {
+            throw new IOException("Reader has been closed: " + file);
+        }
+        return mapped[(int) (position / SEGMENT_SIZE)];
+    }
+
+    /*
+     * The JVM reports a fault reading a mapped page, such as a page beyond the end of a file which has been
+     * truncated since it was mapped, as an InternalError rather than an IOException.
+     */
+    private IOException readFailed(final InternalError e) {
+        return new IOException("Could not read the mapped file: " + file, e);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[file:" + file + " length: " + length + " cache:" + cache + ']';
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.byteseek.io.reader.AbstractReader;
+import net.byteseek.io.reader.cache.WindowCache;
+import net.byteseek.io.reader.windows.SoftWindow;
+import net.byteseek.io.reader.windows.SoftWindowRecovery;
+import net.byteseek.io.reader.windows.Window;
+
+/**
+ * A WindowReader over a file, which reads its windows into arrays borrowed from a {@link WindowBufferPool}.
+ * <p>
+ * The arrays of windows kept by the cache are returned to the pool when the reader is closed.
+ * Windows the cache does not keep may still be in use by whatever asked for them, so they are
+ * left to the garbage collector.  Like the byteseek FileReader, windows are held by soft references,
+ * so the garbage collector can reclaim them in low memory conditions; their arrays are then not returned.
+ * </p>
+ * <p>
+ * The reader expects a cache which does not discard windows once it keeps them, such as a top and tail cache.
+ * </p>
+ */
+public class PooledFileReader extends AbstractReader implements SoftWindowRecovery {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long length;
+    private final WindowBufferPool pool;
+    private final List<SoftReference<byte[]>> cachedArrays = new ArrayList<>();
+    private Window lastCreated;
+
+    /**
+     * Opens a file, reading its windows into arrays from the default pool.
+     * @param file The file to read.
+     * @param cache The cache of windows to use.
+     * @throws IOException if the file could not be opened.
+     */
+    public PooledFileReader(final Path file, final WindowCache cache) throws IOException {
+        this(file, cache, WindowBufferPool.getDefault());
+    }
+
+    /**
+     * Opens a file, reading its windows into arrays from a pool.
+     * @param file The file to read.
+     * @param cache The cache of windows to use.
+     * @param pool The pool to borrow arrays from, whose buffer size is the window size of this reader.
+     * @throws IOException if the file could not be opened.
+     */
+    public PooledFileReader(final Path file, final WindowCache cache, final WindowBufferPool pool) throws IOException {
+        super(pool.getBufferSize(), cache);
+        this.file = file;
+        this.pool = pool;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.length = channel.size();
+    }
+
+    @Override
+    public Window getWindow(final long position) throws IOException {
+        final Window window = super.getWindow(position);
+        // Only a window the cache kept can be known to be unused once this reader is closed.
+        if (lastCreated != null) {
+            final Window created = lastCreated;
+            lastCreated = null;
+            if (cache.getWindow(created.getWindowPosition()) == created) {
+                cachedArrays.add(new SoftReference<>(created.getArray()));
+            }
+        }
+        return window;
+    }
+
+    @Override
+    protected Window createWindow(final long windowStart) throws IOException {
+        if (windowStart < 0 || windowStart >= length) {
+            return null;
+        }
+        final byte[] bytes = pool.borrow();
+        final int bytesRead = read(windowStart, bytes);
+        if (bytesRead <= 0) {
+            pool.release(bytes);
+            return null;
+        }
+        lastCreated = new SoftWindow(bytes, windowStart, bytesRead, this);
+        return lastCreated;
+    }
+
+    @Override
+    public byte[] reloadWindowBytes(final Window window) throws IOException {
+        final byte[] bytes = new byte[windowSize];
+        final int bytesRead = read(window.getWindowPosition(), bytes);
+        if (bytesRead != window.length()) {
+            throw new IOException("Could not reload window at position " + window.getWindowPosition() + " of " + file);
+        }
+        return bytes;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+            channel.close();
+        } finally {
+            for (final SoftReference<byte[]> cachedArray : cachedArrays) {
+                pool.release(cachedArray.get());
+            }
+            cachedArrays.clear();
+            lastCreated = null;
+        }
+    }
+
+    /**
+     * @return the file read by this reader.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    private int read(final long position, final byte[] bytes) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long readPosition = position;
+        while (buffer.hasRemaining()) {
+            final int bytesRead = channel.read(buffer, readPosition);
+            if (bytesRead < 0) {
+                break;
+            }
+            readPosition += bytesRead;
+        }
+        return buffer.position();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[file:" + file + " length: " + length + " cache:" + cache + ']';
+    }
+}
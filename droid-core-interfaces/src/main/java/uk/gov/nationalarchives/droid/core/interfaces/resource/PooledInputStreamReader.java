@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.byteseek.io.IOUtils;
+import net.byteseek.io.reader.AbstractReader;
+import net.byteseek.io.reader.cache.WindowCache;
+import net.byteseek.io.reader.windows.HardWindow;
+import net.byteseek.io.reader.windows.Window;
+import net.byteseek.io.reader.windows.WindowMissingException;
+
+/**
+ * A WindowReader over an input stream, which reads its windows into arrays borrowed from a {@link WindowBufferPool}.
+ * <p>
+ * It reads a stream in the same way as the byteseek InputStreamReader, and expects a cache which keeps
+ * every window it is given, such as a two level cache of a top and tail cache backed by a temporary file.
+ * To return arrays to the pool before it is closed, the reader can observe the memory cache which
+ * evicts windows.  An evicted window is only returned if it was evicted while the stream was read to its end
+ * to find its length, before any window was handed out, as nothing else can hold such a window.
+ * All other arrays are returned when the reader is closed.
+ * </p>
+ */
+public class PooledInputStreamReader extends AbstractReader implements WindowCache.WindowObserver {
+
+    private final InputStream stream;
+    private final boolean closeStreamOnClose;
+    private final WindowBufferPool pool;
+    private final Map<Long, byte[]> cachedArrays = new HashMap<>();
+    private long nextReadPos;
+    private long length = UNKNOWN_LENGTH;
+    private boolean windowsHandedOut;
+    private boolean readingToEnd;
+
+    /**
+     * Creates a reader over a stream, reading its windows into arrays from the default pool.
+     * @param stream The stream to read.
+     * @param cache The cache of windows to use.
+     * @param closeStreamOnClose Whether to close the stream when the reader is closed.
+     */
+    public PooledInputStreamReader(final InputStream stream, final WindowCache cache,
+                                   final boolean closeStreamOnClose) {
+        this(stream, cache, closeStreamOnClose, WindowBufferPool.getDefault());
+    }
+
+    /**
+     * Creates a reader over a stream, reading its windows into arrays from a pool.
+     * @param stream The stream to read.
+     * @param cache The cache of windows to use.
+     * @param closeStreamOnClose Whether to close the stream when the reader is closed.
+     * @param pool The pool to borrow arrays from, whose buffer size is the window size of this reader.
+     */
+    public PooledInputStreamReader(final InputStream stream, final WindowCache cache,
+                                   final boolean closeStreamOnClose, final WindowBufferPool pool) {
+        super(pool.getBufferSize(), cache);
+        this.stream = stream;
+        this.closeStreamOnClose = closeStreamOnClose;
+        this.pool = pool;
+    }
+
+    @Override
+    public Window getWindow(final long position) throws IOException {
+        windowsHandedOut = true;
+        final Window window = super.getWindow(position);
+        if (window == null && position < nextReadPos && position >= 0) {
+            throw new WindowMissingException(String.format(
+                    "Cache failed to provide a window at position: %d but we have already read up to: %d",
+                    position, nextReadPos));
+        }
+        return window;
+    }
+
+    @Override
+    protected Window createWindow(final long readPos) throws IOException {
+        Window lastWindow = null;
+        while (nextReadPos <= readPos && length == UNKNOWN_LENGTH) {
+            lastWindow = readNextWindow();
+            // The window for the position asked for is added to the cache by the caller.
+            if (lastWindow != null && readPos >= nextReadPos) {
+                cache.addWindow(lastWindow);
+            }
+        }
+        return readPos < nextReadPos ? lastWindow : null;
+    }
+
+    @Override
+    public long length() throws IOException {
+        readingToEnd = true;
+        try {
+            while (length == UNKNOWN_LENGTH) {
+                final Window window = readNextWindow();
+                if (window != null) {
+                    cache.addWindow(window);
+                }
+            }
+        } finally {
+            readingToEnd = false;
+        }
+        return length;
+    }
+
+    @Override
+    public void windowFree(final Window window, final WindowCache fromCache) throws IOException {
+        final byte[] array = cachedArrays.remove(window.getWindowPosition());
+        if (readingToEnd && !windowsHandedOut && array == window.getArray()) {
+            pool.release(array);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (closeStreamOnClose) {
+                stream.close();
+            }
+        } finally {
+            try {
+                super.close();
+            } finally {
+                for (final byte[] array : cachedArrays.values()) {
+                    pool.release(array);
+                }
+                cachedArrays.clear();
+            }
+        }
+    }
+
+    /**
+     * Reads the next window from the stream, setting the length if the end of the stream is reached.
+     * @return The next window, or null if there were no more bytes in the stream.
+     * @throws IOException if the stream could not be read.
+     */
+    private Window readNextWindow() throws IOException {
+        final byte[] bytes = pool.borrow();
+        final int bytesRead = IOUtils.readBytes(stream, bytes);
+        Window window = null;
+        if (bytesRead > 0) {
+            window = new HardWindow(bytes, nextReadPos, bytesRead);
+            cachedArrays.put(nextReadPos, bytes);
+            nextReadPos += bytesRead;
+        } else {
+            pool.release(bytes);
+        }
+        if (bytesRead < windowSize) {
+            length = nextReadPos;
+        }
+        return window;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[length: " + length + " cache:" + cache + ']';
+    }
+}
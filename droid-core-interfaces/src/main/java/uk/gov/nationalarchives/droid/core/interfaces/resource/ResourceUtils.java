@@ -47,6 +47,7 @@ import net.byteseek.io.reader.cache.TopAndTailStreamCache;
 import net.byteseek.io.reader.cache.TwoLevelCache;
 import net.byteseek.io.reader.cache.WindowCache;
 import net.byteseek.io.reader.InputStreamReader;
+import net.byteseek.io.reader.WindowReader;
 
 /**
  * 
@@ -99,40 +100,30 @@ public final class ResourceUtils {
     }
 
     /**
-     * Creates an InputStreamReader backed by a cache.
+     * Creates a WindowReader over a stream backed by a cache, which closes the stream when it is closed.
      * <p>
      * If allocating all requested memory for this cache still leaves enough free memory,
      * then a two-level cache will be created, using memory falling back to a temporary file.
-     * If there is insufficient memory to use memory, then only a temp file cache will be used.
+     * The windows of the reader are then read into arrays from the shared {@link WindowBufferPool}.
+     * If there is insufficient memory to use memory, then a double cache of a most recently
+     * used cache with SoftWindows, backed by a temp file cache will be used.
      *
      * @param in The input stream to back the reader.
      * @param tempDir The directory in which to create temporary files for caching.
      * @param topTailCapacity The amount of memory to cache on the top and tail of each stream.
      * @return The input stream reader.
      */
-    public static InputStreamReader getStreamReader(final InputStream in, final Path tempDir, final int topTailCapacity) {
-        final WindowCache cache;
-        final InputStreamReader reader;
-        if (Runtime.getRuntime().freeMemory() > FREE_MEMORY_THRESHOLD) {
-            cache = TwoLevelCache.create(
-                    new TopAndTailStreamCache(topTailCapacity),
-                    new TempFileCache(tempDir == null ? null : tempDir.toFile()));
-            reader = new InputStreamReader(in, cache);
-        } else {
-            final WindowCache memoryCache = new LeastRecentlyUsedCache(1024);
-            final TempFileCache persistentCache = new TempFileCache(tempDir == null ? null : tempDir.toFile());
-            cache = DoubleCache.create(memoryCache, persistentCache);
-            reader = new InputStreamReader(in, cache);
-            reader.setSoftWindowRecovery(persistentCache);
-        }
-        return reader;
+    public static WindowReader getStreamReader(final InputStream in, final Path tempDir, final int topTailCapacity) {
+        return getStreamReader(in, tempDir, topTailCapacity, true);
     }
 
     /**
-     * Creates an InputStreamReader backed by a cache.
+     * Creates a WindowReader over a stream backed by a cache.
      * <p>
      * If allocating all requested memory for this cache still leaves enough free memory,
      * then a two-level cache will be created, using memory falling back to a temporary file.
+     * The windows of the reader are then read into arrays from the shared {@link WindowBufferPool},
+     * and windows evicted from memory are returned to the pool once they are written to the temporary file.
      * If there is insufficient memory to use memory, then a double cache of a most recently
      * used cache with SoftWindows, backed by a temp file cache will be used.
      *
@@ -142,21 +133,23 @@ public final class ResourceUtils {
      * @param closeStream Whether to close the underlying input stream when this reader is closed.
      * @return The input stream reader.
      */
-    public static InputStreamReader getStreamReader(final InputStream in, final Path tempDir,
-                                                    final int topTailCapacity, final boolean closeStream) {
-        final WindowCache cache;
-        final InputStreamReader reader;
+    public static WindowReader getStreamReader(final InputStream in, final Path tempDir,
+                                               final int topTailCapacity, final boolean closeStream) {
+        final WindowReader reader;
         if (Runtime.getRuntime().freeMemory() > FREE_MEMORY_THRESHOLD) {
-            cache = TwoLevelCache.create(
-                    new TopAndTailStreamCache(topTailCapacity),
-                    new TempFileCache(tempDir == null ? null : tempDir.toFile()));
-            reader = new InputStreamReader(in, cache, closeStream);
+            final TopAndTailStreamCache memoryCache = new TopAndTailStreamCache(topTailCapacity);
+            final WindowCache cache = TwoLevelCache.create(
+                    memoryCache, new TempFileCache(tempDir == null ? null : tempDir.toFile()));
+            final PooledInputStreamReader pooledReader = new PooledInputStreamReader(in, cache, closeStream);
+            memoryCache.subscribe(pooledReader); // after the two level cache, so windows are written before release.
+            reader = pooledReader;
         } else {
             final WindowCache memoryCache = new LeastRecentlyUsedCache(1024);
             final TempFileCache persistentCache = new TempFileCache(tempDir == null ? null : tempDir.toFile());
-            cache = DoubleCache.create(memoryCache, persistentCache);
-            reader = new InputStreamReader(in, cache, closeStream);
-            reader.setSoftWindowRecovery(persistentCache);
+            final InputStreamReader streamReader = new InputStreamReader(in,
+                    DoubleCache.create(memoryCache, persistentCache), closeStream);
+            streamReader.setSoftWindowRecovery(persistentCache);
+            reader = streamReader;
         }
         return reader;
     }
@@ -114,7 +114,9 @@ public class SevenZipEntryIdentificationRequest implements IdentificationRequest
 
     @Override
     public final void close() throws IOException {
-        reader.close();
+        if (reader != null) {
+            reader.close();
+        }
     }
 
     @Override
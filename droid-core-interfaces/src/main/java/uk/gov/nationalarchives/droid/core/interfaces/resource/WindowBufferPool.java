@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of the byte arrays which hold windows read from files and streams.
+ * <p>
+ * Readers borrow an array for each window they read, and return them all when they are closed,
+ * so once a run has warmed up, identifying a file allocates almost no new window arrays.
+ * The pool is shared by every thread, as an array is often borrowed and returned on different threads:
+ * the first window of a file is read by the thread which opens the request, but returned by the
+ * identification thread which closes it.  The pool keeps a bounded number of arrays; arrays returned
+ * to a full pool are left to the garbage collector.
+ * </p>
+ * <p>
+ * An array must only be returned when nothing can read the window which held it any more.
+ * </p>
+ */
+public final class WindowBufferPool {
+
+    /**
+     * The size of the windows read by DROID, which is the byteseek default.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+
+    private static final int DEFAULT_MAX_BUFFERS = 4096; // 16Mb of 4Kb windows.
+
+    private static final WindowBufferPool DEFAULT_POOL =
+            new WindowBufferPool(DEFAULT_WINDOW_SIZE, DEFAULT_MAX_BUFFERS);
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final Deque<byte[]> buffers = new ConcurrentLinkedDeque<>();
+    // Counts the arrays in the deque, whose own size is not constant time.  It is incremented before
+    // an array is added and decremented after one is taken, so it never counts fewer than the deque holds.
+    private final AtomicInteger bufferCount = new AtomicInteger();
+
+    /**
+     * @param bufferSize The size of the arrays in the pool.
+     * @param maxBuffers The most arrays the pool keeps for reuse.
+     */
+    public WindowBufferPool(final int bufferSize, final int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+    }
+
+    /**
+     * @return The pool shared by the identification requests.
+     */
+    public static WindowBufferPool getDefault() {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * @return An array of the buffer size, which may hold bytes from a previous window.
+     */
+    public byte[] borrow() {
+        final byte[] buffer = buffers.pollLast();
+        if (buffer == null) {
+            return new byte[bufferSize];
+        }
+        bufferCount.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns an array to the pool, from any thread.
+     * @param buffer An array which is no longer used.  Arrays not of the buffer size are ignored.
+     */
+    public void release(final byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            if (bufferCount.incrementAndGet() <= maxBuffers) {
+                buffers.addLast(buffer);
+            } else {
+                bufferCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return The size of the arrays in the pool.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
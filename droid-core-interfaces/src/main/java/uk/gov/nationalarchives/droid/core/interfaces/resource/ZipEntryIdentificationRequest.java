@@ -124,7 +124,9 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest<Inpu
      */
     @Override
     public final void close() throws IOException {
-        reader.close();
+        if (reader != null) {
+            reader.close();
+        }
     }
 
 
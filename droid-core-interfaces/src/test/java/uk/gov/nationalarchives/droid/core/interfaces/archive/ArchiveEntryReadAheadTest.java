@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.ZipEntryIdentificationRequest;
+
+public class ArchiveEntryReadAheadTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final AsynchDroid droidCore = mock(AsynchDroid.class);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testNoMoreThanTheMaximumEntriesAreInFlight() throws Exception {
+        ArchiveEntryReadAhead readAhead = new ArchiveEntryReadAhead(droidCore, executor, 2);
+        List<IdentificationRequest> requests = newRequests(5);
+
+        readAhead.read(requests.get(0), contents());
+        readAhead.read(requests.get(1), contents());
+        verify(droidCore, never()).submit(any(IdentificationRequest.class));
+
+        readAhead.read(requests.get(2), contents());
+        verify(droidCore).submit(requests.get(0));
+        verify(droidCore, never()).submit(requests.get(1));
+
+        readAhead.read(requests.get(3), contents());
+        readAhead.read(requests.get(4), contents());
+        readAhead.finish();
+        for (IdentificationRequest request : requests) {
+            verify(droidCore).submit(request);
+            verify(request).open(any(InputStream.class));
+        }
+    }
+
+    @Test
+    public void testEntriesAfterOneWhichCannotBeReadAreClosedWithoutBeingSubmitted() throws Exception {
+        ArchiveEntryReadAhead readAhead = new ArchiveEntryReadAhead(droidCore, executor, 10);
+        List<IdentificationRequest> requests = newRequests(4);
+
+        // Wait for the entries after the corrupt one to be read, so they are not just cancelled:
+        final CountDownLatch read = new CountDownLatch(2);
+        for (int i = 2; i < requests.size(); i++) {
+            doAnswer(invocation -> {
+                read.countDown();
+                return null;
+            }).when(requests.get(i)).open(any(InputStream.class));
+        }
+
+        readAhead.read(requests.get(0), contents());
+        readAhead.read(requests.get(1), () -> {
+            throw new IOException("Corrupt entry");
+        });
+        readAhead.read(requests.get(2), contents());
+        readAhead.read(requests.get(3), contents());
+        assertTrue(read.await(10, TimeUnit.SECONDS));
+        try {
+            readAhead.finish();
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("Corrupt entry", e.getMessage());
+        }
+        readAhead.abandon();
+
+        verify(droidCore).submit(requests.get(0));
+        verify(requests.get(0), never()).close();
+        for (int i = 1; i < requests.size(); i++) {
+            verify(droidCore, never()).submit(requests.get(i));
+            verify(requests.get(i)).close();
+        }
+    }
+
+    @Test
+    public void testEntriesWhoseReadHasNotStartedAreNeitherOpenedNorClosedWhenAbandoned() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            single.submit(() -> {
+                release.await();
+                return null;
+            });
+            ArchiveEntryReadAhead readAhead = new ArchiveEntryReadAhead(droidCore, single, 10);
+            List<IdentificationRequest> requests = newRequests(3);
+            for (IdentificationRequest request : requests) {
+                readAhead.read(request, contents());
+            }
+            readAhead.abandon();
+            release.countDown();
+            single.shutdown();
+            assertTrue(single.awaitTermination(10, TimeUnit.SECONDS));
+
+            for (IdentificationRequest request : requests) {
+                verify(request, never()).open(any(InputStream.class));
+                verify(request, never()).close();
+                verify(droidCore, never()).submit(request);
+            }
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAnEntryWhichCannotBeReadFailsWithItsOwnException() throws Exception {
+        ArchiveEntryReadAhead readAhead = new ArchiveEntryReadAhead(droidCore, executor, 10);
+        RequestIdentifier identifier = new RequestIdentifier(URI.create("zip:file:/a.zip!/corrupt.bin"));
+        ZipEntryIdentificationRequest request = new ZipEntryIdentificationRequest(
+                new RequestMetaData(3L, null, "corrupt.bin"), identifier, Paths.get("tmp"));
+
+        // The request is never opened, so closing it must not hide the failure to read it:
+        readAhead.read(request, () -> {
+            throw new IOException("Corrupt entry");
+        });
+        try {
+            readAhead.finish();
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("Corrupt entry", e.getMessage());
+        }
+        readAhead.abandon();
+        verify(droidCore, never()).submit(any(IdentificationRequest.class));
+    }
+
+    @Test
+    public void testEntriesAreReadOnTheWalkingThreadWhenTheExecutorIsShutDown() throws Exception {
+        executor.shutdown();
+        ArchiveEntryReadAhead readAhead = new ArchiveEntryReadAhead(droidCore, executor, 2);
+        List<IdentificationRequest> requests = newRequests(3);
+        for (IdentificationRequest request : requests) {
+            readAhead.read(request, contents());
+        }
+        readAhead.finish();
+        for (IdentificationRequest request : requests) {
+            verify(droidCore).submit(request);
+        }
+    }
+
+    private static ArchiveEntryReadAhead.EntrySource contents() {
+        return () -> new ByteArrayInputStream(new byte[] {1, 2, 3});
+    }
+
+    private static List<IdentificationRequest> newRequests(int count) {
+        List<IdentificationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            IdentificationRequest request = mock(IdentificationRequest.class);
+            when(request.getIdentifier()).thenReturn(new RequestIdentifier(URI.create("zip:file:/a.zip!/" + i)));
+            requests.add(request);
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
+public class TrueZipArchiveHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, byte[]> expectedEntries = new LinkedHashMap<>();
+    private final Map<String, byte[]> submittedEntries = new LinkedHashMap<>();
+    private ExecutorService entryExecutor;
+    private TrueZipArchiveHandler handler;
+    private Path zip;
+
+    @Before
+    public void setup() throws IOException {
+        zip = folder.newFile("entries.zip").toPath();
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("folder/"));
+            out.closeEntry();
+            for (int i = 0; i < 100; i++) {
+                final String name = (i % 3 == 0 ? "folder/sub/" : "") + "entry" + i + ".txt";
+                final byte[] content = contentOf(i);
+                final ZipEntry entry = new ZipEntry(name);
+                if (i % 10 == 0) {
+                    storeUncompressed(entry, content);
+                }
+                out.putNextEntry(entry);
+                out.write(content);
+                out.closeEntry();
+                expectedEntries.put(name, content);
+            }
+        }
+
+        AsynchDroid droidCore = mock(AsynchDroid.class);
+        when(droidCore.passesIdentificationFilter(any(IdentificationRequest.class))).thenReturn(true);
+        doAnswer(invocation -> {
+            IdentificationRequest request = invocation.getArgument(0);
+            try (InputStream in = request.getSourceInputStream()) {
+                String uri = request.getIdentifier().getUri().toString();
+                submittedEntries.put(uri.substring(uri.indexOf("!/") + 2), IOUtils.toByteArray(in));
+            }
+            request.close();
+            return null;
+        }).when(droidCore).submit(any(IdentificationRequest.class));
+
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        when(resultHandler.handleDirectory(any(IdentificationResult.class), any(ResourceId.class), anyBoolean()))
+                .thenReturn(new ResourceId(2L, ""));
+
+        ZipEntryRequestFactory factory = new ZipEntryRequestFactory();
+        factory.setTempDirLocation(folder.newFolder("tmp").toPath());
+        handler = new TrueZipArchiveHandler(droidCore, factory, resultHandler);
+        entryExecutor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        entryExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testEntriesAreSubmittedInOrderWhenDecompressedOnTheWalkingThread() throws IOException {
+        handleZip();
+        assertSubmittedAsExpected();
+    }
+
+    @Test
+    public void testEntriesAreSubmittedInOrderWhenDecompressedConcurrently() throws IOException {
+        handler.setEntryExecutorService(entryExecutor);
+        handler.setMaxEntriesInFlight(3);
+        handleZip();
+        assertSubmittedAsExpected();
+    }
+
+    private void handleZip() throws IOException {
+        RequestIdentifier identifier = new RequestIdentifier(zip.toUri());
+        identifier.setResourceId(new ResourceId(1L, ""));
+        identifier.setAncestorId(1L);
+        RequestMetaData metaData = new RequestMetaData(Files.size(zip), 0L, "entries.zip");
+        try (FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(metaData, identifier)) {
+            request.open(zip);
+            handler.handle(request);
+        }
+    }
+
+    private void assertSubmittedAsExpected() {
+        assertEquals(new ArrayList<>(expectedEntries.keySet()), new ArrayList<>(submittedEntries.keySet()));
+        for (Map.Entry<String, byte[]> entry : expectedEntries.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), submittedEntries.get(entry.getKey()));
+        }
+    }
+
+    private static byte[] contentOf(int entryNumber) {
+        final byte[] content = new byte[entryNumber * 997];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ((i / (entryNumber + 1)) % 251);
+        }
+        return content;
+    }
+
+    private static void storeUncompressed(ZipEntry entry, byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCrc(crc.getValue());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
+public class HashingWindowCacheTest {
+
+    private static final int FILE_SIZE = 100 * 1024 + 17;
+
+    private Path file;
+    private byte[] data;
+
+    @Before
+    public void setup() throws IOException {
+        data = new byte[FILE_SIZE];
+        new Random(42).nextBytes(data);
+        file = Files.createTempFile("hashing", ".bin");
+        Files.write(file, data);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testHashWithoutReadingAnything() throws IOException {
+        FileSystemIdentificationRequest request = openRequest(new SHA256HashGenerator());
+        assertEquals(DigestUtils.sha256Hex(data), request.getHash());
+        request.close();
+    }
+
+    @Test
+    public void testHashAfterReadingOutOfOrder() throws IOException {
+        FileSystemIdentificationRequest request = openRequest(new MD5HashGenerator());
+        request.getByte(FILE_SIZE - 1);
+        request.getByte(5000);
+        request.getByte(FILE_SIZE / 2);
+        request.getByte(4095);
+        request.getByte(4096);
+        assertEquals(DigestUtils.md5Hex(data), request.getHash());
+        assertEquals(DigestUtils.md5Hex(data), request.getHash());
+        request.close();
+    }
+
+    @Test
+    public void testHashAfterReadingEverything() throws IOException {
+        FileSystemIdentificationRequest request = openRequest(new SHA1HashGenerator());
+        for (int i = 0; i < FILE_SIZE; i++) {
+            assertEquals(data[i], request.getByte(i));
+        }
+        assertEquals(DigestUtils.sha1Hex(data), request.getHash());
+        request.close();
+    }
+
+    @Test
+    public void testSeveralHashesFromTheSameReads() throws IOException {
+        HashGenerator md5 = new MD5HashGenerator();
+        HashGenerator sha256 = new SHA256HashGenerator();
+        RequestMetaData metaData = new RequestMetaData((long) FILE_SIZE, 0L, file.getFileName().toString());
+        FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(metaData,
+                new RequestIdentifier(file.toUri()), Arrays.asList(md5, sha256));
+        request.open(file);
+        request.getByte(FILE_SIZE - 1);
+        request.getByte(5000);
+        assertEquals(DigestUtils.sha256Hex(data), request.getHash(sha256));
+        assertEquals(DigestUtils.md5Hex(data), request.getHash(md5));
+        assertEquals(DigestUtils.md5Hex(data), request.getHash());
+        assertNull(request.getHash(new SHA1HashGenerator()));
+        request.close();
+    }
+
+    @Test
+    public void testNoHashWithoutHashGenerator() throws IOException {
+        FileSystemIdentificationRequest request = openRequest(null);
+        assertNull(request.getHash());
+        request.close();
+    }
+
+    private FileSystemIdentificationRequest openRequest(HashGenerator hashGenerator) throws IOException {
+        RequestMetaData metaData = new RequestMetaData((long) FILE_SIZE, 0L, file.getFileName().toString());
+        FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(metaData,
+                new RequestIdentifier(file.toUri()), hashGenerator);
+        request.open(file);
+        return request;
+    }
+}
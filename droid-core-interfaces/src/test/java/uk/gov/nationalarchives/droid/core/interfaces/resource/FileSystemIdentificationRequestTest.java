@@ -63,8 +63,7 @@ public class FileSystemIdentificationRequestTest {
         file = Paths.get(getClass().getResource("/testXmlFile.xml").toURI());
         metaData = new RequestMetaData(Files.size(file), Files.getLastModifiedTime(file).toMillis(), "testXmlFile.xml");
         identifier = new RequestIdentifier(file.toUri());
-        fileRequest = new FileSystemIdentificationRequest(
-                metaData, identifier);
+        fileRequest = newRequest(metaData, identifier);
         fileRequest.open(file);
 
         fileData = new String(Files.readAllBytes(file), UTF_8);
@@ -75,6 +74,10 @@ public class FileSystemIdentificationRequestTest {
         fileRequest.close();
     }
 
+    protected FileSystemIdentificationRequest newRequest(RequestMetaData metaData, RequestIdentifier identifier) {
+        return new FileSystemIdentificationRequest(metaData, identifier);
+    }
+
     //TODO:MP: no longer have binary cache, rewrite test?
     /*
     @Test
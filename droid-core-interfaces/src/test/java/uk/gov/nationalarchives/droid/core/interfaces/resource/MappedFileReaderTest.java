@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.byteseek.io.reader.cache.LeastRecentlyUsedCache;
+import net.byteseek.io.reader.cache.NoCache;
+import net.byteseek.io.reader.windows.Window;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.MD5HashGenerator;
+
+public class MappedFileReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private byte[] content;
+
+    @Before
+    public void setup() throws IOException {
+        content = new byte[3 * 4096 + 123];
+        new Random(42).nextBytes(content);
+        file = folder.newFile("random.bin").toPath();
+        Files.write(file, content);
+    }
+
+    @Test
+    public void testWindowsHoldTheBytesOfTheFile() throws IOException {
+        try (MappedFileReader reader = new MappedFileReader(file, new NoCache(), new WindowBufferPool(4096, 4))) {
+            assertEquals(content.length, reader.length());
+            long position = 0;
+            for (Window window : reader) {
+                assertEquals(position, window.getWindowPosition());
+                final byte[] expected = Arrays.copyOfRange(content, (int) position, (int) position + window.length());
+                assertArrayEquals(expected, Arrays.copyOf(window.getArray(), window.length()));
+                position = window.getNextWindowPosition();
+            }
+            assertEquals(content.length, position);
+            assertNull(reader.getWindow(content.length));
+        }
+    }
+
+    @Test
+    public void testArraysOfEvictedWindowsAreNotReused() throws IOException {
+        LeastRecentlyUsedCache cache = new LeastRecentlyUsedCache(1);
+        try (MappedFileReader reader = new MappedFileReader(file, cache, new WindowBufferPool(4096, 4))) {
+            cache.subscribe(reader);
+            Window first = reader.getWindow(0);
+            reader.getWindow(4096); // evicts the first window, which its caller still holds.
+            Window third = reader.getWindow(8192);
+            assertNotSame(first.getArray(), third.getArray());
+            assertArrayEquals(Arrays.copyOfRange(content, 0, 4096), first.getArray());
+            assertArrayEquals(Arrays.copyOfRange(content, 8192, 12288), Arrays.copyOf(third.getArray(), third.length()));
+        }
+    }
+
+    @Test
+    public void testArraysOfCachedWindowsAreReturnedOnClose() throws IOException {
+        LeastRecentlyUsedCache cache = new LeastRecentlyUsedCache(1);
+        WindowBufferPool pool = new WindowBufferPool(4096, 4);
+        byte[] evictedArray;
+        byte[] cachedArray;
+        try (MappedFileReader reader = new MappedFileReader(file, cache, pool)) {
+            cache.subscribe(reader);
+            evictedArray = reader.getWindow(0).getArray();
+            cachedArray = reader.getWindow(4096).getArray();
+        }
+        assertSame(cachedArray, pool.borrow());
+        assertNotSame(evictedArray, pool.borrow());
+    }
+
+    @Test
+    public void testBytesAreReadDirectlyFromTheMappedFile() throws IOException {
+        try (MappedFileReader reader = new MappedFileReader(file, new NoCache())) {
+            for (int position : new int[] {0, 4095, 4096, 9000, content.length - 1}) {
+                assertEquals(content[position] & 0xFF, reader.readByte(position));
+            }
+            assertEquals(-1, reader.readByte(-1));
+            assertEquals(-1, reader.readByte(content.length));
+        }
+    }
+
+    @Test
+    public void testReadingAfterCloseFails() throws IOException {
+        MappedFileReader reader = new MappedFileReader(file, new NoCache());
+        reader.close();
+        try {
+            reader.readByte(0);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testEmptyFilesHaveNoWindows() throws IOException {
+        Path empty = folder.newFile("empty.bin").toPath();
+        try (MappedFileReader reader = new MappedFileReader(empty, new NoCache())) {
+            assertEquals(0, reader.length());
+            assertNull(reader.getWindow(0));
+            assertEquals(-1, reader.readByte(0));
+        }
+    }
+
+    @Test
+    public void testReadingATruncatedFileFailsWithAnIOException() throws IOException {
+        try (MappedFileReader reader = new MappedFileReader(file, new NoCache())) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+            try {
+                reader.getWindow(0);
+                fail("Expected an IOException reading a truncated file");
+            } catch (IOException expected) {
+                // the mapped page no longer exists.
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyLargeFilesAreMapped() throws IOException {
+        Path large = largeFile();
+        RequestMetaData metaData = new RequestMetaData(Files.size(large), 0L, "large.bin");
+        RequestMetaData smallMetaData = new RequestMetaData((long) content.length, 0L, "random.bin");
+        try (FileSystemIdentificationRequest small = new MappedFileIdentificationRequest(smallMetaData, new RequestIdentifier(file.toUri()));
+             FileSystemIdentificationRequest mapped = new MappedFileIdentificationRequest(metaData, new RequestIdentifier(large.toUri()))) {
+            small.open(file);
+            mapped.open(large);
+            assertTrue(small.getWindowReader() instanceof PooledFileReader);
+            assertTrue(mapped.getWindowReader() instanceof MappedFileReader);
+        }
+    }
+
+    @Test
+    public void testMappedRequestsHashFilesLikeBufferedRequests() throws IOException {
+        Path large = largeFile();
+        RequestMetaData metaData = new RequestMetaData(Files.size(large), 0L, "large.bin");
+        RequestIdentifier identifier = new RequestIdentifier(large.toUri());
+        MD5HashGenerator hashGenerator = new MD5HashGenerator();
+        try (FileSystemIdentificationRequest buffered = new FileSystemIdentificationRequest(metaData, identifier, hashGenerator);
+             FileSystemIdentificationRequest mapped = new MappedFileIdentificationRequest(metaData, identifier, hashGenerator)) {
+            buffered.open(large);
+            mapped.open(large);
+            assertEquals(content[content.length - 1], mapped.getByte(Files.size(large) - 1));
+            assertEquals(buffered.getHash(), mapped.getHash());
+        }
+    }
+
+    // A file too large to be held whole in the top and tail buffers, which ends with the random content.
+    private Path largeFile() throws IOException {
+        Path large = folder.newFile("large.bin").toPath();
+        try (FileChannel channel = FileChannel.open(large, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(content), 32L * 1024 * 1024);
+        }
+        return large;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.byteseek.io.reader.WindowReader;
+import net.byteseek.io.reader.cache.AllWindowsCache;
+import net.byteseek.io.reader.cache.TempFileCache;
+import net.byteseek.io.reader.cache.TopAndTailStreamCache;
+import net.byteseek.io.reader.cache.TwoLevelCache;
+import net.byteseek.io.reader.windows.Window;
+
+public class PooledInputStreamReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = newContent();
+
+    private static byte[] newContent() {
+        final byte[] bytes = new byte[20 * 4096 + 321];
+        new Random(11).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testReadsTheStreamOnDemand() throws IOException {
+        final WindowBufferPool pool = new WindowBufferPool(4096, 64);
+        try (PooledInputStreamReader reader = new PooledInputStreamReader(
+                new ByteArrayInputStream(content), new AllWindowsCache(), true, pool)) {
+            assertEquals(content[3 * 4096 + 5] & 0xFF, reader.readByte(3 * 4096 + 5));
+            assertBytesMatch(reader);
+            assertEquals(content.length, reader.length());
+            assertNull(reader.getWindow(content.length));
+        }
+    }
+
+    @Test
+    public void testWindowsEvictedWhileFindingTheLengthAreReturnedAndReadFromTheTempFile() throws IOException {
+        final WindowBufferPool pool = new WindowBufferPool(4096, 64);
+        final TopAndTailStreamCache memoryCache = new TopAndTailStreamCache(2 * 4096);
+        final PooledInputStreamReader reader = new PooledInputStreamReader(new ByteArrayInputStream(content),
+                TwoLevelCache.create(memoryCache, new TempFileCache(folder.getRoot())), true, pool);
+        memoryCache.subscribe(reader);
+        assertEquals(content.length, reader.length());
+
+        assertBytesMatch(reader);
+        reader.close();
+        reader.close(); // closing twice does not return the same array twice.
+
+        // Arrays of windows evicted from the tail were reused for later windows, so far fewer
+        // arrays than windows were allocated, and all of them are now back in the pool.
+        int arraysAllocated = 0;
+        while (isUsed(pool.borrow())) {
+            arraysAllocated++;
+        }
+        assertTrue(arraysAllocated > 0);
+        assertTrue("Allocated " + arraysAllocated, arraysAllocated <= 8);
+    }
+
+    private void assertBytesMatch(final WindowReader reader) throws IOException {
+        for (long position = 0; position < content.length; position += 4096) {
+            final Window window = reader.getWindow(position);
+            assertEquals(position, window.getWindowPosition());
+            for (int i = 0; i < window.length(); i++) {
+                assertEquals(content[(int) position + i], window.getByte(i));
+            }
+        }
+    }
+
+    private static boolean isUsed(final byte[] array) {
+        for (final byte b : array) {
+            if (b != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.byteseek.io.reader.cache.TopAndTailFixedLengthCache;
+import net.byteseek.io.reader.windows.Window;
+
+public class WindowBufferPoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReleasedBuffersAreBorrowedAgain() {
+        final WindowBufferPool pool = new WindowBufferPool(16, 2);
+        final byte[] first = pool.borrow();
+        assertEquals(16, first.length);
+        pool.release(first);
+        assertSame(first, pool.borrow());
+        assertNotSame(first, pool.borrow());
+    }
+
+    @Test
+    public void testBuffersOfTheWrongSizeOrBeyondTheLimitAreNotKept() {
+        final WindowBufferPool pool = new WindowBufferPool(16, 1);
+        pool.release(new byte[8]);
+        pool.release(null);
+        final byte[] kept = new byte[16];
+        pool.release(kept);
+        pool.release(new byte[16]);
+        assertSame(kept, pool.borrow());
+        assertNotSame(kept, pool.borrow());
+    }
+
+    @Test
+    public void testBuffersReleasedOnAnotherThreadAreBorrowedAgain() throws InterruptedException {
+        final WindowBufferPool pool = new WindowBufferPool(16, 4);
+        final byte[][] borrowed = new byte[2][];
+        final Thread opening = new Thread(() -> borrowed[0] = pool.borrow());
+        opening.start();
+        opening.join();
+        pool.release(borrowed[0]);
+        final Thread nextOpening = new Thread(() -> borrowed[1] = pool.borrow());
+        nextOpening.start();
+        nextOpening.join();
+        assertSame(borrowed[0], borrowed[1]);
+    }
+
+    @Test
+    public void testPoolStaysWithinItsLimitWhenSharedByThreads() throws InterruptedException {
+        final WindowBufferPool pool = new WindowBufferPool(16, 8);
+        final Set<byte[]> released = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int count = 0; count < 100; count++) {
+                    final byte[] buffer = new byte[16];
+                    released.add(buffer);
+                    pool.release(buffer);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int borrowed = 0; borrowed < 8; borrowed++) {
+            assertTrue(released.contains(pool.borrow()));
+        }
+        assertFalse(released.contains(pool.borrow()));
+    }
+
+    @Test
+    public void testFileReaderReturnsCachedWindowsOnClose() throws IOException {
+        final byte[] content = new byte[5 * 4096 + 17];
+        new Random(7).nextBytes(content);
+        final Path file = folder.newFile("random.bin").toPath();
+        Files.write(file, content);
+        final WindowBufferPool pool = new WindowBufferPool(4096, 16);
+
+        final PooledFileReader reader = new PooledFileReader(file,
+                new TopAndTailFixedLengthCache(content.length, 4096), pool);
+        final Window top = reader.getWindow(0);
+        for (long position = 0; position < content.length; position += 4096) {
+            final Window window = reader.getWindow(position);
+            final byte[] expected = Arrays.copyOfRange(content, (int) position, (int) position + window.length());
+            assertArrayEquals(expected, Arrays.copyOf(window.getArray(), window.length()));
+        }
+        final byte[] topArray = top.getArray();
+        reader.close();
+        reader.close(); // closing twice does not return the same array twice.
+
+        final byte[] first = pool.borrow();
+        final byte[] second = pool.borrow();
+        assertNotSame(first, second);
+        assertSame(topArray, first == topArray ? first : second);
+    }
+}
@@ -31,6 +31,7 @@
  */
 package uk.gov.nationalarchives.droid.core;
 
+import java.io.Closeable;
 import java.net.URI;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -38,6 +39,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import uk.gov.nationalarchives.droid.core.interfaces.DroidCore;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
@@ -49,6 +56,7 @@ import uk.gov.nationalarchives.droid.core.signature.FileFormat;
 import uk.gov.nationalarchives.droid.core.signature.FileFormatCollection;
 import uk.gov.nationalarchives.droid.core.signature.FileFormatHit;
 import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SignatureStatistics;
 
 /**
  * Implementation of DroidCore which uses the droid binary signatures to identify files. 
@@ -56,11 +64,17 @@ import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
  * @author rflitcroft
  *
  */
-public class BinarySignatureIdentifier implements DroidCore {
+public class BinarySignatureIdentifier implements DroidCore, Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
 
     private FFSignatureFile sigFile;
     private SignatureFileParser sigFileParser = new SignatureFileParser();
     private URI signatureFile;
+    private boolean recordStatistics;
+    private String statisticsName;
+    private SignatureStatistics statistics;
+    private ObjectName statisticsObjectName;
     
     /**
      * Default constructor.
@@ -75,6 +89,38 @@ public class BinarySignatureIdentifier implements DroidCore {
     public void init() throws SignatureParseException {
         sigFile = sigFileParser.parseSigFile(Paths.get(signatureFile));
         sigFile.prepareForUse();
+        if (recordStatistics) {
+            statistics = new SignatureStatistics();
+            sigFile.setSignatureStatistics(statistics);
+            registerStatistics();
+        }
+    }
+
+    /**
+     * Stops recording signature statistics, and unregisters them from JMX.
+     */
+    @Override
+    public void close() {
+        if (statistics != null) {
+            sigFile.setSignatureStatistics(null);
+        }
+        if (statisticsObjectName != null) {
+            try {
+                SignatureStatistics.unregister(statisticsObjectName);
+            } catch (JMException e) {
+                log.warn("Could not unregister signature statistics {}", statisticsObjectName, e);
+            }
+            statisticsObjectName = null;
+        }
+    }
+
+    private void registerStatistics() {
+        final String name = statisticsName == null ? Paths.get(signatureFile).getFileName().toString() : statisticsName;
+        try {
+            statisticsObjectName = statistics.register(name);
+        } catch (JMException e) {
+            log.warn("Could not register signature statistics for {} with JMX", name, e);
+        }
     }
     
     /**
@@ -86,6 +132,40 @@ public class BinarySignatureIdentifier implements DroidCore {
         this.signatureFile = Paths.get(signatureFile).toUri();
     }
 
+    /**
+     * Sets whether the cost of running each binary signature is recorded, and registered with JMX
+     * as a {@link SignatureStatistics} MBean when this droid core is initialised.
+     * @param recordStatistics whether to record signature statistics.
+     */
+    public void setRecordStatistics(final boolean recordStatistics) {
+        this.recordStatistics = recordStatistics;
+    }
+
+    /**
+     * Sets the name the signature statistics are registered with JMX under.
+     * If not set, the name of the signature file is used.
+     * @param statisticsName the name to register signature statistics under.
+     */
+    public void setStatisticsName(final String statisticsName) {
+        this.statisticsName = statisticsName;
+    }
+
+    /**
+     * @return the statistics recording the cost of each binary signature, or null if none are recorded.
+     */
+    public SignatureStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets a directory of binary caches to build the signature file from, rather than parsing the XML each time.
+     * @param signatureCacheDir the directory to cache the signature file in, or null or empty for no cache.
+     */
+    public void setSignatureCacheDir(final String signatureCacheDir) {
+        sigFileParser.setCacheDirectory(signatureCacheDir == null || signatureCacheDir.isEmpty()
+                ? null : Paths.get(signatureCacheDir));
+    }
+
 
     /**
      * {@inheritDoc}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A compact binary form of a signature file, stored in a cache directory under a digest of the
+ * path of the signature file it was built from.
+ *
+ * <p>The cache holds the element, attribute and text content of the signature file in the order
+ * it was parsed, with repeated names written once.  Replaying it into a {@link org.xml.sax.ContentHandler}
+ * builds exactly the same model as parsing the XML, without the cost of decoding, tokenising and
+ * namespace-resolving several megabytes of text.</p>
+ *
+ * <p>The compiled byteseek matchers of a prepared model are not serializable, so they are still
+ * built when the model is created; only the XML parse is avoided.</p>
+ *
+ * <p>Each cache records the path, size and last modified time of the signature file it was built from,
+ * and is only used while they still match, so the signature file is not read at all when its cache is used.
+ * A signature file replaced by one of the same size with its modified time preserved is not noticed.</p>
+ */
+public final class SignatureFileCache {
+
+    /**
+     * The extension appended to the digest of the path of a signature file to name its cache.
+     */
+    public static final String CACHE_EXTENSION = ".sigcache";
+
+    private static final int MAGIC = 0x44534346; // DSCF
+    private static final int FORMAT_VERSION = 2;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final byte END_OF_CACHE = 0;
+    private static final byte START_ELEMENT = 1;
+    private static final byte TEXT = 2;
+    private static final byte END_ELEMENT = 3;
+    private static final byte WHITESPACE = 4;
+
+    private static final Logger LOG = LoggerFactory.getLogger(SignatureFileCache.class);
+
+    private SignatureFileCache() {
+    }
+
+    /**
+     * @param cacheDirectory the directory holding signature file caches.
+     * @param signatureFile a signature file.
+     * @return the path of the cache for the signature file.
+     */
+    public static Path getCacheFile(final Path cacheDirectory, final Path signatureFile) {
+        final byte[] digest = newDigest().digest(
+                signatureFile.toAbsolutePath().normalize().toString().getBytes(UTF_8));
+        final StringBuilder name = new StringBuilder(digest.length * 2 + CACHE_EXTENSION.length());
+        for (final byte digestByte : digest) {
+            name.append(String.format("%02x", digestByte));
+        }
+        return cacheDirectory.resolve(name.append(CACHE_EXTENSION).toString());
+    }
+
+    /**
+     * Calculates the key a cache of a signature file must match to be used, from the path, size and
+     * last modified time of the signature file, without reading it.
+     *
+     * @param signatureFile the signature file.
+     * @return the key of the signature file.
+     * @throws IOException if the attributes of the signature file could not be read.
+     */
+    public static byte[] key(final Path signatureFile) throws IOException {
+        final Path path = signatureFile.toAbsolutePath().normalize();
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, path.toString());
+            out.writeLong(attributes.size());
+            out.writeLong(attributes.lastModifiedTime().toMillis());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replays a cache into a content handler, if the cache exists and was built from a signature file
+     * with the key given.
+     *
+     * @param cacheFile the cache to replay.
+     * @param key the key of the signature file the cache must have been built from.
+     * @param handler the handler to replay the signature file content into.
+     * @return true if the cache was replayed, false if there is no cache or it is out of date.
+     * @throws IOException if the cache could not be read, or is truncated or corrupt.
+     * @throws SAXException if the handler rejects the content.
+     */
+    public static boolean replay(final Path cacheFile, final byte[] key, final ContentHandler handler)
+            throws IOException, SAXException {
+        final byte[] cache;
+        try {
+            cache = Files.readAllBytes(cacheFile);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        // Reading from memory, available() is exactly the bytes left, which every length read is checked against.
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(cache));
+        if (!readHeader(in, key)) {
+            return false;
+        }
+        new Replayer(in, handler).replay();
+        return true;
+    }
+
+    /**
+     * Creates a recorder, which passes the events it receives on to a delegate handler, and can write
+     * the content it has seen as a cache.
+     *
+     * @param delegate the handler which builds the model from the signature file.
+     * @return a recorder for the signature file content.
+     */
+    public static Recorder newRecorder(final ContentHandler delegate) {
+        return new Recorder(delegate);
+    }
+
+    private static boolean readHeader(final DataInputStream in, final byte[] key) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return false;
+        }
+        final int keyLength = in.readInt();
+        if (keyLength != key.length) {
+            return false;
+        }
+        final byte[] cachedKey = new byte[keyLength];
+        in.readFully(cachedKey);
+        return Arrays.equals(cachedKey, key);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Replays the element content of a cache into a content handler.
+     */
+    private static final class Replayer {
+
+        private final DataInputStream in;
+        private final ContentHandler handler;
+        private final List<String> names = new ArrayList<>();
+        private final Deque<String[]> openElements = new ArrayDeque<>();
+
+        Replayer(final DataInputStream in, final ContentHandler handler) {
+            this.in = in;
+            this.handler = handler;
+        }
+
+        void replay() throws IOException, SAXException {
+            byte tag = in.readByte();
+            while (tag != END_OF_CACHE) {
+                switch (tag) {
+                    case START_ELEMENT: startElement(); break;
+                    case TEXT: text(readString(in)); break;
+                    case WHITESPACE: text(readName()); break;
+                    case END_ELEMENT: endElement(); break;
+                    default: throw new IOException("Unknown tag in signature cache: " + tag);
+                }
+                tag = in.readByte();
+            }
+            if (!openElements.isEmpty()) {
+                throw new IOException("Signature cache ended with unclosed elements.");
+            }
+        }
+
+        private void startElement() throws IOException, SAXException {
+            final String[] element = {readName(), readName(), readName()};
+            final int attributeCount = readLength(in);
+            final AttributesImpl attributes = new AttributesImpl();
+            for (int i = 0; i < attributeCount; i++) {
+                attributes.addAttribute(readName(), readName(), readName(), "CDATA", readString(in));
+            }
+            openElements.push(element);
+            handler.startElement(element[0], element[1], element[2], attributes);
+        }
+
+        private void text(final String value) throws SAXException {
+            final char[] text = value.toCharArray();
+            handler.characters(text, 0, text.length);
+        }
+
+        private void endElement() throws IOException, SAXException {
+            if (openElements.isEmpty()) {
+                throw new IOException("Signature cache closes an element which was not opened.");
+            }
+            final String[] element = openElements.pop();
+            handler.endElement(element[0], element[1], element[2]);
+        }
+
+        private String readName() throws IOException {
+            final int index = in.readInt();
+            if (index == names.size()) {
+                names.add(in.readUTF());
+            } else if (index < 0 || index > names.size()) {
+                throw new IOException("Signature cache refers to an unknown name: " + index);
+            }
+            return names.get(index);
+        }
+    }
+
+    /**
+     * Passes signature file content on to a delegate handler, recording it so it can be written as a cache.
+     *
+     * <p>Text is recorded where it arrives, so mixed content replays in the same order.  Consecutive
+     * character events are joined into one, as a parser is free to split text anywhere.  Whitespace
+     * between elements is written once, like names, as the same indentation repeats throughout.</p>
+     */
+    public static final class Recorder extends DefaultHandler {
+
+        private final ContentHandler delegate;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> names = new HashMap<>();
+        private final StringBuilder text = new StringBuilder();
+        private IOException recordingError;
+
+        private Recorder(final ContentHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                                 final Attributes attributes) throws SAXException {
+            delegate.startElement(uri, localName, qName, attributes);
+            try {
+                writeText();
+                out.writeByte(START_ELEMENT);
+                writeName(uri);
+                writeName(localName);
+                writeName(qName);
+                out.writeInt(attributes.getLength());
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    writeName(attributes.getURI(i));
+                    writeName(attributes.getLocalName(i));
+                    writeName(attributes.getQName(i));
+                    writeString(out, attributes.getValue(i));
+                }
+            } catch (IOException e) {
+                recordingError = e;
+            }
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) throws SAXException {
+            delegate.characters(ch, start, length);
+            text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            try {
+                writeText();
+                out.writeByte(END_ELEMENT);
+            } catch (IOException e) {
+                recordingError = e;
+            }
+            delegate.endElement(uri, localName, qName);
+        }
+
+        /**
+         * Writes the recorded content as a cache, replacing any existing cache atomically where the
+         * file system allows.
+         *
+         * @param cacheFile the cache file to write.
+         * @param key the key of the signature file the content was recorded from.
+         * @throws IOException if the cache could not be written.
+         */
+        public void write(final Path cacheFile, final byte[] key) throws IOException {
+            if (recordingError != null) {
+                throw recordingError;
+            }
+            out.writeByte(END_OF_CACHE);
+            out.flush();
+            final Path cacheDirectory = Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+            final Path tempFile = Files.createTempFile(cacheDirectory,
+                    cacheFile.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream file = new DataOutputStream(Files.newOutputStream(tempFile))) {
+                    file.writeInt(MAGIC);
+                    file.writeInt(FORMAT_VERSION);
+                    file.writeInt(key.length);
+                    file.write(key);
+                    bytes.writeTo(file);
+                }
+                moveIntoPlace(tempFile, cacheFile);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            LOG.debug("Wrote signature cache " + cacheFile);
+        }
+
+        private void moveIntoPlace(final Path tempFile, final Path cacheFile) throws IOException {
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private void writeText() throws IOException {
+            if (text.length() > 0) {
+                final String value = text.toString();
+                if (value.trim().isEmpty()) {
+                    out.writeByte(WHITESPACE);
+                    writeName(value);
+                } else {
+                    out.writeByte(TEXT);
+                    writeString(out, value);
+                }
+                text.setLength(0);
+            }
+        }
+
+        private void writeName(final String name) throws IOException {
+            final Integer index = names.get(name);
+            if (index == null) {
+                final int newIndex = names.size();
+                names.put(name, newIndex);
+                out.writeInt(newIndex);
+                out.writeUTF(name);
+            } else {
+                out.writeInt(index);
+            }
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] utf8 = value.getBytes(UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] utf8 = new byte[readLength(in)];
+        in.readFully(utf8);
+        return new String(utf8, UTF_8);
+    }
+
+    /*
+     * Reads a count of bytes or records, each of which takes at least a byte, so a count larger than
+     * the bytes left in the cache can only come from a corrupt or truncated file.
+     */
+    private static int readLength(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Signature cache is corrupt: a length of " + length
+                    + " is more than the " + in.available() + " bytes left.");
+        }
+        return length;
+    }
+}
@@ -41,6 +41,9 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
@@ -57,17 +60,80 @@ public class SignatureFileParser {
     /** Namespace for the xml file format signatures file. */
     public static final String SIGNATURE_FILE_NS = "http://www.nationalarchives.gov.uk/pronom/SignatureFile";
 
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private Path cacheDirectory;
+
     /**
      * Create a new signature file object based on a signature file.
      *
+     * <p>If a cache directory is set, the signature file is built from its {@link SignatureFileCache}
+     * in that directory when there is one, and the cache is written after parsing the XML when there is not.</p>
+     *
      * @param theFileName the file name
      * @return sig file
      * @throws SignatureParseException if there is a problem parsing the signature file.
      */
     public FFSignatureFile parseSigFile(final Path theFileName) throws SignatureParseException {
+        return cacheDirectory != null ? parseCachedSigFile(theFileName) : parseXmlSigFile(theFileName);
+    }
 
-        final SAXModelBuilder mb = new SAXModelBuilder();
-        final XMLReader parser = getXMLReader(mb);
+    /**
+     * @param cacheDirectory the directory of binary caches to build signature files from, or null for no cache.
+     */
+    public void setCacheDirectory(final Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    private FFSignatureFile parseXmlSigFile(final Path theFileName) throws SignatureParseException {
+        final SAXModelBuilder mb = newModelBuilder();
+        parse(theFileName, mb);
+        return (FFSignatureFile) mb.getModel();
+    }
+
+    private FFSignatureFile parseCachedSigFile(final Path theFileName) throws SignatureParseException {
+        final byte[] key;
+        try {
+            key = SignatureFileCache.key(theFileName);
+        } catch (final IOException e) {
+            throw new SignatureParseException(e.getMessage(), e);
+        }
+        final Path cacheFile = SignatureFileCache.getCacheFile(cacheDirectory, theFileName);
+
+        final SAXModelBuilder cachedBuilder = newModelBuilder();
+        try {
+            if (SignatureFileCache.replay(cacheFile, key, cachedBuilder)) {
+                return (FFSignatureFile) cachedBuilder.getModel();
+            }
+            //CHECKSTYLE:OFF - a corrupt cache must not stop DROID starting, whatever it makes the replay throw.
+        } catch (final IOException | SAXException | RuntimeException e) {
+            //CHECKSTYLE:ON
+            log.warn("Could not read signature cache " + cacheFile + ", parsing the signature file instead: "
+                    + e.getMessage());
+            deleteCache(cacheFile);
+        }
+
+        final SAXModelBuilder mb = newModelBuilder();
+        final SignatureFileCache.Recorder recorder = SignatureFileCache.newRecorder(mb);
+        parse(theFileName, recorder);
+        try {
+            recorder.write(cacheFile, key);
+        } catch (final IOException e) {
+            log.info("Could not write signature cache " + cacheFile + ": " + e.getMessage());
+        }
+        return (FFSignatureFile) mb.getModel();
+    }
+
+    private void deleteCache(final Path cacheFile) {
+        try {
+            Files.deleteIfExists(cacheFile);
+        } catch (final IOException e) {
+            log.info("Could not delete signature cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private void parse(final Path theFileName, final ContentHandler handler) throws SignatureParseException {
+        final XMLReader parser = getXMLReader(handler);
 
         //read in the XML file
         try (final Reader in = Files.newBufferedReader(theFileName, UTF_8)) {
@@ -75,17 +141,22 @@ public class SignatureFileParser {
         } catch (final IOException | SAXException e) {
             throw new SignatureParseException(e.getMessage(), e);
         }
-        return (FFSignatureFile) mb.getModel();
     }
-    
+
+    private SAXModelBuilder newModelBuilder() {
+        final SAXModelBuilder mb = new SAXModelBuilder();
+        mb.setupNamespace(SIGNATURE_FILE_NS, true);
+        return mb;
+    }
+
     /**
      * Create the XML parser for the signature file.
      *
-     * @param mb sax builder
+     * @param handler the handler for the signature file content
      * @return XMLReader
      * @throws SignatureParseException on error
      */
-    private XMLReader getXMLReader(SAXModelBuilder mb) throws SignatureParseException {
+    private XMLReader getXMLReader(ContentHandler handler) throws SignatureParseException {
 
         SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setNamespaceAware(true);
@@ -93,8 +164,7 @@ public class SignatureFileParser {
         try {
             saxParser = factory.newSAXParser();
             XMLReader parser = saxParser.getXMLReader();
-            mb.setupNamespace(SIGNATURE_FILE_NS, true);
-            parser.setContentHandler(mb);
+            parser.setContentHandler(handler);
             return parser;
         } catch (ParserConfigurationException e) {
             throw new SignatureParseException(e.getMessage(), e);
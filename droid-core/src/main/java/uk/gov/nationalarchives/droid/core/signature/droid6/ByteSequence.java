@@ -175,7 +175,7 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
     /**
     *Use static log for optimal performance..
      */
-    private final Logger log = LoggerFactory.getLogger(ByteSequence.class);
+    private static final Logger LOG = LoggerFactory.getLogger(ByteSequence.class);
     
     private List<SubSequence> subSequences = new ArrayList<SubSequence>();
     private SubSequence[] sequences = new SubSequence[0];
@@ -225,7 +225,23 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
     }
 
     /**
-     * 
+     *
+     * @return Whether the byte sequence is anchored at an offset which is read from the file itself.
+     */
+    public final boolean hasIndirectOffset() {
+        return hasIndirectOffset;
+    }
+
+    /**
+     *
+     * @return Whether the byte sequence is matched backwards from the end of a file.
+     */
+    public final boolean isReverseOrder() {
+        return reverseOrder;
+    }
+
+    /**
+     *
      * @return The sort order of this byte sequence.
      */
     public final int getSortOrder() {
@@ -378,12 +394,12 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
     private void compileSequence() {
         try {
             if (!subSequences.isEmpty()) {
-                log.warn("A sequence is defined - ByteSequence is clearing any sub-objects (probably from XML parsing) before compiling: " + sequence);
+                LOG.warn("A sequence is defined - ByteSequence is clearing any sub-objects (probably from XML parsing) before compiling: " + sequence);
                 subSequences.clear();
             }
             ByteSequenceCompiler.COMPILER.compile(this, sequence, getAnchor());
         } catch (CompileException e) {
-            log.warn("Compilation error in signature for sequence: " + sequence + "\n" + e.getMessage(), e);
+            LOG.warn("Compilation error in signature for sequence: " + sequence + "\n" + e.getMessage(), e);
             isInvalidByteSequence = true;
         }
     }
@@ -442,6 +458,24 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
         sequences = subSequences.toArray(sequences);
     }
     
+    /**
+     * Returns a key which is the same for byte sequences that always match the same files,
+     * for example where several signatures define the same header.
+     * The byte sequence must be prepared for use first.
+     *
+     * @return A key describing how the byte sequence matches.
+     */
+    String getMatchKey() {
+        final StringBuilder key = new StringBuilder(reference);
+        key.append(';').append(bigEndian).append(';').append(indirectOffsetLocation)
+           .append(';').append(indirectOffsetLength);
+        for (SubSequence subSequence : sequences) {
+            key.append(';');
+            subSequence.appendMatchKey(key);
+        }
+        return key.toString();
+    }
+
     /**
      * 
      * @return Whether the byteSequence is invalid or not.
@@ -554,7 +588,7 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
                     fixedSubsequence = false;
                 }
             } catch (IOException io) {
-                log.error(String.format("Error processing file: %s. for byte sequence match",
+                LOG.error(String.format("Error processing file: %s. for byte sequence match",
                         targetFile.getFileName()), io);
                 return false;
             }
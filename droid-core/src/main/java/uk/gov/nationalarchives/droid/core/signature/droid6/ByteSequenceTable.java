@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of the distinct byte sequences in a list of internal signatures.
+ *
+ * <p>Many signatures share identical byte sequences, e.g. a common container header
+ * followed by different conditions.  Each structurally identical byte sequence is given
+ * the same id, so its result can be recorded the first time it is matched against a file,
+ * and reused by every other signature which contains it.  Each distinct byte sequence
+ * is therefore matched at most once per file.</p>
+ *
+ * <p>The table is immutable once built, and can be used concurrently by many threads.
+ * The results of matching a file are held in an array obtained from {@link #newResults()},
+ * which must only be used for a single file.</p>
+ */
+final class ByteSequenceTable {
+
+    /**
+     * The result of a byte sequence which has not yet been matched against the file.
+     */
+    static final byte NOT_MATCHED_YET = 0;
+
+    /**
+     * The result of a byte sequence which matched the file.
+     */
+    static final byte MATCHED = 1;
+
+    /**
+     * The result of a byte sequence which did not match the file.
+     */
+    static final byte NOT_MATCHED = 2;
+
+    private final int[][] sequenceIds;
+    private final int numSequences;
+    private final int numDistinctSequences;
+
+    /**
+     * Builds a table of the distinct byte sequences in signatures which have been prepared for use.
+     *
+     * @param signatures The prepared signatures, in the order they are indexed.
+     */
+    ByteSequenceTable(final InternalSignature[] signatures) {
+        final Map<String, Integer> idsByKey = new HashMap<String, Integer>();
+        int sequenceCount = 0;
+        this.sequenceIds = new int[signatures.length][];
+        for (int sigIndex = 0; sigIndex < signatures.length; sigIndex++) {
+            final List<ByteSequence> sequences = signatures[sigIndex].getByteSequences();
+            final int[] ids = new int[sequences.size()];
+            for (int sequenceIndex = 0; sequenceIndex < ids.length; sequenceIndex++) {
+                final String key = sequences.get(sequenceIndex).getMatchKey();
+                Integer id = idsByKey.get(key);
+                if (id == null) {
+                    id = idsByKey.size();
+                    idsByKey.put(key, id);
+                }
+                ids[sequenceIndex] = id;
+            }
+            sequenceIds[sigIndex] = ids;
+            sequenceCount += ids.length;
+        }
+        this.numSequences = sequenceCount;
+        this.numDistinctSequences = idsByKey.size();
+    }
+
+    /**
+     * @param sigIndex The index of a signature in the table.
+     * @return The ids of the signature's byte sequences, in order.
+     */
+    int[] getSequenceIds(final int sigIndex) {
+        return sequenceIds[sigIndex];
+    }
+
+    /**
+     * @return An array to record the results of the distinct byte sequences against a single file,
+     *         with none of them matched yet.
+     */
+    byte[] newResults() {
+        return new byte[numDistinctSequences];
+    }
+
+    /**
+     * @return The number of byte sequences in all the signatures.
+     */
+    int getNumSequences() {
+        return numSequences;
+    }
+
+    /**
+     * @return The number of distinct byte sequences in all the signatures.
+     */
+    int getNumDistinctSequences() {
+        return numDistinctSequences;
+    }
+}
@@ -477,6 +477,14 @@ public class FFSignatureFile extends SimpleElement {
         this.maxBytesToScan = maxBytesToScan;
     }
 
+    /**
+     *
+     * @param statistics Statistics to record the cost of each signature run in, or null to record none.
+     */
+    public void setSignatureStatistics(final SignatureStatistics statistics) {
+        intSigs.setStatistics(statistics);
+    }
+
     
     /**
      * Identify the target file using the signatures defined in this signature file.
@@ -414,6 +414,36 @@ public class InternalSignature extends SimpleElement {
         return matchResult;
     }
 
+    /**
+     * Indicates whether the internal signature matches the target file, sharing the results
+     * of byte sequences with other signatures matched against the same file.
+     * A byte sequence is only matched if its result is not already known.
+     *
+     * @param targetFile the binary file to be identified
+     * @param maxBytesToScan how many bytes should be scanned from the
+     * beginning or end of each file.  If negative, scanning is unlimited.
+     * @param sequenceIds The ids of this signature's byte sequences, in order, in a table of distinct byte sequences.
+     * @param sequenceResults The results of the byte sequences in the table against the target file, by id.
+     * @return Whether the signature matches the target file or not.
+     */
+    public final boolean matches(final ByteReader targetFile, final long maxBytesToScan,
+                                 final int[] sequenceIds, final byte[] sequenceResults) {
+        boolean matchResult = true;
+        final List<ByteSequence> sequences = byteSequences;
+        final int numseqs = sequences.size();
+        for (int sequenceIndex = 0; matchResult && sequenceIndex < numseqs; sequenceIndex++) {
+            final int sequenceId = sequenceIds[sequenceIndex];
+            byte result = sequenceResults[sequenceId];
+            if (result == ByteSequenceTable.NOT_MATCHED_YET) {
+                result = sequences.get(sequenceIndex).matches(targetFile, maxBytesToScan)
+                        ? ByteSequenceTable.MATCHED : ByteSequenceTable.NOT_MATCHED;
+                sequenceResults[sequenceId] = result;
+            }
+            matchResult = result == ByteSequenceTable.MATCHED;
+        }
+        return matchResult;
+    }
+
     @Override
     public final String toString() {
         return intSigID + "(" + specificity + ")" + byteSequences;
@@ -83,10 +83,27 @@ public class InternalSignatureCollection extends SimpleElement {
     
     private List<InternalSignature> intSigs = new ArrayList<InternalSignature>(DEFAULT_COLLECTION_SIZE);
     private Map<Integer, InternalSignature> sigsByID = new HashMap<Integer, InternalSignature>();
-    
+
+    /**
+     * An index over the fixed offset anchors of the signatures, built when the collection is
+     * prepared for use.  It is rebuilt if prepared signatures are removed or re-ordered, and discarded
+     * if new signatures are added, as these may not have been prepared for use.
+     */
+    private volatile SignaturePrefilter prefilter;
+
+    /**
+     * Records the cost of each signature run, or null if no statistics are recorded.
+     */
+    private volatile SignatureStatistics statistics;
+
     /**
      * Runs all the signatures against the target file,
      * adding a hit for each of them, if any of them match.
+     *
+     * <p>If the collection has been prepared for use, only the signatures which
+     * the prefilter finds could possibly match the file are run.</p>
+     *
+     * <p>If statistics have been set, the cost of each signature run is recorded in them.</p>
      * 
      * @param targetFile The file to match the signatures against.
      * @param maxBytesToScan The maximum bytes to scan.
@@ -94,22 +111,50 @@ public class InternalSignatureCollection extends SimpleElement {
      */
     public List<InternalSignature> getMatchingSignatures(ByteReader targetFile, long maxBytesToScan) {
         //BNO: intSigs here represents all the available binary signatures..
+        final SignaturePrefilter candidateFilter = prefilter;
+        final SignatureStatistics signatureStatistics = statistics;
+        if (candidateFilter != null && targetFile.getNumBytes() > 0) {
+            return candidateFilter.getMatchingSignatures(targetFile, maxBytesToScan, signatureStatistics);
+        }
         List<InternalSignature> matchingSigs = new ArrayList<InternalSignature>();
         if (targetFile.getNumBytes() > 0) {
             final int stop = intSigs.size();
             for (int sigIndex = 0; sigIndex < stop; sigIndex++) {
                 final InternalSignature internalSig = intSigs.get(sigIndex);
-                if (internalSig.matches(targetFile, maxBytesToScan)) {
+                final boolean matched = signatureStatistics == null
+                        ? internalSig.matches(targetFile, maxBytesToScan)
+                        : signatureStatistics.matches(internalSig, targetFile, maxBytesToScan);
+                if (matched) {
                     matchingSigs.add(internalSig);
                 }
             }
         }
         return matchingSigs;
     }
+
+    /**
+     * @param statistics Statistics to record the cost of each signature run in, or null to record none.
+     */
+    public synchronized void setStatistics(final SignatureStatistics statistics) {
+        if (this.statistics == null && statistics != null) {
+            SignatureStatistics.startRecording();
+        } else if (this.statistics != null && statistics == null) {
+            SignatureStatistics.stopRecording();
+        }
+        this.statistics = statistics;
+    }
+
+    /**
+     * @return The statistics recording the cost of each signature run, or null if none are recorded.
+     */
+    public SignatureStatistics getStatistics() {
+        return statistics;
+    }
     
    
     /**
-     * Prepares the internal signatures in the collection for use.
+     * Prepares the internal signatures in the collection for use,
+     * and builds the prefilter used to select candidate signatures.
      */
     public void prepareForUse() {
         //BNO: Called once when initialising the profile.
@@ -122,6 +167,28 @@ public class InternalSignatureCollection extends SimpleElement {
                 sigIterator.remove();
             }
         }
+        buildPrefilter();
+    }
+
+    /**
+     * @return The prefilter used to select candidate signatures,
+     *         or null if the collection has not been prepared for use.
+     */
+    public SignaturePrefilter getPrefilter() {
+        return prefilter;
+    }
+
+    private void buildPrefilter() {
+        prefilter = new SignaturePrefilter(intSigs);
+        getLog().debug(String.format("Built signature prefilter: %d of %d signatures have no fixed offset anchor, "
+                + "%d of %d byte sequences are distinct.", prefilter.getNumUnfilteredSignatures(),
+                prefilter.getNumSignatures(), prefilter.getNumDistinctSequences(), prefilter.getNumSequences()));
+    }
+
+    private void rebuildPrefilterIfPrepared() {
+        if (prefilter != null) {
+            buildPrefilter();
+        }
     }
     
     private String getInvalidSignatureWarningMessage(InternalSignature sig) {
@@ -137,6 +204,7 @@ public class InternalSignatureCollection extends SimpleElement {
     public final void addInternalSignature(final InternalSignature iSig) {
         intSigs.add(iSig);
         sigsByID.put(iSig.getID(), iSig);
+        prefilter = null;
     }
     
     
@@ -147,6 +215,7 @@ public class InternalSignatureCollection extends SimpleElement {
     public final void removeInternalSignature(final InternalSignature iSig) {
         intSigs.remove(iSig);
         sigsByID.remove(iSig.getID());
+        rebuildPrefilterIfPrepared();
     }
     
     
@@ -167,6 +236,7 @@ public class InternalSignatureCollection extends SimpleElement {
     public final void setInternalSignatures(final List<InternalSignature> iSigs) {
         intSigs.clear();
         sigsByID.clear();
+        prefilter = null;
         for (InternalSignature signature : iSigs) {
             addInternalSignature(signature);
         }
@@ -187,6 +257,7 @@ public class InternalSignatureCollection extends SimpleElement {
      */
     public void sortSignatures(final Comparator<InternalSignature> compareWith) {
         Collections.sort(intSigs, compareWith);
+        rebuildPrefilterIfPrepared();
     }
 
 }
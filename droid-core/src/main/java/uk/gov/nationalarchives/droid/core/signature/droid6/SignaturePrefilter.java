@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.byteseek.io.reader.WindowReader;
+import net.byteseek.matcher.bytes.ByteMatcher;
+import net.byteseek.matcher.sequence.SequenceMatcher;
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+
+/**
+ * A compiled index over the fixed offset anchors of a list of internal signatures,
+ * which rules out signatures that cannot possibly match a file before they are run.
+ *
+ * <p>Most signatures have a byte sequence anchored at a fixed offset from the
+ * beginning or end of a file.  If the anchoring sequence of that byte sequence
+ * does not match at its fixed offset, the signature as a whole cannot match.
+ * The prefilter groups those signatures by their anchor offset, and for each offset
+ * builds a table of the signatures which can match each of the 256 possible byte values
+ * of the first byte of the anchor (or the last byte, for sequences matched back from the end
+ * of the file).  A single byte read per distinct offset therefore yields the
+ * candidate signatures for a file.</p>
+ *
+ * <p>Signatures with no such fixed anchor (e.g. variable, indirect or bounded offsets,
+ * or anchors with left fragments) are always candidates.  Candidates are still fully
+ * matched, so the prefilter never changes which signatures match, only how many are tried.</p>
+ *
+ * <p>Candidates are matched against a {@link ByteSequenceTable} of the distinct byte sequences in the
+ * signatures, so a byte sequence shared by several candidates is only matched once per file.</p>
+ *
+ * <p>The prefilter is immutable once built, and can be used concurrently by many threads.</p>
+ */
+public final class SignaturePrefilter {
+
+    private static final int BYTE_VALUES = 256;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int BITS_PER_WORD = 64;
+    private static final int WORD_SHIFT = 6;
+
+    private final InternalSignature[] signatures;
+    private final long[] alwaysCandidates;
+    private final AnchorIndex[] bofIndexes;
+    private final AnchorIndex[] eofIndexes;
+    private final ByteSequenceTable sequenceTable;
+
+    /**
+     * Builds a prefilter over a list of internal signatures which have been prepared for use.
+     * The order of the signatures is preserved when returning candidates.
+     *
+     * @param internalSignatures The prepared signatures to index.
+     */
+    public SignaturePrefilter(final List<InternalSignature> internalSignatures) {
+        this.signatures = internalSignatures.toArray(new InternalSignature[0]);
+        this.alwaysCandidates = new long[numWords(signatures.length)];
+        final Map<Long, AnchorIndex> bofAnchors = new TreeMap<Long, AnchorIndex>();
+        final Map<Long, AnchorIndex> eofAnchors = new TreeMap<Long, AnchorIndex>();
+        for (int sigIndex = 0; sigIndex < signatures.length; sigIndex++) {
+            if (!indexSignature(sigIndex, signatures[sigIndex], bofAnchors, eofAnchors)) {
+                setBit(alwaysCandidates, sigIndex);
+            }
+        }
+        this.bofIndexes = bofAnchors.values().toArray(new AnchorIndex[0]);
+        this.eofIndexes = eofAnchors.values().toArray(new AnchorIndex[0]);
+        this.sequenceTable = new ByteSequenceTable(signatures);
+    }
+
+    /**
+     * Runs only the candidate signatures against the target file, returning those which match.
+     *
+     * @param targetFile The file to match the signatures against.
+     * @param maxBytesToScan The maximum bytes to scan.
+     * @return A list of the internal signatures which matched, in the order they were indexed.
+     */
+    public List<InternalSignature> getMatchingSignatures(final ByteReader targetFile, final long maxBytesToScan) {
+        return getMatchingSignatures(targetFile, maxBytesToScan, null);
+    }
+
+    /**
+     * Runs only the candidate signatures against the target file, returning those which match,
+     * and recording the cost of each signature run.
+     *
+     * @param targetFile The file to match the signatures against.
+     * @param maxBytesToScan The maximum bytes to scan.
+     * @param statistics Statistics to record the cost of each signature run in, or null to record none.
+     * @return A list of the internal signatures which matched, in the order they were indexed.
+     */
+    public List<InternalSignature> getMatchingSignatures(final ByteReader targetFile, final long maxBytesToScan,
+                                                         final SignatureStatistics statistics) {
+        final List<InternalSignature> matchingSigs = new ArrayList<InternalSignature>();
+        final long[] candidates = getCandidates(targetFile);
+        final byte[] sequenceResults = sequenceTable.newResults();
+        for (int wordIndex = 0; wordIndex < candidates.length; wordIndex++) {
+            long word = candidates[wordIndex];
+            while (word != 0) {
+                final int sigIndex = (wordIndex << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+                final InternalSignature internalSig = signatures[sigIndex];
+                final int[] sequenceIds = sequenceTable.getSequenceIds(sigIndex);
+                final boolean matched = statistics == null
+                        ? internalSig.matches(targetFile, maxBytesToScan, sequenceIds, sequenceResults)
+                        : statistics.matches(internalSig, targetFile, maxBytesToScan, sequenceIds, sequenceResults);
+                if (matched) {
+                    matchingSigs.add(internalSig);
+                }
+                word &= word - 1;
+            }
+        }
+        return matchingSigs;
+    }
+
+    /**
+     * @return The number of signatures which are always run, as they have no fixed offset anchor.
+     */
+    public int getNumUnfilteredSignatures() {
+        int count = 0;
+        for (long word : alwaysCandidates) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of byte sequences in all the signatures.
+     */
+    public int getNumSequences() {
+        return sequenceTable.getNumSequences();
+    }
+
+    /**
+     * @return The number of distinct byte sequences in all the signatures, each matched at most once per file.
+     */
+    public int getNumDistinctSequences() {
+        return sequenceTable.getNumDistinctSequences();
+    }
+
+    /**
+     * @return The number of signatures indexed by the prefilter.
+     */
+    public int getNumSignatures() {
+        return signatures.length;
+    }
+
+    private long[] getCandidates(final ByteReader targetFile) {
+        final long[] candidates = alwaysCandidates.clone();
+        final WindowReader reader = targetFile.getWindowReader();
+        final long lastBytePosition = targetFile.getNumBytes() - 1;
+        for (final AnchorIndex index : bofIndexes) {
+            index.addCandidates(reader, index.offset, candidates);
+        }
+        for (final AnchorIndex index : eofIndexes) {
+            index.addCandidates(reader, lastBytePosition - index.offset, candidates);
+        }
+        return candidates;
+    }
+
+    /*
+     * Adds the signature to an anchor index if it has a byte sequence anchored at a fixed offset.
+     * Any byte sequence in a signature must match for the signature to match, so the first
+     * suitable sequence is used (the sequences are already sorted with BOF sequences first).
+     */
+    private boolean indexSignature(final int sigIndex, final InternalSignature signature,
+                                   final Map<Long, AnchorIndex> bofAnchors, final Map<Long, AnchorIndex> eofAnchors) {
+        for (final ByteSequence sequence : signature.getByteSequences()) {
+            if (!sequence.hasIndirectOffset() && sequence.getNumberOfSubSequences() > 0) {
+                final List<SubSequence> subSequences = sequence.getSubSequences();
+                if (sequence.isAnchoredToBOF() && !sequence.isReverseOrder()) {
+                    final SubSequence first = subSequences.get(0);
+                    if (isFixedAnchor(first, true)) {
+                        final SequenceMatcher anchor = first.getAnchorMatcher();
+                        getIndex(bofAnchors, first.getMinSeqOffset()).add(sigIndex, anchor.getMatcherForPosition(0));
+                        return true;
+                    }
+                } else if (sequence.isAnchoredToEOF() && sequence.isReverseOrder()) {
+                    final SubSequence last = subSequences.get(subSequences.size() - 1);
+                    if (isFixedAnchor(last, false)) {
+                        final SequenceMatcher anchor = last.getAnchorMatcher();
+                        getIndex(eofAnchors, last.getMinSeqOffset())
+                                .add(sigIndex, anchor.getMatcherForPosition(anchor.length() - 1));
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * A subsequence anchor has a single fixed position if its min and max offsets are the same,
+     * and there are no fragments between it and the end of the file it is anchored to.
+     */
+    private static boolean isFixedAnchor(final SubSequence subSequence, final boolean fromBOF) {
+        return subSequence.getAnchorMatcher() != null
+                && subSequence.getMinSeqOffset() == subSequence.getMaxSeqOffset()
+                && subSequence.getNumFragmentPositions(fromBOF) == 0;
+    }
+
+    private AnchorIndex getIndex(final Map<Long, AnchorIndex> anchors, final long offset) {
+        AnchorIndex index = anchors.get(offset);
+        if (index == null) {
+            index = new AnchorIndex(offset);
+            anchors.put(offset, index);
+        }
+        return index;
+    }
+
+    private static int numWords(final int numBits) {
+        return (numBits + BITS_PER_WORD - 1) >>> WORD_SHIFT;
+    }
+
+    private static void setBit(final long[] words, final int bitIndex) {
+        words[bitIndex >>> WORD_SHIFT] |= 1L << bitIndex;
+    }
+
+    /**
+     * The signatures which can match each byte value at a single offset from the beginning or end of a file.
+     */
+    private static final class AnchorIndex {
+
+        private final long offset;
+        private final int[][] signaturesForByte = new int[BYTE_VALUES][];
+        private final int[] sizes = new int[BYTE_VALUES];
+
+        AnchorIndex(final long offset) {
+            this.offset = offset;
+        }
+
+        void add(final int sigIndex, final ByteMatcher matcher) {
+            for (final byte value : matcher.getMatchingBytes()) {
+                final int byteIndex = value & BYTE_MASK;
+                int[] sigs = signaturesForByte[byteIndex];
+                if (sigs == null) {
+                    sigs = new int[2];
+                } else if (sizes[byteIndex] == sigs.length) {
+                    final int[] newSigs = new int[sigs.length * 2];
+                    System.arraycopy(sigs, 0, newSigs, 0, sigs.length);
+                    sigs = newSigs;
+                }
+                sigs[sizes[byteIndex]++] = sigIndex;
+                signaturesForByte[byteIndex] = sigs;
+            }
+        }
+
+        void addCandidates(final WindowReader reader, final long position, final long[] candidates) {
+            if (position >= 0) {
+                int byteValue;
+                try {
+                    byteValue = reader.readByte(position);
+                } catch (IOException e) {
+                    byteValue = -1;
+                }
+                if (byteValue >= 0) {
+                    final int[] sigs = signaturesForByte[byteValue];
+                    final int numSigs = sizes[byteValue];
+                    for (int i = 0; i < numSigs; i++) {
+                        setBit(candidates, sigs[i]);
+                    }
+                }
+            }
+        }
+    }
+
+}
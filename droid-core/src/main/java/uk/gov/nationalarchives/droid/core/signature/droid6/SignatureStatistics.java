@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+
+/**
+ * Records the cost of running each internal signature: how often it is run, how often it matches,
+ * how many bytes it examines and how long it takes.  Statistics are only recorded for signatures run
+ * by an {@link InternalSignatureCollection} the statistics have been set on.
+ *
+ * <p>The bytes examined by a signature are the sizes of the windows its subsequences search,
+ * after they are limited by the size of the file and the maximum bytes to scan.  The search skips
+ * over many of the bytes in a window, so this is an upper bound on the bytes actually read,
+ * but it is proportional to the work each signature asks for.</p>
+ *
+ * <p>The statistics can be used concurrently by many threads, and can be registered as an MBean,
+ * so they can be inspected and reset over JMX while a profile runs.</p>
+ */
+public final class SignatureStatistics implements SignatureStatisticsMBean {
+
+    /**
+     * The JMX domain under which statistics are registered.
+     */
+    public static final String JMX_DOMAIN = "uk.gov.nationalarchives.droid";
+
+    /**
+     * The JMX type of registered statistics.
+     */
+    public static final String JMX_TYPE = "SignatureStatistics";
+
+    private static final String REPORT_HEADER =
+            "Rank\tSignature\tPUIDs\tInvocations\tHits\tHit rate %%\tBytes examined\tTime ms\tMean time us%n";
+    private static final String REPORT_LINE = "%d\t%d\t%s\t%d\t%d\t%.2f\t%d\t%.3f\t%.3f%n";
+    private static final double PERCENT = 100.0;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    /*
+     * The bytes examined by the signature being run on each thread.  Subsequences add to this while searching,
+     * but only while some collection has statistics set, so there is no cost to matching when none are recorded.
+     */
+    private static final ThreadLocal<long[]> BYTES_EXAMINED = ThreadLocal.withInitial(() -> new long[1]);
+    private static final AtomicInteger COLLECTIONS_RECORDING = new AtomicInteger();
+
+    private final ConcurrentMap<Integer, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Adds to the bytes examined by the signature currently being run on this thread.
+     *
+     * @param bytes The number of bytes in a window which is about to be searched.
+     */
+    static void addBytesExamined(final long bytes) {
+        if (isRecording()) {
+            BYTES_EXAMINED.get()[0] += bytes;
+        }
+    }
+
+    /**
+     * Called when statistics are set on a collection which had none.
+     */
+    static void startRecording() {
+        COLLECTIONS_RECORDING.incrementAndGet();
+    }
+
+    /**
+     * Called when statistics are removed from a collection.
+     */
+    static void stopRecording() {
+        COLLECTIONS_RECORDING.decrementAndGet();
+    }
+
+    /**
+     * @return Whether any collection has statistics set, so the bytes examined by subsequences are recorded.
+     */
+    static boolean isRecording() {
+        return COLLECTIONS_RECORDING.get() > 0;
+    }
+
+    /**
+     * Runs an internal signature against the target file, recording its cost.
+     *
+     * @param signature The signature to run.
+     * @param targetFile The file to match the signature against.
+     * @param maxBytesToScan The maximum bytes to scan.
+     * @return Whether the signature matches the target file or not.
+     */
+    public boolean matches(final InternalSignature signature, final ByteReader targetFile, final long maxBytesToScan) {
+        return matches(signature, targetFile, maxBytesToScan, null, null);
+    }
+
+    /**
+     * Runs an internal signature against the target file, sharing the results of byte sequences
+     * with other signatures, and recording its cost.  The cost of a shared byte sequence is
+     * recorded against the first signature which matches it.
+     *
+     * @param signature The signature to run.
+     * @param targetFile The file to match the signature against.
+     * @param maxBytesToScan The maximum bytes to scan.
+     * @param sequenceIds The ids of the signature's byte sequences, or null if results are not shared.
+     * @param sequenceResults The results of the byte sequences already matched, or null if results are not shared.
+     * @return Whether the signature matches the target file or not.
+     */
+    public boolean matches(final InternalSignature signature, final ByteReader targetFile, final long maxBytesToScan,
+                           final int[] sequenceIds, final byte[] sequenceResults) {
+        final long[] bytesExamined = BYTES_EXAMINED.get();
+        bytesExamined[0] = 0;
+        final long startTime = System.nanoTime();
+        final boolean matched = sequenceIds == null
+                ? signature.matches(targetFile, maxBytesToScan)
+                : signature.matches(targetFile, maxBytesToScan, sequenceIds, sequenceResults);
+        final long elapsed = System.nanoTime() - startTime;
+        getCounters(signature).record(matched, elapsed, bytesExamined[0]);
+        return matched;
+    }
+
+    /**
+     * @return The cost of each signature run so far, ordered by the time taken, most expensive first.
+     */
+    public List<Entry> getRankedEntries() {
+        final List<Entry> entries = new ArrayList<>(counters.size());
+        for (Counters signatureCounters : counters.values()) {
+            entries.add(signatureCounters.snapshot());
+        }
+        Collections.sort(entries, Comparator.comparingLong(Entry::getNanos).reversed()
+                .thenComparingInt(Entry::getSignatureID));
+        return entries;
+    }
+
+    @Override
+    public int getSignaturesRun() {
+        return counters.size();
+    }
+
+    @Override
+    public long getInvocations() {
+        long total = 0;
+        for (Counters signatureCounters : counters.values()) {
+            total += signatureCounters.invocations.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getHits() {
+        long total = 0;
+        for (Counters signatureCounters : counters.values()) {
+            total += signatureCounters.hits.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesExamined() {
+        long total = 0;
+        for (Counters signatureCounters : counters.values()) {
+            total += signatureCounters.bytesExamined.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTimeMillis() {
+        long total = 0;
+        for (Counters signatureCounters : counters.values()) {
+            total += signatureCounters.nanos.sum();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    @Override
+    public String getRankedReport() {
+        return rankedReport(0);
+    }
+
+    @Override
+    public String rankedReport(final int limit) {
+        final List<Entry> entries = getRankedEntries();
+        final int numEntries = limit > 0 ? Math.min(limit, entries.size()) : entries.size();
+        final StringBuilder report = new StringBuilder(String.format(REPORT_HEADER));
+        for (int rank = 0; rank < numEntries; rank++) {
+            final Entry entry = entries.get(rank);
+            report.append(String.format(REPORT_LINE, rank + 1, entry.getSignatureID(), entry.getPuids(),
+                    entry.getInvocations(), entry.getHits(), entry.getHitRate() * PERCENT, entry.getBytesExamined(),
+                    entry.getNanos() / NANOS_PER_MILLI, entry.getMeanNanos() / NANOS_PER_MICRO));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        counters.clear();
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server, replacing any statistics
+     * already registered under the same name.
+     *
+     * @param name The name to register the statistics under, e.g. the id of the profile they are recorded for.
+     * @return The object name the statistics were registered under.
+     * @throws JMException If the statistics could not be registered.
+     */
+    public ObjectName register(final String name) throws JMException {
+        final ObjectName objectName = getObjectName(name);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregisters statistics from the platform MBean server, if they are still registered.
+     *
+     * @param objectName The object name the statistics were registered under.
+     * @throws JMException If the statistics could not be unregistered.
+     */
+    public static void unregister(final ObjectName objectName) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    /**
+     * @param name The name statistics are registered under.
+     * @return The JMX object name of statistics registered under that name.
+     * @throws MalformedObjectNameException If the name cannot be used in an object name.
+     */
+    public static ObjectName getObjectName(final String name) throws MalformedObjectNameException {
+        return new ObjectName(JMX_DOMAIN + ":type=" + JMX_TYPE + ",name=" + ObjectName.quote(name));
+    }
+
+    private Counters getCounters(final InternalSignature signature) {
+        final Integer signatureID = signature.getID();
+        final Counters signatureCounters = counters.get(signatureID);
+        return signatureCounters != null ? signatureCounters
+                : counters.computeIfAbsent(signatureID, id -> new Counters(signature));
+    }
+
+    /**
+     * The running totals for a single signature.
+     */
+    private static final class Counters {
+
+        private final InternalSignature signature;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder bytesExamined = new LongAdder();
+
+        Counters(final InternalSignature signature) {
+            this.signature = signature;
+        }
+
+        void record(final boolean matched, final long elapsed, final long bytes) {
+            invocations.increment();
+            if (matched) {
+                hits.increment();
+            }
+            nanos.add(elapsed);
+            bytesExamined.add(bytes);
+        }
+
+        Entry snapshot() {
+            final StringBuilder puids = new StringBuilder();
+            final int numFormats = signature.getNumFileFormats();
+            for (int formatIndex = 0; formatIndex < numFormats; formatIndex++) {
+                if (formatIndex > 0) {
+                    puids.append(' ');
+                }
+                puids.append(signature.getFileFormat(formatIndex).getPUID());
+            }
+            return new Entry(signature.getID(), puids.toString(), invocations.sum(), hits.sum(),
+                    nanos.sum(), bytesExamined.sum());
+        }
+    }
+
+    /**
+     * The cost of a single signature at the time the statistics were read.
+     */
+    public static final class Entry {
+
+        private final int signatureID;
+        private final String puids;
+        private final long invocations;
+        private final long hits;
+        private final long nanos;
+        private final long bytesExamined;
+
+        /**
+         * @param signatureID The id of the signature.
+         * @param puids The PUIDs of the formats the signature identifies, separated by spaces.
+         * @param invocations The number of times the signature was run.
+         * @param hits The number of times the signature matched.
+         * @param nanos The total time taken running the signature, in nanoseconds.
+         * @param bytesExamined The total bytes in the windows the signature searched.
+         */
+        public Entry(final int signatureID, final String puids, final long invocations, final long hits,
+                     final long nanos, final long bytesExamined) {
+            this.signatureID = signatureID;
+            this.puids = puids;
+            this.invocations = invocations;
+            this.hits = hits;
+            this.nanos = nanos;
+            this.bytesExamined = bytesExamined;
+        }
+
+        /**
+         * @return The id of the signature.
+         */
+        public int getSignatureID() {
+            return signatureID;
+        }
+
+        /**
+         * @return The PUIDs of the formats the signature identifies, separated by spaces.
+         */
+        public String getPuids() {
+            return puids;
+        }
+
+        /**
+         * @return The number of times the signature was run.
+         */
+        public long getInvocations() {
+            return invocations;
+        }
+
+        /**
+         * @return The number of times the signature matched.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return The proportion of runs in which the signature matched, from 0 to 1.
+         */
+        public double getHitRate() {
+            return invocations == 0 ? 0 : (double) hits / invocations;
+        }
+
+        /**
+         * @return The total time taken running the signature, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return The mean time taken by each run of the signature, in nanoseconds.
+         */
+        public double getMeanNanos() {
+            return invocations == 0 ? 0 : (double) nanos / invocations;
+        }
+
+        /**
+         * @return The total bytes in the windows the signature searched.
+         */
+        public long getBytesExamined() {
+            return bytesExamined;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+/**
+ * The management interface of {@link SignatureStatistics}, exposed over JMX.
+ */
+public interface SignatureStatisticsMBean {
+
+    /**
+     * @return The number of distinct signatures which have been run.
+     */
+    int getSignaturesRun();
+
+    /**
+     * @return The total number of times any signature has been run.
+     */
+    long getInvocations();
+
+    /**
+     * @return The total number of times any signature has matched.
+     */
+    long getHits();
+
+    /**
+     * @return The total number of bytes in the windows searched by all signatures.
+     */
+    long getBytesExamined();
+
+    /**
+     * @return The total time spent running signatures, in milliseconds.
+     */
+    long getTimeMillis();
+
+    /**
+     * @return A report of all the signatures run, most expensive first.
+     */
+    String getRankedReport();
+
+    /**
+     * @param limit The maximum number of signatures to report, or zero or less to report all of them.
+     * @return A report of the signatures which took the most time, most expensive first.
+     */
+    String rankedReport(int limit);
+
+    /**
+     * Discards the statistics recorded so far.
+     */
+    void reset();
+}
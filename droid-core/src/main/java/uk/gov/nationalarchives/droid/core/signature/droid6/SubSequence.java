@@ -915,6 +915,35 @@ public class SubSequence extends SimpleElement {
         return getClass().getSimpleName() + '[' + toRegularExpression(true) + ']';
     }
 
+    /**
+     * Appends everything which determines how this subsequence matches to a key, so that
+     * subsequences which always match in the same way have the same key.
+     * Unlike the regular expression, this includes the offsets of each alternative fragment.
+     *
+     * @param key The key to append to.
+     */
+    void appendMatchKey(final StringBuilder key) {
+        key.append(minSeqOffset).append(',').append(maxSeqOffset).append(',')
+           .append(fullFileScan).append(',').append(backwardsSearch).append(',')
+           .append(matcher == null ? "" : matcher.toRegularExpression(false));
+        appendFragmentMatchKeys(key, orderedLeftFragments);
+        appendFragmentMatchKeys(key, orderedRightFragments);
+    }
+
+    private static void appendFragmentMatchKeys(final StringBuilder key,
+                                                final List<List<SideFragment>> orderedFragments) {
+        key.append('[');
+        for (List<SideFragment> alternatives : orderedFragments) {
+            key.append('(');
+            for (SideFragment fragment : alternatives) {
+                key.append(fragment.getMinOffset()).append(',').append(fragment.getMaxOffset()).append(',')
+                   .append(fragment.toRegularExpression(false)).append('|');
+            }
+            key.append(')');
+        }
+        key.append(']');
+    }
+
     /** Uses the Boyer-Moore-Horspool search algorithm to find a sequence within a window
      * on a file.
      *
@@ -992,6 +1021,7 @@ public class SubSequence extends SimpleElement {
                 if (endSearchWindow < firstPossibleBytePosition) {
                     endSearchWindow = firstPossibleBytePosition;
                 }
+                SignatureStatistics.addBytesExamined(Math.max(0, startSearchWindow - endSearchWindow + matchLength));
 
                 long matchPosition = startSearchWindow;
                 while (matchPosition >= endSearchWindow) {
@@ -1108,6 +1138,7 @@ public class SubSequence extends SimpleElement {
                 if (endSearchWindow > lastPossibleBytePosition) {
                     endSearchWindow = lastPossibleBytePosition;
                 }
+                SignatureStatistics.addBytesExamined(Math.max(0, endSearchWindow - startSearchWindow + matchLength));
 
                 //long matchPosition = startSearchWindow;
                 long matchPosition = startSearchWindow;
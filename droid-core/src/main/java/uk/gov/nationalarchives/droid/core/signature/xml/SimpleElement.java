@@ -60,7 +60,8 @@ import org.slf4j.LoggerFactory;
  */
 public class SimpleElement {
 
-    private Logger log = LoggerFactory.getLogger(this.getClass());
+    // Created on first use: signature files build a great many elements, and rarely log.
+    private Logger log;
 
     private String myText = "";
 
@@ -117,7 +118,7 @@ public class SimpleElement {
      */
     public void unknownAttributeWarning(String unknownAttribute, String containerElement) {
         final String warning = "WARNING: Unknown XML attribute " + unknownAttribute + " found for " + containerElement;
-        log.debug(warning);
+        getLog().debug(warning);
     }    
     
     /**
@@ -127,7 +128,7 @@ public class SimpleElement {
      */
     public void generalWarning(String theWarning) {
         String theMessage = "WARNING: " + theWarning.replaceFirst("java.lang.Exception: ", "");
-        log.debug(theMessage);
+        getLog().debug(theMessage);
     }    
     
     /**
@@ -135,6 +136,9 @@ public class SimpleElement {
      * @return the log object owned by SimpleElement.
      */
     protected Logger getLog() {
+        if (log == null) {
+            log = LoggerFactory.getLogger(this.getClass());
+        }
         return log;
     }
 }
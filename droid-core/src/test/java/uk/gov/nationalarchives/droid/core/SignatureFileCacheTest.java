@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.signature.FileFormat;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SignatureFileCacheTest {
+
+    private static final Path SIGNATURE_FILE = Paths.get("test_sig_files/DROID_SignatureFile_V95.xml");
+    private static final String[] SCAN_FILES = {"test_sig_files/DROID.jpeg", "test_sig_files/sample.pdf",
+            "test_sig_files/819913.eps", "test_sig_files/saved.zip", "test_sig_files/DROID 5  Architecture.doc"};
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testParsingWritesCacheInTheCacheDirectory() throws Exception {
+        Path sigFile = copySignatureFile();
+        Path cacheFile = getCacheFile(sigFile);
+        assertEquals(cacheDirectory(), cacheFile.getParent());
+        assertTrue(cacheFile.getFileName().toString().endsWith(".sigcache"));
+        assertFalse(Files.exists(cacheFile));
+
+        cachingParser().parseSigFile(sigFile);
+        assertTrue(Files.exists(cacheFile));
+        assertTrue(Files.size(cacheFile) < Files.size(sigFile));
+        // nothing is written next to the signature file:
+        try (Stream<Path> files = Files.list(sigFile.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testSignatureFilesAreNotCachedWithoutACacheDirectory() throws Exception {
+        Path sigFile = copySignatureFile();
+        newIdentifier(sigFile, false);
+        assertFalse(Files.exists(cacheDirectory()));
+        try (Stream<Path> files = Files.list(sigFile.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testCachedModelMatchesParsedModel() throws Exception {
+        Path sigFile = copySignatureFile();
+        cachingParser().parseSigFile(sigFile); // writes the cache.
+
+        FFSignatureFile parsed = new SignatureFileParser().parseSigFile(sigFile);
+        FFSignatureFile cached = cachingParser().parseSigFile(sigFile);
+        assertEquals(describe(parsed), describe(cached));
+    }
+
+    @Test
+    public void testCachedSignaturesIdentifyTheSameFormats() throws Exception {
+        Path sigFile = copySignatureFile();
+        BinarySignatureIdentifier parsed = newIdentifier(sigFile, false);
+        newIdentifier(sigFile, true); // writes the cache.
+        BinarySignatureIdentifier cached = newIdentifier(sigFile, true);
+
+        for (String scanFile : SCAN_FILES) {
+            assertEquals(scanFile, identify(parsed, Paths.get(scanFile)), identify(cached, Paths.get(scanFile)));
+        }
+    }
+
+    @Test
+    public void testCacheIsIgnoredWhenSignatureFileChanges() throws Exception {
+        Path sigFile = copySignatureFile();
+        cachingParser().parseSigFile(sigFile);
+
+        Path otherSigFile = Paths.get("test_sig_files/DROID_SignatureFile_x-fmt-91-only.xml");
+        Files.copy(otherSigFile, sigFile, StandardCopyOption.REPLACE_EXISTING);
+
+        List<String> expected = describe(new SignatureFileParser().parseSigFile(otherSigFile));
+        assertEquals(expected, describe(cachingParser().parseSigFile(sigFile)));
+        // the cache is rewritten for the new signature file:
+        assertEquals(expected, describe(cachingParser().parseSigFile(sigFile)));
+    }
+
+    @Test
+    public void testCacheIsUsedWithoutReadingTheSignatureFile() throws Exception {
+        Path sigFile = copySignatureFile();
+        FFSignatureFile parsed = cachingParser().parseSigFile(sigFile);
+
+        // Same size and modified time, but content which can't be parsed:
+        FileTime modified = Files.getLastModifiedTime(sigFile);
+        Files.write(sigFile, new byte[(int) Files.size(sigFile)]);
+        Files.setLastModifiedTime(sigFile, modified);
+
+        assertEquals(describe(parsed), describe(cachingParser().parseSigFile(sigFile)));
+    }
+
+    @Test
+    public void testCacheIsIgnoredWhenSignatureFileIsModified() throws Exception {
+        Path sigFile = copySignatureFile();
+        cachingParser().parseSigFile(sigFile);
+        byte[] cache = Files.readAllBytes(getCacheFile(sigFile));
+
+        Files.setLastModifiedTime(sigFile, FileTime.fromMillis(Files.getLastModifiedTime(sigFile).toMillis() + 2000));
+        cachingParser().parseSigFile(sigFile);
+        assertFalse(Arrays.equals(cache, Files.readAllBytes(getCacheFile(sigFile))));
+    }
+
+    @Test
+    public void testMixedContentIsReplayedInOrder() throws Exception {
+        Path cacheFile = cacheDirectory().resolve("mixed" + SignatureFileCache.CACHE_EXTENSION);
+        byte[] key = {1, 2, 3};
+        EventList recorded = new EventList();
+        SignatureFileCache.Recorder recorder = SignatureFileCache.newRecorder(recorded);
+        recorder.startElement("", "a", "a", new AttributesImpl());
+        characters(recorder, "before ");
+        characters(recorder, "child");
+        recorder.startElement("", "b", "b", new AttributesImpl());
+        characters(recorder, "inside");
+        recorder.endElement("", "b", "b");
+        characters(recorder, " after child");
+        recorder.endElement("", "a", "a");
+        recorder.write(cacheFile, key);
+
+        EventList replayed = new EventList();
+        assertTrue(SignatureFileCache.replay(cacheFile, key, replayed));
+        assertEquals(Arrays.asList("<a>", "before child", "<b>", "inside", "</b>", " after child", "</a>"),
+                replayed.events);
+        assertFalse(SignatureFileCache.replay(cacheFile, new byte[] {1, 2, 4}, new EventList()));
+    }
+
+    @Test
+    public void testCorruptCacheFallsBackToSignatureFile() throws Exception {
+        Path sigFile = copySignatureFile();
+        cachingParser().parseSigFile(sigFile);
+        Path cacheFile = getCacheFile(sigFile);
+        byte[] cache = Files.readAllBytes(cacheFile);
+        byte[] truncated = new byte[cache.length / 2];
+        System.arraycopy(cache, 0, truncated, 0, truncated.length);
+        Files.write(cacheFile, truncated);
+
+        FFSignatureFile expected = new SignatureFileParser().parseSigFile(sigFile);
+        assertEquals(describe(expected), describe(cachingParser().parseSigFile(sigFile)));
+        assertEquals(cache.length, Files.size(cacheFile));
+    }
+
+    @Test
+    public void testCorruptLengthsAreRejected() throws Exception {
+        Path cacheFile = cacheDirectory().resolve("lengths" + SignatureFileCache.CACHE_EXTENSION);
+        byte[] key = {1, 2, 3};
+        for (int length : new int[] {-1, Integer.MIN_VALUE, 6, Integer.MAX_VALUE}) {
+            writeTextCache(cacheFile, key, length);
+            try {
+                SignatureFileCache.replay(cacheFile, key, new EventList());
+                fail("Expected an IOException for a length of " + length);
+            } catch (IOException e) {
+                // expected.
+            }
+        }
+    }
+
+    @Test
+    public void testCacheWithCorruptLengthIsReplacedFromSignatureFile() throws Exception {
+        Path sigFile = copySignatureFile();
+        Path cacheFile = getCacheFile(sigFile);
+        Files.createDirectories(cacheFile.getParent());
+        writeTextCache(cacheFile, SignatureFileCache.key(sigFile), Integer.MAX_VALUE);
+
+        FFSignatureFile expected = new SignatureFileParser().parseSigFile(sigFile);
+        assertEquals(describe(expected), describe(cachingParser().parseSigFile(sigFile)));
+        assertTrue(SignatureFileCache.replay(cacheFile, SignatureFileCache.key(sigFile), new EventList()));
+    }
+
+    /*
+     * Writes a cache of an element holding the text "hello", with the length recorded for the text replaced.
+     */
+    private static void writeTextCache(Path cacheFile, byte[] key, int textLength) throws Exception {
+        SignatureFileCache.Recorder recorder = SignatureFileCache.newRecorder(new EventList());
+        recorder.startElement("", "a", "a", new AttributesImpl());
+        characters(recorder, "hello");
+        recorder.endElement("", "a", "a");
+        recorder.write(cacheFile, key);
+        // The text length comes before the text, the end element tag and the end of the cache.
+        byte[] cache = Files.readAllBytes(cacheFile);
+        ByteBuffer.wrap(cache).putInt(cache.length - 2 - "hello".length() - 4, textLength);
+        Files.write(cacheFile, cache);
+    }
+
+    private Path copySignatureFile() throws IOException {
+        Path sigFile = temp.newFolder("signatures").toPath().resolve(SIGNATURE_FILE.getFileName());
+        Files.copy(SIGNATURE_FILE, sigFile);
+        return sigFile;
+    }
+
+    private Path cacheDirectory() {
+        return temp.getRoot().toPath().resolve("cache");
+    }
+
+    private Path getCacheFile(Path sigFile) {
+        return SignatureFileCache.getCacheFile(cacheDirectory(), sigFile);
+    }
+
+    private static void characters(DefaultHandler handler, String text) throws Exception {
+        handler.characters(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Records the elements and text it is sent, joining consecutive text.
+     */
+    private static final class EventList extends DefaultHandler {
+        private final List<String> events = new ArrayList<>();
+        private boolean inText;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            events.add("<" + localName + ">");
+            inText = false;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.add("</" + localName + ">");
+            inText = false;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            String text = new String(ch, start, length);
+            if (inText) {
+                events.set(events.size() - 1, events.get(events.size() - 1) + text);
+            } else {
+                events.add(text);
+            }
+            inText = true;
+        }
+    }
+
+    private SignatureFileParser cachingParser() {
+        SignatureFileParser parser = new SignatureFileParser();
+        parser.setCacheDirectory(cacheDirectory());
+        return parser;
+    }
+
+    private BinarySignatureIdentifier newIdentifier(Path sigFile, boolean cache) throws Exception {
+        BinarySignatureIdentifier identifier = new BinarySignatureIdentifier();
+        identifier.setSignatureFile(sigFile.toString());
+        identifier.setSignatureCacheDir(cache ? cacheDirectory().toString() : null);
+        identifier.init();
+        return identifier;
+    }
+
+    private static List<String> identify(BinarySignatureIdentifier identifier, Path file) throws IOException {
+        RequestMetaData metaData = new RequestMetaData(Files.size(file), Files.getLastModifiedTime(file).toMillis(),
+                file.getFileName().toString());
+        RequestIdentifier id = new RequestIdentifier(file.toUri());
+        id.setParentId(1L);
+        List<String> puids = new ArrayList<>();
+        try (FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(metaData, id)) {
+            request.open(file);
+            for (IdentificationResult result : identifier.matchBinarySignatures(request).getResults()) {
+                puids.add(result.getPuid());
+            }
+        }
+        return puids;
+    }
+
+    private static List<String> describe(FFSignatureFile sigFile) {
+        sigFile.prepareForUse();
+        List<String> description = new ArrayList<>();
+        description.add(sigFile.getVersion() + " " + sigFile.getDateCreated());
+        for (FileFormat format : sigFile.getFileFormatCollection().getFileFormats()) {
+            description.add(format.getID() + " " + format.getPUID() + " " + format.getName() + " "
+                    + format.getVersion() + " " + format.getMimeType() + " " + format.getExtensions() + " "
+                    + format.getNumInternalSignatures() + " " + format.getFormatIdsHasPriorityOver());
+        }
+        for (InternalSignature signature : sigFile.getSignatures()) {
+            description.add(signature.getID() + " " + signature.isSpecific() + " " + signature.getFileFormatDescriptions()
+                    + " " + signature.toRegularExpressions());
+        }
+        return description;
+    }
+}
@@ -42,6 +42,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.junit.Before;
@@ -67,11 +68,102 @@ public class ThreadPoolExecutorTest {
     }
     
     @Test
-    public void testPoolBlocksWhenMoreThanTenTasksAreQueued() throws Exception {
+    public void testSubmitterBlocksWhenTheQueueIsFull() throws Exception {
+        startLatch = new CountDownLatch(10);
+        factory.setPoolSize(10);
+        factory.setWorkQueueSize(5);
+        factory.setKeepAliveTimeMillis(1000);
+
+        final ThreadPoolExecutor executor = factory.newInstance();
+
+        // Saturate the thread pool and the queue
+        final AtomicInteger count = new AtomicInteger();
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 22; i++) {
+                    Callable<Object> task = new TestTask();
+                    executor.submit(task);
+                    count.incrementAndGet();
+                }
+            }
+        };
+        t.start();
+
+        startLatch.await();
+        awaitBlocked(t);
+
+        // We expect 10 tasks running, 5 queued and the submitter waiting to queue another.
+        assertEquals(5, executor.getQueue().size());
+        assertEquals(15, count.intValue());
+
+        stopLatch.countDown();
+        t.join(5000);
+        assertEquals(22, count.intValue());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPoolThreadRunsTaskItselfWhenItsQueueIsFull() throws Exception {
+        factory.setPoolSize(1);
+        factory.setWorkQueueSize(1);
+
+        final ThreadPoolExecutor executor = factory.newInstance();
+
+        final Callable<String> threadName = new Callable<String>() {
+            @Override
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        };
+
+        Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                executor.submit(threadName); // queued
+                Future<String> inline = executor.submit(threadName); // queue full - must not wait for itself.
+                return inline.isDone() && Thread.currentThread().getName().equals(inline.get());
+            }
+        });
+
+        assertTrue(result.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testPoolSizeDefaultsToTheAvailableProcessors() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        assertEquals(processors, factory.newInstance().getCorePoolSize());
+
+        factory.setPoolSize(0);
+        final ThreadPoolExecutor executor = factory.newInstance();
+        assertEquals(processors, executor.getCorePoolSize());
+        assertEquals(processors, executor.getMaximumPoolSize());
+    }
+
+    @Test
+    public void testQueueIsSizedFromThePoolSize() {
+        factory.setPoolSize(4);
+        assertEquals(8, factory.newInstance().getQueue().remainingCapacity());
+
+        factory.setWorkQueueTasksPerThread(3);
+        assertEquals(12, factory.newInstance().getQueue().remainingCapacity());
+
+        factory.setWorkQueueTasksPerThread(0);
+        assertEquals(8, factory.newInstance().getQueue().remainingCapacity());
+
+        factory.setWorkQueueSize(7);
+        assertEquals(7, factory.newInstance().getQueue().remainingCapacity());
+    }
+
+    @Test
+    public void testCallerRunsTasksWhenTheQueueIsFull() throws Exception {
         factory.setCorePoolSize(10);
         factory.setMaxPoolSize(10);
         factory.setWorkQueueSize(5);
         factory.setKeepAliveTimeMillis(1000);
+        factory.setBlockWhenFull(false);
         
         final ThreadPoolExecutor executor = factory.newInstance();
         
@@ -90,13 +182,14 @@ public class ThreadPoolExecutorTest {
         t.start();
         
         startLatch.await();
-        assertEquals(0, executor.getQueue().size());
+        assertEquals(5, executor.getQueue().size());
         
-        // We expect 10 tasks running
-        assertEquals(10, count.intValue());
+        // We expect 10 tasks running, 5 queued and one running in the caller.
+        assertEquals(15, count.intValue());
         
         stopLatch.countDown();
         executor.awaitTermination(100, TimeUnit.MILLISECONDS);
+        t.join(5000);
         assertEquals(0, executor.getQueue().size());
         assertEquals(22, count.intValue());
         
@@ -108,6 +201,7 @@ public class ThreadPoolExecutorTest {
         factory.setMaxPoolSize(10);
         factory.setWorkQueueSize(5);
         factory.setKeepAliveTimeMillis(1000);
+        factory.setBlockWhenFull(false);
         
         final ThreadPoolExecutor executor = factory.newInstance();
         
@@ -126,10 +220,10 @@ public class ThreadPoolExecutorTest {
         t.start();
         
         startLatch.await();
-        assertEquals(0, executor.getQueue().size());
+        assertEquals(5, executor.getQueue().size());
         
-        // We expect 10 tasks running
-        assertEquals(10, count.intValue());
+        // We expect 10 tasks running, 5 queued and one running in the caller.
+        assertEquals(15, count.intValue());
         
         executor.shutdown();
         try {
@@ -141,11 +235,51 @@ public class ThreadPoolExecutorTest {
         
         stopLatch.countDown();
         executor.awaitTermination(100, TimeUnit.MILLISECONDS);
+        t.join(5000);
         assertEquals(0, executor.getQueue().size());
-        // We expect the 10 tasks which have already been queued to have run.
-        assertEquals(11, count.intValue());
+        // We expect the tasks which have already been queued, and the one run by the caller, to have run.
+        assertEquals(16, count.intValue());
         
     }
+
+    @Test
+    public void testBlockedSubmitterIsRejectedAfterShutdown() throws Exception {
+        startLatch = new CountDownLatch(1);
+        factory.setPoolSize(1);
+        factory.setWorkQueueSize(1);
+
+        final ThreadPoolExecutor executor = factory.newInstance();
+        executor.submit(new TestTask());
+        executor.submit(new TestTask());
+        startLatch.await();
+
+        final AtomicInteger rejected = new AtomicInteger();
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    executor.submit(new TestTask());
+                } catch (RejectedExecutionException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        };
+        t.start();
+        awaitBlocked(t);
+
+        executor.shutdownNow();
+        t.interrupt();
+        t.join(5000);
+        assertEquals(1, rejected.intValue());
+    }
+
+    private static void awaitBlocked(Thread t) throws InterruptedException {
+        final long giveUp = System.currentTimeMillis() + 5000;
+        while (t.getState() != Thread.State.WAITING && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.WAITING, t.getState());
+    }
     
     @Test
     public void testExceptionHandling() throws Exception {
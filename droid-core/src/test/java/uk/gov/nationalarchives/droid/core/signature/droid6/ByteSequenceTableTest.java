@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import uk.gov.nationalarchives.droid.core.IdentificationRequestByteReaderAdapter;
+import uk.gov.nationalarchives.droid.core.SignatureFileParser;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+
+/**
+ * Checks that structurally identical byte sequences share an id, and that their
+ * results are shared between signatures matched against the same file.
+ */
+public class ByteSequenceTableTest {
+
+    private static final String SIGFILE = "test_sig_files/DROID_SignatureFile_V95.xml";
+    private static final String RIFF_WAVE = "52494646{4}57415645";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIdenticalSequencesShareAnId() {
+        InternalSignature wave = newSignature(1, newSequence("BOFoffset", RIFF_WAVE));
+        InternalSignature waveWithTrailer = newSignature(2, newSequence("BOFoffset", RIFF_WAVE),
+                newSequence("EOFoffset", "00FF"));
+        InternalSignature offsetWave = newSignature(3, newSequence("BOFoffset", "{2}" + RIFF_WAVE));
+        InternalSignature eofWave = newSignature(4, newSequence("EOFoffset", RIFF_WAVE));
+
+        ByteSequenceTable table = new ByteSequenceTable(
+                new InternalSignature[] {wave, waveWithTrailer, offsetWave, eofWave});
+
+        assertEquals(5, table.getNumSequences());
+        assertEquals(4, table.getNumDistinctSequences());
+        assertEquals(table.getSequenceIds(0)[0], table.getSequenceIds(1)[0]);
+        assertNotEquals(table.getSequenceIds(0)[0], table.getSequenceIds(1)[1]);
+        assertNotEquals(table.getSequenceIds(0)[0], table.getSequenceIds(2)[0]);
+        assertNotEquals(table.getSequenceIds(0)[0], table.getSequenceIds(3)[0]);
+    }
+
+    @Test
+    public void testSharedSequenceResultsAreReused() throws IOException {
+        InternalSignature wave = newSignature(1, newSequence("BOFoffset", RIFF_WAVE));
+        InternalSignature waveWithTrailer = newSignature(2, newSequence("BOFoffset", RIFF_WAVE),
+                newSequence("EOFoffset", "00FF"));
+        ByteSequenceTable table = new ByteSequenceTable(new InternalSignature[] {wave, waveWithTrailer});
+
+        Path file = temporaryFolder.newFile("test.wav").toPath();
+        Files.write(file, new byte[] {'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'A', 'V', 'E', 0, (byte) 0xFF});
+        try (FileSystemIdentificationRequest request = openRequest(file)) {
+            ByteReader reader = new IdentificationRequestByteReaderAdapter(request);
+            byte[] results = table.newResults();
+            assertTrue(wave.matches(reader, -1, table.getSequenceIds(0), results));
+            assertEquals(ByteSequenceTable.MATCHED, results[table.getSequenceIds(0)[0]]);
+            assertTrue(waveWithTrailer.matches(reader, -1, table.getSequenceIds(1), results));
+
+            // A recorded result is used rather than matching the sequence again:
+            results = table.newResults();
+            results[table.getSequenceIds(0)[0]] = ByteSequenceTable.NOT_MATCHED;
+            assertFalse(waveWithTrailer.matches(reader, -1, table.getSequenceIds(1), results));
+            assertTrue(waveWithTrailer.matches(reader, -1));
+        }
+    }
+
+    @Test
+    public void testSignatureFileSharesSequences() throws Exception {
+        FFSignatureFile sigFile = new SignatureFileParser().parseSigFile(Paths.get(SIGFILE));
+        sigFile.prepareForUse();
+        SignaturePrefilter prefilter = new SignaturePrefilter(sigFile.getSignatures());
+        assertTrue(prefilter.getNumDistinctSequences() < prefilter.getNumSequences());
+    }
+
+    private static ByteSequence newSequence(String reference, String sequence) {
+        ByteSequence byteSequence = new ByteSequence();
+        byteSequence.setReference(reference);
+        byteSequence.setSequence(sequence);
+        return byteSequence;
+    }
+
+    private static InternalSignature newSignature(int id, ByteSequence... sequences) {
+        InternalSignature signature = new InternalSignature();
+        signature.setAttributeValue("ID", Integer.toString(id));
+        for (ByteSequence sequence : sequences) {
+            signature.addByteSequence(sequence);
+        }
+        signature.prepareForUse();
+        return signature;
+    }
+
+    private static FileSystemIdentificationRequest openRequest(Path file) throws IOException {
+        RequestMetaData metaData = new RequestMetaData(
+                Files.size(file), Files.getLastModifiedTime(file).toMillis(), file.getFileName().toString());
+        FileSystemIdentificationRequest request =
+                new FileSystemIdentificationRequest(metaData, new RequestIdentifier(file.toUri()));
+        request.open(file);
+        return request;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import uk.gov.nationalarchives.droid.core.IdentificationRequestByteReaderAdapter;
+import uk.gov.nationalarchives.droid.core.SignatureFileParser;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+
+/**
+ * Checks that the signature prefilter returns exactly the same matches as running
+ * every signature against every file in the skeleton test suite.
+ */
+public class SignaturePrefilterTest {
+
+    private static final String SIGFILE = "test_sig_files/DROID_SignatureFile_V95.xml";
+    private static final String[] TEST_FILE_DIRS = {"test-skeletons/fmt", "test-skeletons/x-fmt"};
+
+    private static FFSignatureFile sigFile;
+
+    @BeforeClass
+    public static void setupSignatures() throws Exception {
+        sigFile = new SignatureFileParser().parseSigFile(Paths.get(SIGFILE));
+        sigFile.prepareForUse();
+    }
+
+    @Test
+    public void testPrefilterIndexesMostSignatures() {
+        InternalSignatureCollection collection = new InternalSignatureCollection();
+        collection.setInternalSignatures(sigFile.getSignatures());
+        collection.prepareForUse();
+        SignaturePrefilter prefilter = collection.getPrefilter();
+        assertNotNull(prefilter);
+        assertEquals(sigFile.getSignatures().size(), prefilter.getNumSignatures());
+        assertTrue(prefilter.getNumUnfilteredSignatures() < prefilter.getNumSignatures() / 2);
+    }
+
+    @Test
+    public void testAddingSignatureDiscardsPrefilter() {
+        InternalSignatureCollection collection = new InternalSignatureCollection();
+        collection.setInternalSignatures(sigFile.getSignatures());
+        collection.prepareForUse();
+        collection.addInternalSignature(new InternalSignature());
+        assertEquals(null, collection.getPrefilter());
+    }
+
+    @Test
+    public void testPrefilterMatchesSameSignaturesAsFullScan() throws IOException {
+        final List<InternalSignature> signatures = sigFile.getSignatures();
+        final SignaturePrefilter prefilter = new SignaturePrefilter(signatures);
+        for (String dir : TEST_FILE_DIRS) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(dir))) {
+                for (Path file : files) {
+                    if (Files.isRegularFile(file) && Files.size(file) > 0) {
+                        try (FileSystemIdentificationRequest request = openRequest(file)) {
+                            ByteReader reader = new IdentificationRequestByteReaderAdapter(request);
+                            assertEquals(file.toString(), matchAll(signatures, reader),
+                                    prefilter.getMatchingSignatures(reader, -1));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<InternalSignature> matchAll(List<InternalSignature> signatures, ByteReader reader) {
+        List<InternalSignature> matches = new ArrayList<>();
+        for (InternalSignature signature : signatures) {
+            if (signature.matches(reader, -1)) {
+                matches.add(signature);
+            }
+        }
+        return matches;
+    }
+
+    private static FileSystemIdentificationRequest openRequest(Path file) throws IOException {
+        RequestMetaData metaData = new RequestMetaData(
+                Files.size(file), Files.getLastModifiedTime(file).toMillis(), file.getFileName().toString());
+        FileSystemIdentificationRequest request =
+                new FileSystemIdentificationRequest(metaData, new RequestIdentifier(file.toUri()));
+        request.open(file);
+        return request;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import uk.gov.nationalarchives.droid.core.IdentificationRequestByteReaderAdapter;
+import uk.gov.nationalarchives.droid.core.SignatureFileParser;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+
+/**
+ * Checks that signature statistics record the cost of each signature run,
+ * without changing which signatures match.
+ */
+public class SignatureStatisticsTest {
+
+    private static final String SIGFILE = "test_sig_files/DROID_SignatureFile_V95.xml";
+    private static final Path TEST_FILE = Paths.get("test-skeletons/fmt/fmt-14-signature-id-123.pdf");
+
+    private static FFSignatureFile sigFile;
+
+    @BeforeClass
+    public static void setupSignatures() throws Exception {
+        sigFile = new SignatureFileParser().parseSigFile(Paths.get(SIGFILE));
+        sigFile.prepareForUse();
+    }
+
+    @Test
+    public void testRecordsEachSignatureRun() throws IOException {
+        InternalSignatureCollection collection = newCollection();
+        List<InternalSignature> expected = match(collection);
+
+        SignatureStatistics statistics = new SignatureStatistics();
+        collection.setStatistics(statistics);
+        assertEquals(expected, match(collection));
+        assertEquals(expected, match(collection));
+
+        List<SignatureStatistics.Entry> entries = statistics.getRankedEntries();
+        assertEquals(statistics.getSignaturesRun(), entries.size());
+        assertTrue(entries.size() > expected.size());
+        assertEquals(expected.size() * 2, statistics.getHits());
+        long invocations = 0;
+        for (int index = 0; index < entries.size(); index++) {
+            SignatureStatistics.Entry entry = entries.get(index);
+            assertEquals(2, entry.getInvocations());
+            assertTrue(entry.getHitRate() == 0 || entry.getHitRate() == 1);
+            if (index > 0) {
+                assertTrue(entries.get(index - 1).getNanos() >= entry.getNanos());
+            }
+            invocations += entry.getInvocations();
+        }
+        assertEquals(invocations, statistics.getInvocations());
+        assertTrue(statistics.getBytesExamined() > 0);
+    }
+
+    @Test
+    public void testBytesExaminedAreOnlyRecordedWhileACollectionHasStatistics() {
+        final boolean recordingBefore = SignatureStatistics.isRecording();
+        InternalSignatureCollection collection = newCollection();
+        SignatureStatistics statistics = new SignatureStatistics();
+        assertEquals(recordingBefore, SignatureStatistics.isRecording());
+
+        collection.setStatistics(statistics);
+        collection.setStatistics(statistics);
+        assertTrue(SignatureStatistics.isRecording());
+
+        collection.setStatistics(null);
+        assertEquals(recordingBefore, SignatureStatistics.isRecording());
+    }
+
+    @Test
+    public void testRankedReportIsLimited() throws IOException {
+        InternalSignatureCollection collection = newCollection();
+        SignatureStatistics statistics = new SignatureStatistics();
+        collection.setStatistics(statistics);
+        match(collection);
+
+        String[] lines = statistics.rankedReport(3).split("\\R");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("Rank\tSignature"));
+        assertTrue(lines[1].startsWith("1\t" + statistics.getRankedEntries().get(0).getSignatureID() + "\t"));
+        assertEquals(statistics.getSignaturesRun() + 1, statistics.getRankedReport().split("\\R").length);
+
+        statistics.reset();
+        assertEquals(0, statistics.getSignaturesRun());
+        assertEquals(0, statistics.getInvocations());
+    }
+
+    @Test
+    public void testRegistersWithJmx() throws IOException, JMException {
+        InternalSignatureCollection collection = newCollection();
+        SignatureStatistics statistics = new SignatureStatistics();
+        collection.setStatistics(statistics);
+        match(collection);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = statistics.register("test profile");
+        try {
+            assertEquals(SignatureStatistics.getObjectName("test profile"), name);
+            assertEquals(statistics.getInvocations(), server.getAttribute(name, "Invocations"));
+            assertEquals(statistics.getRankedReport(), server.getAttribute(name, "RankedReport"));
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0, statistics.getSignaturesRun());
+        } finally {
+            SignatureStatistics.unregister(name);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    private static InternalSignatureCollection newCollection() {
+        InternalSignatureCollection collection = new InternalSignatureCollection();
+        collection.setInternalSignatures(sigFile.getSignatures());
+        collection.prepareForUse();
+        return collection;
+    }
+
+    private static List<InternalSignature> match(InternalSignatureCollection collection) throws IOException {
+        RequestMetaData metaData = new RequestMetaData(
+                Files.size(TEST_FILE), Files.getLastModifiedTime(TEST_FILE).toMillis(), TEST_FILE.getFileName().toString());
+        try (FileSystemIdentificationRequest request =
+                     new FileSystemIdentificationRequest(metaData, new RequestIdentifier(TEST_FILE.toUri()))) {
+            request.open(TEST_FILE);
+            ByteReader reader = new IdentificationRequestByteReaderAdapter(request);
+            return collection.getMatchingSignatures(reader, -1);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.export.interfaces;
+
+import java.util.Locale;
+
+/**
+ * The file formats profiles can be exported to.
+ */
+public enum ExportFormat {
+
+    /**
+     * Comma separated values, the default.
+     */
+    CSV("csv"),
+
+    /**
+     * JSON Lines, one JSON object per line.
+     */
+    JSON_LINES("jsonl"),
+
+    /**
+     * An Apache Parquet file, which always has one row per format.
+     */
+    PARQUET("parquet");
+
+    private final String extension;
+
+    ExportFormat(final String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return The file extension of this format, which is also its name on the command line.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Finds a format from its file extension.
+     * @param extension The extension of the format, in any case.
+     * @return The format with the extension, or null if there is no such format.
+     */
+    public static ExportFormat forExtension(final String extension) {
+        for (ExportFormat format : values()) {
+            if (format.extension.equals(extension.toLowerCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chooses a format for a destination when none was asked for, from the extension of its file name.
+     * @param destination The path of the file to export to, or null if exporting to the console.
+     * @return The format with the extension of the destination, or CSV if there is no such format.
+     */
+    public static ExportFormat forDestination(final String destination) {
+        if (destination != null) {
+            final int extensionStart = destination.lastIndexOf('.');
+            if (extensionStart > Math.max(destination.lastIndexOf('/'), destination.lastIndexOf('\\'))) {
+                final ExportFormat format = forExtension(destination.substring(extensionStart + 1));
+                if (format != null) {
+                    return format;
+                }
+            }
+        }
+        return CSV;
+    }
+}
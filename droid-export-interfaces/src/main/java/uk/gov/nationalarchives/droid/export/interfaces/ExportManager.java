@@ -44,7 +44,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
 public interface ExportManager {
 
     /**
-     * Exports one or more profiles to a CSV file.
+     * Exports one or more profiles to a CSV, JSON Lines or Parquet file.
      * 
      * FIXME:
      * The only reason this interface takes an optional filter
@@ -63,14 +63,17 @@ public interface ExportManager {
      * @param destination the destination filename
      * @param filter optional filter
      * @param options the options for export.
+     * @param format the file format to export to, or null to choose it from the extension of the destination.
      * @param outputEncoding The character encoding to use in the output, null to use default encoding
      * @param bom BOM flag.
      * @param quoteAllFields - whether to quote all fields, or just those that contain commas.
      * @param columnsToWrite a space separated list of column names to write.  If null or empty, all columns are written.
      * @return future for cancelling the task. 
      */
+    //CHECKSTYLE:OFF - more than 8 parameters.
     Future<?> exportProfiles(List<String> profileIds, String destination,
-            Filter filter, ExportOptions options, String outputEncoding,
+            Filter filter, ExportOptions options, ExportFormat format, String outputEncoding,
                              boolean bom, boolean quoteAllFields, String columnsToWrite);
+    //CHECKSTYLE:ON
 
 }
@@ -32,60 +32,20 @@
 package uk.gov.nationalarchives.droid.export.interfaces;
 
 import java.io.Writer;
-import java.util.List;
-import java.util.Map;
 
 
 /**
+ * An item writer for a text export format, which writes to a character writer.
+ *
  * @author rflitcroft, Brian O'Reilly
  * @param <T> the type to write
  */
-public interface ItemWriter<T> {
+public interface ItemWriter<T> extends ExportItemWriter<T> {
 
-    /**
-     * Writes the items.
-     * @param items the items to write.
-     */
-    void write(List<? extends T> items);
-    
     /**
      * Opens a writer for writing.
      * @param writer the writer to use
      */
     void open(Writer writer);
-    
-    /**
-     * Closes the writer.
-     */
-    void close();
-    
-    /**
-     * 
-     * @param options Sets the options to use when writing out the export.
-     */
-    void setOptions(ExportOptions options);
-    
-    /**
-     * Customises the column headers in the export output.
-     * @param headersToSet - Map of headers to customise and values to set.
-     */
-    void setHeaders(Map<String, String> headersToSet);
-
-    /**
-     * Sets whether all fields should be quoted, or just those that contain a comma separator.
-     * @param quoteAll Whether all fields should be quoted.
-     */
-    void setQuoteAllFields(boolean quoteAll);
-
-    /**
-     * Sets which columns should be written, as a space separated list of column headers.
-     * If the string is null or empty, all columns will be written out.
-     * <p> Valid column names are:
-     * ID, PARENT_ID, URI, FILE_PATH, NAME, METHOD, STATUS, SIZE, TYPE, EXT, LAST_MODIFIED,
-     * EXTENSION_MISMATCH, HASH, FORMAT_COUNT, PUID, MIME_TYPE, FORMAT_NAME, FORMAT_VERSION.
-     *
-     * @param columnNames A space separated list of column headers, or null or empty if all columns should be written.
-     */
-    void setColumnsToWrite(String columnNames);
 
 }
@@ -31,13 +31,17 @@
  */
 package uk.gov.nationalarchives.droid.export;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportFormat;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportItemWriter;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportManager;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
@@ -52,6 +56,7 @@ public class ExportManagerImpl implements ExportManager {
     
     private ProfileContextLocator profileContextLocator;
     private ItemWriter<ProfileResourceNode> itemWriter;
+    private Map<ExportFormat, ExportItemWriter<ProfileResourceNode>> itemWritersByFormat = Collections.emptyMap();
     
     private ExecutorService executor = Executors.newSingleThreadExecutor();
 
@@ -73,14 +78,18 @@ public class ExportManagerImpl implements ExportManager {
         this.itemWriter = itemWriter;
     }
 
+    //CHECKSTYLE:OFF - more than 8 parameters.
     @Override
     public Future<?> exportProfiles(final List<String> profileIds, final String destination, 
-        final Filter filter, final ExportOptions options, final String outputEncoding, final boolean bom,
-                                    final boolean quoteAllFields, String columnsToWrite) {
-        itemWriter.setQuoteAllFields(quoteAllFields);
-        itemWriter.setColumnsToWrite(columnsToWrite);
+        final Filter filter, final ExportOptions options, final ExportFormat format, final String outputEncoding,
+                                    final boolean bom, final boolean quoteAllFields, String columnsToWrite) {
+        final ExportItemWriter<ProfileResourceNode> writer =
+                getItemWriter(format == null ? ExportFormat.forDestination(destination) : format);
+        //CHECKSTYLE:ON
+        writer.setQuoteAllFields(quoteAllFields);
+        writer.setColumnsToWrite(columnsToWrite);
         final ExportTask exportTask = new ExportTask(destination,
-                profileIds, filter, options, outputEncoding, bom, itemWriter, profileContextLocator);
+                profileIds, filter, options, outputEncoding, bom, writer, profileContextLocator);
         final FutureTask<?> task = new FutureTask<Object>(exportTask, null) {
             @Override
             public boolean cancel(final boolean mayInterruptIfRunning) {
@@ -109,6 +118,24 @@ public class ExportManagerImpl implements ExportManager {
         this.itemWriter = itemWriter;
     }
 
+    /**
+     * Sets item writers for export formats other than CSV, which is written by the default item writer.
+     *
+     * @param itemWritersByFormat the item writers to use for each export format.
+     */
+    public void setItemWritersByFormat(
+            final Map<ExportFormat, ExportItemWriter<ProfileResourceNode>> itemWritersByFormat) {
+        this.itemWritersByFormat = itemWritersByFormat;
+    }
+
+    private ExportItemWriter<ProfileResourceNode> getItemWriter(final ExportFormat format) {
+        final ExportItemWriter<ProfileResourceNode> writer = itemWritersByFormat.get(format);
+        if (writer == null && format != ExportFormat.CSV) {
+            throw new IllegalArgumentException("No item writer is configured for export format: " + format);
+        }
+        return writer == null ? itemWriter : writer;
+    }
+
     /**
      * Shuts down the executor service.
      */
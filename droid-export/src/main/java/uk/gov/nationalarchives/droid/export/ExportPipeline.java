@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.export;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.lang.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportItemWriter;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
+import uk.gov.nationalarchives.droid.export.interfaces.PreparedItemWriter;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+
+/**
+ * Exports one or more profiles through a three stage pipeline.
+ * <p>
+ * Each profile is read from its database on a reader thread, so several profiles can be read at once.
+ * Chunks of nodes read are formatted on a pool of formatting threads, if the item writer is a
+ * {@link PreparedItemWriter}.  The thread calling {@link #write()} writes the formatted chunks out,
+ * one profile after another, in the order the profiles were added and the chunks were read.
+ * <p>
+ * Each profile can only get a few chunks ahead of the writer, so memory use stays bounded however
+ * large the profiles are.
+ */
+class ExportPipeline {
+
+    private static final int CHUNKS_AHEAD = 8;
+    private static final String CANCELLED = "Cancelled";
+    private static final String INTERRUPTED = "Interrupted";
+    private static final Future<Object> END_OF_PROFILE = CompletableFuture.completedFuture(null);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ExportItemWriter<ProfileResourceNode> itemWriter;
+    private final PreparedItemWriter<ProfileResourceNode, Object> preparedWriter;
+    private final BooleanSupplier cancelled;
+    private final ExecutorService readers;
+    private final ExecutorService formatters;
+    private final List<ProfileExport> profiles = new ArrayList<>();
+
+    /**
+     * @param itemWriter the writer to write the exported nodes to.
+     * @param threads the number of profiles to read at once, and the number of threads formatting chunks.
+     * @param cancelled whether the export has been cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    ExportPipeline(ExportItemWriter<ProfileResourceNode> itemWriter, int threads, BooleanSupplier cancelled) {
+        this.itemWriter = itemWriter;
+        this.preparedWriter = itemWriter instanceof PreparedItemWriter
+                ? (PreparedItemWriter<ProfileResourceNode, Object>) itemWriter : null;
+        this.cancelled = cancelled;
+        this.readers = Executors.newFixedThreadPool(threads);
+        this.formatters = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Starts reading a profile.  Profiles are written out in the order they are added.
+     *
+     * @param profileId the id of the profile.
+     * @param reader the reader for the profile nodes.
+     * @param filter the filter to apply, or null.
+     */
+    void addProfile(String profileId, ItemReader<ProfileResourceNode> reader, Filter filter) {
+        ProfileExport profile = new ProfileExport(profileId, reader, filter);
+        profile.reading = readers.submit(profile);
+        profiles.add(profile);
+    }
+
+    /**
+     * Writes all the profiles added to the item writer, waiting for them to be read and formatted.
+     *
+     * @throws JobCancellationException if the export is cancelled.
+     */
+    void write() throws JobCancellationException {
+        for (ProfileExport profile : profiles) {
+            Future<?> chunk = take(profile.chunks);
+            while (chunk != END_OF_PROFILE) {
+                writeChunk(getResult(chunk));
+                if (cancelled.getAsBoolean()) {
+                    log.info("Export interrupted");
+                    throw new JobCancellationException(CANCELLED);
+                }
+                chunk = take(profile.chunks);
+            }
+            // Rethrows anything which went wrong reading the profile.
+            getResult(profile.reading);
+            profile.stopWatch.stop();
+            log.info(String.format("Time for export [%s]: %s ms", profile.profileId, profile.stopWatch.getTime()));
+        }
+    }
+
+    /**
+     * Stops any reading or formatting still in progress.
+     */
+    void shutdown() {
+        readers.shutdownNow();
+        formatters.shutdownNow();
+    }
+
+    private Object prepare(List<ProfileResourceNode> chunk) {
+        return preparedWriter == null ? chunk : preparedWriter.prepare(chunk);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeChunk(Object chunk) {
+        if (preparedWriter == null) {
+            itemWriter.write((List<ProfileResourceNode>) chunk);
+        } else {
+            preparedWriter.writePrepared(chunk);
+        }
+    }
+
+    private static Future<?> take(BlockingQueue<Future<?>> chunks) throws JobCancellationException {
+        try {
+            return chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobCancellationException(INTERRUPTED);
+        }
+    }
+
+    private static Object getResult(Future<?> future) throws JobCancellationException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobCancellationException(INTERRUPTED);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof JobCancellationException) {
+                throw (JobCancellationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Reads a single profile, queueing each chunk read for formatting.
+     */
+    private final class ProfileExport implements Callable<Void> {
+
+        private final String profileId;
+        private final ItemReader<ProfileResourceNode> reader;
+        private final Filter filter;
+        private final BlockingQueue<Future<?>> chunks = new ArrayBlockingQueue<>(CHUNKS_AHEAD);
+        // Started when the profile is first read and stopped once its last row is written;
+        // the END_OF_PROFILE hand-off through chunks publishes it to the writing thread.
+        private final StopWatch stopWatch = new StopWatch();
+        private Future<Void> reading;
+
+        ProfileExport(String profileId, ItemReader<ProfileResourceNode> reader, Filter filter) {
+            this.profileId = profileId;
+            this.reader = reader;
+            this.filter = filter;
+        }
+
+        @Override
+        public Void call() throws JobCancellationException {
+            stopWatch.start();
+            try {
+                reader.readAll(itemChunk -> {
+                    if (cancelled.getAsBoolean()) {
+                        throw new JobCancellationException(CANCELLED);
+                    }
+                    final List<ProfileResourceNode> chunk = new ArrayList<>(itemChunk);
+                    try {
+                        chunks.put(formatters.submit(() -> prepare(chunk)));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new JobCancellationException(INTERRUPTED);
+                    }
+                }, filter);
+            } finally {
+                try {
+                    chunks.put(END_OF_PROFILE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -47,14 +47,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.export.interfaces.BinaryItemWriter;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportItemWriter;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
-import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
-import uk.gov.nationalarchives.droid.export.interfaces.ItemReaderCallback;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
 import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
 import uk.gov.nationalarchives.droid.profile.ProfileContextLocator;
@@ -81,7 +80,7 @@ public class ExportTask implements Runnable {
     private final ExportOptions options;
     private final String outputEncoding;
     private final boolean bom;
-    private final ItemWriter<ProfileResourceNode> itemWriter;
+    private final ExportItemWriter<ProfileResourceNode> itemWriter;
     private final ProfileContextLocator profileContextLocator;
 
     private volatile boolean cancelled;
@@ -94,12 +93,13 @@ public class ExportTask implements Runnable {
      * @param options options for the export file format
      * @param outputEncoding A charset encoding for the output file, or null indicates platform locale encoding
      * @param bom Add bom to the file.
-     * @param itemWriter The writer for writing the export items
+     * @param itemWriter The writer for writing the export items, to a character writer
+     *                   unless it is a {@link BinaryItemWriter}.
      * @param profileContextLocator locator of the profile context
      */
     public ExportTask(final String destination, final List<String> profileIds,
             final Filter filterOverride, final ExportOptions options,
-            final String outputEncoding, final boolean bom, final ItemWriter<ProfileResourceNode> itemWriter,
+            final String outputEncoding, final boolean bom, final ExportItemWriter<ProfileResourceNode> itemWriter,
             final ProfileContextLocator profileContextLocator) {
         this.destination = destination;
         this.profileIds = profileIds;
@@ -122,22 +122,43 @@ public class ExportTask implements Runnable {
      * {@inheritDoc}
      */
     @Override
+    @SuppressWarnings("unchecked")
     public void run() {
-        final Writer writer;
         final String destinationDescription = destination == null ? "System.out" : destination;
-        if (destination == null) {
-            writer = new PrintWriter(System.out);
+        if (itemWriter instanceof BinaryItemWriter) {
+            final BinaryItemWriter<ProfileResourceNode> binaryWriter = (BinaryItemWriter<ProfileResourceNode>) itemWriter;
+            final OutputStream out;
+            if (destination == null) {
+                out = System.out;
+            } else {
+                try {
+                    out = Files.newOutputStream(Paths.get(destination));
+                } catch (IOException e) {
+                    throw ioFailure(destinationDescription, e);
+                }
+            }
+            doExport(() -> binaryWriter.open(out), destinationDescription);
         } else {
-            try {
-                writer = newOutputFileWriter();
-            } catch (IOException e) {
-                String message = String.format("IO exception occurred trying to read from: %s",
-                        destinationDescription);
-                log.error(message, e);
-                throw new RuntimeException(message, e);
+            final ItemWriter<ProfileResourceNode> textWriter = (ItemWriter<ProfileResourceNode>) itemWriter;
+            final Writer writer;
+            if (destination == null) {
+                writer = new PrintWriter(System.out);
+            } else {
+                try {
+                    writer = newOutputFileWriter();
+                } catch (IOException e) {
+                    throw ioFailure(destinationDescription, e);
+                }
             }
+            doExport(() -> textWriter.open(writer), destinationDescription);
         }
-        doExport(writer, destinationDescription);
+    }
+
+    private RuntimeException ioFailure(final String destinationDescription, final IOException e) {
+        String message = String.format("IO exception occurred trying to read from: %s",
+                destinationDescription);
+        log.error(message, e);
+        return new RuntimeException(message, e);
     }
 
     /**
@@ -183,19 +204,20 @@ public class ExportTask implements Runnable {
     }
 
 
-    private void doExport(final Writer writer, final String destinationDescription) {
+    private void doExport(final Runnable openItemWriter, final String destinationDescription) {
         log.info(String.format("Exporting profiles to: [%s]", destinationDescription));
 
         //BNO - amended to add header customisations for different hash algorithms
         Map<String, String> headerCustomisations = getHeaderCustomisationsFromProfiles();
         itemWriter.setHeaders(headerCustomisations);
         itemWriter.setOptions(options);
-        itemWriter.open(writer);
+        openItemWriter.run();
         
-        StopWatch stopWatch = new StopWatch();
+        final ExportPipeline pipeline = new ExportPipeline(itemWriter,
+                Math.max(1, Runtime.getRuntime().availableProcessors()), () -> cancelled);
         try {
+            // Profile contexts are opened one at a time, but the profiles are then read concurrently.
             for (String profileId : profileIds) {
-                stopWatch.start();
                 if (!profileContextLocator.hasProfileContext(profileId)) {
                     final String message = String.format(PROJECT_NOT_AVAILABLE_FOR_EXPORT, profileId);
                     log.warn(message);
@@ -203,31 +225,17 @@ public class ExportTask implements Runnable {
                 }
                 ProfileInstance profile = profileContextLocator.getProfileInstance(profileId);
                 ProfileInstanceManager profileContext = profileContextLocator.openProfileInstanceManager(profile);
-                ItemReader<ProfileResourceNode> reader = profileContext.getNodeItemReader();
-                ItemReaderCallback<ProfileResourceNode> callback = new ItemReaderCallback<ProfileResourceNode>() {
-                    @Override
-                    public void onItem(List<? extends ProfileResourceNode> itemChunk)
-                        throws JobCancellationException {
-                        itemWriter.write(itemChunk);
-                        if (cancelled) {
-                            log.info("Export interrupted");
-                            throw new JobCancellationException("Cancelled");
-                        }
-                    }
-                };
-
                 Filter filter = filterOverride != null ? filterOverride : profile.getFilter();
-                reader.readAll(callback, filter);
-                stopWatch.stop();
-                log.info(String.format("Time for export [%s]: %s ms", profileId, stopWatch.getTime()));
-                stopWatch.reset();
+                pipeline.addProfile(profileId, profileContext.getNodeItemReader(), filter);
             }
+            pipeline.write();
         } catch (JobCancellationException e) {
             String message = String.format("Export cancelled - deleting export destination: %s",
                     destinationDescription);
             log.info(message);
             cancelled = true;
         } finally {
+            pipeline.shutdown();
             log.info(String.format("Closing export file: %s", destinationDescription));
             itemWriter.close();
             if (cancelled && destination != null) {
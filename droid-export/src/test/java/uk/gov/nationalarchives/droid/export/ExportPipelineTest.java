@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.export;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReaderCallback;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class ExportPipelineTest {
+
+    private static final int CHUNKS = 50;
+
+    @Test
+    public void testProfilesAreWrittenInOrderWhenReadConcurrently() throws Exception {
+        final List<Long> written = new ArrayList<>();
+        ItemWriter<ProfileResourceNode> writer = recordingWriter(written);
+
+        ExportPipeline pipeline = new ExportPipeline(writer, 4, () -> false);
+        try {
+            pipeline.addProfile("1", reader(1000), null);
+            pipeline.addProfile("2", reader(2000), null);
+            pipeline.addProfile("3", reader(3000), null);
+            pipeline.write();
+        } finally {
+            pipeline.shutdown();
+        }
+
+        List<Long> expected = new ArrayList<>();
+        for (long profile = 1000; profile <= 3000; profile += 1000) {
+            for (long i = 0; i < CHUNKS * 2; i++) {
+                expected.add(profile + i);
+            }
+        }
+        assertEquals(expected, written);
+    }
+
+    @Test
+    public void testCancellingStopsTheExport() throws Exception {
+        final List<Long> written = new ArrayList<>();
+        ItemWriter<ProfileResourceNode> writer = recordingWriter(written);
+
+        ExportPipeline pipeline = new ExportPipeline(writer, 2, () -> !written.isEmpty());
+        try {
+            pipeline.addProfile("1", reader(1000), null);
+            pipeline.write();
+            fail("Expected the export to be cancelled");
+        } catch (JobCancellationException e) {
+            assertEquals(2, written.size());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadFailuresAreRethrownByTheWriter() throws Exception {
+        @SuppressWarnings("unchecked")
+        ItemReader<ProfileResourceNode> reader = mock(ItemReader.class);
+        doAnswer(invocation -> {
+            throw new IllegalStateException("Database gone");
+        }).when(reader).readAll(any(), isNull());
+
+        ExportPipeline pipeline = new ExportPipeline(recordingWriter(new ArrayList<>()), 2, () -> false);
+        try {
+            pipeline.addProfile("1", reader, null);
+            pipeline.write();
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ItemWriter<ProfileResourceNode> recordingWriter(final List<Long> written) {
+        ItemWriter<ProfileResourceNode> writer = mock(ItemWriter.class);
+        doAnswer(invocation -> {
+            for (ProfileResourceNode node : (List<ProfileResourceNode>) invocation.getArgument(0)) {
+                written.add(node.getId());
+            }
+            return null;
+        }).when(writer).write(any());
+        return writer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ItemReader<ProfileResourceNode> reader(final long firstId) throws JobCancellationException {
+        ItemReader<ProfileResourceNode> reader = mock(ItemReader.class);
+        doAnswer(invocation -> {
+            ItemReaderCallback<ProfileResourceNode> callback = invocation.getArgument(0);
+            for (long i = 0; i < CHUNKS * 2; i += 2) {
+                callback.onItem(Arrays.asList(node(firstId + i), node(firstId + i + 1)));
+            }
+            return null;
+        }).when(reader).readAll(any(), isNull());
+        return reader;
+    }
+
+    private static ProfileResourceNode node(long id) {
+        ProfileResourceNode node = new ProfileResourceNode();
+        node.setId(id);
+        return node;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.internal.api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks the files of a {@link DroidAPI#submitAll} call: it limits how many are in flight at once,
+ * and completes a future once every file has been submitted and completed.
+ */
+final class BatchSubmission {
+
+    private final Semaphore inFlight;
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final CompletableFuture<Void> allDone = new CompletableFuture<>();
+
+    // One count for each file in flight, plus one held until every file has been submitted.
+    private final AtomicLong pending = new AtomicLong(1);
+
+    /**
+     * @param maxFilesInFlight The most files which can be in flight at once.
+     */
+    BatchSubmission(final int maxFilesInFlight) {
+        this.inFlight = new Semaphore(maxFilesInFlight);
+    }
+
+    /**
+     * Waits until another file can be put in flight, and counts it.
+     * @throws InterruptedException If the thread is interrupted while waiting, in which case the file is not counted.
+     */
+    void beforeSubmit() throws InterruptedException {
+        inFlight.acquire();
+        pending.incrementAndGet();
+    }
+
+    /**
+     * Records why no more files will be submitted, when that happens before a file is counted.
+     * @param failure Why submission stopped.
+     */
+    void submissionStopped(final Throwable failure) {
+        firstFailure.compareAndSet(null, failure);
+    }
+
+    /**
+     * Records that a file has completed.
+     * @param failure Why the file failed, or null if it succeeded.
+     */
+    void afterComplete(final Throwable failure) {
+        if (failure != null) {
+            firstFailure.compareAndSet(null, failure);
+        }
+        inFlight.release();
+        completeOne();
+    }
+
+    /**
+     * Records that every file has been submitted.
+     * @return A future which completes when every submitted file has completed, exceptionally with the
+     *         first failure if any failed.
+     */
+    CompletableFuture<Void> allSubmitted() {
+        completeOne();
+        return allDone;
+    }
+
+    private void completeOne() {
+        if (pending.decrementAndGet() == 0) {
+            final Throwable failure = firstFailure.get();
+            if (failure == null) {
+                allDone.complete(null);
+            } else {
+                allDone.completeExceptionally(failure);
+            }
+        }
+    }
+}
@@ -104,7 +104,9 @@ public final class ContainerApi {
     }
 
     private Ole2IdentifierEngine ole2IdentifierEngine() {
-        return new Ole2IdentifierEngine();
+        Ole2IdentifierEngine engine = new Ole2IdentifierEngine();
+        engine.setRequestFactory(requestFactory());
+        return engine;
     }
 
     public Ole2Identifier ole2Identifier() {
@@ -34,8 +34,16 @@ package uk.gov.nationalarchives.droid.internal.api;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 import uk.gov.nationalarchives.droid.core.SignatureParseException;
 import uk.gov.nationalarchives.droid.core.interfaces.DroidCore;
@@ -54,19 +62,27 @@ import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
  * <p>
  * To obtain instance of this class, use factory method {@link #getInstance(Path, Path)} to obtain instance.
  * Obtaining instance is expensive operation and if used multiple time, instance should be cached.
- * Instance should be thread-safe, but we didn't run any internal audit. We suggest creating one instance for every thread.
  * </p>
  * <p>
  * To identify file, use method {@link #submit(Path)}. This method take full path to file which should be identified.
  * It returns identification result which can contain 0..N signatures. Bear in mind that single file can have zero to multiple
  * signature matches!
  * </p>
+ * <p>
+ * An instance is thread-safe, and a single shared instance can be used from any number of threads.  The signatures
+ * are read-only once loaded, and every submission works on its own request and result objects.  To spread
+ * identification over several threads, use {@link #submitAsync(Path)} or {@link #submitAll(Stream, BiConsumer)},
+ * which run on the executor given to {@link #getInstance(Path, Path, Executor)}.  File reads on every thread
+ * reuse window buffers from a shared pool, so they are not allocated again for each file.
+ * </p>
  */
 public final class DroidAPI {
 
     private static final String ZIP_PUID = "x-fmt/263";
     private static final String OLE2_PUID = "fmt/111";
 
+    private static final int FILES_IN_FLIGHT_PER_PROCESSOR = 4;
+
     private static AtomicLong idGenerator = new AtomicLong();
 
     private final DroidCore droidCore;
@@ -75,29 +91,97 @@ public final class DroidAPI {
 
     private final ContainerIdentifier ole2Idendifier;
 
-    private DroidAPI(DroidCore droidCore, ContainerIdentifier zipIdendifier, ContainerIdentifier ole2Idendifier) {
+    private final Executor executor;
+
+    private final int maxFilesInFlight;
+
+    private DroidAPI(DroidCore droidCore, ContainerIdentifier zipIdendifier, ContainerIdentifier ole2Idendifier,
+                     Executor executor, int maxFilesInFlight) {
         this.droidCore = droidCore;
         this.zipIdendifier = zipIdendifier;
         this.ole2Idendifier = ole2Idendifier;
+        this.executor = executor;
+        this.maxFilesInFlight = maxFilesInFlight;
     }
 
     /**
      * Return instance, or throw error.
+     * Asynchronous submissions run on the common fork join pool.
      * @param binarySignature Path to xml file with binary signatures.
      * @param containerSignature Path to xml file with contained signatures.
      * @return Instance of droid with binary and container signature.
      * @throws SignatureParseException On invalid signature file.
      */
     public static DroidAPI getInstance(final Path binarySignature, final Path containerSignature) throws SignatureParseException {
+        return getInstance(binarySignature, containerSignature, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Return instance, or throw error.
+     * @param binarySignature Path to xml file with binary signatures.
+     * @param containerSignature Path to xml file with contained signatures.
+     * @param executor The executor to run asynchronous submissions on.  It is not shut down by this class.
+     * @return Instance of droid with binary and container signature.
+     * @throws SignatureParseException On invalid signature file.
+     */
+    public static DroidAPI getInstance(final Path binarySignature, final Path containerSignature,
+                                       final Executor executor) throws SignatureParseException {
+        return getInstance(binarySignature, containerSignature, executor, defaultMaxFilesInFlight());
+    }
+
+    /**
+     * Return instance, or throw error.
+     * @param binarySignature Path to xml file with binary signatures.
+     * @param containerSignature Path to xml file with contained signatures.
+     * @param executor The executor to run asynchronous submissions on.  It is not shut down by this class.
+     * @param maxFilesInFlight The most files {@link #submitAll(Stream, BiConsumer)} submits before waiting for
+     *                         earlier files to complete.
+     * @return Instance of droid with binary and container signature.
+     * @throws SignatureParseException On invalid signature file.
+     */
+    public static DroidAPI getInstance(final Path binarySignature, final Path containerSignature,
+                                       final Executor executor, final int maxFilesInFlight) throws SignatureParseException {
+        return getInstance(binarySignature, containerSignature, executor, maxFilesInFlight, null);
+    }
+
+    /**
+     * Return instance, or throw error.
+     * @param binarySignature Path to xml file with binary signatures.
+     * @param containerSignature Path to xml file with contained signatures.
+     * @param executor The executor to run asynchronous submissions on.  It is not shut down by this class.
+     * @param maxFilesInFlight The most files {@link #submitAll(Stream, BiConsumer)} submits before waiting for
+     *                         earlier files to complete.
+     * @param signatureCacheDir A directory to cache the parsed binary signature file in, so later instances
+     *                          start faster, or null to parse the signature file every time.
+     * @return Instance of droid with binary and container signature.
+     * @throws SignatureParseException On invalid signature file.
+     */
+    public static DroidAPI getInstance(final Path binarySignature, final Path containerSignature,
+                                       final Executor executor, final int maxFilesInFlight,
+                                       final Path signatureCacheDir) throws SignatureParseException {
+        if (maxFilesInFlight < 1) {
+            throw new IllegalArgumentException("The maximum number of files in flight must be at least one: "
+                    + maxFilesInFlight);
+        }
         BinarySignatureIdentifier droidCore = new BinarySignatureIdentifier();
         droidCore.setSignatureFile(binarySignature.toAbsolutePath().toString());
+        if (signatureCacheDir != null) {
+            droidCore.setSignatureCacheDir(signatureCacheDir.toAbsolutePath().toString());
+        }
         droidCore.init();
         droidCore.setMaxBytesToScan(Long.MAX_VALUE);
+        // Not redundant: preparing again links each signature to its formats a second time, so binary
+        // signatures still match formats whose container signatures later override one of those links.
         droidCore.getSigFile().prepareForUse();
 
         ContainerApi containerApi = new ContainerApi(droidCore, containerSignature);
 
-        return new DroidAPI(droidCore, containerApi.zipIdentifier(), containerApi.ole2Identifier());
+        return new DroidAPI(droidCore, containerApi.zipIdentifier(), containerApi.ole2Identifier(),
+                executor, maxFilesInFlight);
+    }
+
+    private static int defaultMaxFilesInFlight() {
+        return Runtime.getRuntime().availableProcessors() * FILES_IN_FLIGHT_PER_PROCESSOR;
     }
 
     /**
@@ -138,6 +222,63 @@ public final class DroidAPI {
         }
     }
 
+    /**
+     * Submit file for identification on the executor of this instance.
+     * @param file Full path to file for identification.
+     * @return A future which completes with the identification result of the file, or exceptionally with
+     *         a {@link CompletionException} wrapping the IOException if the file can't be read.
+     */
+    public CompletableFuture<IdentificationResultCollection> submitAsync(final Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return submit(file);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Submit files for identification in parallel on the executor of this instance, passing each result
+     * to a consumer as soon as it completes.  Results are not delivered in the order files are submitted,
+     * and the consumer may be called from several threads at once.
+     * <p>
+     * This method blocks while the maximum number of files are in flight, so very large streams of files
+     * can be submitted without queuing them all in memory.  It returns once every file has been submitted,
+     * or as soon as the executor rejects a file or the calling thread is interrupted while waiting, in which
+     * case no more files are submitted and the interrupt status of the thread is kept.
+     * </p>
+     * @param files The files to identify.
+     * @param onResult Called with each file and its identification result.
+     * @return A future which completes when every result has been passed to the consumer.  If any file
+     *         failed, or submission stopped early, it completes exceptionally with the first failure, after
+     *         all files already submitted complete.
+     */
+    public CompletableFuture<Void> submitAll(final Stream<Path> files,
+                                             final BiConsumer<Path, IdentificationResultCollection> onResult) {
+        final BatchSubmission batch = new BatchSubmission(maxFilesInFlight);
+        final Iterator<Path> iterator = files.iterator();
+        try {
+            while (iterator.hasNext()) {
+                final Path file = iterator.next();
+                batch.beforeSubmit();
+                final CompletableFuture<IdentificationResultCollection> result;
+                try {
+                    result = submitAsync(file);
+                } catch (RejectedExecutionException e) {
+                    batch.afterComplete(e);
+                    break;
+                }
+                result.thenAccept(identification -> onResult.accept(file, identification))
+                        .whenComplete((ignored, failure) -> batch.afterComplete(failure));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.submissionStopped(e);
+        }
+        return batch.allSubmitted();
+    }
+
     private IdentificationResultCollection identifyByExtension(final IdentificationRequest identificationRequest) {
         IdentificationResultCollection extensionResult = droidCore.matchExtensions(identificationRequest, false);
         droidCore.removeLowerPriorityHits(extensionResult);
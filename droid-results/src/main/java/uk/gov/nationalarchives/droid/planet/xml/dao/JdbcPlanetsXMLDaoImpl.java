@@ -33,6 +33,7 @@ package uk.gov.nationalarchives.droid.planet.xml.dao;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -245,7 +246,8 @@ public class JdbcPlanetsXMLDaoImpl implements PlanetsXMLDao {
             if (resultset.next()) {
                 profileStat.setProfileSmallestSize(BigInteger.valueOf(resultset.getInt("smallest")));
                 profileStat.setProfileLargestSize(BigInteger.valueOf(resultset.getInt("largest")));
-                profileStat.setProfileMeanSize(resultset.getBigDecimal("mean").setScale(1));
+                // Derby averages whole numbers as a whole number, but other engines do not:
+                profileStat.setProfileMeanSize(resultset.getBigDecimal("mean").setScale(0, RoundingMode.DOWN).setScale(1));
                 profileStat.setProfileTotalSize(BigInteger.valueOf(resultset.getInt(TOTAL)));
             }
 
@@ -58,13 +58,15 @@ import uk.gov.nationalarchives.droid.core.interfaces.config.DroidGlobalConfig;
 import uk.gov.nationalarchives.droid.core.interfaces.util.DroidUrlFormat;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
+import uk.gov.nationalarchives.droid.export.interfaces.PreparedItemWriter;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 
 /**
  * @author rflitcroft
  *
  */
-public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
+public class CsvItemWriter implements ItemWriter<ProfileResourceNode>,
+        PreparedItemWriter<ProfileResourceNode, List<List<String>>> {
 
     /**
      * Headers used in the CSV output
@@ -146,33 +148,27 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
 
     @Override
     public void write(List<? extends ProfileResourceNode> nodes) {
+        writePrepared(prepare(nodes));
+    }
+
+    @Override
+    public List<List<String>> prepare(List<? extends ProfileResourceNode> nodes) {
         switch (options) {
-            case ONE_ROW_PER_FILE: {
-                writeOneRowPerFile(nodes);
-                break;
-            }
             case ONE_ROW_PER_FORMAT: {
-                writeOneRowPerFormat(nodes);
-                break;
+                return prepareOneRowPerFormat(nodes);
             }
+            case ONE_ROW_PER_FILE:
             default: {
-                writeOneRowPerFile(nodes);
+                return prepareOneRowPerFile(nodes);
             }
         }
     }
-    
-    private void writeOneRowPerFile(List<? extends ProfileResourceNode> nodes) {
+
+    @Override
+    public void writePrepared(List<List<String>> rows) {
         try {
-            for (ProfileResourceNode node : nodes) {
-                List<String> nodeEntries = new ArrayList<String>();
-                addNodeColumns(nodeEntries, node);
-                for (Format format : node.getFormatIdentifications()) {
-                    addColumn(nodeEntries, PUID_ARRAY_INDEX, format.getPuid());
-                    addColumn(nodeEntries, MIME_TYPE_ARRAY_INDEX, format.getMimeType());
-                    addColumn(nodeEntries, FORMAT_NAME_ARRAY_INDEX, format.getName());
-                    addColumn(nodeEntries, FORMAT_VERSION_ARRAY_INDEX, format.getVersion());
-                }
-                csvWriter.writeRow(nodeEntries);
+            for (List<String> row : rows) {
+                csvWriter.writeRow(row);
             }
             csvWriter.flush();
         } catch (final TextWritingException e) {
@@ -180,25 +176,37 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
-    
-    private void writeOneRowPerFormat(List<? extends ProfileResourceNode> nodes) {
-        try {
-            for (ProfileResourceNode node : nodes) {
-                for (Format format : node.getFormatIdentifications()) {
-                    List<String> nodeEntries = new ArrayList<>();
-                    addNodeColumns(nodeEntries, node);
-                    addColumn(nodeEntries, PUID_ARRAY_INDEX, format.getPuid());
-                    addColumn(nodeEntries, MIME_TYPE_ARRAY_INDEX, format.getMimeType());
-                    addColumn(nodeEntries, FORMAT_NAME_ARRAY_INDEX, format.getName());
-                    addColumn(nodeEntries, FORMAT_VERSION_ARRAY_INDEX, format.getVersion());
-                    csvWriter.writeRow(nodeEntries);
-                }
+
+    private List<List<String>> prepareOneRowPerFile(List<? extends ProfileResourceNode> nodes) {
+        List<List<String>> rows = new ArrayList<>(nodes.size());
+        for (ProfileResourceNode node : nodes) {
+            List<String> nodeEntries = new ArrayList<String>();
+            addNodeColumns(nodeEntries, node);
+            for (Format format : node.getFormatIdentifications()) {
+                addColumn(nodeEntries, PUID_ARRAY_INDEX, format.getPuid());
+                addColumn(nodeEntries, MIME_TYPE_ARRAY_INDEX, format.getMimeType());
+                addColumn(nodeEntries, FORMAT_NAME_ARRAY_INDEX, format.getName());
+                addColumn(nodeEntries, FORMAT_VERSION_ARRAY_INDEX, format.getVersion());
+            }
+            rows.add(nodeEntries);
+        }
+        return rows;
+    }
+
+    private List<List<String>> prepareOneRowPerFormat(List<? extends ProfileResourceNode> nodes) {
+        List<List<String>> rows = new ArrayList<>(nodes.size());
+        for (ProfileResourceNode node : nodes) {
+            for (Format format : node.getFormatIdentifications()) {
+                List<String> nodeEntries = new ArrayList<>();
+                addNodeColumns(nodeEntries, node);
+                addColumn(nodeEntries, PUID_ARRAY_INDEX, format.getPuid());
+                addColumn(nodeEntries, MIME_TYPE_ARRAY_INDEX, format.getMimeType());
+                addColumn(nodeEntries, FORMAT_NAME_ARRAY_INDEX, format.getName());
+                addColumn(nodeEntries, FORMAT_VERSION_ARRAY_INDEX, format.getVersion());
+                rows.add(nodeEntries);
             }
-            csvWriter.flush();
-        } catch (final TextWritingException e) {
-            log.error(e.getRecordCharacters(), e);
-            throw new RuntimeException(e.getMessage(), e);
         }
+        return rows;
     }
 
     /**
@@ -249,7 +257,7 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
         return date == null ? "" : format.format(date);
     }
     
-    private static String toFilePath(URI uri) {
+    static String toFilePath(URI uri) {
         if (FILE_URI_SCHEME.equals(uri.getScheme())) {
             return Paths.get(uri).toAbsolutePath().toString();
         }
@@ -257,7 +265,7 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
         return null;
     }
 
-    private static String toFileName(String name) {
+    static String toFileName(String name) {
         return FilenameUtils.getName(name);
     }
     
@@ -325,7 +333,23 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
         }
     }
 
-    private Set<String> getColumnsToWrite(String columnNames) {
+    /**
+     * Finds the valid column names in a space separated list of columns to write.
+     * @param columnNames A space separated list of column headers, or null or empty for all columns.
+     * @return The valid column names in upper case, or null if the list is empty or none of them are valid.
+     */
+    static Set<String> getValidColumns(String columnNames) {
+        Set<String> columns = getColumnsToWrite(columnNames);
+        if (columns != null) {
+            columns.retainAll(Arrays.asList(HEADERS));
+            if (columns.isEmpty()) {
+                columns = null;
+            }
+        }
+        return columns;
+    }
+
+    private static Set<String> getColumnsToWrite(String columnNames) {
         if (columnNames != null && !columnNames.isEmpty()) {
             String[] columns = columnNames.split(" ");
             if (columns.length > 0) {
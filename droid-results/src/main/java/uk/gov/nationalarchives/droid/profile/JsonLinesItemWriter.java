@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.FastDateFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.util.DroidUrlFormat;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * Writes profile results as JSON Lines: one JSON object per line, with the same fields as the CSV export.
+ * <p>
+ * With one row per file, each object has a FORMATS array holding the PUID, MIME_TYPE, FORMAT_NAME and
+ * FORMAT_VERSION of every format identified.  With one row per format, there is an object for each format
+ * identified, with those fields alongside the others.
+ * <p>
+ * Each chunk of results is flushed once written, so the output can be piped straight into other tools.
+ */
+public class JsonLinesItemWriter implements ItemWriter<ProfileResourceNode> {
+
+    private static final String FORMATS = "FORMATS";
+    private static final String HASH = "HASH";
+    private static final String[] FORMAT_FIELDS = {"PUID", "MIME_TYPE", "FORMAT_NAME", "FORMAT_VERSION"};
+    private static final int LINE_LENGTH = 512;
+    private static final int UNICODE_ESCAPE_LENGTH = 4;
+    private static final char FIRST_PRINTABLE = ' ';
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final FastDateFormat dateFormat = DateFormatUtils.ISO_DATETIME_FORMAT;
+    private Writer writer;
+    private ExportOptions options = ExportOptions.ONE_ROW_PER_FILE;
+    private String hashField = HASH;
+    private Set<String> columnsToWrite;
+
+    @Override
+    public void open(Writer out) {
+        this.writer = out;
+    }
+
+    @Override
+    public void write(List<? extends ProfileResourceNode> nodes) {
+        try {
+            for (ProfileResourceNode node : nodes) {
+                if (options == ExportOptions.ONE_ROW_PER_FORMAT && !node.getFormatIdentifications().isEmpty()) {
+                    for (Format format : node.getFormatIdentifications()) {
+                        final StringBuilder line = startLine(node);
+                        addFormatFields(line, format);
+                        writeLine(line);
+                    }
+                } else {
+                    final StringBuilder line = startLine(node);
+                    if (options == ExportOptions.ONE_ROW_PER_FORMAT) {
+                        addFormatFields(line, null);
+                    } else {
+                        addFormats(line, node.getFormatIdentifications());
+                    }
+                    writeLine(line);
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.error("Error closing JSON Lines writer: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void setOptions(ExportOptions options) {
+        this.options = options;
+    }
+
+    @Override
+    public void setHeaders(Map<String, String> headersToSet) {
+        final String hashHeader = headersToSet.get("hash");
+        if (hashHeader != null) {
+            hashField = hashHeader;
+        }
+    }
+
+    /**
+     * JSON strings are always quoted.
+     * @param quoteAll not used.
+     */
+    @Override
+    public void setQuoteAllFields(boolean quoteAll) {
+    }
+
+    @Override
+    public void setColumnsToWrite(String columnNames) {
+        columnsToWrite = CsvItemWriter.getValidColumns(columnNames);
+        if (columnsToWrite == null && columnNames != null && !columnNames.trim().isEmpty()) {
+            log.warn("-co option: no columns specified are valid, writing all columns: " + columnNames);
+        }
+    }
+
+    private StringBuilder startLine(ProfileResourceNode node) {
+        final NodeMetaData metaData = node.getMetaData();
+        final Date lastModified = metaData.getLastModifiedDate();
+        final StringBuilder line = new StringBuilder(LINE_LENGTH).append('{');
+        addField(line, "ID", node.getId());
+        addField(line, "PARENT_ID", node.getParentId());
+        addField(line, "URI", DroidUrlFormat.format(node.getUri()));
+        addField(line, "FILE_PATH", CsvItemWriter.toFilePath(node.getUri()));
+        addField(line, "NAME", CsvItemWriter.toFileName(metaData.getName()));
+        addField(line, "METHOD", metaData.getIdentificationMethod());
+        addField(line, "STATUS", metaData.getNodeStatus().getStatus());
+        addField(line, "SIZE", metaData.getSize());
+        addField(line, "TYPE", metaData.getResourceType().getResourceType());
+        addField(line, "EXT", metaData.getExtension());
+        addField(line, "LAST_MODIFIED", lastModified == null ? null : dateFormat.format(lastModified));
+        addField(line, "EXTENSION_MISMATCH", node.getExtensionMismatch());
+        addField(line, HASH, hashField, metaData.getHash());
+        addField(line, "FORMAT_COUNT", node.getIdentificationCount());
+        return line;
+    }
+
+    private void addFormatFields(StringBuilder line, Format format) {
+        final String[] values = format == null ? new String[FORMAT_FIELDS.length]
+                : new String[] {format.getPuid(), format.getMimeType(), format.getName(), format.getVersion()};
+        for (int i = 0; i < FORMAT_FIELDS.length; i++) {
+            addField(line, FORMAT_FIELDS[i], values[i]);
+        }
+    }
+
+    private void addFormats(StringBuilder line, List<Format> formats) {
+        boolean anyFormatFields = false;
+        for (String field : FORMAT_FIELDS) {
+            anyFormatFields |= isWritten(field);
+        }
+        if (anyFormatFields) {
+            startField(line, FORMATS);
+            line.append('[');
+            for (Format format : formats) {
+                if (line.charAt(line.length() - 1) != '[') {
+                    line.append(',');
+                }
+                line.append('{');
+                addFormatFields(line, format);
+                line.append('}');
+            }
+            line.append(']');
+        }
+    }
+
+    private void writeLine(StringBuilder line) throws IOException {
+        writer.append(line.append('}').append('\n'));
+    }
+
+    private void addField(StringBuilder line, String column, Object value) {
+        addField(line, column, column, value);
+    }
+
+    private void addField(StringBuilder line, String column, String field, Object value) {
+        if (isWritten(column)) {
+            startField(line, field);
+            final String text = value == null ? null : value.toString();
+            if (text == null) {
+                line.append("null");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                line.append(text);
+            } else {
+                appendString(line, text);
+            }
+        }
+    }
+
+    private boolean isWritten(String column) {
+        return columnsToWrite == null || columnsToWrite.contains(column);
+    }
+
+    private static void startField(StringBuilder line, String field) {
+        final char last = line.charAt(line.length() - 1);
+        if (last != '{') {
+            line.append(',');
+        }
+        appendString(line, field);
+        line.append(':');
+    }
+
+    private static void appendString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < FIRST_PRINTABLE) {
+                        final String hex = Integer.toHexString(c).toUpperCase(Locale.ROOT);
+                        line.append("\\u");
+                        for (int pad = hex.length(); pad < UNICODE_ESCAPE_LENGTH; pad++) {
+                            line.append('0');
+                        }
+                        line.append(hex);
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+}
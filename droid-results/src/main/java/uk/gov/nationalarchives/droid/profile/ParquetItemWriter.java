@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.util.DroidUrlFormat;
+import uk.gov.nationalarchives.droid.export.interfaces.BinaryItemWriter;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
+import uk.gov.nationalarchives.droid.export.interfaces.PreparedItemWriter;
+import uk.gov.nationalarchives.droid.profile.export.ParquetRowWriter;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * Writes profile results as an Apache Parquet file, with the same columns as the CSV export.
+ * <p>
+ * Parquet files are tables with a fixed set of columns, so there is always one row per format
+ * identified, whatever export options are set.  Files with more than one identification have
+ * one row for each, with the same ID and a FORMAT_COUNT greater than one.
+ * <p>
+ * Columns with few distinct values, such as PUID, MIME_TYPE and EXT, are dictionary encoded.
+ * IDs, sizes and counts are written as 64 bit integers, and LAST_MODIFIED as a timestamp.
+ * The file is encoded by parquet-java, through a {@link ParquetRowWriter}.
+ */
+public class ParquetItemWriter implements PreparedItemWriter<ProfileResourceNode, List<Object[]>>,
+        BinaryItemWriter<ProfileResourceNode> {
+
+    private static final String HASH_COLUMN = "HASH";
+    private static final int HASH_INDEX = Arrays.asList(CsvItemWriter.HEADERS).indexOf(HASH_COLUMN);
+    private static final Set<String> LONG_COLUMNS = new HashSet<>(Arrays.asList(
+            "ID", "PARENT_ID", "SIZE", "FORMAT_COUNT"));
+    private static final Set<String> PLAIN_COLUMNS = new HashSet<>(Arrays.asList(
+            "URI", "FILE_PATH", "NAME", HASH_COLUMN));
+    private static final String TIMESTAMP_COLUMN = "LAST_MODIFIED";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String[] headers = CsvItemWriter.HEADERS.clone();
+    private Set<String> columnsToWrite;
+    private long rowGroupSize = ParquetRowWriter.DEFAULT_ROW_GROUP_SIZE;
+    private int[] columnIndexes;
+    private ParquetRowWriter fileWriter;
+
+    @Override
+    public void open(OutputStream out) {
+        final Types.MessageTypeBuilder schema = Types.buildMessage();
+        final Set<String> dictionaryColumns = new HashSet<>();
+        final List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < CsvItemWriter.HEADERS.length; i++) {
+            final String column = CsvItemWriter.HEADERS[i];
+            if (columnsToWrite == null || columnsToWrite.contains(column)) {
+                addColumn(schema, column, headers[i]);
+                if (!LONG_COLUMNS.contains(column) && !PLAIN_COLUMNS.contains(column)
+                        && !TIMESTAMP_COLUMN.equals(column)) {
+                    dictionaryColumns.add(headers[i]);
+                }
+                indexes.add(i);
+            }
+        }
+        columnIndexes = new int[indexes.size()];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            columnIndexes[i] = indexes.get(i);
+        }
+        try {
+            fileWriter = new ParquetRowWriter(out, schema.named("droid_export"), dictionaryColumns, rowGroupSize);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void write(List<? extends ProfileResourceNode> nodes) {
+        writePrepared(prepare(nodes));
+    }
+
+    @Override
+    public List<Object[]> prepare(List<? extends ProfileResourceNode> nodes) {
+        final List<Object[]> rows = new ArrayList<>(nodes.size());
+        for (ProfileResourceNode node : nodes) {
+            final List<Format> formats = node.getFormatIdentifications();
+            if (formats.isEmpty()) {
+                rows.add(toRow(node, null));
+            } else {
+                for (Format format : formats) {
+                    rows.add(toRow(node, format));
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void writePrepared(List<Object[]> rows) {
+        try {
+            for (Object[] row : rows) {
+                final Object[] values = new Object[columnIndexes.length];
+                for (int i = 0; i < columnIndexes.length; i++) {
+                    values[i] = row[columnIndexes[i]];
+                }
+                fileWriter.write(values);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            fileWriter.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parquet exports always have one row per format.
+     * @param options not used.
+     */
+    @Override
+    public void setOptions(ExportOptions options) {
+    }
+
+    @Override
+    public void setHeaders(Map<String, String> headersToSet) {
+        final String hashHeader = headersToSet.get("hash");
+        if (hashHeader != null) {
+            headers[HASH_INDEX] = hashHeader;
+        }
+    }
+
+    /**
+     * Parquet values are never quoted.
+     * @param quoteAll not used.
+     */
+    @Override
+    public void setQuoteAllFields(boolean quoteAll) {
+    }
+
+    @Override
+    public void setColumnsToWrite(String columnNames) {
+        columnsToWrite = CsvItemWriter.getValidColumns(columnNames);
+        if (columnsToWrite == null && columnNames != null && !columnNames.trim().isEmpty()) {
+            log.warn("-co option: no columns specified are valid, writing all columns: " + columnNames);
+        }
+    }
+
+    /**
+     * @param rowGroupSize the size in bytes of each Parquet row group, which bounds how much is buffered in memory.
+     */
+    public void setRowGroupSize(long rowGroupSize) {
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    private static void addColumn(Types.MessageTypeBuilder schema, String column, String name) {
+        if (LONG_COLUMNS.contains(column)) {
+            schema.optional(PrimitiveTypeName.INT64).named(name);
+        } else if (TIMESTAMP_COLUMN.equals(column)) {
+            schema.optional(PrimitiveTypeName.INT64)
+                    .as(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MILLIS)).named(name);
+        } else {
+            schema.optional(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named(name);
+        }
+    }
+
+    private static Object[] toRow(ProfileResourceNode node, Format format) {
+        final NodeMetaData metaData = node.getMetaData();
+        final Date lastModified = metaData.getLastModifiedDate();
+        final Integer identificationCount = node.getIdentificationCount();
+        return new Object[] {
+            node.getId(),
+            node.getParentId(),
+            DroidUrlFormat.format(node.getUri()),
+            CsvItemWriter.toFilePath(node.getUri()),
+            CsvItemWriter.toFileName(metaData.getName()),
+            metaData.getIdentificationMethod(),
+            metaData.getNodeStatus().getStatus(),
+            metaData.getSize(),
+            metaData.getResourceType().getResourceType(),
+            metaData.getExtension(),
+            lastModified == null ? null : lastModified.getTime(),
+            node.getExtensionMismatch(),
+            metaData.getHash(),
+            identificationCount == null ? null : identificationCount.longValue(),
+            format == null ? null : format.getPuid(),
+            format == null ? null : format.getMimeType(),
+            format == null ? null : format.getName(),
+            format == null ? null : format.getVersion(),
+        };
+    }
+}
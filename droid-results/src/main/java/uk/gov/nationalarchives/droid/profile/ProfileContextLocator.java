@@ -48,6 +48,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.config.DroidGlobalConfig;
 import uk.gov.nationalarchives.droid.core.interfaces.config.DroidGlobalProperty;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
+import uk.gov.nationalarchives.droid.profile.datasource.ProfileDatabaseEngine;
 import uk.gov.nationalarchives.droid.results.handlers.JDBCBatchResultHandlerDao;
 import uk.gov.nationalarchives.droid.results.handlers.ProgressObserver;
 import uk.gov.nationalarchives.droid.util.FileUtil;
@@ -62,11 +63,15 @@ public class ProfileContextLocator {
     private static final String HIBERNATE_GENERATE_DDL = "hibernate.generateDdl";
     private static final String DATABASE_URL = "datasource.url";
     private static final String CREATE_URL = "datasource.createUrl";
+    private static final String DATABASE_ENGINE = "datasource.engine";
+    private static final String DATABASE_DRIVER = "datasource.driverClassName";
     private static final String HIBERNATE_CREATE = "hibernate.hbm2ddl.auto";
     private static final String BLANK_PROFILE = "profile.template";
     private static final String SIG_PROFILE = "profile\\.\\d+\\.template";
     private static final String DEFAULT_HASH_ALGORITH = "md5";
     private static final int DEFAULT_MAX_BYTES_TO_SCAN = 65536;
+    private static final int DEFAULT_LISTING_THREADS = 8;
+    private static final int DEFAULT_DATABASE_WRITER_THREADS = 1;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
     private DroidGlobalConfig globalConfig;
@@ -170,7 +175,9 @@ public class ProfileContextLocator {
         props.setProperty("signatureFilePath", signatureFile.toAbsolutePath().toString());
         props.setProperty("submissionQueueFile", submissionQueueFile.toAbsolutePath().toString());
         props.setProperty("tempDirLocation", globalConfig.getTempDir().toAbsolutePath().toString());
+        props.setProperty("signatureCacheDir", globalConfig.getSignatureCacheDir().toAbsolutePath().toString());
         props.setProperty("profileHome", profileHome.toAbsolutePath().toString());
+        props.setProperty("profileId", profile.getUuid());
         props.setProperty("containerSigPath", containerSignatureFile.toAbsolutePath().toString());
 
         props.setProperty("processTar", String.valueOf(profile.getProcessTarFiles()));
@@ -189,6 +196,21 @@ public class ProfileContextLocator {
         props.setProperty("maxBytesToScan", String.valueOf(profile.getMaxBytesToScan()));
         props.setProperty("matchAllExtensions", String.valueOf(profile.getMatchAllExtensions()));
 
+        props.setProperty("listingThreads", String.valueOf(valueOrDefault(profile.getListingThreads(), DEFAULT_LISTING_THREADS)));
+        props.setProperty("identificationThreads", String.valueOf(valueOrDefault(profile.getIdentificationThreads(), 0)));
+        props.setProperty("archiveThreads", String.valueOf(valueOrDefault(profile.getArchiveThreads(), 0)));
+        props.setProperty("workQueueTasksPerThread", String.valueOf(valueOrDefault(profile.getWorkQueueTasksPerThread(), 0)));
+        props.setProperty("databaseWriterThreads",
+                String.valueOf(valueOrDefault(profile.getDatabaseWriterThreads(), DEFAULT_DATABASE_WRITER_THREADS)));
+        props.setProperty("memoryMapFiles", String.valueOf(Boolean.TRUE.equals(profile.getMemoryMapFiles())));
+        props.setProperty("resultLog", String.valueOf(Boolean.TRUE.equals(profile.getResultLog())));
+        props.setProperty("deferIndexes", String.valueOf(Boolean.TRUE.equals(profile.getDeferIndexes())));
+        props.setProperty("resultCacheEntries", String.valueOf(valueOrDefault(profile.getResultCacheEntries(), 0)));
+        props.setProperty("resultCacheOnDisk", String.valueOf(Boolean.TRUE.equals(profile.getResultCacheOnDisk())));
+        props.setProperty("signatureStatistics", String.valueOf(Boolean.TRUE.equals(profile.getSignatureStatistics())));
+        props.setProperty("exportSortByUri", String.valueOf(globalConfig.getProperties().getBoolean(
+                DroidGlobalProperty.EXPORT_SORT_BY_URI.getName(), true)));
+
         String outputFilePath = profile.getOutputFilePath();
         if (outputFilePath != null && !outputFilePath.isEmpty()) {
             props.setProperty("outputFilePath", outputFilePath);
@@ -209,11 +231,22 @@ public class ProfileContextLocator {
             createUrl = "{none}";
         }
         props.setProperty(CREATE_URL, createUrl);
-        props.setProperty(DATABASE_URL, String.format("jdbc:derby:%s", databasePath.toAbsolutePath().toString()));
+        final ProfileDatabaseEngine engine = ProfileDatabaseEngine.forDatabase(databasePath, getDatabaseEngine());
+        props.setProperty(DATABASE_ENGINE, engine.name());
+        props.setProperty(DATABASE_DRIVER, engine.getDriverClassName());
+        props.setProperty(DATABASE_URL, engine.getJdbcUrl(databasePath));
+        final Path templateDir = engine.getTemplateDir(globalConfig.getProfileTemplateDir());
+
+        // Results streamed straight to an output file never touch a profile database,
+        // so there is no database template to unpack or populate.
+        if (!props.getProperty("outputFilePath").isEmpty()) {
+            return profileInstanceLocator.getProfileInstanceManager(profile, props);
+        }
+
         TemplateStatus status = null;
         final boolean newDatabase = !Files.exists(databasePath);
         if (newDatabase) {
-            final Path profileTemplate = getProfileTemplateFile(profile);
+            final Path profileTemplate = getProfileTemplateFile(profile, templateDir);
             status = getTemplateStatus(profileTemplate);
             status = setupDatabaseTemplate(status, profileTemplate, databasePath);
         }
@@ -227,7 +260,7 @@ public class ProfileContextLocator {
         if (status == TemplateStatus.NO_TEMPLATE ) {
         //if (status != TemplateStatus.SIGNATURE_TEMPLATE ) {
             // If we're starting with a fresh DROID install, we'll get a SQL Exception if we try to connect to the
-            // Derby database (the database will exist but the DROID_USER and schema objects will not be there yet.
+            // database (the database will exist but the DROID_USER and schema objects will not be there yet.
             // TODO: Probably only want to do this if actually using this class - so query spring for whether
             // this is the case..
             JDBCBatchResultHandlerDao.setIsFreshTemplate(true);
@@ -240,13 +273,22 @@ public class ProfileContextLocator {
        // }
         
         if (newDatabase) {
-            generateNewDatabaseAndTemplates(profile, profileManager, databasePath, signatureFile, status);
+            generateNewDatabaseAndTemplates(profile, profileManager, databasePath, templateDir, signatureFile, status);
         }
         
         return profileManager;
     }
     //CHECKSTYLE:ON
     
+    private static int valueOrDefault(Integer value, int defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    private ProfileDatabaseEngine getDatabaseEngine() {
+        return ProfileDatabaseEngine.fromName(
+                globalConfig.getProperties().getString(DroidGlobalProperty.DATABASE_ENGINE.getName()));
+    }
+
     private void setCreateSchemaProperties(boolean create, Properties props) {
         if (create) {
             props.setProperty(HIBERNATE_GENERATE_DDL, "true");
@@ -288,6 +330,7 @@ public class ProfileContextLocator {
     private void generateNewDatabaseAndTemplates(final ProfileInstance profile, 
             final ProfileInstanceManager profileManager, 
             final Path databasePath,
+            final Path templateDir,
             final Path signatureFile,
             final TemplateStatus status) {
         
@@ -295,7 +338,7 @@ public class ProfileContextLocator {
         if (status == TemplateStatus.NO_TEMPLATE) {
             // freeze the database to allow safe copying
             freezeDatabase(profile.getUuid());
-            packProfileTemplate(databasePath, getTemplateFile(BLANK_PROFILE));
+            packProfileTemplate(databasePath, templateDir.resolve(BLANK_PROFILE));
             thawDatabase(profile.getUuid());
         }
         // If we don't have a signature template, then we need to 
@@ -306,7 +349,7 @@ public class ProfileContextLocator {
                 // store this database as a profile template for this 
                 // signature file version:
                 final String name = getTemplateNameForSignatureVersion(profile.getSignatureFileVersion());
-                Path templateFile = getTemplateFile(name);
+                Path templateFile = templateDir.resolve(name);
                 freezeDatabase(profile.getUuid());
                 packProfileTemplate(databasePath, templateFile);
                 thawDatabase(profile.getUuid());
@@ -331,11 +374,11 @@ public class ProfileContextLocator {
     }
 
     
-    private Path getProfileTemplateFile(ProfileInstance profile) {
+    private Path getProfileTemplateFile(ProfileInstance profile, Path templateDir) {
         final String sigTemplateName = getTemplateNameForSignatureVersion(profile.getSignatureFileVersion());
-        Path profileTemplate = getTemplateFile(sigTemplateName);
+        Path profileTemplate = templateDir.resolve(sigTemplateName);
         if (!Files.exists(profileTemplate)) {
-            profileTemplate = getTemplateFile(BLANK_PROFILE);
+            profileTemplate = templateDir.resolve(BLANK_PROFILE);
             if (!Files.exists(profileTemplate)) {
                 profileTemplate = null;
             }
@@ -348,11 +391,6 @@ public class ProfileContextLocator {
         return String.format("profile.%d.template", signatureVersion);
     }
     
-    private Path getTemplateFile(String templateFileName) {
-        final Path templateDir = globalConfig.getProfileTemplateDir();
-        return templateDir.resolve(templateFileName);
-    }
-    
     
     private void unpackProfileTemplate(final Path profileTemplate, final Path copyToDirectory) throws IOException {
         Files.createDirectories(copyToDirectory);
@@ -374,6 +412,7 @@ public class ProfileContextLocator {
             }
         };
         try {
+            Files.createDirectories(profileTemplate.getParent());
             packer.saveProfile(databaseDir, profileTemplate, observe);
         } catch (IOException e) {
             log.error(e.getMessage(), e);
@@ -404,6 +443,26 @@ public class ProfileContextLocator {
         this.globalConfig = globalConfig;
     }
 
+    /**
+     * Sets the options which tune how a profile performs, rather than what it identifies.
+     * @param profileInstance The profile to set the options on.
+     * @param mergedConfig The profile configuration.
+     */
+    private static void setPerformanceOptions(ProfileInstance profileInstance, PropertiesConfiguration mergedConfig) {
+        profileInstance.setListingThreads(mergedConfig.getInt(DroidGlobalProperty.LISTING_THREADS.getName(), DEFAULT_LISTING_THREADS));
+        profileInstance.setIdentificationThreads(mergedConfig.getInt(DroidGlobalProperty.IDENTIFICATION_THREADS.getName(), 0));
+        profileInstance.setArchiveThreads(mergedConfig.getInt(DroidGlobalProperty.ARCHIVE_THREADS.getName(), 0));
+        profileInstance.setWorkQueueTasksPerThread(mergedConfig.getInt(DroidGlobalProperty.WORK_QUEUE_TASKS_PER_THREAD.getName(), 0));
+        profileInstance.setDatabaseWriterThreads(mergedConfig.getInt(DroidGlobalProperty.DATABASE_WRITER_THREADS.getName(),
+                DEFAULT_DATABASE_WRITER_THREADS));
+        profileInstance.setMemoryMapFiles(mergedConfig.getBoolean(DroidGlobalProperty.MEMORY_MAP_FILES.getName(), false));
+        profileInstance.setResultLog(mergedConfig.getBoolean(DroidGlobalProperty.RESULT_LOG.getName(), false));
+        profileInstance.setDeferIndexes(mergedConfig.getBoolean(DroidGlobalProperty.DEFER_INDEXES.getName(), false));
+        profileInstance.setResultCacheEntries(mergedConfig.getInt(DroidGlobalProperty.RESULT_CACHE_ENTRIES.getName(), 0));
+        profileInstance.setResultCacheOnDisk(mergedConfig.getBoolean(DroidGlobalProperty.RESULT_CACHE_ON_DISK.getName(), false));
+        profileInstance.setSignatureStatistics(mergedConfig.getBoolean(DroidGlobalProperty.SIGNATURE_STATISTICS.getName(), false));
+    }
+
     private ProfileInstance createNewProfileInstance(String id, PropertiesConfiguration propertiesOverride) {
         PropertiesConfiguration mergedConfig = mergeConfigurations(globalConfig.getProperties(), propertiesOverride);
         ProfileInstance profileInstance = new ProfileInstance(ProfileState.INITIALISING);
@@ -422,6 +481,7 @@ public class ProfileContextLocator {
         profileInstance.setProcessWarcFiles(mergedConfig.getBoolean(DroidGlobalProperty.PROCESS_WARC.getName(), true));
         profileInstance.setMaxBytesToScan(mergedConfig.getLong(DroidGlobalProperty.MAX_BYTES_TO_SCAN.getName(), DEFAULT_MAX_BYTES_TO_SCAN));
         profileInstance.setMatchAllExtensions(mergedConfig.getBoolean(DroidGlobalProperty.EXTENSION_ALL.getName(), false));
+        setPerformanceOptions(profileInstance, mergedConfig);
         profileInstance.setOutputFilePath(mergedConfig.getString(DroidGlobalProperty.OUTPUT_FILE_PATH.getName(), ""));
         profileInstance.setQuoteAllFields(mergedConfig.getBoolean(DroidGlobalProperty.QUOTE_ALL_FIELDS.getName(), true));
         profileInstance.setColumnsToWrite(mergedConfig.getString(DroidGlobalProperty.COLUMNS_TO_WRITE.getName(), ""));
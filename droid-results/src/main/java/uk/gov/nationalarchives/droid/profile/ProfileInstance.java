@@ -167,6 +167,40 @@ public class ProfileInstance {
     @XmlTransient
     private ExportOptions exportOptions;
 
+    // Scheduling settings tune a run to the machine it runs on, so they are not saved with the profile.
+    @XmlTransient
+    private Integer listingThreads;
+
+    @XmlTransient
+    private Integer identificationThreads;
+
+    @XmlTransient
+    private Integer archiveThreads;
+
+    @XmlTransient
+    private Integer workQueueTasksPerThread;
+
+    @XmlTransient
+    private Integer databaseWriterThreads;
+
+    @XmlTransient
+    private Boolean memoryMapFiles;
+
+    @XmlTransient
+    private Boolean resultLog;
+
+    @XmlTransient
+    private Boolean deferIndexes;
+
+    @XmlTransient
+    private Integer resultCacheEntries;
+
+    @XmlTransient
+    private Boolean resultCacheOnDisk;
+
+    @XmlTransient
+    private Boolean signatureStatistics;
+
     @XmlTransient
     private Set<ProfileEventListener> eventListeners = new HashSet<ProfileEventListener>();
 
@@ -674,6 +708,189 @@ public class ProfileInstance {
         this.maxBytesToScan = maxBytesToScan;
     }
     
+    /**
+     *
+     * @return How many threads list directories ahead of the walk, or null if not set.
+     */
+    public Integer getListingThreads() {
+        return listingThreads;
+    }
+
+    /**
+     *
+     * @param listingThreads How many threads list directories ahead of the walk,
+     *                       or 1 or less to list them as they are walked.
+     */
+    public void setListingThreads(Integer listingThreads) {
+        this.listingThreads = listingThreads;
+    }
+
+    /**
+     *
+     * @return How many threads match signatures, or null if not set.
+     */
+    public Integer getIdentificationThreads() {
+        return identificationThreads;
+    }
+
+    /**
+     *
+     * @param identificationThreads How many threads match signatures,
+     *                              or 0 for as many as there are processors.
+     */
+    public void setIdentificationThreads(Integer identificationThreads) {
+        this.identificationThreads = identificationThreads;
+    }
+
+    /**
+     *
+     * @return How many threads expand archives, or null if not set.
+     */
+    public Integer getArchiveThreads() {
+        return archiveThreads;
+    }
+
+    /**
+     *
+     * @param archiveThreads How many threads expand archives, or 0 for as many as there are processors.
+     */
+    public void setArchiveThreads(Integer archiveThreads) {
+        this.archiveThreads = archiveThreads;
+    }
+
+    /**
+     *
+     * @return The number of files which can wait to be identified for each identification thread,
+     *         or null if not set.
+     */
+    public Integer getWorkQueueTasksPerThread() {
+        return workQueueTasksPerThread;
+    }
+
+    /**
+     *
+     * @param workQueueTasksPerThread The number of files which can wait to be identified for each
+     *                                identification thread, or 0 for the default.
+     */
+    public void setWorkQueueTasksPerThread(Integer workQueueTasksPerThread) {
+        this.workQueueTasksPerThread = workQueueTasksPerThread;
+    }
+
+    /**
+     *
+     * @return How many threads write results to the profile database, or null if not set.
+     */
+    public Integer getDatabaseWriterThreads() {
+        return databaseWriterThreads;
+    }
+
+    /**
+     *
+     * @param databaseWriterThreads How many threads write results to the profile database,
+     *                              or 0 for as many as there are processors.
+     */
+    public void setDatabaseWriterThreads(Integer databaseWriterThreads) {
+        this.databaseWriterThreads = databaseWriterThreads;
+    }
+
+    /**
+     *
+     * @return Whether files are mapped into memory to identify them, or null if not set.
+     */
+    public Boolean getMemoryMapFiles() {
+        return memoryMapFiles;
+    }
+
+    /**
+     *
+     * @param memoryMapFiles Whether files are mapped into memory to identify them,
+     *                       rather than read into buffers.
+     */
+    public void setMemoryMapFiles(Boolean memoryMapFiles) {
+        this.memoryMapFiles = memoryMapFiles;
+    }
+
+    /**
+     *
+     * @return Whether results are appended to a result log, and only written to the database when read,
+     *         or null if not set.
+     */
+    public Boolean getResultLog() {
+        return resultLog;
+    }
+
+    /**
+     *
+     * @param resultLog Whether results are appended to a result log, and only written to the database when read.
+     */
+    public void setResultLog(Boolean resultLog) {
+        this.resultLog = resultLog;
+    }
+
+    /**
+     *
+     * @return Whether the database indexes are only created once a run has finished, or null if not set.
+     */
+    public Boolean getDeferIndexes() {
+        return deferIndexes;
+    }
+
+    /**
+     *
+     * @param deferIndexes Whether the database indexes are only created once a run has finished.
+     */
+    public void setDeferIndexes(Boolean deferIndexes) {
+        this.deferIndexes = deferIndexes;
+    }
+
+    /**
+     *
+     * @return The number of identification results cached in memory, or null if not set.
+     */
+    public Integer getResultCacheEntries() {
+        return resultCacheEntries;
+    }
+
+    /**
+     *
+     * @param resultCacheEntries The number of identification results cached in memory, or zero for no cache.
+     */
+    public void setResultCacheEntries(Integer resultCacheEntries) {
+        this.resultCacheEntries = resultCacheEntries;
+    }
+
+    /**
+     *
+     * @return Whether cached identification results evicted from memory are written to disk, or null if not set.
+     */
+    public Boolean getResultCacheOnDisk() {
+        return resultCacheOnDisk;
+    }
+
+    /**
+     *
+     * @param resultCacheOnDisk Whether cached identification results evicted from memory are written to disk.
+     */
+    public void setResultCacheOnDisk(Boolean resultCacheOnDisk) {
+        this.resultCacheOnDisk = resultCacheOnDisk;
+    }
+
+    /**
+     *
+     * @return Whether the cost of running each binary signature is recorded, or null if not set.
+     */
+    public Boolean getSignatureStatistics() {
+        return signatureStatistics;
+    }
+
+    /**
+     *
+     * @param signatureStatistics Whether the cost of running each binary signature is recorded.
+     */
+    public void setSignatureStatistics(Boolean signatureStatistics) {
+        this.signatureStatistics = signatureStatistics;
+    }
+
     /**
      * 
      * @param matchAllExtensions Whether to match all extensions, or just ones without another
@@ -38,6 +38,7 @@ import java.util.concurrent.Future;
 
 import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Criterion;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SignatureStatistics;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
 import uk.gov.nationalarchives.droid.planet.xml.dao.PlanetsXMLData;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
@@ -132,6 +133,19 @@ public interface ProfileInstanceManager {
      * @param throttleValue the new Throttle value
      */
     void setThrottleValue(int throttleValue);
+
+    /**
+     * @return the cost of running each binary signature in this profile, or null if it is not recorded.
+     */
+    SignatureStatistics getSignatureStatistics();
+
+    /**
+     * Indexes the results of a previous profile of the same resources, to copy forward for files
+     * which have not changed since, when the profile is next started.
+     * @param previousProfile the manager of the previous profile.
+     * @throws IOException if the results of the previous profile could not be read.
+     */
+    void copyForwardResultsFrom(ProfileInstanceManager previousProfile) throws IOException;
     
     /**
      * Gets a resource node item reader.
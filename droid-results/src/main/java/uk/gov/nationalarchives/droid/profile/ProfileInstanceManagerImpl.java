@@ -37,17 +37,16 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
 import java.util.concurrent.Semaphore;
 
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
 import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
@@ -56,7 +55,9 @@ import uk.gov.nationalarchives.droid.core.interfaces.control.ThreadWaitingHandle
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Criterion;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SignatureStatistics;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
 import uk.gov.nationalarchives.droid.planet.xml.dao.PlanetsXMLDao;
 import uk.gov.nationalarchives.droid.planet.xml.dao.PlanetsXMLData;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
@@ -67,11 +68,15 @@ import uk.gov.nationalarchives.droid.report.dao.GroupByField;
 import uk.gov.nationalarchives.droid.report.dao.ReportDao;
 import uk.gov.nationalarchives.droid.report.dao.ReportFieldEnum;
 import uk.gov.nationalarchives.droid.report.dao.ReportLineItem;
+import uk.gov.nationalarchives.droid.results.handlers.JDBCBatchResultHandlerDao;
 import uk.gov.nationalarchives.droid.results.handlers.ProgressMonitor;
+import uk.gov.nationalarchives.droid.results.handlers.ProgressObserver;
+import uk.gov.nationalarchives.droid.results.handlers.ResultHandlerDao;
+import uk.gov.nationalarchives.droid.results.handlers.ResultLogHandlerDao;
 import uk.gov.nationalarchives.droid.signature.FormatCallback;
 import uk.gov.nationalarchives.droid.signature.SaxSignatureFileParser;
 import uk.gov.nationalarchives.droid.signature.SignatureParser;
-import uk.gov.nationalarchives.droid.submitter.ProfileSpecJobCounter;
+import uk.gov.nationalarchives.droid.submitter.PreviousProfileResults;
 import uk.gov.nationalarchives.droid.submitter.ProfileSpecWalker;
 import uk.gov.nationalarchives.droid.submitter.ProfileWalkState;
 import uk.gov.nationalarchives.droid.submitter.ProfileWalkerDao;
@@ -95,8 +100,11 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
     private Future<?> task;
     private AsynchDroid submissionGateway;
     private ProfileWalkerDao profileWalkerDao;
+    private ResultHandlerDao resultHandlerDao;
+    private BinarySignatureIdentifier binarySignatureIdentifier;
 
     private ProfileWalkState walkState;
+    private PreviousProfileResults previousResults;
     private boolean inError;
 
     private PauseAspect pauseControl;
@@ -239,30 +247,8 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
             // start walking the profile spec
             profileInstance.start();
 
-            final Runnable walk;
-            ProgressMonitor progressMonitor = specWalker.getProgressMonitor();
-            if (progressMonitor != null && progressMonitor.isMonitoring()) {
-                final ProfileSpecJobCounter counter = new ProfileSpecJobCounter(profileInstance.getProfileSpec());
-                final FutureTask<Long> countFuture = new FutureTask<Long>(counter) {
-                    @Override
-                    protected void done() {
-                        if (!isCancelled()) {
-                            try {
-                                specWalker.getProgressMonitor().setTargetCount(get());
-                            } catch (InterruptedException e) {
-                                log.debug(e.getMessage(), e);
-                            } catch (ExecutionException e) {
-                                log.error(e.getMessage(), e);
-                            }
-                        }
-                    }
-                };
-                ExecutorService executor = Executors.newSingleThreadExecutor();
-                executor.submit(countFuture);
-                walk = new WalkerTask(countFuture, counter);
-            } else {
-                walk = new WalkerTask(null, null);
-            }
+            // The spec walker publishes the progress target as it finds entries to identify.
+            final Runnable walk = new WalkerTask();
 
             ExecutorService mainSubmitter = Executors.newSingleThreadExecutor();
             task = mainSubmitter.submit(walk);
@@ -272,15 +258,7 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
     }
     
     private final class WalkerTask implements Runnable {
-        
-        private ProfileSpecJobCounter counter;
-        private Future<Long> countFuture;
-        
-        WalkerTask(Future<Long> countFuture, ProfileSpecJobCounter counter) {
-            this.countFuture = countFuture;
-            this.counter = counter;
-        }
-        
+
         @Override
         public void run() {
             try {
@@ -294,16 +272,11 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
                 throw new ProfileException(e);
             } finally {
                 postWalk();
-                if (counter != null) {
-                    counter.cancel();
-                }
-                if (countFuture != null) {
-                    countFuture.cancel(false);
-                }
                 if (!inError) {
                     profileInstance.finish();
                 }
                 submissionGateway.save();
+                finishBulkLoad();
                 profileWalkerDao.delete();
             }
         }
@@ -311,6 +284,9 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
         private void preWalk() throws InterruptedException {
             submitterThreadId.set(profileInstance.getUuid());
             submitterPermits.acquire();
+            if (resultHandlerDao instanceof JDBCBatchResultHandlerDao) {
+                ((JDBCBatchResultHandlerDao) resultHandlerDao).startBulkLoad();
+            }
             ProgressMonitor progressMonitor = specWalker.getProgressMonitor();
             final ProgressState progress = profileInstance.getProgress();
             if (progress != null && progressMonitor != null) {
@@ -318,8 +294,25 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
             }
         }
 
+        private void finishBulkLoad() {
+            if (resultHandlerDao instanceof JDBCBatchResultHandlerDao) {
+                ((JDBCBatchResultHandlerDao) resultHandlerDao).finishBulkLoad(new ProgressObserver() {
+                    @Override
+                    public void onProgress(Integer progress) {
+                        log.debug("Creating deferred indexes: " + progress + "%");
+                    }
+                });
+            }
+        }
+
         private void postWalk() {
             submitterPermits.release();
+            if (previousResults != null) {
+                // Release the index of previous results once every file has been walked.
+                log.info(String.format("Files in the previous profile which were not copied forward: %d", previousResults.size()));
+                specWalker.getFileEventHandler().setPreviousResults(null);
+                previousResults = null;
+            }
             try {
                 submissionGateway.awaitFinished();
             } catch (InterruptedException e) {
@@ -339,6 +332,7 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
     @Override
     public List<ProfileResourceNode> findRootProfileResourceNodes() {
 
+        prepareResultsForReading();
         final Filter filter = profileInstance.getFilter();
         if (filter.isEnabled() && filter.hasCriteria()) {
             return findRootProfileResourceNodes(filter);
@@ -405,6 +399,7 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
 
     @Override
     public List<ProfileResourceNode> findAllProfileResourceNodes(Long parentId) {
+        prepareResultsForReading();
         final Filter filter = profileInstance.getFilter();
         if (filter.isEnabled() && filter.hasCriteria()) {
             return profileDao.findProfileResourceNodes(parentId, filter);
@@ -454,6 +449,24 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
         profileInstance.setThrottle(throttleValue);
     }
 
+    @Override
+    public SignatureStatistics getSignatureStatistics() {
+        return binarySignatureIdentifier == null ? null : binarySignatureIdentifier.getStatistics();
+    }
+
+    @Override
+    public void copyForwardResultsFrom(ProfileInstanceManager previousProfile) throws IOException {
+        final PreviousProfileResults results = new PreviousProfileResults();
+        try {
+            results.addAll(previousProfile.getNodeItemReader());
+        } catch (JobCancellationException e) {
+            throw new IOException(e);
+        }
+        log.info(String.format("Copying forward results for unchanged files: %d files indexed", results.size()));
+        previousResults = results;
+        specWalker.getFileEventHandler().setPreviousResults(results);
+    }
+
     /**
      * Gets a resource node item reader. Spring will provide the implementation
      * via a method lookup. 
@@ -471,6 +484,7 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
      */
 
     public PlanetsXMLData getPlanetsData() {
+        prepareResultsForReading();
         return planetsDao.getDataForPlanetsXML(profileInstance.getFilter());
     }
 
@@ -487,9 +501,31 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
      */
     public List<ReportLineItem> getReportData(Criterion filter, ReportFieldEnum reportField,
             List<GroupByField> groupByFields) {
+        prepareResultsForReading();
         return reportDao.getReportData(filter, reportField, groupByFields);
     }
 
+    /**
+     * Writes any results still in a result log into the profile database, before they are read from it.
+     * If no run is in progress, also creates any indexes which were deferred.
+     */
+    private void prepareResultsForReading() {
+        if (resultHandlerDao instanceof ResultLogHandlerDao) {
+            ((ResultLogHandlerDao) resultHandlerDao).materialise();
+        } else if (resultHandlerDao instanceof JDBCBatchResultHandlerDao && (task == null || task.isDone())) {
+            ((JDBCBatchResultHandlerDao) resultHandlerDao).createDeferredIndexes(null);
+        }
+    }
+
+    /**
+     * @param resultHandlerDao
+     *            the resultHandlerDao which saves results, so results it has
+     *            not yet written to the database can be written before reading them.
+     */
+    public void setResultHandlerDao(ResultHandlerDao resultHandlerDao) {
+        this.resultHandlerDao = resultHandlerDao;
+    }
+
     /**
      * @param planetsDao
      *            the planetsDao to set
@@ -538,6 +574,14 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
         this.specWalker = specWalker;
     }
 
+    /**
+     * @param binarySignatureIdentifier
+     *            the binary signature identifier of the profile, which records its signature statistics.
+     */
+    public void setBinarySignatureIdentifier(BinarySignatureIdentifier binarySignatureIdentifier) {
+        this.binarySignatureIdentifier = binarySignatureIdentifier;
+    }
+
     @Override
     public ProgressMonitor getProgressMonitor() {
         return specWalker.getProgressMonitor();
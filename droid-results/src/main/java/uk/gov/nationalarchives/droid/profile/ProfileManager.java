@@ -41,6 +41,7 @@ import org.apache.commons.configuration.PropertiesConfiguration;
 
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileInfo;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureType;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SignatureStatistics;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 import uk.gov.nationalarchives.droid.profile.referencedata.ReferenceData;
 import uk.gov.nationalarchives.droid.results.handlers.ProgressObserver;
@@ -91,6 +92,18 @@ public interface ProfileManager {
      */
     Future<?> start(String profileId) throws IOException;
 
+    /**
+     * Starts a profile asynchronously, copying forward the results of a previous profile for files
+     * which have not changed since it was run, rather than identifying them again.  If the previous
+     * profile was identified with different signatures or settings, every file is identified.
+     *
+     * @param profileId the profile to start
+     * @param previousProfileId an open profile of the same resources, run previously
+     * @return future which is done when the profile finishes.
+     * @throws IOException if there was a problem with the profile.
+     */
+    Future<?> start(String profileId, String previousProfileId) throws IOException;
+
     /**
      * Stops a profile.
      * 
@@ -190,5 +203,12 @@ public interface ProfileManager {
      * @param value the new throttle value
      */
     void setThrottleValue(String uuid, int value);
+
+    /**
+     * Gets the cost of running each binary signature in a profile, recorded while the profile is open.
+     * @param profileId the profile ID
+     * @return the signature statistics of the profile, or null if they are not recorded.
+     */
+    SignatureStatistics getSignatureStatistics(String profileId);
     
 }
@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -51,6 +52,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileExce
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileInfo;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureManager;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureType;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SignatureStatistics;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 import uk.gov.nationalarchives.droid.profile.referencedata.ReferenceData;
 import uk.gov.nationalarchives.droid.results.handlers.ProgressMonitor;
@@ -267,6 +269,36 @@ public class ProfileManagerImpl implements ProfileManager {
         return profileInstanceManager.start();
     }
 
+    @Override
+    public Future<?> start(String profileId, String previousProfileId) throws IOException {
+        final ProfileInstance profile = profileContextLocator.getProfileInstance(profileId);
+        final ProfileInstance previous = profileContextLocator.getProfileInstance(previousProfileId);
+        final ProfileInstanceManager profileInstanceManager = getProfileInstanceManager(profileId);
+        if (Arrays.equals(getIdentificationSettings(profile), getIdentificationSettings(previous))) {
+            profileInstanceManager.copyForwardResultsFrom(getProfileInstanceManager(previousProfileId));
+        } else {
+            log.warn(String.format("Profile %s was identified with different signatures or settings, "
+                    + "so all files will be identified again.", previousProfileId));
+        }
+        return start(profileId);
+    }
+
+    /**
+     * @param profile A profile.
+     * @return The settings which affect the results of identifying a file in the profile.
+     */
+    private static Object[] getIdentificationSettings(ProfileInstance profile) {
+        final boolean generateHash = Boolean.TRUE.equals(profile.getGenerateHash());
+        return new Object[] {
+            profile.getSignatureFileVersion(), profile.getContainerSignatureFileVersion(),
+            profile.getMaxBytesToScan(), profile.getMatchAllExtensions(),
+            generateHash, generateHash ? profile.getHashAlgorithm() : null,
+            profile.getProcessZipFiles(), profile.getProcessTarFiles(), profile.getProcessGzipFiles(),
+            profile.getProcessRarFiles(), profile.getProcess7zipFiles(), profile.getProcessIsoFiles(),
+            profile.getProcessBzip2Files(), profile.getProcessArcFiles(), profile.getProcessWarcFiles(),
+        };
+    }
+
     @Override
     public List<ProfileResourceNode> findProfileResourceNodeAndImmediateChildren(
             String profileId, Long parentId) {
@@ -436,6 +468,11 @@ public class ProfileManagerImpl implements ProfileManager {
     public void setThrottleValue(String uuid, int value) {
         getProfileInstanceManager(uuid).setThrottleValue(value);
     }
+
+    @Override
+    public SignatureStatistics getSignatureStatistics(String profileId) {
+        return getProfileInstanceManager(profileId).getSignatureStatistics();
+    }
     
     /**
      * @param signatureManager the signatureManager to set
@@ -46,7 +46,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.io.ClassPathResource;
 
-import uk.gov.nationalarchives.droid.profile.datasource.DerbyPooledDataSource;
+import uk.gov.nationalarchives.droid.profile.datasource.PooledProfileDataSource;
 
 /**
  * @author rflitcroft
@@ -61,6 +61,12 @@ public class SpringProfileInstanceFactory implements ProfileInstanceLocator {
 
     private static final String PROFILE_MANAGER = "profileManager";
 
+    private static final String OUTPUT_FILE_PATH = "outputFilePath";
+
+    private static final String JPA_CONTEXT = "META-INF/spring-jpa.xml";
+    private static final String RESULTS_CONTEXT = "META-INF/spring-results.xml";
+    private static final String STREAMING_CONTEXT = "META-INF/spring-streaming.xml";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private Map<String, GenericApplicationContext> profileInstanceManagers =
@@ -76,9 +82,7 @@ public class SpringProfileInstanceFactory implements ProfileInstanceLocator {
         if (!profileInstanceManagers.containsKey(profile.getUuid())) {
             GenericApplicationContext ctx = new GenericApplicationContext();
             XmlBeanDefinitionReader xmlReader = new XmlBeanDefinitionReader(ctx);
-            xmlReader.loadBeanDefinitions(new ClassPathResource[] {
-                new ClassPathResource("META-INF/spring-jpa.xml"),
-                new ClassPathResource("META-INF/spring-results.xml"), });
+            xmlReader.loadBeanDefinitions(getContextResources(properties));
             xmlReader.setResourceLoader(ctx);
             xmlReader.setEntityResolver(new ResourceEntityResolver(ctx));
 
@@ -103,13 +107,31 @@ public class SpringProfileInstanceFactory implements ProfileInstanceLocator {
 
     }
 
+    /**
+     * Results written straight to an output file are streamed without a profile database,
+     * so the data source context is replaced by one which does not need it.
+     * @param properties The properties used to initialise the profile context.
+     * @return The Spring bean definitions to load for the profile context.
+     */
+    private static ClassPathResource[] getContextResources(Properties properties) {
+        final String outputFilePath = properties.getProperty(OUTPUT_FILE_PATH);
+        if (outputFilePath != null && !outputFilePath.isEmpty()) {
+            return new ClassPathResource[] {
+                new ClassPathResource(RESULTS_CONTEXT),
+                new ClassPathResource(STREAMING_CONTEXT), };
+        }
+        return new ClassPathResource[] {
+            new ClassPathResource(JPA_CONTEXT),
+            new ClassPathResource(RESULTS_CONTEXT), };
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void freezeDatabase(String profileId) {
         ApplicationContext ctx = profileInstanceManagers.get(profileId);
-        DerbyPooledDataSource dataSource = (DerbyPooledDataSource) ctx
+        PooledProfileDataSource dataSource = (PooledProfileDataSource) ctx
                 .getBean(DATA_SOURCE_BEAN_NAME);
         try {
             dataSource.freeze();
@@ -127,7 +149,7 @@ public class SpringProfileInstanceFactory implements ProfileInstanceLocator {
     @Override
     public void thawDatabase(String profileId) {
         ApplicationContext ctx = profileInstanceManagers.get(profileId);
-        DerbyPooledDataSource dataSource = (DerbyPooledDataSource) ctx
+        PooledProfileDataSource dataSource = (PooledProfileDataSource) ctx
                 .getBean(DATA_SOURCE_BEAN_NAME);
         try {
             dataSource.thaw();
@@ -145,7 +167,7 @@ public class SpringProfileInstanceFactory implements ProfileInstanceLocator {
     @Override
     public Connection getConnection(String profileId) {
         ApplicationContext ctx = profileInstanceManagers.get(profileId);
-        DerbyPooledDataSource dataSource = (DerbyPooledDataSource) ctx
+        PooledProfileDataSource dataSource = (PooledProfileDataSource) ctx
                 .getBean(DATA_SOURCE_BEAN_NAME);
         try {
             return dataSource.getConnection();
@@ -31,6 +31,7 @@
  */
 package uk.gov.nationalarchives.droid.profile.datasource;
 
+import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -42,32 +43,49 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 /**
+ * A pool of connections to a profile database, held by any of the {@link ProfileDatabaseEngine}s.
  * @author rflitcroft
  *
  */
-public class DerbyPooledDataSource extends HikariDataSource {
+public class PooledProfileDataSource extends HikariDataSource {
 
     private static final long serialVersionUID = -8613139738021279720L;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final HikariConfig config;
+    private final ProfileDatabaseEngine engine;
+
+    /**
+     * Constructor for a Derby profile database.
+     *
+     * @param config The configuration for the pool
+     */
+    public PooledProfileDataSource(final HikariConfig config) {
+        this(config, ProfileDatabaseEngine.DERBY);
+    }
 
     /**
      * Constructor.
      *
      * @param config The configuration for the pool
+     * @param engine The engine holding the database
      */
-    public DerbyPooledDataSource(final HikariConfig config) {
+    public PooledProfileDataSource(final HikariConfig config, final ProfileDatabaseEngine engine) {
         super(config);
         this.config = config;
+        this.engine = engine;
+    }
+
+    /**
+     * @return The engine holding the database.
+     */
+    public ProfileDatabaseEngine getEngine() {
+        return engine;
     }
 
     /**
     * Shuts down the database.  
-    * Derby throws a SQLNonTransientConnectionException on a SUCCESSFUL shutdown of the
-    * database (with SQLstate 08006), so we catch this and log as debug, otherwise as an error.
-     *
-    * catch SQLException if the database could not be shutdown.
+    * Errors shutting down the database are logged rather than thrown.
     */
     @Override
     public void close() {
@@ -75,16 +93,10 @@ public class DerbyPooledDataSource extends HikariDataSource {
         log.debug(String.format("Closing database [%s]", config.getJdbcUrl()));
         super.close();
 
-        String url = config.getJdbcUrl() + ";shutdown=true";
-
         try {
-            DriverManager.getConnection(url);
+            engine.shutdown(config.getJdbcUrl());
         } catch (SQLException e) {
-            if ("08006".equals(e.getSQLState())) {
-                log.debug(e.getMessage());
-            } else {
-                log.error(e.getMessage(), e);
-            }
+            log.error(e.getMessage(), e);
         }
     }
 
@@ -95,12 +107,7 @@ public class DerbyPooledDataSource extends HikariDataSource {
     public void freeze() {
         
         log.debug(String.format("Freezing database [%s]", config.getJdbcUrl()));
-        
-        try (final Statement s = DriverManager.getConnection(config.getJdbcUrl()).createStatement()) {
-            s.executeUpdate("CALL SYSCS_UTIL.SYSCS_FREEZE_DATABASE()");
-        } catch (SQLException e) {
-            log.error(e.getMessage(), e);
-        }
+        execute(engine.getFreezeStatement());
     }
     
     /**
@@ -108,12 +115,19 @@ public class DerbyPooledDataSource extends HikariDataSource {
      */
     public void thaw() {
         
-        log.debug(String.format("Derby thawing database [%s]", config.getJdbcUrl()));
-        
-        try (final Statement s = DriverManager.getConnection(config.getJdbcUrl()).createStatement()) {
-            s.executeUpdate("CALL SYSCS_UTIL.SYSCS_UNFREEZE_DATABASE()");
-        } catch (SQLException e) {
-            log.error(e.getMessage(), e);
+        log.debug(String.format("Thawing database [%s]", config.getJdbcUrl()));
+        execute(engine.getThawStatement());
+    }
+
+    private void execute(String sql) {
+        if (sql != null) {
+            try (Connection connection = DriverManager.getConnection(config.getJdbcUrl(),
+                    config.getUsername(), config.getPassword());
+                 Statement s = connection.createStatement()) {
+                s.executeUpdate(sql);
+            } catch (SQLException e) {
+                log.error(e.getMessage(), e);
+            }
         }
     }
 
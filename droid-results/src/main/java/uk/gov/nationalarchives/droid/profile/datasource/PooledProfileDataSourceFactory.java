@@ -45,9 +45,9 @@ import uk.gov.nationalarchives.droid.core.interfaces.config.RuntimeConfig;
 
 
 /**
- * Spring Factory bean to create instance of DerbyPooledDataSource.
+ * Spring Factory bean to create instance of PooledProfileDataSource.
  */
-public class DerbyPooledDataSourceFactory implements FactoryBean<DerbyPooledDataSource> {
+public class PooledProfileDataSourceFactory implements FactoryBean<PooledProfileDataSource> {
 
     private static final String NO_CREATE_URL = "{none}";
 
@@ -57,17 +57,19 @@ public class DerbyPooledDataSourceFactory implements FactoryBean<DerbyPooledData
 
     private HikariConfig config;
 
+    private ProfileDatabaseEngine engine = ProfileDatabaseEngine.DERBY;
+
     /**
      * Empty bean constructor.
      */
-    public DerbyPooledDataSourceFactory() {
+    public PooledProfileDataSourceFactory() {
     }
 
     /**
      * Parameterized constructor.
      * @param config The config to use.
      */
-    public DerbyPooledDataSourceFactory(HikariConfig config) {
+    public PooledProfileDataSourceFactory(HikariConfig config) {
         setConfig(config);
     }
 
@@ -76,31 +78,31 @@ public class DerbyPooledDataSourceFactory implements FactoryBean<DerbyPooledData
      * @param config the config to use
      * @param createUrl The createUrl to use.
      */
-    public DerbyPooledDataSourceFactory(HikariConfig config, String createUrl) {
+    public PooledProfileDataSourceFactory(HikariConfig config, String createUrl) {
         setConfig(config);
         setCreateUrl(createUrl);
     }
 
     @Override
-    public DerbyPooledDataSource getObject() throws Exception {
+    public PooledProfileDataSource getObject() throws Exception {
         String droidLogDir = System.getProperty(RuntimeConfig.LOG_DIR, "");
         System.setProperty("derby.stream.error.file",
                 Paths.get(droidLogDir, "derby.log").toAbsolutePath().toString());
         //setPoolPreparedStatements(true);
         //setInitialSize(20); // initial size of connection pool.
-        log.debug(String.format("Booting database [%s]", config.getJdbcUrl()));
+        log.debug(String.format("Booting %s database [%s]", engine, config.getJdbcUrl()));
         String url = getCreateURL();
         String driverClassName = getDriverClassName();
         try {
             Class.forName(driverClassName);
-            DriverManager.getConnection(url).close();
+            DriverManager.getConnection(url, config.getUsername(), config.getPassword()).close();
         } catch (ClassNotFoundException e) {
             String message = String.format("Invalid driver class name: %s", driverClassName);
             log.error(message, e);
             throw new RuntimeException(message, e);
         }
 
-        return new DerbyPooledDataSource(config);
+        return new PooledProfileDataSource(config, engine);
     }
 
     private String getDriverClassName() {
@@ -108,7 +110,7 @@ public class DerbyPooledDataSourceFactory implements FactoryBean<DerbyPooledData
     }
 
     private String getCreateURL() {
-        String url = config.getJdbcUrl() + ";create=true";
+        String url = engine.getCreateUrl(config.getJdbcUrl());
         if (createUrl != null && !createUrl.isEmpty() && !NO_CREATE_URL.equals(createUrl)) {
             url = url + ";" + createUrl;
         }
@@ -116,13 +118,20 @@ public class DerbyPooledDataSourceFactory implements FactoryBean<DerbyPooledData
     }
 
     /**
-     * URL to create derby database.
+     * Settings to append to the URL which creates the database.
      * @param createUrl parameter.
      */
     public void setCreateUrl(String createUrl) {
         this.createUrl = createUrl;
     }
 
+    /**
+     * @param engine The engine holding the database.
+     */
+    public void setEngine(ProfileDatabaseEngine engine) {
+        this.engine = engine;
+    }
+
     /**
      * HikariConfig config.
      * @param config Database pool configuration.
@@ -133,7 +142,7 @@ public class DerbyPooledDataSourceFactory implements FactoryBean<DerbyPooledData
 
     @Override
     public Class<?> getObjectType() {
-        return DerbyPooledDataSource.class;
+        return PooledProfileDataSource.class;
     }
 
     @Override
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile.datasource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * The embedded database engines which can hold a profile database.
+ * <p>
+ * Each engine knows how to locate, create, shut down and freeze its own databases,
+ * so the rest of DROID does not need to know which one is in use.  The results DAOs
+ * only use SQL which all of the engines understand.
+ * </p>
+ */
+public enum ProfileDatabaseEngine {
+
+    /**
+     * Apache Derby, which keeps a profile database in a directory of files.
+     */
+    DERBY("org.apache.derby.jdbc.EmbeddedDriver", "service.properties") {
+
+        @Override
+        public String getJdbcUrl(Path databaseDir) {
+            return "jdbc:derby:" + databaseDir.toAbsolutePath();
+        }
+
+        @Override
+        public String getCreateUrl(String jdbcUrl) {
+            return jdbcUrl + ";create=true";
+        }
+
+        @Override
+        public Path getTemplateDir(Path profileTemplateDir) {
+            return profileTemplateDir;
+        }
+
+        /**
+         * Derby throws a SQLNonTransientConnectionException on a SUCCESSFUL shutdown of the
+         * database (with SQLstate 08006), so only other exceptions are thrown on.
+         */
+        @Override
+        void shutdown(String jdbcUrl) throws SQLException {
+            try {
+                DriverManager.getConnection(jdbcUrl + ";shutdown=true");
+            } catch (SQLException e) {
+                if (!"08006".equals(e.getSQLState())) {
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        String getFreezeStatement() {
+            return "CALL SYSCS_UTIL.SYSCS_FREEZE_DATABASE()";
+        }
+
+        @Override
+        String getThawStatement() {
+            return "CALL SYSCS_UTIL.SYSCS_UNFREEZE_DATABASE()";
+        }
+    },
+
+    /**
+     * H2 with its MVStore, which keeps a profile database in a single file.
+     */
+    H2("org.h2.Driver", H2Names.DATABASE_FILE) {
+
+        @Override
+        public String getJdbcUrl(Path databaseDir) {
+            return "jdbc:h2:" + databaseDir.toAbsolutePath().resolve(H2Names.DATABASE_NAME);
+        }
+
+        /**
+         * H2 creates a database the first time it is opened.
+         */
+        @Override
+        public String getCreateUrl(String jdbcUrl) {
+            return jdbcUrl;
+        }
+
+        /**
+         * Templates are kept apart from Derby ones, as the engines cannot read each other's files.
+         */
+        @Override
+        public Path getTemplateDir(Path profileTemplateDir) {
+            return profileTemplateDir.resolve("h2");
+        }
+
+        /**
+         * H2 closes a database when its last connection is closed, so closing the pool is enough.
+         */
+        @Override
+        void shutdown(String jdbcUrl) {
+        }
+
+        /**
+         * H2 cannot stop writes to a database, so the database file is brought up to date instead.
+         * Profile databases are only copied when nothing is writing to them.
+         */
+        @Override
+        String getFreezeStatement() {
+            return "CHECKPOINT SYNC";
+        }
+
+        @Override
+        String getThawStatement() {
+            return null;
+        }
+    };
+
+    private final String driverClassName;
+    private final String markerFileName;
+
+    ProfileDatabaseEngine(String driverClassName, String markerFileName) {
+        this.driverClassName = driverClassName;
+        this.markerFileName = markerFileName;
+    }
+
+    /**
+     * @return The class name of the JDBC driver for the engine.
+     */
+    public String getDriverClassName() {
+        return driverClassName;
+    }
+
+    /**
+     * @param databaseDir The directory holding a profile database.
+     * @return The JDBC URL of the profile database.
+     */
+    public abstract String getJdbcUrl(Path databaseDir);
+
+    /**
+     * @param jdbcUrl The JDBC URL of a profile database.
+     * @return A JDBC URL which creates the profile database if it does not already exist.
+     */
+    public abstract String getCreateUrl(String jdbcUrl);
+
+    /**
+     * @param profileTemplateDir The directory holding profile templates.
+     * @return The directory holding profile templates for this engine.
+     */
+    public abstract Path getTemplateDir(Path profileTemplateDir);
+
+    /**
+     * Shuts down a profile database once its connection pool has been closed.
+     * @param jdbcUrl The JDBC URL of the profile database.
+     * @throws SQLException if the database could not be shut down.
+     */
+    abstract void shutdown(String jdbcUrl) throws SQLException;
+
+    /**
+     * @return The statement which stops writes to a database so its files can be copied.
+     */
+    abstract String getFreezeStatement();
+
+    /**
+     * @return The statement which allows writes to a frozen database again, or null if none is needed.
+     */
+    abstract String getThawStatement();
+
+    /**
+     * @param databaseDir The directory which may hold a profile database.
+     * @return Whether the directory holds a database created by this engine.
+     */
+    public boolean holdsDatabase(Path databaseDir) {
+        return Files.exists(databaseDir.resolve(markerFileName));
+    }
+
+    /**
+     * Finds the engine to open a profile database with.  An existing database is opened with
+     * the engine which created it, so profiles saved before the engine was changed still open.
+     * @param databaseDir The directory holding the profile database, which may not exist yet.
+     * @param preferred The engine to use for a new profile database.
+     * @return The engine to open the profile database with.
+     */
+    public static ProfileDatabaseEngine forDatabase(Path databaseDir, ProfileDatabaseEngine preferred) {
+        if (Files.isDirectory(databaseDir)) {
+            for (ProfileDatabaseEngine engine : values()) {
+                if (engine.holdsDatabase(databaseDir)) {
+                    return engine;
+                }
+            }
+        }
+        return preferred;
+    }
+
+    /**
+     * @param name The name of an engine, in any case, or null or empty for the default.
+     * @return The engine with the name given, or Derby if no name was given.
+     * @throws IllegalArgumentException if there is no engine with the name given.
+     */
+    public static ProfileDatabaseEngine fromName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return DERBY;
+        }
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * The names of the files H2 keeps a profile database in.
+     */
+    private static final class H2Names {
+        private static final String DATABASE_NAME = "droid";
+        private static final String DATABASE_FILE = DATABASE_NAME + ".mv.db";
+
+        private H2Names() {
+        }
+    }
+}
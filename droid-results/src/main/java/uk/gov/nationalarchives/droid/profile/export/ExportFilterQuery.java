@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import uk.gov.nationalarchives.droid.core.interfaces.filter.BasicFilterCriterion;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionFieldEnum;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionOperator;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.FilterCriterion;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.RestrictionFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.QueryBuilder;
+import uk.gov.nationalarchives.droid.profile.SqlUtils;
+
+/**
+ * Translates an export filter into SQL predicates on the profile resource node table, so the database
+ * only returns the nodes which could pass the filter rather than every node in the profile.
+ * <p>
+ * The SQL selects a superset of the nodes which pass the filter: criteria whose SQL can disagree with
+ * {@link uk.gov.nationalarchives.droid.profile.ProfileResourceNodeFilter} are left out of it, so nodes
+ * read must still be passed through that filter.  Criteria on formats are tested against each
+ * identification of a node, so criteria which must hold for every format of a node, such as
+ * "PUID none of", are not put into SQL; nor are "not like" criteria, since LIKE treats % and _ in
+ * the value as wildcards, nor identification counts, which are counted when nodes are read.
+ */
+final class ExportFilterQuery {
+
+    private static final String NODE_ALIAS = "p";
+    private static final String IDENTIFICATION_ALIAS = "fi";
+    private static final String FORMAT_ALIAS = "ff";
+    private static final String AND = " and ";
+    private static final String OR = " or ";
+
+    private final String predicate;
+    private final List<Object> values = new ArrayList<>();
+
+    /**
+     * Builds the SQL for a filter.
+     * @param filter The filter to translate, which may be null or disabled.
+     */
+    ExportFilterQuery(Filter filter) {
+        this.predicate = filter == null || !filter.isEnabled() ? "" : buildPredicate(filter);
+    }
+
+    /**
+     * @return A predicate on the profile resource node table, aliased as p, or an empty string if no nodes
+     * can be excluded by SQL.
+     */
+    String getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * Sets the values of the parameters in the predicate.
+     * @param statement The statement containing the predicate.
+     * @param firstIndex The index of the first parameter in the predicate.
+     * @throws SQLException If a parameter could not be set.
+     */
+    void setParameters(PreparedStatement statement, int firstIndex) throws SQLException {
+        int index = firstIndex;
+        for (Object value : values) {
+            final Object sqlValue = SqlUtils.transformParameterToSQLValue(value);
+            if (sqlValue instanceof Date) {
+                statement.setTimestamp(index++, new Timestamp(((Date) sqlValue).getTime()));
+            } else {
+                statement.setObject(index++, sqlValue);
+            }
+        }
+    }
+
+    private String buildPredicate(Filter filter) {
+        final List<String> predicates = new ArrayList<>();
+        for (FilterCriterion criterion : filter.getCriteria()) {
+            if (canTranslate(criterion)) {
+                predicates.add(translate(criterion));
+            } else if (!filter.isNarrowed()) {
+                // A node meeting any criterion passes, so one untranslated criterion means any node can pass.
+                values.clear();
+                return "";
+            }
+        }
+        if (predicates.isEmpty()) {
+            return "";
+        }
+        return '(' + String.join(filter.isNarrowed() ? AND : OR, predicates) + ')';
+    }
+
+    private String translate(FilterCriterion criterion) {
+        final QueryBuilder queryBuilder = QueryBuilder.forAlias("profileResourceNode").createAlias("format");
+        queryBuilder.add(RestrictionFactory.forFilterCriterion(upperCaseValues(criterion)));
+        values.addAll(Arrays.asList(queryBuilder.getValues()));
+        final String ejbQl = queryBuilder.toEjbQl();
+        final String sql;
+        switch (criterion.getField()) {
+            case PUID:
+                sql = "exists (select fi.node_id from identification fi where fi.node_id = p.node_id and "
+                        + SqlUtils.transformEJBtoSQLFields(ejbQl, NODE_ALIAS, IDENTIFICATION_ALIAS) + ')';
+                break;
+            case MIME_TYPE:
+            case FILE_FORMAT:
+                sql = "exists (select fi.node_id from identification fi inner join format ff on ff.puid = fi.puid "
+                        + "where fi.node_id = p.node_id and "
+                        + SqlUtils.transformEJBtoSQLFields(ejbQl, NODE_ALIAS, FORMAT_ALIAS) + ')';
+                break;
+            default:
+                sql = '(' + SqlUtils.transformEJBtoSQLFields(ejbQl, NODE_ALIAS, FORMAT_ALIAS) + ')';
+                break;
+        }
+        return sql;
+    }
+
+    private static boolean canTranslate(FilterCriterion criterion) {
+        final CriterionOperator operator = criterion.getOperator();
+        final boolean notLike = operator == CriterionOperator.NOT_CONTAINS
+                || operator == CriterionOperator.NOT_STARTS_WITH
+                || operator == CriterionOperator.NOT_ENDS_WITH;
+        final boolean result;
+        switch (criterion.getField()) {
+            case PUID:
+            case MIME_TYPE:
+            case FILE_FORMAT:
+                result = !notLike && operator != CriterionOperator.NE && operator != CriterionOperator.NONE_OF;
+                break;
+            case IDENTIFICATION_COUNT:
+                result = false;
+                break;
+            default:
+                result = !notLike;
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * Names, extensions and format names are compared case insensitively with upper cased columns,
+     * so the values they are compared with must be upper cased too.
+     * @param criterion The criterion to upper case the values of.
+     * @return The criterion, or a copy of it with upper cased values.
+     */
+    private static FilterCriterion upperCaseValues(FilterCriterion criterion) {
+        final CriterionFieldEnum field = criterion.getField();
+        FilterCriterion result = criterion;
+        if (field == CriterionFieldEnum.FILE_NAME || field == CriterionFieldEnum.FILE_EXTENSION
+                || field == CriterionFieldEnum.FILE_FORMAT) {
+            final Object value = criterion.getValue();
+            Object upperCased = value;
+            if (value instanceof String) {
+                upperCased = ((String) value).toUpperCase(Locale.ROOT);
+            } else if (value instanceof Object[]) {
+                final Object[] list = ((Object[]) value).clone();
+                for (int i = 0; i < list.length; i++) {
+                    list[i] = list[i] instanceof String ? ((String) list[i]).toUpperCase(Locale.ROOT) : list[i];
+                }
+                upperCased = list;
+            }
+            result = new BasicFilterCriterion(field, criterion.getOperator(), upperCased);
+        }
+        return result;
+    }
+}
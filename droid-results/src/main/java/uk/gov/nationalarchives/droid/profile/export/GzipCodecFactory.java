@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.parquet.bytes.BytesInput;
+import org.apache.parquet.compression.CompressionCodecFactory;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+/**
+ * Compresses Parquet pages with the GZIP support in the JDK.
+ * <p>
+ * The codec factory parquet-java uses by default creates Hadoop codecs, even for GZIP,
+ * so Parquet files are written and read with this factory instead, which needs no Hadoop classes.
+ * Only GZIP and uncompressed pages are supported.
+ */
+public final class GzipCodecFactory implements CompressionCodecFactory {
+
+    @Override
+    public BytesInputCompressor getCompressor(CompressionCodecName codecName) {
+        checkSupported(codecName);
+        return new Compressor(codecName);
+    }
+
+    @Override
+    public BytesInputDecompressor getDecompressor(CompressionCodecName codecName) {
+        checkSupported(codecName);
+        return new Decompressor(codecName);
+    }
+
+    @Override
+    public void release() {
+    }
+
+    private static void checkSupported(CompressionCodecName codecName) {
+        if (codecName != CompressionCodecName.GZIP && codecName != CompressionCodecName.UNCOMPRESSED) {
+            throw new IllegalArgumentException("Unsupported Parquet compression codec: " + codecName);
+        }
+    }
+
+    /**
+     * Compresses pages with GZIP, or leaves them uncompressed.
+     */
+    private static final class Compressor implements BytesInputCompressor {
+
+        private final CompressionCodecName codecName;
+
+        Compressor(CompressionCodecName codecName) {
+            this.codecName = codecName;
+        }
+
+        @Override
+        public BytesInput compress(BytesInput bytes) throws IOException {
+            if (codecName == CompressionCodecName.UNCOMPRESSED) {
+                return bytes;
+            }
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(compressed)) {
+                bytes.writeAllTo(out);
+            }
+            return BytesInput.from(compressed.toByteArray());
+        }
+
+        @Override
+        public CompressionCodecName getCodecName() {
+            return codecName;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    /**
+     * Decompresses GZIP or uncompressed pages.
+     */
+    private static final class Decompressor implements BytesInputDecompressor {
+
+        private final CompressionCodecName codecName;
+
+        Decompressor(CompressionCodecName codecName) {
+            this.codecName = codecName;
+        }
+
+        @Override
+        public BytesInput decompress(BytesInput bytes, int uncompressedSize) throws IOException {
+            if (codecName == CompressionCodecName.UNCOMPRESSED) {
+                return bytes;
+            }
+            final byte[] uncompressed = new byte[uncompressedSize];
+            try (DataInputStream in = new DataInputStream(new GZIPInputStream(bytes.toInputStream()))) {
+                in.readFully(uncompressed);
+            }
+            return BytesInput.from(uncompressed);
+        }
+
+        @Override
+        public void decompress(ByteBuffer input, int compressedSize, ByteBuffer output, int uncompressedSize)
+            throws IOException {
+            final byte[] compressed = new byte[compressedSize];
+            input.get(compressed);
+            output.put(decompress(BytesInput.from(compressed), uncompressedSize).toByteArray());
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
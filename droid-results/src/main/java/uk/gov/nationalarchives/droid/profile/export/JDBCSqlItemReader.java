@@ -70,24 +70,36 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
     private static final String MIME_TYPE = "MIME_TYPE";
     private static final String VERSION = "VERSION";
 
-    private static final String EMPTY_FOLTER_SUBSELECT = " CASE \n"
-            + "\t\t  WHEN p.RESOURCE_TYPE = 0 THEN \n"
-            + "\t\t  \tCASE\n"
-            + "\t\t  \t\twhen NOT EXISTS(SELECT NODE2.PARENT_ID FROM PROFILE_RESOURCE_NODE NODE2 WHERE NODE2.PARENT_ID = p.NODE_ID) then true\n"
-            + "\t\t  \t\telse false\n"
-            + "\t\t  \tEND\n"
-            + "\t\t  ELSE false\n"
-            + "\t\tEND as EMPTY_DIR,  ";
-
-
-    private static final String SELECT_PROFILE_ALL_FIELDS = "select p.*, ";
+    /*
+     * Empty folders and identification counts are found by joining each node to the
+     * distinct parent ids and to the grouped identification counts, rather than by
+     * running a correlated subquery for every row returned.
+     */
+    private static final String SELECT_PROFILE_NODES = "select p.*, "
+            + "CASE WHEN p.RESOURCE_TYPE = 0 AND c.CHILD_PARENT_ID IS NULL THEN true ELSE false END as EMPTY_DIR, "
+            + "ic.ID_COUNT, i.PUID "
+            + "from profile_resource_node p "
+            + "inner join identification i on p.node_id = i.node_id "
+            + "inner join (select node_id as COUNTED_NODE_ID, count(*) as ID_COUNT "
+            + "from identification group by node_id) ic on ic.COUNTED_NODE_ID = p.node_id "
+            + "left outer join (select distinct parent_id as CHILD_PARENT_ID from profile_resource_node "
+            + "where parent_id is not null) c on c.CHILD_PARENT_ID = p.node_id";
+
+    /*
+     * The identifications of each node must be read together, so nodes are always ordered by node id,
+     * but sorting them by uri first is optional: it costs a sort of the whole profile on its uris.
+     */
+    private static final String ORDER_BY_URI = " order by p.uri,p.node_id";
+    private static final String ORDER_BY_NODE_ID = " order by p.node_id";
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private ResultSet cursor;
     private PreparedStatement profileStatement;
+    private Connection connection;
     private int fetchSize;
     private int chunkSize;
+    private boolean sortByUri = true;
     private DataSource datasource;
     private JDBCBatchResultHandlerDao resultHandlerDao;
     private IdentificationReader identificationReader;
@@ -220,7 +232,7 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
      */
     //@Override
     public void open(Filter itemFilter) {
-        this.cursor = getProfileCursor();
+        this.cursor = getProfileCursor(new ExportFilterQuery(itemFilter));
     }
 
     /**
@@ -236,25 +248,35 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
             if (this.profileStatement != null) {
                 this.profileStatement.close();
             }
+
+            if (this.connection != null) {
+                this.connection.close();
+                this.connection = null;
+            }
         } catch (SQLException e) {
             log.error("Error cleaning up JDBSCSqlItemReader", e);
         }
     }
 
     /**
-     * Get a cursor over all of the results, with the forward-only flag set.
+     * Get a cursor over the results which could pass the filter, with the forward-only flag set.
      *
+     * @param filterQuery The filter translated to SQL.
      * @return a forward-only {@link ResultSet}
      */
-    private ResultSet getProfileCursor()  {
+    private ResultSet getProfileCursor(ExportFilterQuery filterQuery)  {
         ResultSet profileResultSet = null;
+        final String predicate = filterQuery.getPredicate();
+        final String query = SELECT_PROFILE_NODES + (predicate.isEmpty() ? "" : " where " + predicate)
+                + (sortByUri ? ORDER_BY_URI : ORDER_BY_NODE_ID);
         try {
-            final Connection conn = datasource.getConnection();
-            String queryString = SELECT_PROFILE_ALL_FIELDS;
-            queryString += EMPTY_FOLTER_SUBSELECT;
-            queryString += "(select count('x') from identification i1 where i1.node_id = p.node_id) AS id_count, i.PUID ";
-            queryString += "from profile_resource_node p  inner join identification i on p.node_id = i.node_id order by p.uri,p.node_id";
-            profileStatement = conn.prepareStatement(queryString);
+            connection = datasource.getConnection();
+            profileStatement = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) {
+                profileStatement.setFetchSize(fetchSize);
+            }
+            filterQuery.setParameters(profileStatement, 1);
             profileResultSet = profileStatement.executeQuery();
         } catch (SQLException ex) {
             log.error("A database exception occurred retrieving nodes ", ex);
@@ -278,6 +300,15 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
         this.chunkSize = chunkSize;
     }
 
+    /**
+     * Sets whether nodes are read in order of their uris, or in the order they were added to the profile.
+     * Reading them in the order they were added avoids sorting the whole profile.
+     * @param sortByUri Whether to read nodes in order of their uris.
+     */
+    public void setSortByUri(boolean sortByUri) {
+        this.sortByUri = sortByUri;
+    }
+
     private class IdentificationReader {
 
         private static final String FORMAT_QUERY_RANGE = "SELECT T1.NODE_ID, T1.PUID, T2.MIME_TYPE, T2.NAME, T2.VERSION "
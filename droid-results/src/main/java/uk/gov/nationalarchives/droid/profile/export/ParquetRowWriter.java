@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+/**
+ * Writes a flat table of optional columns as an Apache Parquet file, using parquet-java.
+ * <p>
+ * Each row is an array with a value for each column of the schema: a Long for INT64 columns,
+ * any other object is written as a string to BINARY columns, and null values are left out.
+ * Pages are compressed with GZIP.  Only the columns named are dictionary encoded.
+ * <p>
+ * The parquet-java writer API refers to Hadoop classes, which are needed to compile this class,
+ * but files are written through a {@link PlainParquetConfiguration} and a {@link GzipCodecFactory},
+ * so no Hadoop classes are loaded when they are written.
+ */
+public final class ParquetRowWriter implements Closeable {
+
+    /**
+     * The default size of each row group in bytes, which bounds how much of a file is buffered in memory.
+     */
+    public static final long DEFAULT_ROW_GROUP_SIZE = 32L * 1024 * 1024;
+
+    private final ParquetWriter<Object[]> writer;
+
+    /**
+     * Starts writing a Parquet file.
+     *
+     * @param out the stream to write the file to.  It is closed when this writer is closed.
+     * @param schema the columns of the file, which must all be optional primitive columns.
+     * @param dictionaryColumns the names of the columns to dictionary encode.
+     * @param rowGroupSize the size of each row group in bytes.
+     * @throws IOException if the file could not be written.
+     */
+    public ParquetRowWriter(OutputStream out, MessageType schema, Set<String> dictionaryColumns, long rowGroupSize)
+        throws IOException {
+        final Builder builder = new Builder(new StreamOutputFile(out), schema)
+                .withConf(new PlainParquetConfiguration())
+                .withCodecFactory(new GzipCodecFactory())
+                .withCompressionCodec(CompressionCodecName.GZIP)
+                .withRowGroupSize(rowGroupSize)
+                .withDictionaryEncoding(false);
+        for (String column : dictionaryColumns) {
+            builder.withDictionaryEncoding(column, true);
+        }
+        writer = builder.build();
+    }
+
+    /**
+     * Writes a row.
+     * @param row a value for each column, or null.
+     * @throws IOException if a full row group could not be written.
+     */
+    public void write(Object[] row) throws IOException {
+        writer.write(row);
+    }
+
+    /**
+     * Writes any rows still buffered and the file footer, then closes the stream.
+     * @throws IOException if the file could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Builds a parquet writer of rows.
+     */
+    private static final class Builder extends ParquetWriter.Builder<Object[], Builder> {
+
+        private final MessageType schema;
+
+        Builder(OutputFile file, MessageType schema) {
+            super(file);
+            this.schema = schema;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<Object[]> getWriteSupport(Configuration conf) {
+            return new RowWriteSupport(schema);
+        }
+
+        @Override
+        protected WriteSupport<Object[]> getWriteSupport(ParquetConfiguration conf) {
+            return new RowWriteSupport(schema);
+        }
+    }
+
+    /**
+     * Writes each row as a record of its non null values.
+     */
+    private static final class RowWriteSupport extends WriteSupport<Object[]> {
+
+        private final MessageType schema;
+        private final List<Type> fields;
+        private RecordConsumer recordConsumer;
+
+        RowWriteSupport(MessageType schema) {
+            this.schema = schema;
+            this.fields = schema.getFields();
+        }
+
+        @Override
+        public WriteContext init(Configuration configuration) {
+            return new WriteContext(schema, Collections.emptyMap());
+        }
+
+        @Override
+        public WriteContext init(ParquetConfiguration configuration) {
+            return new WriteContext(schema, Collections.emptyMap());
+        }
+
+        @Override
+        public void prepareForWrite(RecordConsumer consumer) {
+            this.recordConsumer = consumer;
+        }
+
+        @Override
+        public void write(Object[] row) {
+            recordConsumer.startMessage();
+            for (int i = 0; i < fields.size(); i++) {
+                final Object value = row[i];
+                if (value != null) {
+                    final Type field = fields.get(i);
+                    recordConsumer.startField(field.getName(), i);
+                    if (field.asPrimitiveType().getPrimitiveTypeName() == PrimitiveType.PrimitiveTypeName.INT64) {
+                        recordConsumer.addLong((Long) value);
+                    } else {
+                        recordConsumer.addBinary(Binary.fromString(value.toString()));
+                    }
+                    recordConsumer.endField(field.getName(), i);
+                }
+            }
+            recordConsumer.endMessage();
+        }
+    }
+
+    /**
+     * A Parquet output file which writes to a stream, counting the bytes written.
+     */
+    private static final class StreamOutputFile implements OutputFile {
+
+        private final OutputStream out;
+
+        StreamOutputFile(OutputStream out) {
+            // Page and column headers are written a few bytes at a time.
+            this.out = new BufferedOutputStream(out);
+        }
+
+        @Override
+        public PositionOutputStream create(long blockSizeHint) {
+            return new CountingOutputStream(out);
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+            return create(blockSizeHint);
+        }
+
+        @Override
+        public boolean supportsBlockSize() {
+            return false;
+        }
+
+        @Override
+        public long defaultBlockSize() {
+            return 0;
+        }
+    }
+
+    /**
+     * Writes to a stream, counting the bytes written.
+     */
+    private static final class CountingOutputStream extends PositionOutputStream {
+
+        private final OutputStream out;
+        private long position;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public long getPos() {
+            return position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            position += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
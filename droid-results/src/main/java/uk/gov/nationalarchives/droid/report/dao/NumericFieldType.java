@@ -182,9 +182,10 @@ public class NumericFieldType implements ReportFieldType {
             }
 
             //BNO: Note this  output is rounded - though the existing code appears to do
-            //this anyway as it casts from BigInteger
+            //this anyway as it casts from BigInteger.  Derby averages whole numbers as a whole
+            //number, but other engines do not, so the average is truncated here.
             if (average != null) {
-                reportLineItem.setAverage(Double.valueOf(average.toString()));
+                reportLineItem.setAverage(Math.floor(Double.valueOf(average.toString())));
             }
 
             if (minimum != null) {
@@ -36,13 +36,20 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
@@ -57,12 +64,18 @@ import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.ResourceUtils;
 import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileException;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
 import uk.gov.nationalarchives.droid.profile.SqlUtils;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 
 /**
  * An implementation of the ResultHandlerDao interface, using JDBC to access the profile database directly.
+ * <p>
+ * Nodes are written by several database writer threads, each with its own queue and connection from the
+ * data source.  Nodes are partitioned between the writers by ranges of node ids, so a node and any later
+ * status update to it are always written in order by the same writer.  Each writer grows its batch size
+ * while its queue is backing up, and shrinks it again when the queue drains.
  *
  * @author Matt Palmer, boreilly
  */
@@ -74,10 +87,23 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     // How many results in the batch before committing.
     public static final int BATCH_LIMIT = 100;
 
+    // The most results a writer batches before committing, while its queue is backing up.
+    public static final int MAX_BATCH_LIMIT = 1600;
+
+    // The most database writer threads, however many identification threads there are.
+    public static final int MAX_WRITER_THREADS = 8;
+
+    // How many consecutive node ids are written by the same writer.
+    private static final int NODE_ID_RANGE = 64;
+
     // A "poison-pill" node info to signal to the writing thread that
     // it should terminate and commit any results so far.
     private static final NodeInfo COMMIT_SO_FAR = new NodeInfo(null, false);
 
+    // A "poison-pill" node info to signal to the writing thread that it should commit
+    // any results so far, close its resources and stop.
+    private static final NodeInfo STOP = new NodeInfo(null, false);
+
     private static final String INSERT_PROFILE_RESOURCE_NODE =
             "INSERT INTO PROFILE_RESOURCE_NODE " +
                     "(NODE_ID,EXTENSION_MISMATCH,FINISHED_TIMESTAMP,IDENTIFICATION_COUNT," +
@@ -122,7 +148,7 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     //DDL statements
     private static final String CREATE_TABLE_FORMAT =
             "CREATE TABLE FORMAT (PUID VARCHAR(255) NOT NULL, MIME_TYPE VARCHAR(255), NAME VARCHAR(255), "
-            + "VERSION VARCHAR(255), U_NAME GENERATED ALWAYS AS (UPPER(NAME)), PRIMARY KEY (PUID))";
+            + "VERSION VARCHAR(255), U_NAME VARCHAR(255) GENERATED ALWAYS AS (UPPER(NAME)), PRIMARY KEY (PUID))";
     private static final String CREATE_TABLE_IDENTIFICATION =
             "CREATE TABLE IDENTIFICATION (NODE_ID BIGINT NOT NULL, PUID VARCHAR(255) NOT NULL, "
             + "PRIMARY KEY(NODE_ID, PUID))";
@@ -132,7 +158,8 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
                     + "HASH VARCHAR(64), IDENTIFICATION_METHOD INTEGER, LAST_MODIFIED_DATE TIMESTAMP, NAME VARCHAR(1000) NOT NULL, "
                     + "NODE_STATUS INTEGER, RESOURCE_TYPE INTEGER NOT NULL, FILE_SIZE BIGINT, PARENT_ID BIGINT, "
                     + "PREFIX VARCHAR(255), PREFIX_PLUS_ONE VARCHAR(255), TEXT_ENCODING INTEGER, URI VARCHAR(4000) NOT NULL, "
-                    + "U_EXTENSION GENERATED ALWAYS AS (UPPER(EXTENSION)), U_NAME GENERATED ALWAYS AS (UPPER(NAME)), "
+                    + "U_EXTENSION VARCHAR(255) GENERATED ALWAYS AS (UPPER(EXTENSION)), "
+                    + "U_NAME VARCHAR(1000) GENERATED ALWAYS AS (UPPER(NAME)), "
                     + "PRIMARY KEY (NODE_ID))";
     private static final String CREATE_IDX_MIME_TYPE_ON_FORMAT = "CREATE INDEX IDX_MIME_TYPE ON FORMAT (MIME_TYPE)";
     private static final String CREATE_IDX_FORMAT_NAME_ON_FORMAT = "CREATE INDEX IDX_FORMAT_NAME ON FORMAT (U_NAME)";
@@ -148,6 +175,17 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     private static final String CREATE_IDX_PARENT_ID_ON_PRN = "CREATE INDEX IDX_PARENT_ID ON PROFILE_RESOURCE_NODE (PARENT_ID)";
     private static final String CREATE_IDX_PREFIX_ON_PRN = "CREATE INDEX IDX_PREFIX ON PROFILE_RESOURCE_NODE (PREFIX)";
     private static final String CREATE_IDX_PREFIX_PLUS_ONE_ON_PRN = "CREATE INDEX IDX_PREFIX_PLUS_ONE ON PROFILE_RESOURCE_NODE (PREFIX_PLUS_ONE)";
+    // The secondary indexes on PROFILE_RESOURCE_NODE which can be deferred during a bulk load, the columns they index,
+    // and the statements which create them, in the same order:
+    private static final String[] PRN_INDEX_NAMES = {"IDX_ID_COUNT", "IDX_PRN_EXTENSION", "IDX_PRN_ID_METHOD", "IDX_PRN_LAST_MODIFIED",
+        "IDX_PRN_NAME", "IDX_PRN_NODE_STATUS", "IDX_PRN_ID_RESOURCETYPE", "IDX_PRN_FILE_SIZE", "IDX_PARENT_ID", "IDX_PREFIX", "IDX_PREFIX_PLUS_ONE"};
+    private static final String[] PRN_INDEX_COLUMNS = {"IDENTIFICATION_COUNT", "U_EXTENSION", "IDENTIFICATION_METHOD", "LAST_MODIFIED_DATE",
+        "NAME", "NODE_STATUS", "RESOURCE_TYPE", "FILE_SIZE", "PARENT_ID", "PREFIX", "PREFIX_PLUS_ONE"};
+    private static final String[] CREATE_PRN_INDEXES = {CREATE_IDX_ID_COUNT_ON_PRN, CREATE_IDX_PRN_EXT_ON_PRN, CREATE_IDX_PRN_ID_METHOD_ON_PRN,
+        CREATE_IDX_PRN_LAST_MODIFIED_ON_PRN, CREATE_IDX_PRN_NAME_ON_PRN, CREATE_IDX_PRN_NODE_STATUS_ON_PRN, CREATE_IDX_ID_RESOURCE_ON_PRN,
+        CREATE_IDX_PRN_FILE_SIZE_ON_PRN, CREATE_IDX_PARENT_ID_ON_PRN, CREATE_IDX_PREFIX_ON_PRN, CREATE_IDX_PREFIX_PLUS_ONE_ON_PRN};
+    private static final String PRN_TABLE = "PROFILE_RESOURCE_NODE";
+    private static final String DROP_INDEX = "DROP INDEX ";
     //private static String CREATE_IDX_TEXT_ENCODING_ON_PRN = "CREATE INDEX IDX_TEXT_ENCODING ON PROFILE_RESOURCE_NODE (TEXT_ENCODING)";
     //private static String CREATE_IDX_URI_ON_PRN = "CREATE INDEX IDX_URI ON PROFILE_RESOURCE_NODE (URI)";
     private static final String IDENTIFICATION_CONSTRAINT_1 = "ALTER TABLE IDENTIFICATION ADD CONSTRAINT FK_FH484CCWWL4E5W9QUQKE4N6RI " +
@@ -155,9 +193,9 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     private static final String IDENTIFICATION_CONSTRAINT_2 = "ALTER TABLE IDENTIFICATION ADD CONSTRAINT FK_TPXMO6PPUXECKDRELN5PT5E39 " +
             "FOREIGN KEY (NODE_ID) REFERENCES PROFILE_RESOURCE_NODE";
 
-    private static final String CREATE_UCASE_PRN_EXTN_COL = "ALTER TABLE PROFILE_RESOURCE_NODE ADD COLUMN U_EXTENSION GENERATED ALWAYS AS (UPPER(EXTENSION))";
-    private static final String CREATE_UCASE_PRN_NAME_COL = "ALTER TABLE PROFILE_RESOURCE_NODE ADD COLUMN U_NAME GENERATED ALWAYS AS (UPPER(NAME))";
-    private static final String CREATE_UCASE_FMT_NAME_COL = "ALTER TABLE FORMAT ADD COLUMN U_NAME GENERATED ALWAYS AS (UPPER(NAME))";
+    private static final String CREATE_UCASE_PRN_EXTN_COL = "ALTER TABLE PROFILE_RESOURCE_NODE ADD COLUMN U_EXTENSION VARCHAR(255) GENERATED ALWAYS AS (UPPER(EXTENSION))";
+    private static final String CREATE_UCASE_PRN_NAME_COL = "ALTER TABLE PROFILE_RESOURCE_NODE ADD COLUMN U_NAME VARCHAR(1000) GENERATED ALWAYS AS (UPPER(NAME))";
+    private static final String CREATE_UCASE_FMT_NAME_COL = "ALTER TABLE FORMAT ADD COLUMN U_NAME VARCHAR(255) GENERATED ALWAYS AS (UPPER(NAME))";
 
     private static final String ALTER_NAME_COLUMN_SIZE = "ALTER TABLE PROFILE_RESOURCE_NODE ALTER COLUMN NAME SET DATA TYPE VARCHAR(1000)";
     //CHECKSTYLE:ON
@@ -168,6 +206,10 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     private static final Object LOCKER = new Object();
 
     private static final int BLOCKING_QUEUE_SIZE = 256;
+    private static final long WRITER_STOP_TIMEOUT_MILLIS = 60000;
+
+    // How often a thread waiting for the database writers checks that they are still running.
+    private static final long WRITER_CHECK_INTERVAL_MILLIS = 1000;
     private static final int MOST_RECENTLY_ADDED_NODE_CACHE_SIZE = 512;
     private static final int PUID_FORMAT_MAP_SIZE = 2500;
 
@@ -179,11 +221,13 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     private List<Format> formats;
     private Map<String, Format> puidFormatMap = new HashMap<String, Format>(PUID_FORMAT_MAP_SIZE);
 
-    private BlockingQueue<NodeInfo> blockingQueue = new ArrayBlockingQueue<NodeInfo>(BLOCKING_QUEUE_SIZE);
     private MostRecentlyAddedNodeCache nodeCache  = new MostRecentlyAddedNodeCache(MOST_RECENTLY_ADDED_NODE_CACHE_SIZE);
 
-    private Thread databaseWriterThread;
-    private DatabaseWriter writer;
+    private int writerThreads = 1;
+    private boolean deferIndexes;
+    private volatile boolean indexesMayBeMissing = true;
+    private volatile DatabaseWriter[] writers = new DatabaseWriter[0];
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
 
     /**
      * Empty bean constructor.
@@ -337,8 +381,8 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         //Formats will not have been populated if this method is called from init() and this is the first run for a new
         // template (See comments under init(), scenario (ii)).  In which case, we delay creating the writer until the
         // format-puid mapping is populated om the subsequent call from initialiseForNewTemplate().
-        if (formats.size() > 0 && this.writer == null) {
-            createAndRunDatabaseWriterThread();
+        if (formats.size() > 0 && this.writers.length == 0) {
+            createAndRunDatabaseWriterThreads();
         }
 
     }
@@ -366,17 +410,7 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
                 createIndexesAndConstraints.add(CREATE_IDX_MIME_TYPE_ON_FORMAT);
                 createIndexesAndConstraints.add(CREATE_IDX_FORMAT_NAME_ON_FORMAT);
                 //createIndexesAndConstraints.add(CREATE_IDX_EXT_MISMATCH_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_ID_COUNT_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PRN_EXT_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PRN_ID_METHOD_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PRN_LAST_MODIFIED_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PRN_NAME_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PRN_NODE_STATUS_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_ID_RESOURCE_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PRN_FILE_SIZE_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PARENT_ID_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PREFIX_ON_PRN);
-                createIndexesAndConstraints.add(CREATE_IDX_PREFIX_PLUS_ONE_ON_PRN);
+                createIndexesAndConstraints.addAll(Arrays.asList(CREATE_PRN_INDEXES));
                 //createIndexesAndConstraints.add(CREATE_IDX_TEXT_ENCODING_ON_PRN);
                 //createIndexesAndConstraints.add(CREATE_IDX_URI_ON_PRN);
                 createIndexesAndConstraints.add(IDENTIFICATION_CONSTRAINT_1);
@@ -443,11 +477,41 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         if (insertNode) {
             setNodeIds(node, parentId);
         }
+        cacheNode(node);
+        queueNode(node, insertNode);
+    }
+
+    /**
+     * Caches a node which has just been saved, so it can be loaded again before it is written.
+     * @param node The node to cache, which must already have an id.
+     */
+    protected void cacheNode(final ProfileResourceNode node) {
+        synchronized (nodeCache) { // different threads can add nodes.
+            nodeCache.put(node.getId(), node);
+        }
+    }
+
+    /**
+     * Returns a node from the cache of the most recently saved nodes.
+     * @param nodeId The id of the node.
+     * @return The cached node, or null if it is no longer cached.
+     */
+    protected ProfileResourceNode getCachedNode(final Long nodeId) {
+        synchronized (nodeCache) {
+            return nodeCache.get(nodeId);
+        }
+    }
+
+    /**
+     * Queues a node for the database writer responsible for its id.
+     * @param node The node to write, which must already have an id.
+     * @param insertNode Whether to insert the node, or to update the status of a node already inserted.
+     */
+    protected void queueNode(final ProfileResourceNode node, final boolean insertNode) {
         try {
-            synchronized (nodeCache) { // different threads can add nodes.
-                nodeCache.put(node.getId(), node);
-            }
-            blockingQueue.put(new NodeInfo(node, insertNode));
+            final BlockingQueue<NodeInfo> queue = getWriter(node.getId()).getQueue();
+            queue.put(new NodeInfo(node, insertNode));
+            recordQueueDepth(queue.size());
         } catch (InterruptedException e) {
             log.debug("Saving was interrupted while putting a new node into the queue.", e);
         }
@@ -463,13 +527,225 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     @Override
     public void commit() {
         try {
-            blockingQueue.put(COMMIT_SO_FAR);
+            for (final DatabaseWriter writer : writers) {
+                writer.getQueue().put(COMMIT_SO_FAR);
+            }
         } catch (InterruptedException e) {
             log.debug("Interrupted while requesting a commit.", e);
         }
     }
 
-    private void setNodeIds(ProfileResourceNode node, ResourceId parentId) {
+    /**
+     * Commits everything queued so far, and waits until all the database writers have committed it.
+     * @throws ProfileException if a database writer stopped before committing, as it never will.
+     */
+    protected void commitAndWait() {
+        final DatabaseWriter[] allWriters = writers;
+        final CountDownLatch committed = new CountDownLatch(allWriters.length);
+        try {
+            for (final DatabaseWriter writer : allWriters) {
+                final NodeInfo commitInfo = new NodeInfo(committed);
+                while (!writer.getQueue().offer(commitInfo, WRITER_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    DatabaseWriter.checkRunning(allWriters);
+                }
+            }
+            while (!committed.await(WRITER_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                DatabaseWriter.checkRunning(allWriters);
+            }
+        } catch (InterruptedException e) {
+            log.debug("Interrupted while waiting for a commit.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Whether the database writers have been created, so nodes can be queued for them.
+     */
+    protected boolean hasDatabaseWriters() {
+        return writers.length > 0;
+    }
+
+    /**
+     * Restarts the node ids after the largest id in the database.
+     */
+    protected void resetNodeIds() {
+        nodeIds = new AtomicLong(getMaxNodeId() + 1);
+    }
+
+    private DatabaseWriter getWriter(final long nodeId) {
+        final DatabaseWriter[] allWriters = writers;
+        return allWriters[(int) ((nodeId / NODE_ID_RANGE) % allWriters.length)];
+    }
+
+    private void recordQueueDepth(final int depth) {
+        int peak = peakQueueDepth.get();
+        while (depth > peak && !peakQueueDepth.compareAndSet(peak, depth)) {
+            peak = peakQueueDepth.get();
+        }
+    }
+
+    /**
+     * Sets how many threads write results to the database.
+     * @param writerThreads The number of writer threads, or zero or less for as many as there are processors.
+     *                      No more than {@link #MAX_WRITER_THREADS} are used.
+     */
+    public void setWriterThreads(int writerThreads) {
+        final int threads = writerThreads > 0 ? writerThreads : Runtime.getRuntime().availableProcessors();
+        this.writerThreads = Math.min(threads, MAX_WRITER_THREADS);
+    }
+
+    /**
+     * Sets whether the secondary indexes on profile resource nodes are dropped while a profile runs,
+     * and created again once it has finished, so each insert does not have to maintain them.
+     * @param deferIndexes Whether to defer creating the secondary indexes until a run has finished.
+     */
+    public void setDeferIndexes(boolean deferIndexes) {
+        this.deferIndexes = deferIndexes;
+    }
+
+    /**
+     * @return Whether the secondary indexes are deferred until a run has finished.
+     */
+    public boolean getDeferIndexes() {
+        return deferIndexes;
+    }
+
+    /**
+     * Called before a profile run starts.  If indexes are deferred, drops the secondary indexes
+     * on profile resource nodes, so the run inserts nodes into un-indexed tables.
+     */
+    public synchronized void startBulkLoad() {
+        if (!deferIndexes) {
+            return;
+        }
+        try (Connection conn = datasource.getConnection()) {
+            final Set<String> existing = getIndexNames(conn, false);
+            for (final String indexName : PRN_INDEX_NAMES) {
+                if (existing.contains(indexName)) {
+                    try (PreparedStatement drop = conn.prepareStatement(DROP_INDEX + indexName)) {
+                        drop.execute();
+                    }
+                }
+            }
+            conn.commit();
+            indexesMayBeMissing = true;
+        } catch (SQLException e) {
+            log.error("A database exception occurred dropping the indexes on profile resource nodes.", e);
+        }
+    }
+
+    /**
+     * Called after a profile run has finished.  Waits for everything saved to be committed,
+     * then creates any secondary indexes which were deferred.
+     * @param observer Told the percentage of the missing indexes created, or null.
+     */
+    public void finishBulkLoad(ProgressObserver observer) {
+        if (hasDatabaseWriters()) {
+            commitAndWait();
+        }
+        createDeferredIndexes(observer);
+    }
+
+    /**
+     * Creates any secondary indexes on profile resource nodes which are missing, for example because
+     * the profile was saved while a run with deferred indexes was still in progress.
+     * This does nothing once all the indexes are known to exist.
+     * @param observer Told the percentage of the missing indexes created, or null.
+     */
+    public synchronized void createDeferredIndexes(ProgressObserver observer) {
+        if (!indexesMayBeMissing) {
+            return;
+        }
+        try (Connection conn = datasource.getConnection()) {
+            final Set<String> existingNames = getIndexNames(conn, false);
+            final Set<String> indexedColumns = getIndexNames(conn, true);
+            final List<String> missing = new ArrayList<String>(CREATE_PRN_INDEXES.length);
+            for (int i = 0; i < CREATE_PRN_INDEXES.length; i++) {
+                if (!existingNames.contains(PRN_INDEX_NAMES[i]) && !indexedColumns.contains(PRN_INDEX_COLUMNS[i])) {
+                    missing.add(CREATE_PRN_INDEXES[i]);
+                }
+            }
+            final long start = System.currentTimeMillis();
+            for (int i = 0; i < missing.size(); i++) {
+                try (PreparedStatement create = conn.prepareStatement(missing.get(i))) {
+                    create.execute();
+                }
+                conn.commit();
+                if (observer != null) {
+                    observer.onProgress((i + 1) * ProgressObserver.UNITY_PERCENT / missing.size());
+                }
+            }
+            if (!missing.isEmpty()) {
+                log.info(String.format("Created %d deferred indexes on profile resource nodes in %d ms.",
+                        missing.size(), System.currentTimeMillis() - start));
+            }
+            indexesMayBeMissing = false;
+        } catch (SQLException e) {
+            log.error("A database exception occurred creating the indexes on profile resource nodes.", e);
+        }
+    }
+
+    /**
+     * @param conn A connection to the profile database.
+     * @param columns Whether to return the names of the indexed columns, rather than the names of the indexes.
+     * @return The names of the indexes, or indexed columns, on the profile resource node table.
+     * @throws SQLException If the index information could not be read.
+     */
+    private Set<String> getIndexNames(final Connection conn, final boolean columns) throws SQLException {
+        final Set<String> names = new HashSet<String>();
+        try (ResultSet indexes = conn.getMetaData().getIndexInfo(null, null, PRN_TABLE, false, true)) {
+            while (indexes.next()) {
+                final String name = indexes.getString(columns ? "COLUMN_NAME" : "INDEX_NAME");
+                if (name != null) {
+                    names.add(name.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return How many threads write results to the database.
+     */
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * @return How many nodes are currently queued for all the database writers.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (final DatabaseWriter writer : writers) {
+            depth += writer.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return The most nodes seen queued for a single database writer.
+     */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    /**
+     * @return How many nodes have been written to the database, whether committed yet or not.
+     */
+    public long getNodesWritten() {
+        long written = 0;
+        for (final DatabaseWriter writer : writers) {
+            written += writer.getNodesWritten();
+        }
+        return written;
+    }
+
+    /**
+     * Assigns a new node id to a node, and sets its parent id and prefixes from the parent resource id.
+     * @param node The node to assign ids to.
+     * @param parentId The resource id of the parent of the node, or null if it has no parent.
+     */
+    protected void setNodeIds(ProfileResourceNode node, ResourceId parentId) {
 
         final Long nodeId = nodeIds.incrementAndGet();
         node.setId(nodeId);
@@ -693,31 +969,41 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         //CHECKSTYLE:ON
     }
 
-    private void createAndRunDatabaseWriterThread() {
-        writer = new DatabaseWriter(blockingQueue, datasource, BATCH_LIMIT);
-        try {
-            writer.init();
-        } catch (SQLException e) {
-            //TODO: not a runtime exception - what to use here?
-            throw new RuntimeException("Could not initialise the database writer - fatal error.", e);
+    private void createAndRunDatabaseWriterThreads() {
+        final DatabaseWriter[] newWriters = new DatabaseWriter[writerThreads];
+        for (int i = 0; i < writerThreads; i++) {
+            final DatabaseWriter writer = new DatabaseWriter(BLOCKING_QUEUE_SIZE, datasource, BATCH_LIMIT);
+            try {
+                writer.init();
+            } catch (SQLException e) {
+                //TODO: not a runtime exception - what to use here?
+                throw new RuntimeException("Could not initialise the database writer - fatal error.", e);
+            }
+            newWriters[i] = writer;
         }
-        databaseWriterThread = new Thread(writer);
-
-        try {
-            databaseWriterThread.join();
-            databaseWriterThread.start();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        writers = newWriters;
+        for (int i = 0; i < newWriters.length; i++) {
+            newWriters[i].start("droid-database-writer-" + i);
         }
     }
 
     /**
      * Cleans up resources after profile processing completed.
      */
+    @Override
     public void cleanup() {
-        //System.out.println("In cleanUp() not doing anything...");
-        //System.out.println("Cleaning up JDBCBatchResultHandlerDao, calling closeResources()");
-        this.writer.closeResources();
+        final DatabaseWriter[] allWriters = writers;
+        long commits = 0;
+        for (final DatabaseWriter writer : allWriters) {
+            writer.stop(WRITER_STOP_TIMEOUT_MILLIS);
+            log.debug(String.format("Database writer wrote %d nodes in %d commits, with a final batch size of %d.",
+                    writer.getNodesWritten(), writer.getCommits(), writer.getBatchLimit()));
+            commits += writer.getCommits();
+        }
+        if (allWriters.length > 0) {
+            log.info(String.format("%d database writers wrote %d nodes in %d commits, with a peak queue depth of %d.",
+                    allWriters.length, getNodesWritten(), commits, peakQueueDepth.get()));
+        }
     }
 
     /**
@@ -740,12 +1026,17 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
 
         private ProfileResourceNode node;
         private boolean insertNode;
+        private CountDownLatch committed;
 
         public NodeInfo(ProfileResourceNode node, boolean insertNode) {
             this.node = node;
             this.insertNode = insertNode;
         }
 
+        NodeInfo(CountDownLatch committed) {
+            this.committed = committed;
+        }
+
         public ProfileResourceNode getNode() {
             return node;
         }
@@ -785,8 +1076,9 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     }
 
     /**
-     * Class to run in a thread which takes from the blocking queue and batch commits
-     * to the database.
+     * Class to run in a thread which takes from its blocking queue and batch commits
+     * to the database.  The batch size doubles, up to {@link #MAX_BATCH_LIMIT}, when the queue
+     * is more than half full after a commit, and halves, down to the initial limit, when it is empty.
      */
     private static class DatabaseWriter implements Runnable {
 
@@ -815,16 +1107,82 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         private PreparedStatement updateNodeStatement;
         private Map<Integer, PreparedStatement> insertIdentifications;
         private volatile int batchCount;
-        private final int batchLimit;
+        private final int minBatchLimit;
+        private volatile int batchLimit;
+        private volatile long nodesWritten;
+        private volatile long commits;
+        private Thread thread;
 
-        DatabaseWriter(final BlockingQueue<NodeInfo> blockingQueue,
+        DatabaseWriter(final int queueSize,
                        final DataSource datasource,
                        final int batchLimit) {
-            this.blockingQueue = blockingQueue;
+            this.blockingQueue = new ArrayBlockingQueue<NodeInfo>(queueSize);
             this.datasource    = datasource;
+            this.minBatchLimit = batchLimit;
             this.batchLimit    = batchLimit;
         }
 
+        void start(final String threadName) {
+            thread = new Thread(this, threadName);
+            thread.setDaemon(true); // never keep the JVM alive if a profile is not cleaned up.
+            thread.start();
+        }
+
+        /**
+         * Stops the writer thread, which commits any nodes it was given and closes its resources.
+         * The thread is only interrupted if it does not stop in time, as an interrupt while the database
+         * is being written can close the connection.  If the thread was never started, the resources are closed here.
+         *
+         * @param timeoutMillis How long to wait for the thread to stop.
+         */
+        void stop(final long timeoutMillis) {
+            if (thread == null) {
+                closeResources();
+                return;
+            }
+            try {
+                if (blockingQueue.offer(STOP, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    thread.join(timeoutMillis);
+                }
+            } catch (InterruptedException e) {
+                log.debug("Interrupted while waiting for the database writer thread to stop.", e);
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                thread.interrupt();
+            }
+        }
+
+        BlockingQueue<NodeInfo> getQueue() {
+            return blockingQueue;
+        }
+
+        /**
+         * Checks that database writers are still running, so a thread waiting for them does not wait forever.
+         *
+         * @param allWriters The writers to check.
+         * @throws ProfileException if any of the writers has stopped.
+         */
+        static void checkRunning(final DatabaseWriter[] allWriters) {
+            for (final DatabaseWriter writer : allWriters) {
+                if (writer.thread == null || !writer.thread.isAlive()) {
+                    throw new ProfileException("A database writer stopped before committing the results saved so far.");
+                }
+            }
+        }
+
+        long getNodesWritten() {
+            return nodesWritten;
+        }
+
+        long getCommits() {
+            return commits;
+        }
+
+        int getBatchLimit() {
+            return batchLimit;
+        }
+
         /**
          * Initialise database prepared statements for the writer.
          * <p>
@@ -848,33 +1206,49 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         @Override
         public void run() {
             try {
-                // Loop until we're interrupted.
+                // Loop until we're told to stop, or interrupted.
                 while (true) {
                     final NodeInfo info = blockingQueue.take(); // this will block if there's nothing in the queue.
-                    if (info == COMMIT_SO_FAR) {
+                    if (info == STOP) {
                         commit();
+                        break;
+                    } else if (info == COMMIT_SO_FAR) {
+                        commit();
+                    } else if (info.committed != null) {
+                        commit();
+                        info.committed.countDown();
                     } else {
-                        try {
-                            if (info.insertNode) { // are we inserting a node, or updating one already saved?
-                                batchInsertNode(info.getNode());
-                            } else {
-                                updateNodeStatus(info.getNode());
-                            }
-                        } catch (SQLException e) {
-                            log.error("A database problem occurred inserting a node: " + info.getNode(), e);
-                        }
+                        write(info);
                     }
                 }
             } catch (InterruptedException e) {
                 log.debug("The database writer thread was interrupted.", e);
             }
-            //TODO: unless the thread is interrupted, how does it clean up resources?
-            System.out.println("Calling closeResources() from  the run method");
             closeResources();
         }
 
 
 
+        /**
+         * Writes a node, logging any problem with it, so one bad node cannot stop the writer.
+         * @param info The node to write.
+         */
+        private void write(final NodeInfo info) {
+            try {
+                if (info.insertNode) { // are we inserting a node, or updating one already saved?
+                    batchInsertNode(info.getNode());
+                } else {
+                    updateNodeStatus(info.getNode());
+                }
+            } catch (SQLException e) {
+                log.error("A database problem occurred inserting a node: " + info.getNode(), e);
+                //CHECKSTYLE:OFF - a node which cannot be written must not stop the writer thread.
+            } catch (RuntimeException e) {
+                //CHECKSTYLE:ON
+                log.error("A problem occurred writing a node: " + info.getNode(), e);
+            }
+        }
+
         private void closeResources() {
             //System.out.println("In JDBCBatchResultHandlerDao - closeResources()");
             for (final PreparedStatement statement : insertIdentifications.values()) {
@@ -902,7 +1276,9 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
             final long nodeId = node.getId();
             final NodeMetaData metadata = node.getMetaData();
             final String uri = node.getUri().toString();
-            final java.sql.Date finished = new java.sql.Date(new java.util.Date().getTime());
+            final Date finishedDate = node.getFinished();
+            final java.sql.Date finished = new java.sql.Date(
+                    finishedDate == null ? new java.util.Date().getTime() : finishedDate.getTime());
             final boolean mismatch = node.getExtensionMismatch();
             final String name = metadata.getName();
             final String hash = metadata.getHash(); // nullable
@@ -951,6 +1327,7 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
                 }
             }
             statement.addBatch();
+            nodesWritten++;
 
             commitBatchIfLargeEnough();
         }
@@ -992,9 +1369,20 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
                         //TODO: optimise? what about identification statements not used in this run?
                     }
                     connection.commit();
+                    commits++;
                 } catch (SQLException e) {
                     log.error("A problem occurred attempting to batch commit nodes into the database. ", e);
                 }
+                adaptBatchLimit();
+            }
+        }
+
+        private void adaptBatchLimit() {
+            final int queued = blockingQueue.size();
+            if (queued > blockingQueue.remainingCapacity()) {
+                batchLimit = Math.min(batchLimit * 2, MAX_BATCH_LIMIT);
+            } else if (queued == 0) {
+                batchLimit = Math.max(batchLimit / 2, minBatchLimit);
             }
         }
 
@@ -1002,7 +1390,7 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
          * Commits everything batched so far.
          */
         public void commit() {
-            batchCount = BATCH_LIMIT;
+            batchCount = batchLimit;
             commitBatchIfLargeEnough();
         }
 
@@ -54,6 +54,16 @@ public interface ProgressMonitor {
      */
     void setTargetCount(long count);
 
+    /**
+     * Sets an estimate of the maximum count, while it is still being discovered.
+     * Progress against an estimated count does not go backwards, and does not reach 100%
+     * until the actual count is set.
+     *
+     * @param count
+     *            the estimated maximum count to set
+     */
+    void setEstimatedTargetCount(long count);
+
     /**
      * Gets the progress percentage: -1 indicates indeterminate progress.
      * 
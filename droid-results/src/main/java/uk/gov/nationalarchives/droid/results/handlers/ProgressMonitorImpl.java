@@ -52,6 +52,7 @@ public class ProgressMonitorImpl implements ProgressMonitor {
     private volatile long count;
     private volatile int progressPercentage = INDETERMINATE_PROGRESS;
     private long target = INDETERMINATE_PROGRESS;
+    private boolean targetEstimated;
 
     private Set<URI> jobsInProgress = Collections.synchronizedSet(new HashSet<>());
     private ProgressObserver observer;
@@ -114,6 +115,10 @@ public class ProgressMonitorImpl implements ProgressMonitor {
             if (newProg > UNITY_PERCENT) {
                 newProg = UNITY_PERCENT;
             }
+            if (targetEstimated) {
+                // The target is still growing, so don't let progress go backwards or complete.
+                newProg = Math.max(oldProg, Math.min(newProg, UNITY_PERCENT - 1));
+            }
             progressPercentage = newProg;
             if (observer != null && newProg != oldProg) {
                 observer.onProgress(progressPercentage);
@@ -124,6 +129,14 @@ public class ProgressMonitorImpl implements ProgressMonitor {
     @Override
     public synchronized void setTargetCount(long targetCount) {
         this.target = targetCount;
+        this.targetEstimated = false;
+        calcProgress();
+    }
+
+    @Override
+    public synchronized void setEstimatedTargetCount(long targetCount) {
+        this.target = targetCount;
+        this.targetEstimated = true;
         calcProgress();
     }
 
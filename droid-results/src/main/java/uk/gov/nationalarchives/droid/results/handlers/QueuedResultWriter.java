@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+
+/**
+ * Hands results to a single writing thread through a bounded queue, which writes
+ * them out to an ItemWriter in batches.
+ * <p>
+ * Identification threads only block if the writer falls behind by more than the size
+ * of the queue, and the ItemWriter is always called from a single thread, so it does
+ * not need to be thread-safe.
+ */
+final class QueuedResultWriter {
+
+    // How many results are written to the ItemWriter in one go.
+    private static final int BATCH_LIMIT = 100;
+
+    private static final int BLOCKING_QUEUE_SIZE = 1024;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+    // Tells the writing thread to write everything queued before it, and then stop.
+    private static final QueuedResult CLOSE = new QueuedResult(null, null);
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueuedResultWriter.class);
+
+    private final BlockingQueue<QueuedResult> blockingQueue = new ArrayBlockingQueue<>(BLOCKING_QUEUE_SIZE);
+    private final ItemWriter<ProfileResourceNode> itemWriter;
+    private final Writer writer;
+
+    private Thread writerThread;
+
+    /**
+     * @param itemWriter The ItemWriter which formats results and writes them to the writer.
+     * @param writer The writer to which results are written.
+     */
+    QueuedResultWriter(ItemWriter<ProfileResourceNode> itemWriter, Writer writer) {
+        this.itemWriter = itemWriter;
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the ItemWriter and starts the writing thread.
+     */
+    synchronized void start() {
+        itemWriter.open(writer);
+        if (writerThread == null) {
+            writerThread = new Thread(new ResultWriter(), "droid-result-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Queues a result to be written.
+     * @param node The result to write.
+     */
+    void write(ProfileResourceNode node) {
+        try {
+            blockingQueue.put(new QueuedResult(node, null));
+        } catch (InterruptedException e) {
+            LOG.debug("Saving was interrupted while putting a new node into the queue.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks until every result queued before it has been written and the Writer has been flushed.
+     */
+    void flush() {
+        final CountDownLatch flushed = new CountDownLatch(1);
+        try {
+            blockingQueue.put(new QueuedResult(null, flushed));
+            flushed.await();
+        } catch (InterruptedException e) {
+            LOG.debug("Interrupted while waiting for results to be written.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes every result queued so far, stops the writing thread, and closes the ItemWriter and the Writer.
+     * No more results can be written once this has been called.
+     */
+    synchronized void close() {
+        if (writerThread != null) {
+            try {
+                blockingQueue.put(CLOSE);
+                writerThread.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                LOG.debug("Interrupted while waiting for the result writer to finish.", e);
+                Thread.currentThread().interrupt();
+            }
+            if (writerThread.isAlive()) {
+                LOG.warn("The result writer did not finish writing results before it was closed.");
+                writerThread.interrupt();
+            }
+            writerThread = null;
+        }
+        itemWriter.close();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOG.error("Error closing writer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A result waiting to be written, or a request to flush everything written so far
+     * if the node is null, or to stop writing if the latch is null as well.
+     */
+    private static final class QueuedResult {
+        private final ProfileResourceNode node;
+        private final CountDownLatch flushed;
+
+        QueuedResult(ProfileResourceNode node, CountDownLatch flushed) {
+            this.node = node;
+            this.flushed = flushed;
+        }
+    }
+
+    /**
+     * Takes results off the queue and writes them out in batches.
+     */
+    private final class ResultWriter implements Runnable {
+
+        private final List<QueuedResult> taken = new ArrayList<>(BATCH_LIMIT);
+        private final List<ProfileResourceNode> batch = new ArrayList<>(BATCH_LIMIT);
+
+        @Override
+        public void run() {
+            try {
+                boolean closed = false;
+                while (!closed) {
+                    taken.add(blockingQueue.take());
+                    blockingQueue.drainTo(taken, BATCH_LIMIT - 1);
+                    for (QueuedResult result : taken) {
+                        if (result.node != null) {
+                            batch.add(result.node);
+                        } else if (result == CLOSE) {
+                            closed = true;
+                        } else {
+                            flush(result.flushed);
+                        }
+                    }
+                    writeBatch();
+                    taken.clear();
+                }
+            } catch (InterruptedException e) {
+                LOG.debug("The result writer was interrupted.", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void writeBatch() {
+            if (!batch.isEmpty()) {
+                try {
+                    itemWriter.write(batch);
+                //CHECKSTYLE:OFF - a bad item must not stop the writer, or commit() would never return.
+                } catch (RuntimeException e) {
+                //CHECKSTYLE:ON
+                    LOG.error("Error writing results: " + e.getMessage(), e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void flush(CountDownLatch flushed) {
+            writeBatch();
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                LOG.error("Error flushing writer: " + e.getMessage(), e);
+            } finally {
+                flushed.countDown();
+            }
+        }
+    }
+}
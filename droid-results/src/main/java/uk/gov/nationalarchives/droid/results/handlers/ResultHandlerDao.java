@@ -74,6 +74,12 @@ public interface ResultHandlerDao {
      */
     void commit();
 
+    /**
+     * Releases the resources held by the result handler once results are no longer being saved,
+     * after writing out any results saved so far.
+     */
+    void cleanup();
+
     /**.
      * Loads a Format. 
      * @param puid - the unique id of the format
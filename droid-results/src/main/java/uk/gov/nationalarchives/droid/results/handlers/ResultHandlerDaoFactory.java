@@ -36,9 +36,16 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.FactoryBean;
@@ -49,8 +56,16 @@ import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
  * A class which creates either a database result handler dao (using the data source),
  * or which creates as writer result handler dao (using the data source, itemwriter and writer).
  * If there is a writer set, then the writer dao is created.  If no writer is present, then
- * the database result handler dao is created.  There must always be a data source, no matter
- * which result handler dao is created.
+ * the database result handler dao is created, and there must be a data source.
+ * <p>
+ * If there is a writer but no data source, a streaming result handler dao is created instead,
+ * which needs no profile database at all and reads format data from the signature file path.
+ * <p>
+ * If results are written to a database and a result log is wanted, or the profile home already
+ * holds a result log which has not been written to the database, a result log handler dao is created.
+ * <p>
+ * Where results are written to an output file whose extension has an item writer registered for it,
+ * such as .jsonl, that item writer is used in place of the default one.
  */
 public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
 
@@ -59,7 +74,15 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
 
     private DataSource datasource;
     private ItemWriter itemWriter;
+    private Map<String, ItemWriter> itemWritersByExtension = Collections.emptyMap();
     private Writer writer;
+    private String outputExtension = "";
+    private String signatureFilePath;
+    private int databaseWriterThreads = 1;
+    private boolean resultLog;
+    private boolean deferIndexes;
+    private Path profileHome;
+    private ResultHandlerDao resultHandlerDao;
 
     /**
      * Empty constructor.
@@ -115,14 +138,48 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
     public ResultHandlerDao getObject() {
         final ResultHandlerDao result;
         if (writer == null) {
-            result = new JDBCBatchResultHandlerDao(datasource);
+            final JDBCBatchResultHandlerDao databaseDao = useResultLog()
+                    ? new ResultLogHandlerDao(datasource, profileHome.resolve(ResultLogHandlerDao.RESULT_LOG_FILE))
+                    : new JDBCBatchResultHandlerDao(datasource);
+            databaseDao.setWriterThreads(databaseWriterThreads);
+            databaseDao.setDeferIndexes(deferIndexes);
+            result = databaseDao;
+        } else if (datasource == null) {
+            result = new StreamingResultHandlerDao(getOutputItemWriter(), writer, signatureFilePath);
         } else {
-            result = new WriterResultHandlerDao(itemWriter, writer, datasource);
+            result = new WriterResultHandlerDao(getOutputItemWriter(), writer, datasource);
         }
         result.init();
+        resultHandlerDao = result;
         return result;
     }
 
+    /**
+     * Cleans up the result handler created by this factory, writing out any results it still holds.
+     * This is called when the context holding the factory is closed.
+     */
+    public void close() {
+        if (resultHandlerDao != null) {
+            resultHandlerDao.cleanup();
+            resultHandlerDao = null;
+        }
+    }
+
+    /**
+     * @return Whether results written to the database are appended to a result log first.
+     */
+    private boolean useResultLog() {
+        return profileHome != null && (resultLog || ResultLogHandlerDao.hasResultLog(profileHome));
+    }
+
+    /**
+     * @return The item writer registered for the output file extension, or the default item writer if there is none.
+     */
+    private ItemWriter getOutputItemWriter() {
+        final ItemWriter extensionWriter = itemWritersByExtension.get(outputExtension);
+        return extensionWriter == null ? itemWriter : extensionWriter;
+    }
+
     @Override
     public Class<?> getObjectType() {
         return ResultHandlerDao.class;
@@ -144,6 +201,16 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
         this.itemWriter = itemWriter;
     }
 
+    /**
+     * Sets item writers to use in place of the default item writer, keyed by the lower case
+     * extension of the output file they write, e.g. "jsonl".
+     * @param itemWritersByExtension The item writers to use for each output file extension.
+     */
+    public void setItemWritersByExtension(Map<String, ItemWriter> itemWritersByExtension) {
+        this.itemWritersByExtension = itemWritersByExtension == null
+                ? Collections.<String, ItemWriter>emptyMap() : itemWritersByExtension;
+    }
+
     /**
      * Sets the writer, which is where the data is written out to.
      * @param writer The writer which is where the data is written out to.
@@ -152,6 +219,47 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
         this.writer = writer;
     }
 
+    /**
+     * Sets the path to the signature file, used to load format data when there is no data source.
+     * @param signatureFilePath The path to the signature file.
+     */
+    public void setSignatureFilePath(String signatureFilePath) {
+        this.signatureFilePath = signatureFilePath;
+    }
+
+    /**
+     * Sets how many threads write results to the database, when results are written to a database.
+     * @param databaseWriterThreads The number of writer threads, or zero or less for as many as there are processors.
+     */
+    public void setDatabaseWriterThreads(int databaseWriterThreads) {
+        this.databaseWriterThreads = databaseWriterThreads;
+    }
+
+    /**
+     * Sets whether results written to a database are appended to a result log first,
+     * and only written to the database when they are read.
+     * @param resultLog Whether to append results to a result log.
+     */
+    public void setResultLog(boolean resultLog) {
+        this.resultLog = resultLog;
+    }
+
+    /**
+     * Sets whether the secondary database indexes are dropped while a profile runs, and created when it finishes.
+     * @param deferIndexes Whether to defer creating the indexes until a run has finished.
+     */
+    public void setDeferIndexes(boolean deferIndexes) {
+        this.deferIndexes = deferIndexes;
+    }
+
+    /**
+     * Sets the profile home directory, which holds the result log.
+     * @param profileHome The path to the profile home directory.
+     */
+    public void setProfileHome(String profileHome) {
+        this.profileHome = profileHome == null || profileHome.isEmpty() ? null : Paths.get(profileHome);
+    }
+
     /**
      * The path to a file where the data is written out to.
      * If this is set, a Writer is constructed which writes the data out to that file.
@@ -160,8 +268,9 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
     public void setOutputFilePath(String outputFilePath) {
         if (outputFilePath != null && !outputFilePath.trim().isEmpty()) {
             if (CONSOLE.equals(outputFilePath.toLowerCase())) {
-                writer = new PrintWriter(System.out);
+                writer = new PrintWriter(CloseShieldOutputStream.wrap(System.out));
             } else {
+                outputExtension = FilenameUtils.getExtension(outputFilePath).toLowerCase(Locale.ROOT);
                 File outputFile = new File(outputFilePath);
                 try {
                     writer = new FileWriter(outputFile, false);
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * An append-only file of compact binary records, one for each node saved or updated in a profile.
+ * <p>
+ * A node record holds the node and parent ids, the prefixes, the URI, the metadata and the index of each
+ * PUID it was identified as.  Each PUID is written once, in a PUID record, before the first node record
+ * which refers to it.  A status record holds the new status of a node already saved.
+ * <p>
+ * The records are replayed, in the order they were appended, to write them somewhere else.  The log file is
+ * first moved aside to a replay file, so records appended while replaying start a new log.  The replay file
+ * is only deleted once the caller has finished with the records, so if DROID stops before then, they are
+ * replayed again, ahead of the new log.
+ */
+final class ResultLog {
+
+    private static final byte NODE_RECORD = 1;
+    private static final byte PUID_RECORD = 2;
+    private static final byte STATUS_RECORD = 3;
+
+    private static final int NULL_VALUE = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String REPLAY_FILE_SUFFIX = ".replaying";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Path file;
+    private final Path replayFile;
+    private final Map<String, Integer> puidIndexes = new HashMap<String, Integer>();
+    private DataOutputStream out;
+
+    /**
+     * Receives the nodes replayed from the log.
+     */
+    interface NodeReplay {
+
+        /**
+         * @param node A node read from the log.
+         * @param insertNode Whether to insert the node, or only to update the status of a node already inserted.
+         */
+        void replay(ProfileResourceNode node, boolean insertNode);
+    }
+
+    /**
+     * @param file The file holding the log, which is created when the first record is appended.
+     */
+    ResultLog(final Path file) {
+        this.file = file;
+        this.replayFile = getReplayFile(file);
+    }
+
+    /**
+     * @param file The file holding a log.
+     * @return Whether the log, or a replay of it which did not finish, holds any records.
+     * @throws IOException If the size of the log could not be read.
+     */
+    static boolean hasRecords(final Path file) throws IOException {
+        return Files.exists(getReplayFile(file)) || Files.exists(file) && Files.size(file) > 0;
+    }
+
+    /**
+     * @return The file holding the log.
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Whether the log holds any records which have not been replayed.
+     * @throws IOException If the size of the log could not be read.
+     */
+    synchronized boolean isEmpty() throws IOException {
+        flush();
+        return !hasRecords(file);
+    }
+
+    /**
+     * @return Whether an earlier replay did not finish, so its records will be replayed before the rest of the log.
+     */
+    synchronized boolean isReplaying() {
+        return Files.exists(replayFile);
+    }
+
+    /**
+     * Appends a node to the log.
+     * @param node The node to append, which must already have an id.
+     * @param insertNode Whether this is a new node, or a status update to a node already appended.
+     * @throws IOException If the record could not be written.
+     */
+    synchronized void append(final ProfileResourceNode node, final boolean insertNode) throws IOException {
+        final DataOutputStream output = getOutput();
+        if (insertNode) {
+            final List<Format> formats = node.getFormatIdentifications();
+            final int[] indexes = new int[formats.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = getPuidIndex(output, formats.get(i).getPuid());
+            }
+            writeNode(output, node, indexes);
+        } else {
+            output.writeByte(STATUS_RECORD);
+            output.writeLong(node.getId());
+            writeEnum(output, node.getMetaData().getNodeStatus());
+        }
+    }
+
+    /**
+     * Writes any buffered records out to the log file.
+     * @throws IOException If the records could not be written.
+     */
+    synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Closes the log file.  It is opened again if more records are appended.
+     * @throws IOException If the log could not be closed.
+     */
+    synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Replays all the records in the log, in the order they were appended, moving them aside so that
+     * records appended from now on start a new log.  If an earlier replay did not finish, only its records
+     * are replayed, and the rest of the log is left for the next replay.
+     * The records are replayed again until {@link #replayed()} is called.
+     * A record which was only partly written, because DROID stopped while writing it, is ignored.
+     *
+     * @param puidFormatMap The formats to give the nodes, by PUID.
+     * @param target Receives each node replayed.
+     * @return The number of records replayed.
+     * @throws IOException If the log could not be moved aside or read.
+     */
+    synchronized long replay(final Map<String, Format> puidFormatMap, final NodeReplay target) throws IOException {
+        close();
+        if (!Files.exists(replayFile)) {
+            if (!Files.exists(file)) {
+                return 0;
+            }
+            Files.move(file, replayFile);
+            puidIndexes.clear(); // a new log writes its own PUID records.
+        }
+        final List<String> puids = new ArrayList<String>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(replayFile), BUFFER_SIZE))) {
+            return readRecords(in, puids, puidFormatMap, target);
+        }
+    }
+
+    /**
+     * Discards the records replayed, once they have been written somewhere else.
+     * @throws IOException If the replayed records could not be deleted.
+     */
+    synchronized void replayed() throws IOException {
+        Files.deleteIfExists(replayFile);
+    }
+
+    private long readRecords(final DataInputStream in, final List<String> puids,
+                             final Map<String, Format> puidFormatMap, final NodeReplay target) throws IOException {
+        long records = 0;
+        try {
+            int recordType;
+            while ((recordType = in.read()) != NULL_VALUE) {
+                switch (recordType) {
+                    case NODE_RECORD:
+                        target.replay(readNode(in, puids, puidFormatMap), true);
+                        break;
+                    case PUID_RECORD:
+                        puids.add(readString(in));
+                        break;
+                    case STATUS_RECORD:
+                        final ProfileResourceNode node = new ProfileResourceNode();
+                        node.setId(in.readLong());
+                        node.getMetaData().setNodeStatus(readEnum(in, NodeStatus.values()));
+                        target.replay(node, false);
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + recordType + " in result log " + file);
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            log.warn("The last record in the result log " + file + " was incomplete, and has been ignored.");
+        }
+        return records;
+    }
+
+    private static Path getReplayFile(final Path file) {
+        return file.resolveSibling(file.getFileName() + REPLAY_FILE_SUFFIX);
+    }
+
+    private DataOutputStream getOutput() throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), BUFFER_SIZE));
+        }
+        return out;
+    }
+
+    private int getPuidIndex(final DataOutputStream output, final String puid) throws IOException {
+        if (puid == null) {
+            return NULL_VALUE;
+        }
+        Integer index = puidIndexes.get(puid);
+        if (index == null) {
+            index = puidIndexes.size();
+            puidIndexes.put(puid, index);
+            output.writeByte(PUID_RECORD);
+            writeString(output, puid);
+        }
+        return index;
+    }
+
+    private static void writeNode(final DataOutputStream output, final ProfileResourceNode node,
+                                  final int[] puidIndexes) throws IOException {
+        final NodeMetaData metadata = node.getMetaData();
+        output.writeByte(NODE_RECORD);
+        output.writeLong(node.getId());
+        writeLong(output, node.getParentId());
+        writeString(output, node.getPrefix());
+        writeString(output, node.getPrefixPlusOne());
+        writeString(output, node.getUri().toString());
+        output.writeBoolean(Boolean.TRUE.equals(node.getExtensionMismatch()));
+        writeLong(output, node.getFinished() == null ? null : node.getFinished().getTime());
+        output.writeInt(node.getIdentificationCount() == null ? NULL_VALUE : node.getIdentificationCount());
+        writeString(output, metadata.getName());
+        writeString(output, metadata.getExtension());
+        writeString(output, metadata.getHash());
+        writeLong(output, metadata.getSize());
+        writeLong(output, metadata.getLastModifiedDate() == null ? null : metadata.getLastModifiedDate().getTime());
+        writeEnum(output, metadata.getIdentificationMethod());
+        writeEnum(output, metadata.getNodeStatus());
+        writeEnum(output, metadata.getResourceType());
+        output.writeInt(puidIndexes.length);
+        for (final int index : puidIndexes) {
+            output.writeInt(index);
+        }
+    }
+
+    private static ProfileResourceNode readNode(final DataInputStream in, final List<String> puids,
+                                                final Map<String, Format> puidFormatMap) throws IOException {
+        final long id = in.readLong();
+        final Long parentId = readLong(in);
+        final String prefix = readString(in);
+        final String prefixPlusOne = readString(in);
+        final ProfileResourceNode node = new ProfileResourceNode(URI.create(readString(in)));
+        node.setId(id);
+        node.setParentId(parentId);
+        node.setPrefix(prefix);
+        node.setPrefixPlusOne(prefixPlusOne);
+        node.setExtensionMismatch(in.readBoolean());
+        final Long finished = readLong(in);
+        node.setFinished(finished == null ? null : new Date(finished));
+        final int identificationCount = in.readInt();
+        final NodeMetaData metadata = node.getMetaData();
+        metadata.setName(readString(in));
+        metadata.setExtension(readString(in));
+        metadata.setHash(readString(in));
+        metadata.setSize(readLong(in));
+        metadata.setLastModified(readLong(in));
+        metadata.setIdentificationMethod(readEnum(in, IdentificationMethod.values()));
+        metadata.setNodeStatus(readEnum(in, NodeStatus.values()));
+        metadata.setResourceType(readEnum(in, ResourceType.values()));
+        final int formats = in.readInt();
+        for (int i = 0; i < formats; i++) {
+            node.addFormatIdentification(getFormat(in.readInt(), puids, puidFormatMap));
+        }
+        if (identificationCount == NULL_VALUE) {
+            node.setNoFormatsIdentified();
+        } else if (node.getIdentificationCount() == null) {
+            node.setZeroIdentifications();
+        }
+        return node;
+    }
+
+    private static Format getFormat(final int index, final List<String> puids,
+                                    final Map<String, Format> puidFormatMap) {
+        if (index == NULL_VALUE) {
+            return Format.NULL;
+        }
+        final String puid = puids.get(index);
+        Format format = puidFormatMap.get(puid);
+        if (format == null) {
+            format = new Format();
+            format.setPuid(puid);
+        }
+        return format;
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(NULL_VALUE);
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length == NULL_VALUE) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLong(final DataOutputStream output, final Long value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeLong(value);
+        }
+    }
+
+    private static Long readLong(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeEnum(final DataOutputStream output, final Enum<?> value) throws IOException {
+        output.writeByte(value == null ? NULL_VALUE : value.ordinal());
+    }
+
+    private static <T extends Enum<T>> T readEnum(final DataInputStream in, final T[] values) throws IOException {
+        final byte ordinal = in.readByte();
+        return ordinal == NULL_VALUE ? null : values[ordinal];
+    }
+}
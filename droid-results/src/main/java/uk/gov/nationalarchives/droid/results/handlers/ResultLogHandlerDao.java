@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.profile.ProfileException;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+
+/**
+ * An implementation of ResultHandlerDao which appends results to a binary log file in the profile,
+ * instead of inserting them into the profile database as they arrive.
+ * <p>
+ * Appending to a file is much cheaper than inserting rows into tables with several indexes, so
+ * the database is only written when something needs to read it: browsing the results, running reports
+ * or exporting them, or loading or deleting a node which is no longer cached.  At that point the log is
+ * materialised - replayed into the database by the usual database writers - and emptied.
+ * Only once the results replayed have been committed are they removed from the log.
+ * <p>
+ * A log left in a saved profile is materialised when the profile is opened again.
+ */
+public class ResultLogHandlerDao extends JDBCBatchResultHandlerDao {
+
+    /** The name of the result log file in the profile home directory. */
+    public static final String RESULT_LOG_FILE = "results.log";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResultLogHandlerDao.class);
+
+    private final ResultLog resultLog;
+    private volatile boolean running;
+
+    /**
+     * @param datasource The data source for the profile database.
+     * @param logFile The file to append results to.
+     */
+    public ResultLogHandlerDao(DataSource datasource, Path logFile) {
+        super(datasource);
+        this.resultLog = new ResultLog(logFile);
+    }
+
+    /**
+     * @param profileHome The profile home directory.
+     * @return Whether the profile home holds a result log which has not been materialised.
+     */
+    public static boolean hasResultLog(Path profileHome) {
+        try {
+            return ResultLog.hasRecords(profileHome.resolve(RESULT_LOG_FILE));
+        } catch (IOException e) {
+            LOG.error("Could not read the size of the result log in " + profileHome, e);
+            return true;
+        }
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        if (hasDatabaseWriters()) {
+            materialise();
+            resetNodeIds();
+        }
+    }
+
+    @Override
+    public void save(final ProfileResourceNode node, final ResourceId parentId) {
+        final boolean insertNode = node.getId() == null;
+        if (insertNode) {
+            setNodeIds(node, parentId);
+        }
+        cacheNode(node);
+        try {
+            resultLog.append(node, insertNode);
+        } catch (IOException e) {
+            throw new ProfileException("Could not append a node to the result log " + resultLog.getFile(), e);
+        }
+    }
+
+    @Override
+    public void commit() {
+        try {
+            resultLog.flush();
+        } catch (IOException e) {
+            LOG.error("Could not flush the result log " + resultLog.getFile(), e);
+        }
+    }
+
+    /**
+     * Writes all the results logged so far into the profile database, and waits until they are committed.
+     * Results logged while this is running are written the next time it is called.
+     * <p>
+     * Materialising after a run is a bulk load, so if indexes are deferred they are dropped while the results
+     * are written, and created again afterwards.  While a run is in progress, results are materialised into
+     * the database as it is, as the run may need to materialise them many times.
+     */
+    public synchronized void materialise() {
+        if (hasDatabaseWriters()) {
+            try {
+                final boolean bulkLoad = !running && !resultLog.isEmpty();
+                if (bulkLoad) {
+                    super.startBulkLoad();
+                }
+                // The records of a materialisation which did not finish come before the rest of the log.
+                final boolean unfinished = resultLog.isReplaying();
+                long records = replayResultLog();
+                if (unfinished) {
+                    records += replayResultLog();
+                }
+                if (records > 0) {
+                    LOG.debug("Materialised " + records + " records from the result log.");
+                }
+                if (!running) {
+                    createDeferredIndexes(null);
+                }
+            } catch (IOException e) {
+                throw new ProfileException("Could not materialise the result log " + resultLog.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Results stay in the result log when a run finishes, so only the log is flushed.
+     * Any deferred indexes are created when the log is materialised.
+     * @param observer Not used.
+     */
+    @Override
+    public void finishBulkLoad(ProgressObserver observer) {
+        commit();
+        running = false;
+    }
+
+    /**
+     * Nothing is written to the database while a run appends to the result log, so no indexes are dropped
+     * until the log is materialised after the run.
+     */
+    @Override
+    public void startBulkLoad() {
+        running = true;
+    }
+
+    @Override
+    public ProfileResourceNode loadNode(Long nodeId) {
+        if (getCachedNode(nodeId) == null) {
+            materialise();
+        }
+        return super.loadNode(nodeId);
+    }
+
+    @Override
+    public void deleteNode(Long nodeId) {
+        materialise();
+        super.deleteNode(nodeId);
+    }
+
+    /**
+     * Materialises the result log before returning the data source, so exports read all the results.
+     * @return the datasource
+     */
+    @Override
+    public DataSource getDatasource() {
+        materialise();
+        return super.getDatasource();
+    }
+
+    private long replayResultLog() throws IOException {
+        final long records = resultLog.replay(getPUIDFormatMap(), new ResultLog.NodeReplay() {
+            @Override
+            public void replay(ProfileResourceNode node, boolean insertNode) {
+                queueNode(node, insertNode);
+            }
+        });
+        if (records > 0) {
+            commitAndWait();
+        }
+        resultLog.replayed();
+        return records;
+    }
+
+    @Override
+    public void cleanup() {
+        try {
+            resultLog.close();
+        } catch (IOException e) {
+            LOG.error("Could not close the result log " + resultLog.getFile(), e);
+        }
+        super.cleanup();
+    }
+}
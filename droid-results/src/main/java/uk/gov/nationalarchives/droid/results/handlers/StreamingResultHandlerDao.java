@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNodeFilter;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+import uk.gov.nationalarchives.droid.signature.FormatCallback;
+import uk.gov.nationalarchives.droid.signature.SaxSignatureFileParser;
+
+/**
+ * An implementation of ResultHandlerDao which streams results out to a Writer
+ * without any profile database behind it.
+ * <p>
+ * Unlike the {@link WriterResultHandlerDao}, this class does not need a data source:
+ * the format reference data is read directly from the signature file.  Like it, results are
+ * handed to a single writing thread through a bounded queue by a {@link QueuedResultWriter}.
+ * <p>
+ * Calling commit() blocks until every result saved before it has been written
+ * and the Writer has been flushed.
+ */
+public class StreamingResultHandlerDao implements ResultHandlerDao {
+
+    private static final int PUID_FORMAT_MAP_SIZE = 2500;
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingResultHandlerDao.class);
+
+    private final AtomicLong nodeIds = new AtomicLong();
+
+    private ItemWriter<ProfileResourceNode> itemWriter;
+    private Writer writer;
+    private String signatureFilePath;
+    private volatile ProfileResourceNodeFilter filter = new ProfileResourceNodeFilter();
+
+    private List<Format> formats = Collections.emptyList();
+    private Map<String, Format> puidFormatMap = Collections.emptyMap();
+
+    private QueuedResultWriter resultWriter;
+
+    /**
+     * Empty bean constructor.  You still need to set the ItemWriter, the Writer and the
+     * signature file path, and then call init() before this class is ready to use.
+     */
+    public StreamingResultHandlerDao() {
+    }
+
+    /**
+     * Parameterized constructor.
+     * @param itemWriter The ItemWriter which formats results and writes them to the writer.
+     * @param writer The writer to which results are written.
+     * @param signatureFilePath The path to the signature file to read format reference data from.
+     */
+    public StreamingResultHandlerDao(ItemWriter<ProfileResourceNode> itemWriter, Writer writer,
+                                     String signatureFilePath) {
+        setItemWriter(itemWriter);
+        setWriter(writer);
+        setSignatureFilePath(signatureFilePath);
+    }
+
+    @Override
+    public synchronized void init() {
+        loadFormats();
+        if (resultWriter == null) {
+            resultWriter = new QueuedResultWriter(itemWriter, writer);
+            resultWriter.start();
+        }
+    }
+
+    private void loadFormats() {
+        final List<Format> allFormats = new ArrayList<>();
+        final Map<String, Format> formatMap = new HashMap<>(PUID_FORMAT_MAP_SIZE);
+        if (signatureFilePath != null && !signatureFilePath.isEmpty()) {
+            try {
+                new SaxSignatureFileParser(Paths.get(signatureFilePath).toUri()).formats(new FormatCallback() {
+                    @Override
+                    public void onFormat(Format format) {
+                        allFormats.add(format);
+                        formatMap.put(format.getPuid(), format);
+                    }
+                });
+            } catch (SignatureFileException e) {
+                LOG.error("Could not read formats from the signature file " + signatureFilePath, e);
+            }
+        }
+        formats = allFormats;
+        puidFormatMap = formatMap;
+    }
+
+    @Override
+    public void save(ProfileResourceNode node, ResourceId parentId) {
+        node.setId(nodeIds.incrementAndGet());
+        if (parentId != null) {
+            node.setParentId(parentId.getId());
+        }
+        if (filter.passesFilter(node)) { // only write the result if it passes the filter.
+            resultWriter.write(node);
+        }
+    }
+
+    @Override
+    public void setFilter(Filter filter) {
+        this.filter = new ProfileResourceNodeFilter(filter);
+    }
+
+    @Override
+    public void commit() {
+        resultWriter.flush();
+    }
+
+    /**
+     * Writes out any results saved so far, and stops the writing thread.
+     */
+    @Override
+    public synchronized void cleanup() {
+        if (resultWriter != null) {
+            resultWriter.close();
+            resultWriter = null;
+        }
+    }
+
+    @Override
+    public Format loadFormat(String puid) {
+        return puidFormatMap.get(puid);
+    }
+
+    @Override
+    public List<Format> getAllFormats() {
+        return formats;
+    }
+
+    @Override
+    public Map<String, Format> getPUIDFormatMap() {
+        return puidFormatMap;
+    }
+
+    /**
+     * <b>Note:</b> This result handler cannot load any prior results, and always returns null.
+     * {@inheritDoc}
+     */
+    @Override
+    public ProfileResourceNode loadNode(Long nodeId) {
+        return null;
+    }
+
+    /**
+     * <b>Note:</b> This result handler cannot delete previous nodes, and this method does nothing.
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteNode(Long nodeId) {
+    }
+
+    /**
+     * <b>Note:</b> There is no database template to initialise, so this method does nothing.
+     * {@inheritDoc}
+     */
+    @Override
+    public void initialiseForNewTemplate() {
+    }
+
+    /**
+     * Sets the ItemWriter used to format results for output to a Writer.
+     * @param itemWriter The ItemWriter used to format results for output to a Writer.
+     */
+    public void setItemWriter(ItemWriter<ProfileResourceNode> itemWriter) {
+        this.itemWriter = itemWriter;
+    }
+
+    /**
+     * Sets the Writer to which results are written.
+     * @param writer The Writer to which results are written.
+     */
+    public void setWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Sets the path to the signature file from which format reference data is read.
+     * @param signatureFilePath The path to the signature file.
+     */
+    public void setSignatureFilePath(String signatureFilePath) {
+        this.signatureFilePath = signatureFilePath;
+    }
+}
@@ -31,16 +31,12 @@
  */
 package uk.gov.nationalarchives.droid.results.handlers;
 
-import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.sql.DataSource;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
@@ -62,17 +58,20 @@ import uk.gov.nationalarchives.droid.profile.ProfileResourceNodeFilter;
  * but override the methods involved in writing out to a Writer, and those
  * which can't work if the results aren't being saved to the database
  * (e.g. loading previous results or deleting previous results).
+ * <p>
+ * Results are handed to a single writing thread by a {@link QueuedResultWriter}, so
+ * identification threads saving results do not contend on a lock around the writer.
  */
 public class WriterResultHandlerDao extends JDBCBatchResultHandlerDao {
 
-    private static final Logger LOG = LoggerFactory.getLogger(WriterResultHandlerDao.class);
-
-    private final List<ProfileResourceNode> items = new ArrayList<>(1);
+    // Guards taking a node id together with queuing the node, so results are written out in id order.
+    private final Object saveLock = new Object();
+    private long lastNodeId;
 
     private ItemWriter itemWriter;
     private Writer writer;
-    private long nodeId = 1L;
-    private ProfileResourceNodeFilter filter = new ProfileResourceNodeFilter();
+    private volatile ProfileResourceNodeFilter filter = new ProfileResourceNodeFilter();
+    private QueuedResultWriter resultWriter;
 
     /**
      * Empty bean constructor.  You still need to set the Itemwriter and DataSource,
@@ -108,38 +107,53 @@ public class WriterResultHandlerDao extends JDBCBatchResultHandlerDao {
         try {
             super.init();
         } finally {
-            if (writer == null) { // If no writer is set, default to console output.
-                writer = new PrintWriter(System.out);
+            if (writer == null) { // If no writer is set, default to console output, which must not be closed.
+                writer = new PrintWriter(CloseShieldOutputStream.wrap(System.out));
+            }
+            if (resultWriter == null) {
+                resultWriter = new QueuedResultWriter(itemWriter, writer);
+                resultWriter.start();
             }
-            itemWriter.open(writer);
         }
     }
 
     @Override
-    public synchronized void save(ProfileResourceNode node, ResourceId parentId) {
-        node.setId(nodeId++);
+    public void save(ProfileResourceNode node, ResourceId parentId) {
         if (parentId != null) {
             node.setParentId(parentId.getId());
         }
-        if (filter.passesFilter(node)) { // only write the result if it passes the filter.
-            items.clear(); //TODO: we just output each result in a list of one - any value in batching them for output?
-            items.add(node);
-            itemWriter.write(items);
+        final boolean write = filter.passesFilter(node); // only write the result if it passes the filter.
+        synchronized (saveLock) {
+            node.setId(++lastNodeId);
+            if (write) {
+                resultWriter.write(node);
+            }
         }
     }
 
     @Override
-    public synchronized void setFilter(Filter filter) {
+    public void setFilter(Filter filter) {
         this.filter = new ProfileResourceNodeFilter(filter);
     }
 
+    /**
+     * Blocks until every result saved so far has been written, and the Writer has been flushed.
+     */
+    @Override
+    public void commit() {
+        resultWriter.flush();
+    }
+
+    /**
+     * Writes out any results saved so far and stops the writing thread, before cleaning up the database writers.
+     */
     @Override
-    public synchronized void commit() {
-        try {
-            writer.flush();
-        } catch (IOException e) {
-            LOG.error("Error flushing writer: " + e.getMessage(), e);
+    public synchronized void cleanup() {
+        if (resultWriter != null) {
+            resultWriter.close();
+            resultWriter = null;
         }
+        super.cleanup();
     }
 
    /**
@@ -32,8 +32,7 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
-import java.util.Date;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultImpl;
@@ -77,13 +76,26 @@ public class DirectoryEventHandler {
      * @return the id of the directory
      */
     public ResourceId onEvent(final Path dir, ResourceId parentId, int depth, boolean restricted) {
+        return onEvent(dir, FileUtil.readAttributesQuietly(dir), parentId, depth, restricted);
+    }
+
+    /**
+     * Handles a directory, using attributes of the directory which have already been read.
+     * @param dir the directory to handle
+     * @param attributes the attributes of the directory, or null if they could not be read
+     * @param parentId the directory's parent id
+     * @param depth the depth of the directory in the tree
+     * @param restricted true if access to the directory was restricted, false otherwise
+     * @return the id of the directory
+     */
+    public ResourceId onEvent(final Path dir, final BasicFileAttributes attributes, ResourceId parentId, int depth,
+                              boolean restricted) {
         IdentificationResultImpl result = new IdentificationResultImpl();
         result.setMethod(IdentificationMethod.NULL);
 
-        final FileTime lastModified = FileUtil.lastModifiedQuietly(dir);
         RequestMetaData metaData = new RequestMetaData(
                 -1L, //recursing causes performance hit and the size is never used for directories return -1L
-                lastModified == null ? new Date(0).getTime() : new Date(lastModified.toMillis()).getTime(),
+                attributes == null ? 0L : attributes.lastModifiedTime().toMillis(),
                 depth == 0 ? dir.toAbsolutePath().toString() : FileUtil.fileName(dir));
         
         RequestIdentifier identifier = new RequestIdentifier(dir.toUri());
@@ -34,8 +34,7 @@ package uk.gov.nationalarchives.droid.submitter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
-import java.util.Date;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +43,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationErrorType;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
@@ -68,6 +68,8 @@ public class FileEventHandler {
 
     private SubmissionThrottle submissionThrottle;
 
+    private volatile PreviousProfileResults previousResults;
+
     private StringBuilder uriStringBuilder = new StringBuilder(URI_STRING_BUILDER_CAPACITY);
 
     /**
@@ -111,11 +113,28 @@ public class FileEventHandler {
      *            an optional node ID for the request.
      */
     public void onEvent(final Path file, ResourceId parentId, ResourceId nodeId) {
+        onEvent(file, FileUtil.readAttributesQuietly(file), parentId, nodeId);
+    }
+
+    /**
+     * Creates a job in the database and submits the job to the identification
+     * engine, using attributes of the file which have already been read.
+     *
+     * @param file
+     *            the node file to handle
+     * @param attributes
+     *            the attributes of the file, or null if they could not be read
+     * @param parentId
+     *            the ID of the node's parent
+     * @param nodeId
+     *            an optional node ID for the request.
+     */
+    public void onEvent(final Path file, final BasicFileAttributes attributes, ResourceId parentId,
+                        ResourceId nodeId) {
 
-        final FileTime lastModified = FileUtil.lastModifiedQuietly(file);
         RequestMetaData metaData = new RequestMetaData(
-                FileUtil.sizeQuietly(file),
-                lastModified == null ? new Date(0).getTime() : new Date(lastModified.toMillis()).getTime(),
+                attributes == null ? -1L : attributes.size(),
+                attributes == null ? 0L : attributes.lastModifiedTime().toMillis(),
                 FileUtil.fileName(file));
 
         RequestIdentifier identifier = new RequestIdentifier(file.toUri());
@@ -123,22 +142,33 @@ public class FileEventHandler {
         identifier.setResourceId(nodeId);
         IdentificationRequest<Path> request = requestFactory.newRequest(metaData, identifier);
         if (droidCore.passesIdentificationFilter(request)) {
-            try {
-                request.open(file);
-                droidCore.submit(request);
-                submissionThrottle.apply();
-            } catch (IOException e) {
-                IdentificationErrorType error = Files.exists(file) ? IdentificationErrorType.ACCESS_DENIED
-                        : IdentificationErrorType.FILE_NOT_FOUND;
-                if (error.equals(IdentificationErrorType.ACCESS_DENIED)) {
-                    log.warn(String.format("Access was denied to the file: [%s]", file.toAbsolutePath().toString()));
-                } else {
-                    log.warn(String.format("File not found: [%s]", file.toAbsolutePath().toString()));
-                }
-                resultHandler.handleError(new IdentificationException(request, error, e));
-            } catch (InterruptedException e) {
-                log.debug("Interrupted while throttle active.", e);
+            final PreviousProfileResults previous = previousResults;
+            final IdentificationResultCollection results = previous == null ? null : previous.getResults(request);
+            if (results != null) {
+                // The file has not changed since it was last profiled, so it is not read again.
+                resultHandler.handle(results);
+            } else {
+                submit(file, request);
+            }
+        }
+    }
+
+    private void submit(final Path file, final IdentificationRequest<Path> request) {
+        try {
+            request.open(file);
+            droidCore.submit(request);
+            submissionThrottle.apply();
+        } catch (IOException e) {
+            IdentificationErrorType error = Files.exists(file) ? IdentificationErrorType.ACCESS_DENIED
+                    : IdentificationErrorType.FILE_NOT_FOUND;
+            if (error.equals(IdentificationErrorType.ACCESS_DENIED)) {
+                log.warn(String.format("Access was denied to the file: [%s]", file.toAbsolutePath().toString()));
+            } else {
+                log.warn(String.format("File not found: [%s]", file.toAbsolutePath().toString()));
             }
+            resultHandler.handleError(new IdentificationException(request, error, e));
+        } catch (InterruptedException e) {
+            log.debug("Interrupted while throttle active.", e);
         }
     }
 
@@ -170,6 +200,15 @@ public class FileEventHandler {
         this.resultHandler = resultHandler;
     }
     
+    /**
+     * Sets the results of a previous profile of the same resources, which are copied forward for files
+     * that have not changed since, rather than identifying them again.
+     * @param previousResults the results of a previous profile, or null to identify every file.
+     */
+    public void setPreviousResults(PreviousProfileResults previousResults) {
+        this.previousResults = previousResults;
+    }
+
     /**
      * @param requestFactory the requestFactory to set
      */
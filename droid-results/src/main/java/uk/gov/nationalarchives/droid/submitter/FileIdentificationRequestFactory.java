@@ -32,11 +32,15 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.MappedFileIdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 
 /**
@@ -45,13 +49,71 @@ import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
  */
 public class FileIdentificationRequestFactory implements IdentificationRequestFactory<Path> {
 
+    private HashGenerator hashGenerator;
+    private boolean generateHash;
+    private boolean memoryMapFiles;
+    private HashGenerator resultCacheHashGenerator;
+    private int resultCacheEntries;
+
     /**
      * {@inheritDoc}
      */
     @Override
     public final IdentificationRequest<Path> newRequest(RequestMetaData metaData,
                                                         RequestIdentifier identifier) {
-        return new FileSystemIdentificationRequest(metaData, identifier);
+        final List<HashGenerator> generators = getHashGenerators();
+        return memoryMapFiles
+                ? new MappedFileIdentificationRequest(metaData, identifier, generators)
+                : new FileSystemIdentificationRequest(metaData, identifier, generators);
+    }
+
+    private List<HashGenerator> getHashGenerators() {
+        final List<HashGenerator> generators = new ArrayList<>(2);
+        if (generateHash) {
+            generators.add(hashGenerator);
+        }
+        // Results are cached by a hash of the file, calculated from the same reads as the hash of the profile.
+        if (resultCacheEntries > 0 && resultCacheHashGenerator != null
+                && !generators.contains(resultCacheHashGenerator)) {
+            generators.add(resultCacheHashGenerator);
+        }
+        return generators;
+    }
+
+    /**
+     * @param hashGenerator the hash generator used to hash files as they are read.
+     */
+    public void setHashGenerator(HashGenerator hashGenerator) {
+        this.hashGenerator = hashGenerator;
+    }
+
+    /**
+     * @param generateHash whether requests should hash files as they are read.
+     */
+    public void setGenerateHash(boolean generateHash) {
+        this.generateHash = generateHash;
+    }
+
+    /**
+     * @param resultCacheHashGenerator the hash generator identification results are cached by.
+     */
+    public void setResultCacheHashGenerator(HashGenerator resultCacheHashGenerator) {
+        this.resultCacheHashGenerator = resultCacheHashGenerator;
+    }
+
+    /**
+     * @param resultCacheEntries the number of identification results cached, or zero if none are,
+     *                           in which case requests do not hash files for the cache.
+     */
+    public void setResultCacheEntries(int resultCacheEntries) {
+        this.resultCacheEntries = resultCacheEntries;
+    }
+
+    /**
+     * @param memoryMapFiles whether requests should map files into memory, rather than read them into buffers.
+     */
+    public void setMemoryMapFiles(boolean memoryMapFiles) {
+        this.memoryMapFiles = memoryMapFiles;
     }
-    
+
 }
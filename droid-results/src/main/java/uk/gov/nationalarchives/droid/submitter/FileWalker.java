@@ -32,16 +32,22 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -57,6 +63,17 @@ import uk.gov.nationalarchives.droid.util.FileUtil;
 
 /**
  * A file walker which supports resume.
+ * <p>
+ * If a listing executor is set, directories are listed concurrently ahead of the walk:
+ * when a directory is walked, the listings of the next few child directories are started
+ * on the executor, so the latency of listing a directory and checking which of its children
+ * are directories is hidden behind the processing of their siblings.  Handlers are still
+ * called in the same order, from the walking thread, so the progress recorded for resume is
+ * the same as for a sequential walk.
+ * <p>
+ * The basic attributes of each entry are read once, when its directory is listed, and are passed
+ * to the handlers, so they do not need to query the file system again for the type, size or
+ * last modified time of the entry.
  * @author rflitcroft
  *
  */
@@ -65,6 +82,11 @@ public class FileWalker {
 
     private static final String FILE_SYSTEM_UNAVAILABLE = "File system appears to be unavailable for file: [%s]";
 
+    /**
+     * How many child directories of a directory can be listed ahead of the walk.
+     */
+    private static final int LISTING_LOOKAHEAD = 16;
+
     private Logger log = LoggerFactory.getLogger(this.getClass());
     
 
@@ -83,6 +105,8 @@ public class FileWalker {
     private FileWalkerHandler restrictedDirectoryHandler;
     private boolean fastForward;
     private List<ProgressEntry> recoveryRoad;
+    private ExecutorService listingExecutor;
+    private DirectoryListingObserver listingObserver;
     
     /**
      * Default Constructor.
@@ -147,7 +171,8 @@ public class FileWalker {
             progress = new ArrayDeque<>();
         }
         
-        walk(Paths.get(root), 0);
+        final Path rootPath = Paths.get(root);
+        walk(rootPath, FileUtil.readAttributesQuietly(rootPath), 0, null);
     }
 
     private static List<ProgressEntry> reverseProgress(final Deque<ProgressEntry> progress) {
@@ -159,23 +184,87 @@ public class FileWalker {
         return reversed;
     }
 
-    private void walk(final Path directory, final int depth) throws IOException {
+    private void walk(final Path directory, final BasicFileAttributes attributes, final int depth,
+                      final Future<DirectoryListing> pendingListing) throws IOException {
         if (handleDirectory(directory, depth)) {
-            final List<Path> children = FileUtil.listFiles(directory, false, (DirectoryStream.Filter<Path>) null);
-            handleDirectoryStart(directory, depth, children.toArray(new Path[children.size()]));
+            final DirectoryListing listing = getListing(directory, pendingListing);
+            handleDirectoryStart(directory, attributes, depth, listing.getChildren().clone());
             if (recursive || depth == 0) {
-                final int childDepth = depth + 1;
-                for (final Path child : children) {
-                    if (Files.isDirectory(child)) {
-                        walk(child, childDepth);
-                    } else {
-                        handleFile(child, childDepth);
-                    }
+                if (listingObserver != null && !fastForward) {
+                    listingObserver.onDirectoryListed(directory, depth, listing.getChildren().length);
                 }
+                walkChildren(listing, depth + 1);
             }
             handleDirectoryEnd(directory, depth);
         } else { // can't access children - restricted directory.
-            handleRestrictedDirectory(directory, depth);
+            if (pendingListing != null) {
+                pendingListing.cancel(false);
+            }
+            handleRestrictedDirectory(directory, attributes, depth);
+        }
+    }
+
+    private void walkChildren(final DirectoryListing listing, final int childDepth) throws IOException {
+        final Path[] children = listing.getChildren();
+        final Deque<Future<DirectoryListing>> lookahead = new ArrayDeque<>();
+        int nextToList = startListings(listing, 0, lookahead);
+        for (int i = 0; i < children.length; i++) {
+            final Path child = children[i];
+            if (listing.isDirectory(i)) {
+                nextToList = startListings(listing, nextToList, lookahead);
+                walk(child, listing.getAttributes(i), childDepth, lookahead.poll());
+            } else {
+                handleFile(child, listing.getAttributes(i), childDepth);
+            }
+        }
+    }
+
+    /**
+     * Starts listing child directories on the listing executor, in the order they will be walked,
+     * until there are enough listings in progress.
+     * @param listing The listing of the directory whose children are being walked.
+     * @param fromIndex The index of the first child which has not yet been considered for listing.
+     * @param lookahead The listings in progress, in the order their directories will be walked.
+     * @return The index of the next child to consider for listing.
+     */
+    private int startListings(final DirectoryListing listing, final int fromIndex,
+                              final Deque<Future<DirectoryListing>> lookahead) {
+        int index = fromIndex;
+        if (listingExecutor != null) {
+            final Path[] children = listing.getChildren();
+            while (index < children.length && lookahead.size() < LISTING_LOOKAHEAD) {
+                if (listing.isDirectory(index)) {
+                    final Path directory = children[index];
+                    lookahead.add(listingExecutor.submit(new Callable<DirectoryListing>() {
+                        @Override
+                        public DirectoryListing call() throws IOException {
+                            return DirectoryListing.list(directory);
+                        }
+                    }));
+                }
+                index++;
+            }
+        }
+        return index;
+    }
+
+    private static DirectoryListing getListing(final Path directory, final Future<DirectoryListing> pendingListing)
+        throws IOException {
+        if (pendingListing == null) {
+            return DirectoryListing.list(directory);
+        }
+        try {
+            return pendingListing.get();
+        } catch (InterruptedException e) {
+            pendingListing.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while listing " + directory);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
         }
     }
 
@@ -216,12 +305,13 @@ public class FileWalker {
     /**
      *
      * @param directory directory to handle.
+     * @param attributes the attributes of the directory, or null if they could not be read
      * @param depth depth to which to check
      * @param children array of files
      * @throws IOException An error occurs in accessing the resource
      */
-    protected void handleDirectoryStart(final Path directory, final int depth, final Path[] children)
-        throws IOException {
+    protected void handleDirectoryStart(final Path directory, final BasicFileAttributes attributes, final int depth,
+                                        final Path[] children) throws IOException {
         
         // if we are fast forwarding, then just keep going...
         if (fastForward) {
@@ -229,20 +319,22 @@ public class FileWalker {
         }
 
         final ProgressEntry parent = progress.peek();
-        final ResourceId directoryId = directoryHandler.handle(directory, depth, parent);
+        final ResourceId directoryId = directoryHandler.handle(directory, attributes, depth, parent);
         progress.push(new ProgressEntry(directory, directoryId, children));
     }
 
     /**
      *
      * @param file file to hanndle.
+     * @param attributes the attributes of the file, or null if they could not be read
      * @param depth level to whhich to check
      * @throws IOException  An error occurs in accessing the resource
      */
-    protected void handleFile(final Path file, final int depth)
+    protected void handleFile(final Path file, final BasicFileAttributes attributes, final int depth)
         throws IOException {
 
-        if (!SubmitterUtils.isFileSystemAvailable(file, topLevelAbsolutePath)) {
+        // A file whose attributes were read when it was listed exists, so the file system was available.
+        if (attributes == null && !SubmitterUtils.isFileSystemAvailable(file, topLevelAbsolutePath)) {
             log.error(String.format(FILE_SYSTEM_UNAVAILABLE, file.toAbsolutePath().toString()));
             throw new IOException(file.toAbsolutePath().toString());
         }
@@ -257,8 +349,8 @@ public class FileWalker {
         }
 
         final ProgressEntry progressEntry = progress.peek();
-        if (!Files.isDirectory(file)) {
-            fileHandler.handle(file, depth, progressEntry);
+        if (attributes == null || !attributes.isDirectory()) {
+            fileHandler.handle(file, attributes, depth, progressEntry);
         }
         progressEntry.removeChild(file);
     }
@@ -287,14 +379,15 @@ public class FileWalker {
     }
 
 
-    private void handleRestrictedDirectory(final Path directory, final int depth) throws IOException {
+    private void handleRestrictedDirectory(final Path directory, final BasicFileAttributes attributes,
+                                           final int depth) throws IOException {
         // if we are fast forwarding, then just keep going...
         if (fastForward) {
             return;
         }
 
         ProgressEntry parent = progress.peek();
-        restrictedDirectoryHandler.handle(directory, depth, parent);
+        restrictedDirectoryHandler.handle(directory, attributes, depth, parent);
         if (!progress.isEmpty()) {
             progress.peek().removeChild(directory);
         }
@@ -321,6 +414,24 @@ public class FileWalker {
         this.restrictedDirectoryHandler = restrictedDirectoryHandler;
     }
     
+    /**
+     * Sets an executor used to list directories concurrently, ahead of the walk.
+     * If no executor is set, each directory is listed when it is walked.
+     * @param listingExecutor the executor used to list directories, or null to list them as they are walked.
+     */
+    public void setListingExecutor(final ExecutorService listingExecutor) {
+        this.listingExecutor = listingExecutor;
+    }
+
+    /**
+     * Sets an observer which is told how many children each walked directory has, before they are walked.
+     * Directories listed again while fast-forwarding to resume a walk are not observed.
+     * @param listingObserver the observer of directory listings, or null if not required.
+     */
+    public void setListingObserver(final DirectoryListingObserver listingObserver) {
+        this.listingObserver = listingObserver;
+    }
+
     /**
      * @return the progress
      */
@@ -336,6 +447,42 @@ public class FileWalker {
     }
 
 
+    /**
+     * The children of a directory, and their attributes.
+     */
+    private static final class DirectoryListing {
+
+        private final Path[] children;
+        private final BasicFileAttributes[] attributes;
+
+        private DirectoryListing(final Path[] children, final BasicFileAttributes[] attributes) {
+            this.children = children;
+            this.attributes = attributes;
+        }
+
+        static DirectoryListing list(final Path directory) throws IOException {
+            final List<Path> childList = FileUtil.listFiles(directory, false, (DirectoryStream.Filter<Path>) null);
+            final Path[] children = childList.toArray(new Path[childList.size()]);
+            final BasicFileAttributes[] attributes = new BasicFileAttributes[children.length];
+            for (int i = 0; i < children.length; i++) {
+                attributes[i] = FileUtil.readAttributesQuietly(children[i]);
+            }
+            return new DirectoryListing(children, attributes);
+        }
+
+        Path[] getChildren() {
+            return children;
+        }
+
+        BasicFileAttributes getAttributes(final int index) {
+            return attributes[index];
+        }
+
+        boolean isDirectory(final int index) {
+            return attributes[index] != null && attributes[index].isDirectory();
+        }
+    }
+
     /**
      * A progress entry.
      * @author rflitcroft
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultImpl;
+
+/**
+ * Caches identification results by the size and hash of the content identified, so content
+ * which has already been identified is not matched against the signatures again.
+ * <p>
+ * Only results which depend on the content alone are cached: the binary signature or container
+ * results, once lower priority hits have been removed.  Matching extensions and checking for
+ * extension mismatches depend on the name of each file, so are still done for every file.
+ * <p>
+ * A bounded number of entries are held in memory, and the least recently used are evicted.
+ * If the cache has a directory, evicted entries are written to files in it, and read back
+ * when they are next looked up.
+ */
+final class IdentificationResultCache {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int SHARD_LENGTH = 2;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final int maxEntries;
+    private final Path directory;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates a result cache.
+     * @param maxEntries The maximum number of entries to hold in memory.
+     * @param directory A directory to write evicted entries to, or null if they are discarded.
+     */
+    IdentificationResultCache(int maxEntries, Path directory) {
+        this.maxEntries = maxEntries;
+        this.directory = directory;
+        this.entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    }
+
+    /**
+     * @param size The size of some content.
+     * @param hash A hash of the content, in hex.
+     * @return The key for results identifying the content.
+     */
+    static String key(long size, String hash) {
+        return size + "-" + hash;
+    }
+
+    /**
+     * Looks up the results cached for some content.
+     * @param key The key of the content.
+     * @return The results cached for the content, or null if there are none.
+     */
+    Entry get(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null && directory != null) {
+            entry = read(key);
+            if (entry != null) {
+                store(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the results identifying some content.
+     * @param key The key of the content.
+     * @param results The results identifying the content.
+     * @param container Whether the results are from container signatures.
+     */
+    void put(String key, IdentificationResultCollection results, boolean container) {
+        store(key, new Entry(results, container, false));
+    }
+
+    /**
+     * Deletes any entries written to the cache directory.
+     */
+    void close() {
+        if (directory != null) {
+            FileUtils.deleteQuietly(directory.toFile());
+        }
+    }
+
+    private void store(String key, Entry entry) {
+        final List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+        synchronized (entries) {
+            entries.put(key, entry);
+            final Iterator<Map.Entry<String, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && leastRecentlyUsed.hasNext()) {
+                evicted.add(leastRecentlyUsed.next());
+                leastRecentlyUsed.remove();
+            }
+        }
+        if (directory != null) {
+            for (Map.Entry<String, Entry> eviction : evicted) {
+                if (!eviction.getValue().onDisk) {
+                    write(eviction.getKey(), eviction.getValue());
+                }
+            }
+        }
+    }
+
+    private Path getFile(String key) {
+        return directory.resolve(key.substring(key.length() - SHARD_LENGTH)).resolve(key);
+    }
+
+    private void write(String key, Entry entry) {
+        final Path file = getFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                entry.write(out);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write cached identification results to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Entry read(String key) {
+        final Path file = getFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return Entry.read(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Could not read cached identification results from {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The results cached for some content.
+     */
+    static final class Entry {
+
+        private static final int PUID = 0;
+        private static final int NAME = 1;
+        private static final int MIME_TYPE = 2;
+        private static final int VERSION = 3;
+        private static final int FIELDS = 4;
+
+        private final boolean container;
+        private final boolean onDisk;
+        private final IdentificationMethod[] methods;
+        private final String[][] fields;
+
+        private Entry(IdentificationResultCollection results, boolean container, boolean onDisk) {
+            this.container = container;
+            this.onDisk = onDisk;
+            final List<IdentificationResult> resultList = results.getResults();
+            this.methods = new IdentificationMethod[resultList.size()];
+            this.fields = new String[resultList.size()][];
+            for (int i = 0; i < methods.length; i++) {
+                final IdentificationResult result = resultList.get(i);
+                methods[i] = result.getMethod();
+                fields[i] = new String[] {result.getPuid(), result.getName(), result.getMimeType(), result.getVersion()};
+            }
+        }
+
+        private Entry(boolean container, IdentificationMethod[] methods, String[][] fields) {
+            this.container = container;
+            this.onDisk = true;
+            this.methods = methods;
+            this.fields = fields;
+        }
+
+        /**
+         * @return Whether the results are from container signatures.
+         */
+        boolean isContainer() {
+            return container;
+        }
+
+        /**
+         * Creates new results for a request from the cached results.
+         * @param request The request whose content the results identify.
+         * @return The results for the request.
+         */
+        IdentificationResultCollection toResults(IdentificationRequest request) {
+            final IdentificationResultCollection results = new IdentificationResultCollection(request);
+            for (int i = 0; i < methods.length; i++) {
+                final IdentificationResultImpl result = new IdentificationResultImpl();
+                result.setPuid(fields[i][PUID]);
+                result.setName(fields[i][NAME]);
+                result.setMimeType(fields[i][MIME_TYPE]);
+                result.setVersion(fields[i][VERSION]);
+                result.setMethod(methods[i]);
+                result.setRequestMetaData(request.getRequestMetaData());
+                results.addResult(result);
+            }
+            results.setFileLength(request.size());
+            results.setRequestMetaData(request.getRequestMetaData());
+            return results;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeBoolean(container);
+            out.writeInt(methods.length);
+            for (int i = 0; i < methods.length; i++) {
+                writeString(out, methods[i] == null ? null : methods[i].name());
+                for (String field : fields[i]) {
+                    writeString(out, field);
+                }
+            }
+        }
+
+        private static Entry read(DataInputStream in) throws IOException {
+            final boolean container = in.readBoolean();
+            final int count = in.readInt();
+            final IdentificationMethod[] methods = new IdentificationMethod[count];
+            final String[][] fields = new String[count][FIELDS];
+            for (int i = 0; i < count; i++) {
+                final String method = readString(in);
+                methods[i] = method == null ? null : IdentificationMethod.valueOf(method);
+                for (int field = 0; field < FIELDS; field++) {
+                    fields[i][field] = readString(in);
+                }
+            }
+            return new Entry(container, methods, fields);
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultImpl;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReaderCallback;
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * The results of a previous profile for the files it identified, indexed by URI, so a new profile
+ * of the same resources can copy forward the results for files which have not changed since.
+ * <p>
+ * A file is treated as unchanged if its size and last modified time are the same as when it was
+ * previously profiled.  Only files identified successfully on the file system are indexed: archives
+ * which were expanded, entries inside archives and files which could not be read are identified again.
+ * <p>
+ * Each result can be copied forward once, so the index shrinks as the new profile runs.
+ */
+public class PreviousProfileResults {
+
+    private final Map<String, PreviousResult> results = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes all the nodes read from a previous profile.
+     * @param reader A reader for the nodes of the previous profile.
+     * @throws JobCancellationException if reading the profile was cancelled.
+     */
+    public void addAll(ItemReader<ProfileResourceNode> reader) throws JobCancellationException {
+        reader.readAll(new ItemReaderCallback<ProfileResourceNode>() {
+            @Override
+            public void onItem(List<? extends ProfileResourceNode> itemChunk) {
+                for (ProfileResourceNode node : itemChunk) {
+                    add(node);
+                }
+            }
+        }, null);
+    }
+
+    /**
+     * Indexes a node from a previous profile, if it is a file which was identified on the file system.
+     * @param node The node to index.
+     */
+    public void add(ProfileResourceNode node) {
+        if (isIdentifiedFile(node) && node.getUri() != null && "file".equals(node.getUri().getScheme())) {
+            results.put(node.getUri().toString(), new PreviousResult(node));
+        }
+    }
+
+    private static boolean isIdentifiedFile(ProfileResourceNode node) {
+        final NodeMetaData metaData = node.getMetaData();
+        return metaData.getResourceType() == ResourceType.FILE && metaData.getNodeStatus() == NodeStatus.DONE
+                && metaData.getSize() != null && metaData.getLastModifiedDate() != null;
+    }
+
+    /**
+     * @return The number of results which have not yet been copied forward.
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * Copies forward the previous results for a request, if its file has not changed since it was
+     * previously profiled.
+     * @param request The request for a file, which does not have to be open.
+     * @return The previous results for the request, or null if the file has to be identified.
+     */
+    public IdentificationResultCollection getResults(IdentificationRequest request) {
+        final String uri = request.getIdentifier().getUri().toString();
+        final PreviousResult previous = results.get(uri);
+        final RequestMetaData metaData = request.getRequestMetaData();
+        if (previous == null || !previous.isUnchanged(metaData)) {
+            return null;
+        }
+        results.remove(uri);
+        return previous.toResults(request);
+    }
+
+    /**
+     * The results of a file from a previous profile.
+     */
+    private static final class PreviousResult {
+
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private final IdentificationMethod method;
+        private final boolean extensionMismatch;
+        private final String[] puids;
+
+        PreviousResult(ProfileResourceNode node) {
+            final NodeMetaData metaData = node.getMetaData();
+            this.size = metaData.getSize();
+            this.lastModified = metaData.getLastModifiedDate().getTime();
+            this.hash = metaData.getHash();
+            this.method = metaData.getIdentificationMethod();
+            this.extensionMismatch = Boolean.TRUE.equals(node.getExtensionMismatch());
+            final List<Format> formats = node.getFormatIdentifications();
+            int count = 0;
+            final String[] formatPuids = new String[formats.size()];
+            for (Format format : formats) {
+                final String puid = format.getPuid();
+                if (puid != null && !puid.isEmpty()) {
+                    formatPuids[count++] = puid;
+                }
+            }
+            this.puids = count == formatPuids.length ? formatPuids : Arrays.copyOf(formatPuids, count);
+        }
+
+        boolean isUnchanged(RequestMetaData metaData) {
+            return Long.valueOf(size).equals(metaData.getSize()) && Long.valueOf(lastModified).equals(metaData.getTime());
+        }
+
+        IdentificationResultCollection toResults(IdentificationRequest request) {
+            final RequestMetaData metaData = request.getRequestMetaData();
+            if (hash != null) {
+                metaData.setHash(hash);
+            }
+            final IdentificationResultCollection collection = new IdentificationResultCollection(request);
+            for (String puid : puids) {
+                final IdentificationResultImpl result = new IdentificationResultImpl();
+                result.setPuid(puid);
+                result.setMethod(method);
+                result.setRequestMetaData(metaData);
+                collection.addResult(result);
+            }
+            collection.setRequestMetaData(metaData);
+            collection.setFileLength(size);
+            collection.setExtensionMismatch(extensionMismatch);
+            return collection;
+        }
+    }
+}
@@ -35,7 +35,10 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,18 +60,28 @@ import uk.gov.nationalarchives.droid.submitter.ProfileWalkState.WalkStatus;
  */
 public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
 
+    /**
+     * Limit of depth to progress.
+     */
+    public static final int PROGRESS_DEPTH_LIMIT = 4; // If set to -1, do all files and folders.
+
     private static final int URI_BUILDER_SIZE = 1204;
+    private static final int DEFAULT_LISTING_THREADS = 8;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private FileEventHandler fileEventHandler;
     private DirectoryEventHandler directoryEventHandler;
     private ProgressMonitor progressMonitor;
+    private int listingThreads = DEFAULT_LISTING_THREADS;
     
     private transient volatile boolean cancelled;
 
     private StringBuilder uriBuilder = new StringBuilder(URI_BUILDER_SIZE);
 
+    // The number of entries found so far whose progress is reported, which is the progress target.
+    private long discoveredCount;
+
     /**
      * Empty bean constructor.
      */
@@ -90,7 +103,21 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
 
     @Override
     public void walk(final ProfileSpec profileSpec, final ProfileWalkState walkState) throws IOException {
-        
+        // Directories are listed concurrently on a work-stealing pool, to hide the latency
+        // of file system metadata operations (e.g. on network shares) from the walk.
+        final ExecutorService listingExecutor = listingThreads > 1 ? new ForkJoinPool(listingThreads) : null;
+        try {
+            walk(profileSpec, walkState, listingExecutor);
+        } finally {
+            if (listingExecutor != null) {
+                listingExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private void walk(final ProfileSpec profileSpec, final ProfileWalkState walkState,
+                      final ExecutorService listingExecutor) throws IOException {
+
         final List<AbstractProfileResource> resources = profileSpec.getResources();
 
         boolean fastForward = false;
@@ -100,6 +127,18 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
             fastForward = true;
             startIndex = resources.indexOf(walkState.getCurrentResource());
         }
+
+        // Entries are counted as the walk lists them, so the target is only an estimate until the walk ends.
+        // A resumed walk does not list again what it had already walked, so it starts from the previous target.
+        discoveredCount = fastForward ? Math.max(0, progressMonitor.getTargetCount()) : 0;
+        final DirectoryListingObserver listingObserver = new DirectoryListingObserver() {
+            @Override
+            public void onDirectoryListed(final Path directory, final int depth, final int childCount) {
+                if (isProgressReported(depth + 1)) {
+                    discovered(childCount);
+                }
+            }
+        };
         
         for (int i = startIndex; i < resources.size(); i++) {
             AbstractProfileResource resource = resources.get(i);
@@ -111,6 +150,10 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
             if (cancelled) {
                 break;
             }
+
+            if (!fastForward) {
+                discovered(1);
+            }
             
             if (resource.isDirectory()) {
                 FileWalker fileWalker;
@@ -119,45 +162,8 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
                 }
                 
                 fileWalker = walkState.getCurrentFileWalker();
-                
-                fileWalker.setFileHandler(new FileWalkerHandler() {
-
-                    @Override
-                    public ResourceId handle(final Path file, final int depth, final ProgressEntry parent) {
-                        if (ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT < 0
-                                || depth <= ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT) {
-                            progressMonitor.startJob(toURI(file));
-                        }
-                        ResourceId parentId = parent == null ? null : parent.getResourceId();
-                        fileEventHandler.onEvent(file, parentId, null);
-                        return null;
-                    }
-                });
-                
-                fileWalker.setDirectoryHandler(new FileWalkerHandler() {
-                    @Override
-                    public ResourceId handle(final Path file, final int depth, final ProgressEntry parent) {
-                        if (ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT < 0
-                                || depth <= ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT) {
-                            progressMonitor.startJob(toURI(file));
-                        }
-                        ResourceId parentId = parent == null ? null : parent.getResourceId();
-                        return directoryEventHandler.onEvent(file, parentId, depth, false);
-                    }
-                });
-                
-                fileWalker.setRestrictedDirectoryHandler(new FileWalkerHandler() {
-                    @Override
-                    public ResourceId handle(final Path file, final  int depth, final ProgressEntry parent) {
-                        if (ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT < 0
-                                || depth <= ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT) {
-                            progressMonitor.startJob(toURI(file));
-                        }
-                        ResourceId parentId = parent == null ? null : parent.getResourceId();
-                        return directoryEventHandler.onEvent(file, parentId, depth, true);
-                    }
-                });
-                
+                configure(fileWalker, listingExecutor, listingObserver);
+
                 walkState.setWalkStatus(WalkStatus.IN_PROGRESS);
                 fileWalker.walk();
             } else {
@@ -168,7 +174,60 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
             fastForward = false;
         }
         walkState.setWalkStatus(WalkStatus.FINISHED);
-        progressMonitor.setTargetCount(progressMonitor.getIdentificationCount());
+        progressMonitor.setTargetCount(discoveredCount);
+    }
+
+    private void configure(final FileWalker fileWalker, final ExecutorService listingExecutor,
+                           final DirectoryListingObserver listingObserver) {
+        fileWalker.setListingExecutor(listingExecutor);
+        fileWalker.setListingObserver(listingObserver);
+        
+        fileWalker.setFileHandler(new FileWalkerHandler() {
+
+            @Override
+            public ResourceId handle(final Path file, final BasicFileAttributes attributes, final int depth,
+                                     final ProgressEntry parent) {
+                if (isProgressReported(depth)) {
+                    progressMonitor.startJob(toURI(file));
+                }
+                ResourceId parentId = parent == null ? null : parent.getResourceId();
+                fileEventHandler.onEvent(file, attributes, parentId, null);
+                return null;
+            }
+        });
+        
+        fileWalker.setDirectoryHandler(new FileWalkerHandler() {
+            @Override
+            public ResourceId handle(final Path file, final BasicFileAttributes attributes, final int depth,
+                                     final ProgressEntry parent) {
+                if (isProgressReported(depth)) {
+                    progressMonitor.startJob(toURI(file));
+                }
+                ResourceId parentId = parent == null ? null : parent.getResourceId();
+                return directoryEventHandler.onEvent(file, attributes, parentId, depth, false);
+            }
+        });
+        
+        fileWalker.setRestrictedDirectoryHandler(new FileWalkerHandler() {
+            @Override
+            public ResourceId handle(final Path file, final BasicFileAttributes attributes, final int depth,
+                                     final ProgressEntry parent) {
+                if (isProgressReported(depth)) {
+                    progressMonitor.startJob(toURI(file));
+                }
+                ResourceId parentId = parent == null ? null : parent.getResourceId();
+                return directoryEventHandler.onEvent(file, attributes, parentId, depth, true);
+            }
+        });
+    }
+
+    private void discovered(final int count) {
+        discoveredCount += count;
+        progressMonitor.setEstimatedTargetCount(discoveredCount);
+    }
+
+    private static boolean isProgressReported(final int depth) {
+        return PROGRESS_DEPTH_LIMIT < 0 || depth <= PROGRESS_DEPTH_LIMIT;
     }
     
     /**
@@ -188,6 +247,15 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
         this.directoryEventHandler = directoryEventHandler;
     }
 
+    /**
+     * Sets how many threads list directories concurrently while walking.
+     * One or fewer lists each directory on the walking thread as it is walked.
+     * @param listingThreads the number of threads used to list directories.
+     */
+    public void setListingThreads(int listingThreads) {
+        this.listingThreads = listingThreads;
+    }
+
     /**
      *  To cancel Profile speck walker.
      */
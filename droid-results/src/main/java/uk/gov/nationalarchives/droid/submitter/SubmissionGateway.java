@@ -33,6 +33,9 @@ package uk.gov.nationalarchives.droid.submitter;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -42,6 +45,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +69,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.archive.ContainerIdentifier
 import uk.gov.nationalarchives.droid.core.interfaces.control.PauseAspect;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
 import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
 
 /**
  * Acts as a DroidCore proxy by keeping track of in-flight identification
@@ -86,12 +91,18 @@ public class SubmissionGateway implements AsynchDroid {
      */
     private static final String ARCHIVE_ERROR = "Could not process the archival format(%s): %s\t%s\t%s";
 
+    /**
+     * The hash algorithm the result cache is keyed by.
+     */
+    private static final String RESULT_CACHE_HASH_ALGORITHM = "sha256";
+
     //CHECKSTYLE:ON    
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final JobCounter jobCounter = new JobCounter();
     private DroidCore droidCore;
     private ResultHandler resultHandler;
     private ExecutorService executorService;
+    private ExecutorService archiveExecutorService;
     private boolean processZip;
     private boolean processTar;
     private boolean processGzip;
@@ -114,6 +125,11 @@ public class SubmissionGateway implements AsynchDroid {
     private ReplaySubmitter replaySubmitter;
     private PauseAspect pauseControl;
     private IdentificationRequestFilter identificationFilter; // A filter to decide whether a resource should be submitted for identification.
+    private int resultCacheEntries;
+    private boolean resultCacheOnDisk;
+    private HashGenerator resultCacheHashGenerator;
+    private String tempDirLocation;
+    private volatile IdentificationResultCache resultCache;
 
     private Set<IdentificationRequest> requests = Collections.synchronizedSet(new HashSet<IdentificationRequest>());
 
@@ -177,17 +193,7 @@ public class SubmissionGateway implements AsynchDroid {
         jobCounter.increment();
         requests.add(request);
 
-        // old code blocking identification:
-        Callable<IdentificationResultCollection> callable = new Callable<IdentificationResultCollection>() {
-            @Override
-            public IdentificationResultCollection call() throws IOException {
-                droidCore.setMaxBytesToScan(maxBytesToScan);
-                IdentificationResultCollection results = droidCore.matchBinarySignatures(request);
-                return results;
-            }
-        };
-
-        FutureTask<IdentificationResultCollection> task = new SubmissionFutureTask(callable, request);
+        FutureTask<IdentificationResultCollection> task = new SubmissionFutureTask(new Identification(request));
         executorService.submit(task);
         return task;
     }
@@ -201,17 +207,10 @@ public class SubmissionGateway implements AsynchDroid {
     }
 
     private void generateHash(IdentificationRequest request) throws IOException {
-        if (generateHash) {
+        // The hash is already set if it was generated to look up cached results.
+        if (generateHash && request.getRequestMetaData().getHash() == null) {
             try {
-                InputStream in = request.getSourceInputStream();
-                try {
-                    String hash = hashGenerator.hash(in);
-                    request.getRequestMetaData().setHash(hash);
-                } finally {
-                    if (in != null) {
-                        in.close();
-                    }
-                }
+                request.getRequestMetaData().setHash(hash(request, hashGenerator));
                 //CHECKSTYLE:OFF - generating a hash can't prejudice any other results
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
@@ -220,6 +219,73 @@ public class SubmissionGateway implements AsynchDroid {
         }
     }
 
+    /**
+     * Hashes the content of a request.
+     * @param request The request to hash.
+     * @param generator The hash generator to use.
+     * @return The hash of the content of the request.
+     * @throws IOException if the content could not be read.
+     */
+    private String hash(IdentificationRequest request, HashGenerator generator) throws IOException {
+        // File requests hash the file as it is read, so only read what identification did not.
+        String hash = null;
+        if (request instanceof FileSystemIdentificationRequest) {
+            hash = ((FileSystemIdentificationRequest) request).getHash(generator);
+        }
+        if (hash == null) {
+            InputStream in = request.getSourceInputStream();
+            try {
+                hash = generator.hash(in);
+            } finally {
+                if (in != null) {
+                    in.close();
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Works out the key of the cached results for a request, hashing its content.  If the profile
+     * generates hashes with the algorithm the cache is keyed by, the hash is reused for the request.
+     * @param request The request to find the key for.
+     * @return The key of cached results for the request, or null if its content could not be hashed.
+     */
+    private String getCacheKey(IdentificationRequest request) {
+        final boolean reuseHash = generateHash && RESULT_CACHE_HASH_ALGORITHM.equals(hashAlgorithm);
+        try {
+            final String hash = hash(request, reuseHash ? hashGenerator : resultCacheHashGenerator);
+            if (reuseHash) {
+                request.getRequestMetaData().setHash(hash);
+            }
+            return IdentificationResultCache.key(request.size(), hash);
+        } catch (IOException e) {
+            log.debug(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private IdentificationResultCache getResultCache() throws IOException {
+        IdentificationResultCache cache = resultCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = resultCache;
+                if (cache == null) {
+                    Path directory = null;
+                    if (resultCacheOnDisk) {
+                        final Path tempDir = tempDirLocation == null ? Paths.get(System.getProperty("java.io.tmpdir"))
+                                : Paths.get(tempDirLocation);
+                        Files.createDirectories(tempDir);
+                        directory = Files.createTempDirectory(tempDir, "result-cache");
+                    }
+                    cache = new IdentificationResultCache(resultCacheEntries, directory);
+                    resultCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
     private IdentificationResultCollection handleExtensions(IdentificationRequest request,
                                                             IdentificationResultCollection results) {
         IdentificationResultCollection extensionResults = results;
@@ -252,9 +318,10 @@ public class SubmissionGateway implements AsynchDroid {
      * @param request  The archive request to handle.
      * @param results The previous identification results for the archive format.
      * @param archiveFormat
+     * @return true if the archive is expanded by the archive executor, which closes the request when it has finished.
      */
-    private void handleArchive(IdentificationRequest request,
-                               IdentificationResultCollection results, String archiveFormat) {
+    private boolean handleArchive(final IdentificationRequest request,
+                                  IdentificationResultCollection results, final String archiveFormat) {
         results.setArchive(true);
         ResourceId id = resultHandler.handle(results);
         jobCounter.incrementPostProcess();
@@ -265,6 +332,31 @@ public class SubmissionGateway implements AsynchDroid {
         }
         submissionQueue.add(request.getIdentifier());
         jobCounter.decrement();
+        if (archiveExecutorService == null) {
+            expandArchive(request, archiveFormat);
+            return false;
+        }
+        try {
+            archiveExecutorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        expandArchive(request, archiveFormat);
+                    } finally {
+                        closeRequest(request);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down - the archive stays on the submission queue, to be expanded if the profile is resumed.
+            log.debug(e.getMessage(), e);
+            jobCounter.decrementPostProcess();
+            return false;
+        }
+    }
+
+    private void expandArchive(IdentificationRequest request, String archiveFormat) {
         try {
             //BNO: Does this always return the same archive handler for any given container format?
             //And will it end up using the same submission gateway, or a new one with a different thread pool?
@@ -433,6 +525,16 @@ public class SubmissionGateway implements AsynchDroid {
         this.executorService = executorService;
     }
 
+    /**
+     * Sets an executor to expand archives on, so the threads identifying files are not held up
+     * while the entries of an archive are submitted.  If no executor is set, archives are expanded
+     * by the thread which identified them.
+     * @param archiveExecutorService the executor to expand archives on, or null to expand them as they are identified.
+     */
+    public void setArchiveExecutorService(ExecutorService archiveExecutorService) {
+        this.archiveExecutorService = archiveExecutorService;
+    }
+
     /**
      * @param processZip set whether to process Zip files
      */
@@ -555,15 +657,51 @@ public class SubmissionGateway implements AsynchDroid {
         this.hashAlgorithm = hashAlgorithm;
     }
 
+    /**
+     * @param resultCacheEntries the number of identification results to cache in memory by the
+     *                           hash of their content, or zero to identify every file.
+     */
+    public void setResultCacheEntries(int resultCacheEntries) {
+        this.resultCacheEntries = resultCacheEntries;
+    }
+
+    /**
+     * @param resultCacheOnDisk whether cached results evicted from memory are written to temporary files.
+     */
+    public void setResultCacheOnDisk(boolean resultCacheOnDisk) {
+        this.resultCacheOnDisk = resultCacheOnDisk;
+    }
+
+    /**
+     * @param resultCacheHashGenerator the SHA-256 hash generator the result cache is keyed with,
+     *                                 when the profile does not generate SHA-256 hashes itself.
+     */
+    public void setResultCacheHashGenerator(HashGenerator resultCacheHashGenerator) {
+        this.resultCacheHashGenerator = resultCacheHashGenerator;
+    }
+
+    /**
+     * @param tempDirLocation the directory to write cached results evicted from memory to.
+     */
+    public void setTempDirLocation(String tempDirLocation) {
+        this.tempDirLocation = tempDirLocation;
+    }
+
     /**
      * Shuts down the executor service and closes any in-flight requests.
      * @throws IOException if temp files could not be deleted.
      */
     public void close() throws IOException {
         executorService.shutdownNow();
+        if (archiveExecutorService != null) {
+            archiveExecutorService.shutdownNow();
+        }
         for (IdentificationRequest request : requests) {
             request.close();
         }
+        if (resultCache != null) {
+            resultCache.close();
+        }
     }
 
     /**
@@ -599,25 +737,85 @@ public class SubmissionGateway implements AsynchDroid {
         this.matchAllExtensions = matchAllExtensions;
     }
 
-    private final class SubmissionFutureTask extends FutureTask<IdentificationResultCollection> {
+    /**
+     * Identifies a request against the binary signatures, unless results for the same content are cached.
+     */
+    private final class Identification implements Callable<IdentificationResultCollection> {
 
-        private IdentificationRequest request;
+        private final IdentificationRequest request;
+        private String cacheKey;
+        private IdentificationResultCache.Entry cached;
 
-        SubmissionFutureTask(Callable<IdentificationResultCollection> callable, IdentificationRequest request) {
-            super(callable);
+        Identification(IdentificationRequest request) {
             this.request = request;
         }
 
+        @Override
+        public IdentificationResultCollection call() throws IOException {
+            if (resultCacheEntries > 0) {
+                cacheKey = getCacheKey(request);
+                if (cacheKey != null) {
+                    cached = getResultCache().get(cacheKey);
+                    if (cached != null) {
+                        return cached.toResults(request);
+                    }
+                }
+            }
+            droidCore.setMaxBytesToScan(maxBytesToScan);
+            return droidCore.matchBinarySignatures(request);
+        }
+
+        /**
+         * Identifies any container format, unless the results were cached.
+         * @param results The results of identifying the request.
+         * @return The container results, or null if the request is not a container.
+         * @throws IOException if the container could not be read.
+         */
+        IdentificationResultCollection getContainerResults(IdentificationResultCollection results)
+                throws IOException {
+            if (cached == null) {
+                return handleContainer(request, results);
+            }
+            return cached.isContainer() ? results : null;
+        }
+
+        /**
+         * Removes lower priority hits from the results of identifying the request, and caches them
+         * if they were not already cached.
+         * @param results The binary signature or container results.
+         * @param container Whether the results are container results.
+         * @throws IOException if the cache could not be created.
+         */
+        void removeLowerPriorityHits(IdentificationResultCollection results, boolean container) throws IOException {
+            droidCore.removeLowerPriorityHits(results);
+            if (cacheKey != null && cached == null) {
+                getResultCache().put(cacheKey, results, container);
+            }
+        }
+    }
+
+    private final class SubmissionFutureTask extends FutureTask<IdentificationResultCollection> {
+
+        private final IdentificationRequest request;
+        private final Identification identification;
+
+        SubmissionFutureTask(Identification identification) {
+            super(identification);
+            this.request = identification.request;
+            this.identification = identification;
+        }
+
         @Override
         protected void done() {
             boolean jobCountDecremented = false;
+            boolean requestHandedOff = false;
             try {
                 generateHash(request);
                 IdentificationResultCollection results = get();
-                IdentificationResultCollection containerResults = handleContainer(request, results);
+                IdentificationResultCollection containerResults = identification.getContainerResults(results);
                 if (containerResults == null) {
                     // no container results - process the normal results.
-                    droidCore.removeLowerPriorityHits(results);
+                    identification.removeLowerPriorityHits(results, false);
                     results = handleExtensions(request, results);
 
                     // Are we processing archive formats?
@@ -626,7 +824,7 @@ public class SubmissionGateway implements AsynchDroid {
                         archiveFormat = getArchiveFormat(results);
                     }
                     if (archiveFormat != null) {
-                        handleArchive(request, results, archiveFormat);
+                        requestHandedOff = handleArchive(request, results, archiveFormat);
                         jobCountDecremented = true;
                     } else { // just process the results so far:
                         results.setArchive(getArchiveFormat(results) != null);
@@ -634,7 +832,7 @@ public class SubmissionGateway implements AsynchDroid {
                         request.getIdentifier().setResourceId(id);
                     }
                 } else { // we have possible container formats:
-                    droidCore.removeLowerPriorityHits(containerResults);
+                    identification.removeLowerPriorityHits(containerResults, true);
                     containerResults = handleExtensions(request, containerResults);
                     ResourceId id = resultHandler.handle(containerResults);
                     request.getIdentifier().setResourceId(id);
@@ -650,20 +848,22 @@ public class SubmissionGateway implements AsynchDroid {
                 resultHandler.handleError(new IdentificationException(
                         request, IdentificationErrorType.OTHER, e));
             } finally {
-                closeRequest();
+                if (!requestHandedOff) {
+                    closeRequest(request);
+                }
                 if (!jobCountDecremented) {
                     jobCounter.decrement();
                 }
             }
         }
+    }
 
-        private void closeRequest() {
-            requests.remove(request);
-            try {
-                request.close();
-            } catch (IOException e) {
-                log.error(String.format("Error closing request [%s]", request.getIdentifier().getUri()), e);
-            }
+    private void closeRequest(IdentificationRequest request) {
+        requests.remove(request);
+        try {
+            request.close();
+        } catch (IOException e) {
+            log.error(String.format("Error closing request [%s]", request.getIdentifier().getUri()), e);
         }
     }
 
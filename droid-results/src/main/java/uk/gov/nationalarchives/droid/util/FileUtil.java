@@ -137,6 +137,21 @@ public final class FileUtil {
         }
     }
 
+    /**
+     * Reads the basic attributes of a file or directory, following symbolic links.
+     *
+     * @param path The path to read the attributes of
+     *
+     * @return The basic attributes of the file or directory, or null if they cannot be read
+     */
+    public static BasicFileAttributes readAttributesQuietly(final Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
     /**
      * Determine the size of a file or directory.
      *
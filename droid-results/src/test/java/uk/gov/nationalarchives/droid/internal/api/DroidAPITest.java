@@ -32,20 +32,61 @@
 package uk.gov.nationalarchives.droid.internal.api;
 
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import uk.gov.nationalarchives.droid.core.SignatureParseException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
 
 public class DroidAPITest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSignatureFileIsOnlyCachedInTheCacheDirectoryGiven() throws Exception {
+        Path cacheDir = temporaryFolder.getRoot().toPath().resolve("cache");
+        for (int i = 0; i < 2; i++) {
+            DroidAPI api = DroidAPI.getInstance(Paths.get("custom_home/signature_files/DROID_SignatureFile_V96.xml"),
+                    Paths.get("custom_home/container_sigs/container-signature-20200121.xml"),
+                    ForkJoinPool.commonPool(), 8, cacheDir);
+            assertThat(puids(api.submit(Paths.get("./test_sig_files/persistence.zip"))), contains("x-fmt/263"));
+        }
+        try (Stream<Path> cached = Files.list(cacheDir)) {
+            assertThat(cached.map(path -> path.getFileName().toString()).collect(Collectors.toList()),
+                    contains(endsWith(".sigcache")));
+        }
+        try (Stream<Path> signatureFiles = Files.list(Paths.get("custom_home/signature_files"))) {
+            assertThat(signatureFiles.filter(path -> path.toString().endsWith(".sigcache")).count(), is(0L));
+        }
+    }
+
     @Test
     public void testCreateInstance() {
         DroidAPI api = aApi();
@@ -87,6 +128,19 @@ public class DroidAPITest {
 
     }
 
+    @Test
+    public void testOle2ContainerIdentification() throws IOException {
+        DroidAPI api = aApi();
+
+        IdentificationResultCollection result = api.submit(
+                Paths.get("../droid-container/src/test/resources/word97.doc"));
+        assertThat(result.getResults(), hasSize(1));
+
+        IdentificationResult identificationResult = result.getResults().get(0);
+        assertThat(identificationResult.getPuid(), is("fmt/40"));
+        assertThat(identificationResult.getMethod(), is(IdentificationMethod.CONTAINER));
+    }
+
     @Test
     public void testIdentificationByFileExtension() throws IOException {
         DroidAPI api = aApi();
@@ -102,6 +156,111 @@ public class DroidAPITest {
 
     }
 
+    @Test
+    public void testSubmitAsync() throws Exception {
+        DroidAPI api = aApi();
+
+        IdentificationResultCollection result = api.submitAsync(
+                Paths.get("../droid-container/src/test/resources/odf_text.odt")).get(1, TimeUnit.MINUTES);
+        assertThat(result.getResults(), hasSize(1));
+        assertThat(result.getResults().get(0).getPuid(), is("fmt/291"));
+    }
+
+    @Test
+    public void testSubmitAllFromOneSharedInstance() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            files.add(Paths.get("./test_sig_files/persistence.zip"));
+            files.add(Paths.get("../droid-container/src/test/resources/odf_text.odt"));
+            files.add(Paths.get("../droid-container/src/test/resources/word97.doc"));
+            files.add(Paths.get("src/test/resources/test.txt"));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DroidAPI api = DroidAPI.getInstance(Paths.get("custom_home/signature_files/DROID_SignatureFile_V96.xml"),
+                    Paths.get("custom_home/container_sigs/container-signature-20200121.xml"), executor, 8);
+            Map<Path, List<String>> expected = new ConcurrentHashMap<>();
+            for (Path file : files) {
+                expected.put(file, puids(api.submit(file)));
+            }
+
+            Map<Path, List<String>> identified = new ConcurrentHashMap<>();
+            List<Path> delivered = Collections.synchronizedList(new ArrayList<>());
+            api.submitAll(files.stream(), (file, result) -> {
+                identified.put(file, puids(result));
+                delivered.add(file);
+            }).get(1, TimeUnit.MINUTES);
+
+            assertThat(delivered, hasSize(files.size()));
+            assertThat(identified, is(expected));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSubmitAllReportsFailuresAfterTheOtherResults() throws Exception {
+        DroidAPI api = aApi();
+        List<Path> delivered = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = api.submitAll(
+                Stream.of(Paths.get("src/test/resources/test.txt"),
+                        Paths.get("src/test/resources/no-such-file.txt"),
+                        Paths.get("./test_sig_files/persistence.zip")),
+                (file, result) -> delivered.add(file));
+        try {
+            done.get(1, TimeUnit.MINUTES);
+            fail("Expected the missing file to fail.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+        }
+        assertThat(delivered, containsInAnyOrder(Paths.get("src/test/resources/test.txt"),
+                Paths.get("./test_sig_files/persistence.zip")));
+    }
+
+    @Test
+    public void testSubmitAllStopsWhenTheExecutorRejectsAFile() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        DroidAPI api = DroidAPI.getInstance(Paths.get("custom_home/signature_files/DROID_SignatureFile_V96.xml"),
+                Paths.get("custom_home/container_sigs/container-signature-20200121.xml"), executor, 1);
+        List<Path> delivered = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = api.submitAll(
+                Stream.of(Paths.get("src/test/resources/test.txt"), Paths.get("./test_sig_files/persistence.zip")),
+                (file, result) -> delivered.add(file));
+        try {
+            done.get(1, TimeUnit.MINUTES);
+            fail("Expected the executor to reject the files.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+        }
+        assertThat(delivered, hasSize(0));
+    }
+
+    @Test
+    public void testSubmitAllStopsWhenInterrupted() throws Exception {
+        DroidAPI api = aApi();
+        List<Path> delivered = Collections.synchronizedList(new ArrayList<>());
+        Thread.currentThread().interrupt();
+        CompletableFuture<Void> done;
+        try {
+            done = api.submitAll(Stream.of(Paths.get("src/test/resources/test.txt")),
+                    (file, result) -> delivered.add(file));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        try {
+            done.get(1, TimeUnit.MINUTES);
+            fail("Expected submission to stop.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(InterruptedException.class));
+        }
+        assertThat(delivered, hasSize(0));
+    }
+
+    private static List<String> puids(IdentificationResultCollection result) {
+        return result.getResults().stream().map(IdentificationResult::getPuid).collect(Collectors.toList());
+    }
+
     @Ignore
     public void testRunInLoop() throws IOException {
         long start = System.currentTimeMillis();
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonLinesItemWriterTest {
+
+    @Test
+    public void testWritesOneObjectPerFileWithNestedFormats() {
+        JsonLinesItemWriter writer = new JsonLinesItemWriter();
+        StringWriter out = new StringWriter();
+        writer.open(out);
+        writer.write(Arrays.asList(buildNode(1, "fmt/1", "fmt/2"), buildNode(2)));
+        writer.close();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"ID\":1,\"PARENT_ID\":null,\"URI\":"));
+        assertTrue(lines[0].contains("\"SIZE\":100,"));
+        assertTrue(lines[0].contains("\"EXTENSION_MISMATCH\":false,"));
+        assertTrue(lines[0].contains("\"HASH\":null,"));
+        assertTrue(lines[0].contains("\"FORMATS\":[{\"PUID\":\"fmt/1\",\"MIME_TYPE\":null,\"FORMAT_NAME\":\"Format fmt/1\","
+                + "\"FORMAT_VERSION\":null},{\"PUID\":\"fmt/2\","));
+        assertTrue(lines[1].endsWith("\"FORMATS\":[]}"));
+    }
+
+    @Test
+    public void testWritesOneObjectPerFormatWithTheSelectedColumns() {
+        JsonLinesItemWriter writer = new JsonLinesItemWriter();
+        writer.setOptions(ExportOptions.ONE_ROW_PER_FORMAT);
+        writer.setHeaders(Collections.singletonMap("hash", "MD5_HASH"));
+        writer.setColumnsToWrite("id hash puid");
+
+        List<String> lines = write(writer, buildNode(1, "fmt/1", "fmt/2"), buildNode(2));
+
+        assertEquals(Arrays.asList(
+                "{\"ID\":1,\"MD5_HASH\":null,\"PUID\":\"fmt/1\"}",
+                "{\"ID\":1,\"MD5_HASH\":null,\"PUID\":\"fmt/2\"}",
+                "{\"ID\":2,\"MD5_HASH\":null,\"PUID\":null}"), lines);
+    }
+
+    @Test
+    public void testEscapesStrings() {
+        JsonLinesItemWriter writer = new JsonLinesItemWriter();
+        writer.setColumnsToWrite("EXT");
+        ProfileResourceNode node = buildNode(1);
+        node.getMetaData().setExtension("a \"quoted\"\\name\twith\u0001control");
+
+        List<String> lines = write(writer, node);
+
+        assertEquals("{\"EXT\":\"a \\\"quoted\\\"\\\\name\\twith\\u0001control\"}", lines.get(0));
+        assertFalse(lines.get(0).contains("FORMATS"));
+    }
+
+    private static List<String> write(JsonLinesItemWriter writer, ProfileResourceNode... nodes) {
+        StringWriter out = new StringWriter();
+        writer.open(out);
+        writer.write(Arrays.asList(nodes));
+        return Arrays.asList(out.toString().split("\n"));
+    }
+
+    private static ProfileResourceNode buildNode(long id, String... puids) {
+        ProfileResourceNode node = new ProfileResourceNode(new File("/my/file" + id + ".txt").toURI());
+        node.setId(id);
+        node.setExtensionMismatch(false);
+        NodeMetaData metaData = new NodeMetaData();
+        metaData.setExtension("txt");
+        metaData.setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+        metaData.setLastModified(12345678L);
+        metaData.setName("file" + id + ".txt");
+        metaData.setNodeStatus(NodeStatus.DONE);
+        metaData.setResourceType(ResourceType.FILE);
+        metaData.setSize(100L);
+        node.setMetaData(metaData);
+        for (String puid : puids) {
+            Format format = new Format();
+            format.setPuid(puid);
+            format.setName("Format " + puid);
+            node.addFormatIdentification(format);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Type;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.export.GzipCodecFactory;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParquetItemWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOneRowIsPreparedForEachFormat() {
+        ParquetItemWriter writer = new ParquetItemWriter();
+        List<Object[]> rows = writer.prepare(Arrays.asList(buildNode(1, "fmt/1", "fmt/2"), buildNode(2)));
+
+        assertEquals(3, rows.size());
+        assertEquals("fmt/1", rows.get(0)[14]);
+        assertEquals("fmt/2", rows.get(1)[14]);
+        assertEquals(1L, rows.get(1)[0]);
+        assertEquals(2L, rows.get(2)[0]);
+        assertNull(rows.get(2)[14]);
+        assertEquals(12345678L, rows.get(2)[10]);
+    }
+
+    @Test
+    public void testWritesAParquetFileWithTheSelectedColumns() throws IOException {
+        ParquetItemWriter writer = new ParquetItemWriter();
+        writer.setHeaders(Collections.singletonMap("hash", "SHA256_HASH"));
+        writer.setColumnsToWrite("puid hash id");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.open(out);
+        writer.write(Arrays.asList(buildNode(1, "fmt/1", "fmt/2"), buildNode(2, "x-fmt/111")));
+        writer.write(Collections.singletonList(buildNode(3)));
+        writer.close();
+
+        try (ParquetFileReader reader = open(out.toByteArray())) {
+            MessageType schema = reader.getFileMetaData().getSchema();
+            assertEquals(Arrays.asList("ID", "SHA256_HASH", "PUID"), columnNames(schema));
+            assertEquals(PrimitiveTypeName.INT64, schema.getType("ID").asPrimitiveType().getPrimitiveTypeName());
+            assertEquals(LogicalTypeAnnotation.stringType(), schema.getType("PUID").getLogicalTypeAnnotation());
+            for (ColumnChunkMetaData column : reader.getRowGroups().get(0).getColumns()) {
+                assertEquals(CompressionCodecName.GZIP, column.getCodec());
+            }
+            List<Object[]> rows = readRows(reader);
+            assertEquals(4, rows.size());
+            assertArrayEquals(new Object[] {1L, null, "fmt/1"}, rows.get(0));
+            assertArrayEquals(new Object[] {1L, null, "fmt/2"}, rows.get(1));
+            assertArrayEquals(new Object[] {2L, null, "x-fmt/111"}, rows.get(2));
+            assertArrayEquals(new Object[] {3L, null, null}, rows.get(3));
+        }
+    }
+
+    @Test
+    public void testOnlyLowCardinalityColumnsAreDictionaryEncoded() throws IOException {
+        ParquetItemWriter writer = new ParquetItemWriter();
+        writer.setColumnsToWrite("id uri puid");
+        List<ProfileResourceNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            nodes.add(buildNode(i, "fmt/" + (i % 5)));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.open(out);
+        writer.write(nodes);
+        writer.close();
+
+        try (ParquetFileReader reader = open(out.toByteArray())) {
+            BlockMetaData rowGroup = reader.getRowGroups().get(0);
+            assertFalse(rowGroup.getColumns().get(0).hasDictionaryPage());
+            assertFalse(rowGroup.getColumns().get(1).hasDictionaryPage());
+            assertTrue(rowGroup.getColumns().get(2).hasDictionaryPage());
+            List<Object[]> rows = readRows(reader);
+            assertEquals(1000, rows.size());
+            assertEquals("fmt/4", rows.get(999)[2]);
+        }
+    }
+
+    @Test
+    public void testLargeExportsAreWrittenInSeveralRowGroups() throws IOException {
+        ParquetItemWriter writer = new ParquetItemWriter();
+        writer.setRowGroupSize(16 * 1024);
+        List<ProfileResourceNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            nodes.add(buildNode(i, "fmt/" + (i % 7)));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.open(out);
+        writer.write(nodes);
+        writer.close();
+
+        try (ParquetFileReader reader = open(out.toByteArray())) {
+            assertTrue(reader.getRowGroups().size() > 1);
+            List<Object[]> rows = readRows(reader);
+            assertEquals(20000, rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals((long) i, rows.get(i)[0]);
+                assertEquals("fmt/" + (i % 7), rows.get(i)[14]);
+            }
+        }
+    }
+
+    @Test
+    public void testEveryColumnIsReadBackFromTheFile() throws IOException {
+        ParquetItemWriter writer = new ParquetItemWriter();
+        ProfileResourceNode node = buildNode(7, "fmt/40");
+        node.setParentId(3L);
+        node.getMetaData().setHash("0123456789abcdef");
+        List<Object[]> prepared = writer.prepare(Arrays.asList(node, buildNode(8)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.open(out);
+        writer.writePrepared(prepared);
+        writer.close();
+
+        try (ParquetFileReader reader = open(out.toByteArray())) {
+            MessageType schema = reader.getFileMetaData().getSchema();
+            assertEquals(Arrays.asList(CsvItemWriter.HEADERS), columnNames(schema));
+            assertEquals(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MILLIS),
+                    schema.getType("LAST_MODIFIED").getLogicalTypeAnnotation());
+            List<Object[]> rows = readRows(reader);
+            assertEquals(prepared.size(), rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                // Values which are neither numbers nor strings are written as strings:
+                Object[] expected = prepared.get(i).clone();
+                for (int column = 0; column < expected.length; column++) {
+                    if (expected[column] != null && !(expected[column] instanceof Long)) {
+                        expected[column] = expected[column].toString();
+                    }
+                }
+                assertArrayEquals(expected, rows.get(i));
+            }
+            assertEquals(3L, rows.get(0)[1]);
+            assertEquals("0123456789abcdef", rows.get(0)[12]);
+            assertEquals("fmt/40", rows.get(0)[14]);
+            assertNull(rows.get(1)[14]);
+        }
+    }
+
+    // Reads the file back with the parquet-java reader.
+    private ParquetFileReader open(byte[] file) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, file);
+        ParquetReadOptions options = ParquetReadOptions.builder(new PlainParquetConfiguration())
+                .withCodecFactory(new GzipCodecFactory()).build();
+        return ParquetFileReader.open(new LocalInputFile(path), options);
+    }
+
+    private static List<String> columnNames(MessageType schema) {
+        List<String> names = new ArrayList<>();
+        for (Type field : schema.getFields()) {
+            names.add(field.getName());
+        }
+        return names;
+    }
+
+    private static List<Object[]> readRows(ParquetFileReader reader) throws IOException {
+        MessageType schema = reader.getFileMetaData().getSchema();
+        List<Object[]> rows = new ArrayList<>();
+        PageReadStore rowGroup;
+        while ((rowGroup = reader.readNextRowGroup()) != null) {
+            RecordReader<Group> records = new ColumnIOFactory().getColumnIO(schema)
+                    .getRecordReader(rowGroup, new GroupRecordConverter(schema));
+            for (long i = 0; i < rowGroup.getRowCount(); i++) {
+                Group group = records.read();
+                Object[] row = new Object[schema.getFieldCount()];
+                for (int column = 0; column < row.length; column++) {
+                    if (group.getFieldRepetitionCount(column) > 0) {
+                        row[column] = schema.getType(column).asPrimitiveType().getPrimitiveTypeName() == PrimitiveTypeName.INT64
+                                ? (Object) group.getLong(column, 0) : group.getString(column, 0);
+                    }
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static ProfileResourceNode buildNode(long id, String... puids) {
+        ProfileResourceNode node = new ProfileResourceNode(new File("/my/file" + id + ".txt").toURI());
+        node.setId(id);
+        node.setExtensionMismatch(false);
+        NodeMetaData metaData = new NodeMetaData();
+        metaData.setExtension("txt");
+        metaData.setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+        metaData.setLastModified(12345678L);
+        metaData.setName("file" + id + ".txt");
+        metaData.setNodeStatus(NodeStatus.DONE);
+        metaData.setResourceType(ResourceType.FILE);
+        metaData.setSize(100L);
+        node.setMetaData(metaData);
+        for (String puid : puids) {
+            Format format = new Format();
+            format.setPuid(puid);
+            node.addFormatIdentification(format);
+        }
+        return node;
+    }
+}
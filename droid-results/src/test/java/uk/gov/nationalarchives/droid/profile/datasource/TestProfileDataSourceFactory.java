@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.dataset.xml.FlatXmlDataSetBuilder;
+import org.dbunit.operation.DatabaseOperation;
+
+import uk.gov.nationalarchives.droid.results.handlers.JDBCBatchResultHandlerDao;
+
+/**
+ * Creates a profile database for the Spring-backed DAO tests on an engine with no prepared test database.
+ * <p>
+ * The Derby test database in droid-test-db already holds the schema and the formats the test data
+ * sets refer to.  For any other engine, an empty database is given the same schema, created by
+ * {@link JDBCBatchResultHandlerDao} as it is for a fresh profile template, and the same formats.
+ * </p>
+ */
+public class TestProfileDataSourceFactory extends PooledProfileDataSourceFactory {
+
+    @Override
+    public PooledProfileDataSource getObject() throws Exception {
+        PooledProfileDataSource dataSource = super.getObject();
+        if (!hasSchema(dataSource)) {
+            JDBCBatchResultHandlerDao.setIsFreshTemplate(true);
+            try {
+                new JDBCBatchResultHandlerDao(dataSource).init();
+            } finally {
+                JDBCBatchResultHandlerDao.setIsFreshTemplate(false);
+            }
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            DatabaseOperation.REFRESH.execute(new DatabaseConnection(connection), new FlatXmlDataSetBuilder().build(
+                    TestProfileDataSourceFactory.class.getResource("test-database-formats.xml")));
+        }
+        return dataSource;
+    }
+
+    private static boolean hasSchema(PooledProfileDataSource dataSource) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             ResultSet tables = connection.getMetaData().getTables(null, null, "FORMAT", new String[] {"TABLE"})) {
+            return tables.next();
+        }
+    }
+}
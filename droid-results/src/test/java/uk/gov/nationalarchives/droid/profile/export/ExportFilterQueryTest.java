@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.BasicFilter;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.BasicFilterCriterion;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionFieldEnum;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionOperator;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.FilterCriterion;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class ExportFilterQueryTest {
+
+    private static final FilterCriterion PUID_ANY_OF = new BasicFilterCriterion(CriterionFieldEnum.PUID,
+            CriterionOperator.ANY_OF, new Object[] {"fmt/1", "fmt/2"});
+    private static final FilterCriterion NAME_CONTAINS = new BasicFilterCriterion(CriterionFieldEnum.FILE_NAME,
+            CriterionOperator.CONTAINS, "Report");
+    private static final FilterCriterion PUID_NONE_OF = new BasicFilterCriterion(CriterionFieldEnum.PUID,
+            CriterionOperator.NONE_OF, new Object[] {"fmt/3"});
+
+    @Test
+    public void testNoFilterHasNoPredicate() {
+        assertEquals("", new ExportFilterQuery(null).getPredicate());
+        assertEquals("", new ExportFilterQuery(new BasicFilter(Arrays.asList(PUID_ANY_OF), true, false)).getPredicate());
+    }
+
+    @Test
+    public void testNarrowedFilterTranslatesTheCriteriaItCan() throws Exception {
+        FilterCriterion resourceType = new BasicFilterCriterion(CriterionFieldEnum.RESOURCE_TYPE,
+                CriterionOperator.ANY_OF, new Object[] {ResourceType.FILE});
+        ExportFilterQuery query = new ExportFilterQuery(
+                new BasicFilter(Arrays.asList(PUID_ANY_OF, NAME_CONTAINS, PUID_NONE_OF, resourceType), true));
+
+        assertEquals("(exists (select fi.node_id from identification fi where fi.node_id = p.node_id and "
+                + "fi.puid IN (?, ?)) and (p.u_name  LIKE ?) and (p.resource_type IN (?)))", query.getPredicate());
+
+        PreparedStatement statement = mock(PreparedStatement.class);
+        query.setParameters(statement, 3);
+        verify(statement).setObject(3, "fmt/1");
+        verify(statement).setObject(4, "fmt/2");
+        verify(statement).setObject(5, "%REPORT%");
+        verify(statement).setObject(6, ResourceType.FILE.ordinal());
+        verifyNoMoreInteractions(statement);
+    }
+
+    @Test
+    public void testWidenedFilterIsOnlyTranslatedIfAllItsCriteriaAre() {
+        assertEquals("", new ExportFilterQuery(
+                new BasicFilter(Arrays.asList(PUID_ANY_OF, PUID_NONE_OF), false)).getPredicate());
+
+        FilterCriterion mimeType = new BasicFilterCriterion(CriterionFieldEnum.MIME_TYPE,
+                CriterionOperator.ANY_OF, new Object[] {"text/plain"});
+        assertEquals("(exists (select fi.node_id from identification fi inner join format ff on ff.puid = fi.puid "
+                + "where fi.node_id = p.node_id and ff.mime_type IN (?)) or (p.u_name  LIKE ?))",
+                new ExportFilterQuery(new BasicFilter(Arrays.asList(mimeType, NAME_CONTAINS), false)).getPredicate());
+    }
+}
@@ -31,18 +31,13 @@
  */
 package uk.gov.nationalarchives.droid.report.dao;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
-import org.dbunit.DatabaseUnitException;
 import org.dbunit.database.DatabaseConnection;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.dataset.IDataSet;
@@ -55,12 +50,10 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
-
 import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Criterion;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Restrictions;
 
@@ -84,24 +77,21 @@ public class JpaReportDaoTest {
     @Autowired
     private ReportDao reportDao;
 
-    //@Autowired
-    //private DataSource dataSource;
+    @Autowired
+    private DataSource dataSource;
 
-    //private IDatabaseConnection conn;
-    private static IDatabaseConnection conn;
+    private IDatabaseConnection conn;
 
     @BeforeClass
     public static void getTestData() throws Exception {
         testData = new FlatXmlDataSetBuilder().build(JpaReportDaoTest.class.getResource("report-test-data-sans-formats.xml"));
         //System.setProperty("hibernate.generateDdl", "true");
         System.setProperty("matchAllExtensions", "false");
-        conn = TestDatabase.getConnection();
     }
 
     @AfterClass
     public static void tearDown() {
         //System.clearProperty("hibernate.generateDdl");
-        TestDatabase.closeResources();
     }
 
     // Without Filter
@@ -247,34 +237,30 @@ public class JpaReportDaoTest {
 
     @Before
     public void setupTestData() throws Exception {
-
-        //conn = getConnection();
-        if(conn == null) {
-            conn = TestDatabase.getConnection();
-        }
+        conn = getConnection();
         try {
             DatabaseOperation.CLEAN_INSERT.execute(conn, testData);
         } finally {
-            //conn.close();
+            conn.close();
         }
     }
 
     @After
     public void tearDownTestData() throws Exception {
-        //conn = getConnection();
-        if(conn == null) {
-            conn = TestDatabase.getConnection();
-            if(this.reportDao instanceof SqlReportDaoImpl) {
-                ((SqlReportDaoImpl)reportDao).getDatasource().getConnection().close();
-            }
-        }
+        conn = getConnection();
         try {
             DatabaseOperation.DELETE.execute(conn, testData);
         } finally {
-            //conn.close();
+            conn.close();
         }
     }
 
+    protected IDatabaseConnection getConnection() throws Exception {
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        con.setAutoCommit(true);
+        return new DatabaseConnection(con);
+    }
+
 
     private void printReportData(List<ReportLineItem> myReportData) {
         for (ReportLineItem item : myReportData) {
@@ -320,68 +306,4 @@ public class JpaReportDaoTest {
                 ? item.getGroupByValues().get(index)
                 : "";
     }
-
-    private static class TestDatabase {
-
-        private static IDatabaseConnection conn;
-        private static Connection con;
-
-        public static IDatabaseConnection getConnection() {
-
-            if(conn == null) {
-                InputStream in = null;
-                final HikariConfig config = new HikariConfig();
-
-                try {
-
-                    Properties prop = new Properties();
-                    in = JpaReportDaoTest.class.getResourceAsStream("/jpa-test.properties");
-
-                    prop.load(in);
-                    config.setDriverClassName(prop.getProperty("datasource.driverClassName"));
-                    config.setJdbcUrl(prop.getProperty("datasource.url"));
-                    config.setUsername(prop.getProperty("datasource.username"));
-                    config.setPassword(prop.getProperty("datasource.password"));
-                    config.setMaximumPoolSize(Integer.parseInt(prop.getProperty("datasource.maxActive")));
-                } catch(IOException e) {
-                    e.printStackTrace();
-                } finally {
-                    if(in != null) {
-                        try {
-                            in.close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-
-                final DataSource dataSource = new HikariDataSource(config) ;
-                try {
-                    con = dataSource.getConnection();
-                    con.setAutoCommit(true);
-                    conn = new DatabaseConnection(con);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                } catch(DatabaseUnitException e) {
-                    e.printStackTrace();
-                }
-            }
-            return conn;
-        }
-
-        public static void closeResources() {
-
-            try {
-                if(conn != null) {
-                    conn.close();
-                }
-
-                if(con != null) {
-                    con.close();
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-        }
-    }
 }
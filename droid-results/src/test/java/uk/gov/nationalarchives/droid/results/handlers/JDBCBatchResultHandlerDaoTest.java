@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileException;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.datasource.PooledProfileDataSource;
+import uk.gov.nationalarchives.droid.profile.datasource.PooledProfileDataSourceFactory;
+import uk.gov.nationalarchives.droid.profile.datasource.ProfileDatabaseEngine;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+@RunWith(Parameterized.class)
+public class JDBCBatchResultHandlerDaoTest {
+
+    private static final int NODES = 2000;
+    private static final int FORMATS = 5;
+    private static final long TIMEOUT_MILLIS = 60000;
+    private static final int PRN_INDEXES = 11;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ProfileDatabaseEngine engine;
+    private PooledProfileDataSource dataSource;
+    private JDBCBatchResultHandlerDao dao;
+    private List<Format> formats;
+
+    public JDBCBatchResultHandlerDaoTest(ProfileDatabaseEngine engine) {
+        this.engine = engine;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] {{ProfileDatabaseEngine.DERBY}, {ProfileDatabaseEngine.H2}});
+    }
+
+    @Before
+    public void setup() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setDriverClassName(engine.getDriverClassName());
+        config.setJdbcUrl(engine.getJdbcUrl(temporaryFolder.getRoot().toPath().resolve("db")));
+        config.setUsername("droid_user");
+        config.setPassword("droid_user");
+        config.setAutoCommit(false);
+        PooledProfileDataSourceFactory factory = new PooledProfileDataSourceFactory(config);
+        factory.setEngine(engine);
+        dataSource = factory.getObject();
+        assertEquals(engine, dataSource.getEngine());
+
+        formats = new ArrayList<>();
+        for (int i = 1; i <= FORMATS; i++) {
+            Format format = new Format();
+            format.setPuid("fmt/" + i);
+            format.setName("Format " + i);
+            formats.add(format);
+        }
+
+        dao = new JDBCBatchResultHandlerDao(dataSource);
+        dao.setWriterThreads(4);
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(true);
+        dao.init();
+        insertFormats();
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(false);
+        dao.initialiseForNewTemplate();
+    }
+
+    @After
+    public void tearDown() {
+        dao.cleanup();
+        dataSource.close();
+    }
+
+    @Test
+    public void testDatabaseIsFoundWithTheEngineWhichCreatedIt() {
+        assertTrue(engine.holdsDatabase(temporaryFolder.getRoot().toPath().resolve("db")));
+        for (ProfileDatabaseEngine other : ProfileDatabaseEngine.values()) {
+            assertEquals(engine, ProfileDatabaseEngine.forDatabase(temporaryFolder.getRoot().toPath().resolve("db"), other));
+        }
+    }
+
+    @Test
+    public void testFreezeAndThawLeaveTheDatabaseWritable() throws Exception {
+        dataSource.freeze();
+        dataSource.thaw();
+        dao.save(newNodes().get(0), new ResourceId(1L, ""));
+        dao.commit();
+        waitForCount("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE", 1);
+    }
+
+    @Test
+    public void testIndexesAreKeptWhenNotDeferred() throws Exception {
+        assertEquals(PRN_INDEXES, countIndexes());
+        dao.startBulkLoad();
+        assertEquals(PRN_INDEXES, countIndexes());
+    }
+
+    @Test
+    public void testDeferredIndexesAreDroppedForABulkLoadAndCreatedAfterwards() throws Exception {
+        dao.setDeferIndexes(true);
+        dao.startBulkLoad();
+        assertEquals(0, countIndexes());
+
+        final ResourceId folder = new ResourceId(1L, "");
+        for (ProfileResourceNode node : newNodes()) {
+            dao.save(node, folder);
+        }
+        final List<Integer> progress = new ArrayList<>();
+        dao.finishBulkLoad(progress::add);
+
+        assertEquals(NODES, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE"));
+        assertEquals(PRN_INDEXES, countIndexes());
+        assertEquals(PRN_INDEXES, progress.size());
+        assertEquals(Integer.valueOf(100), progress.get(PRN_INDEXES - 1));
+
+        // Nothing is left to create:
+        progress.clear();
+        dao.createDeferredIndexes(progress::add);
+        assertTrue(progress.isEmpty());
+    }
+
+    @Test
+    public void testWriterThreadsAreLimited() {
+        JDBCBatchResultHandlerDao other = new JDBCBatchResultHandlerDao();
+        assertEquals(1, other.getWriterThreads());
+        other.setWriterThreads(3);
+        assertEquals(3, other.getWriterThreads());
+        other.setWriterThreads(1000);
+        assertEquals(JDBCBatchResultHandlerDao.MAX_WRITER_THREADS, other.getWriterThreads());
+        other.setWriterThreads(0);
+        assertEquals(Math.min(Runtime.getRuntime().availableProcessors(), JDBCBatchResultHandlerDao.MAX_WRITER_THREADS),
+                other.getWriterThreads());
+    }
+
+    @Test
+    public void testCleanupStopsTheWriterThreads() {
+        Set<Thread> before = Thread.getAllStackTraces().keySet();
+        JDBCBatchResultHandlerDao other = new JDBCBatchResultHandlerDao(dataSource);
+        other.setWriterThreads(2);
+        other.init();
+        List<Thread> writerThreads = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!before.contains(thread) && thread.getName().startsWith("droid-database-writer-")) {
+                writerThreads.add(thread);
+            }
+        }
+        assertEquals(2, writerThreads.size());
+        other.cleanup();
+        for (Thread thread : writerThreads) {
+            assertTrue(thread.isDaemon());
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    @Test
+    public void testNodesFromSeveralThreadsAreAllCommitted() throws Exception {
+        final ResourceId folder = new ResourceId(1L, "");
+        final List<ProfileResourceNode> nodes = newNodes();
+        Thread[] savers = new Thread[4];
+        for (int t = 0; t < savers.length; t++) {
+            final int first = t;
+            savers[t] = new Thread(() -> {
+                for (int i = first; i < nodes.size(); i += savers.length) {
+                    dao.save(nodes.get(i), folder);
+                }
+            });
+            savers[t].start();
+        }
+        for (Thread saver : savers) {
+            saver.join();
+        }
+
+        // Status updates must be written after the inserts of the same nodes:
+        for (int i = 0; i < NODES; i += 7) {
+            ProfileResourceNode node = nodes.get(i);
+            node.getMetaData().setNodeStatus(NodeStatus.ERROR);
+            dao.save(node, folder);
+        }
+        dao.commit();
+
+        waitForCount("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE", NODES);
+        waitForCount("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE WHERE NODE_STATUS = " + NodeStatus.ERROR.ordinal(),
+                (NODES + 6) / 7);
+        waitForCount("SELECT COUNT(*) FROM IDENTIFICATION", NODES + NODES / 10);
+        assertEquals(NODES, dao.getNodesWritten());
+        assertTrue(dao.getPeakQueueDepth() > 0);
+        assertEquals(0, dao.getQueueDepth());
+    }
+
+    @Test
+    public void testANodeWhichCannotBeWrittenDoesNotStopTheWriters() throws Exception {
+        final ResourceId folder = new ResourceId(1L, "");
+        final List<ProfileResourceNode> nodes = newNodes();
+        nodes.get(NODES / 2).setMetaData(null);
+        for (ProfileResourceNode node : nodes) {
+            dao.save(node, folder);
+        }
+        dao.commitAndWait();
+        assertEquals(NODES - 1, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE"));
+    }
+
+    @Test(expected = ProfileException.class, timeout = TIMEOUT_MILLIS)
+    public void testCommitAndWaitFailsWhenTheWritersHaveStopped() {
+        dao.cleanup();
+        dao.commitAndWait();
+    }
+
+    private List<ProfileResourceNode> newNodes() {
+        List<ProfileResourceNode> nodes = new ArrayList<>(NODES);
+        for (int i = 0; i < NODES; i++) {
+            String name = "file" + i + ".bin";
+            ProfileResourceNode node = new ProfileResourceNode(URI.create("file:/folder/" + name));
+            NodeMetaData metaData = new NodeMetaData();
+            metaData.setName(name);
+            metaData.setExtension("bin");
+            metaData.setSize((long) i);
+            metaData.setLastModifiedDate(new Date());
+            metaData.setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+            metaData.setNodeStatus(NodeStatus.DONE);
+            metaData.setResourceType(ResourceType.FILE);
+            node.setMetaData(metaData);
+            node.setFinished(new Date());
+            node.addFormatIdentification(formats.get(i % FORMATS));
+            if (i % 10 == 0) {
+                node.addFormatIdentification(formats.get((i + 1) % FORMATS));
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private void insertFormats() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO FORMAT (PUID, NAME) VALUES (?, ?)")) {
+            for (Format format : formats) {
+                insert.setString(1, format.getPuid());
+                insert.setString(2, format.getName());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+    }
+
+    private void waitForCount(String query, long expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        long count = count(query);
+        while (count != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            count = count(query);
+        }
+        assertEquals(query, expected, count);
+    }
+
+    private int countIndexes() throws SQLException {
+        int indexes = 0;
+        try (Connection connection = dataSource.getConnection();
+             ResultSet result = connection.getMetaData().getIndexInfo(null, null, "PROFILE_RESOURCE_NODE", false, true)) {
+            while (result.next()) {
+                String name = result.getString("INDEX_NAME");
+                if (name != null && name.startsWith("IDX_")) {
+                    indexes++;
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private long count(String query) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet result = statement.executeQuery()) {
+            result.next();
+            long count = result.getLong(1);
+            connection.commit();
+            return count;
+        }
+    }
+}
@@ -147,6 +147,26 @@ public class ProgressMonitorTest {
         }
     }
     
+    @Test
+    public void testProgressAgainstAnEstimatedTargetNeverGoesBackwardsOrCompletes() {
+        progressMonitor.setEstimatedTargetCount(10);
+        for (int i = 0; i < 5; i++) {
+            progressMonitor.increment();
+        }
+        assertEquals(50, progressMonitor.getProgressPercentage());
+
+        progressMonitor.setEstimatedTargetCount(20);
+        assertEquals(50, progressMonitor.getProgressPercentage());
+
+        for (int i = 0; i < 20; i++) {
+            progressMonitor.increment();
+        }
+        assertEquals(99, progressMonitor.getProgressPercentage());
+
+        progressMonitor.setTargetCount(25);
+        assertEquals(100, progressMonitor.getProgressPercentage());
+    }
+
     private final class LatchedThread extends Thread {
         
         private CountDownLatch start;
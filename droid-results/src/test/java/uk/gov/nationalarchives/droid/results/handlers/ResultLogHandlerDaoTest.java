@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.datasource.PooledProfileDataSource;
+import uk.gov.nationalarchives.droid.profile.datasource.PooledProfileDataSourceFactory;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+public class ResultLogHandlerDaoTest {
+
+    private static final int NODES = 1000;
+    private static final int FORMATS = 5;
+    private static final int PRN_INDEXES = 11;
+    private static final String COUNT_NODES = "SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private PooledProfileDataSource dataSource;
+    private ResultLogHandlerDao dao;
+    private List<Format> formats;
+    private Path logFile;
+
+    @Before
+    public void setup() throws Exception {
+        final Path profileHome = temporaryFolder.getRoot().toPath();
+        HikariConfig config = new HikariConfig();
+        config.setDriverClassName("org.apache.derby.jdbc.EmbeddedDriver");
+        config.setJdbcUrl("jdbc:derby:" + profileHome.resolve("db").toAbsolutePath());
+        config.setUsername("droid_user");
+        config.setPassword("droid_user");
+        config.setAutoCommit(false);
+        dataSource = new PooledProfileDataSourceFactory(config).getObject();
+
+        formats = new ArrayList<>();
+        for (int i = 1; i <= FORMATS; i++) {
+            Format format = new Format();
+            format.setPuid("fmt/" + i);
+            format.setName("Format " + i);
+            formats.add(format);
+        }
+
+        logFile = profileHome.resolve(ResultLogHandlerDao.RESULT_LOG_FILE);
+        dao = new ResultLogHandlerDao(dataSource, logFile);
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(true);
+        dao.init();
+        insertFormats();
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(false);
+        dao.initialiseForNewTemplate();
+    }
+
+    @After
+    public void tearDown() {
+        dao.cleanup();
+        dataSource.close();
+    }
+
+    @Test
+    public void testResultsAreOnlyWrittenToTheDatabaseWhenMaterialised() throws Exception {
+        saveNodes();
+        assertEquals(0, count(COUNT_NODES));
+        assertTrue(Files.size(logFile) > 0);
+
+        dao.materialise();
+        assertEquals(NODES, count(COUNT_NODES));
+        assertEquals((NODES + 6) / 7,
+                count(COUNT_NODES + " WHERE NODE_STATUS = " + NodeStatus.ERROR.ordinal()));
+        assertEquals(NODES + NODES / 10, count("SELECT COUNT(*) FROM IDENTIFICATION"));
+        assertFalse(ResultLogHandlerDao.hasResultLog(temporaryFolder.getRoot().toPath()));
+
+        // Materialising again writes nothing more:
+        dao.materialise();
+        assertEquals(NODES, count(COUNT_NODES));
+    }
+
+    @Test
+    public void testMaterialisedNodesMatchTheNodesSaved() throws Exception {
+        final List<ProfileResourceNode> nodes = saveNodes();
+        dao.materialise();
+
+        final ProfileResourceNode saved = nodes.get(70);
+        final ProfileResourceNode loaded = readNode(saved.getId());
+        assertEquals(saved.getUri(), loaded.getUri());
+        assertEquals(saved.getParentId(), loaded.getParentId());
+        assertEquals(saved.getPrefix(), loaded.getPrefix());
+        assertEquals(saved.getPrefixPlusOne(), loaded.getPrefixPlusOne());
+        assertEquals(saved.getMetaData().getName(), loaded.getMetaData().getName());
+        assertEquals(saved.getMetaData().getSize(), loaded.getMetaData().getSize());
+        assertEquals(saved.getMetaData().getLastModifiedDate(), loaded.getMetaData().getLastModifiedDate());
+        assertEquals(NodeStatus.ERROR, loaded.getMetaData().getNodeStatus());
+        assertEquals(Integer.valueOf(2), loaded.getIdentificationCount());
+        assertEquals(saved.getFinished(), loaded.getFinished());
+    }
+
+    @Test
+    public void testNodesWithoutIdentificationsAreMaterialised() throws Exception {
+        ProfileResourceNode folder = new ProfileResourceNode(URI.create("file:/folder/"));
+        folder.getMetaData().setName("folder");
+        folder.getMetaData().setResourceType(ResourceType.FOLDER);
+        folder.getMetaData().setNodeStatus(NodeStatus.DONE);
+        folder.addFormatIdentification(Format.NULL);
+        dao.save(folder, null);
+        dao.commit();
+        dao.materialise();
+
+        assertEquals(1, count(COUNT_NODES + " WHERE NODE_ID = " + folder.getId()
+                + " AND PARENT_ID IS NULL AND IDENTIFICATION_COUNT IS NULL AND FILE_SIZE IS NULL"));
+        assertEquals(1, count("SELECT COUNT(*) FROM IDENTIFICATION WHERE PUID = ''"));
+    }
+
+    @Test
+    public void testLogLeftInTheProfileIsMaterialisedWhenTheProfileIsOpened() throws Exception {
+        saveNodes();
+        dao.cleanup();
+        assertTrue(ResultLogHandlerDao.hasResultLog(temporaryFolder.getRoot().toPath()));
+
+        ResultHandlerDaoFactory factory = new ResultHandlerDaoFactory(dataSource);
+        factory.setProfileHome(temporaryFolder.getRoot().getAbsolutePath());
+        dao = (ResultLogHandlerDao) factory.getObject();
+        assertEquals(NODES, count(COUNT_NODES));
+        assertFalse(ResultLogHandlerDao.hasResultLog(temporaryFolder.getRoot().toPath()));
+
+        // New nodes carry on from the largest id materialised:
+        ProfileResourceNode node = newNode(NODES);
+        dao.save(node, new ResourceId(1L, ""));
+        assertTrue(node.getId() > NODES);
+    }
+
+    @Test
+    public void testResultsStayInTheLogUntilTheMaterialisationFinishes() throws Exception {
+        saveNodes();
+        dao.cleanup();
+        try {
+            new ResultLog(logFile).replay(dao.getPUIDFormatMap(), (node, insertNode) -> {
+                throw new IllegalStateException("Stopped while materialising");
+            });
+            fail("Expected the replay to stop");
+        } catch (IllegalStateException expected) {
+            assertTrue(ResultLogHandlerDao.hasResultLog(temporaryFolder.getRoot().toPath()));
+        }
+
+        ResultHandlerDaoFactory factory = new ResultHandlerDaoFactory(dataSource);
+        factory.setProfileHome(temporaryFolder.getRoot().getAbsolutePath());
+        dao = (ResultLogHandlerDao) factory.getObject();
+        assertEquals(NODES, count(COUNT_NODES));
+        assertFalse(ResultLogHandlerDao.hasResultLog(temporaryFolder.getRoot().toPath()));
+    }
+
+    @Test
+    public void testIndexesAreOnlyCreatedWhenMaterialisedAfterARun() throws Exception {
+        dao.setDeferIndexes(true);
+        dao.startBulkLoad();
+        execute("DROP INDEX IDX_PREFIX");
+        assertEquals(PRN_INDEXES - 1, countIndexes());
+
+        // Materialising during the run neither drops nor creates indexes:
+        saveNodes();
+        dao.materialise();
+        assertEquals(NODES, count(COUNT_NODES));
+        assertEquals(PRN_INDEXES - 1, countIndexes());
+
+        dao.finishBulkLoad(null);
+        dao.materialise();
+        assertEquals(PRN_INDEXES, countIndexes());
+    }
+
+    private List<ProfileResourceNode> saveNodes() {
+        final ResourceId folder = new ResourceId(1L, "");
+        final List<ProfileResourceNode> nodes = new ArrayList<>(NODES);
+        for (int i = 0; i < NODES; i++) {
+            ProfileResourceNode node = newNode(i);
+            dao.save(node, folder);
+            nodes.add(node);
+        }
+        for (int i = 0; i < NODES; i += 7) {
+            ProfileResourceNode node = new ProfileResourceNode(nodes.get(i));
+            node.getMetaData().setNodeStatus(NodeStatus.ERROR);
+            dao.save(node, folder);
+        }
+        dao.commit();
+        return nodes;
+    }
+
+    private ProfileResourceNode newNode(int i) {
+        String name = "file" + i + ".bin";
+        ProfileResourceNode node = new ProfileResourceNode(URI.create("file:/folder/" + name));
+        NodeMetaData metaData = new NodeMetaData();
+        metaData.setName(name);
+        metaData.setExtension("bin");
+        metaData.setSize((long) i);
+        metaData.setLastModified(1500000000000L + i);
+        metaData.setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+        metaData.setNodeStatus(NodeStatus.DONE);
+        metaData.setResourceType(ResourceType.FILE);
+        node.setMetaData(metaData);
+        node.setFinished(new Date(1600000000000L + i));
+        node.addFormatIdentification(formats.get(i % FORMATS));
+        if (i % 10 == 0) {
+            node.addFormatIdentification(formats.get((i + 1) % FORMATS));
+        }
+        return node;
+    }
+
+    private ProfileResourceNode readNode(Long nodeId) {
+        // A new dao has nothing cached, so it loads the node from the database.
+        JDBCBatchResultHandlerDao reader = new JDBCBatchResultHandlerDao(dataSource);
+        reader.init();
+        try {
+            return reader.loadNode(nodeId);
+        } finally {
+            reader.cleanup();
+        }
+    }
+
+    private void insertFormats() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO FORMAT (PUID, NAME) VALUES (?, ?)")) {
+            for (Format format : formats) {
+                insert.setString(1, format.getPuid());
+                insert.setString(2, format.getName());
+                insert.addBatch();
+            }
+            // Nodes with no identifications refer to the format with an empty PUID:
+            insert.setString(1, "");
+            insert.setString(2, "");
+            insert.addBatch();
+            insert.executeBatch();
+            connection.commit();
+        }
+    }
+
+    private void execute(String statement) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement prepared = connection.prepareStatement(statement)) {
+            prepared.execute();
+            connection.commit();
+        }
+    }
+
+    private int countIndexes() throws SQLException {
+        int indexes = 0;
+        try (Connection connection = dataSource.getConnection();
+             ResultSet result = connection.getMetaData().getIndexInfo(null, null, "PROFILE_RESOURCE_NODE", false, true)) {
+            while (result.next()) {
+                String name = result.getString("INDEX_NAME");
+                if (name != null && name.startsWith("IDX_")) {
+                    indexes++;
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private long count(String query) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet result = statement.executeQuery()) {
+            result.next();
+            long count = result.getLong(1);
+            connection.commit();
+            return count;
+        }
+    }
+}
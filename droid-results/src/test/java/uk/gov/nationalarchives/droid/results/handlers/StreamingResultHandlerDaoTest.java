@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+public class StreamingResultHandlerDaoTest {
+
+    private static final String SIGNATURE_FILE = "test_sig_files/DROID_SignatureFile_V26.xml";
+
+    private RecordingItemWriter itemWriter;
+    private StreamingResultHandlerDao dao;
+
+    @Before
+    public void setup() {
+        itemWriter = new RecordingItemWriter();
+        dao = new StreamingResultHandlerDao(itemWriter, new StringWriter(), SIGNATURE_FILE);
+        dao.init();
+    }
+
+    @After
+    public void tearDown() {
+        dao.cleanup();
+    }
+
+    @Test
+    public void testFormatsAreLoadedFromTheSignatureFile() {
+        Map<String, Format> formats = dao.getPUIDFormatMap();
+        assertFalse(formats.isEmpty());
+        assertEquals(formats.size(), dao.getAllFormats().size());
+        assertNotNull(formats.get("x-fmt/1"));
+        assertEquals("x-fmt/1", dao.loadFormat("x-fmt/1").getPuid());
+        assertTrue(itemWriter.opened);
+    }
+
+    @Test
+    public void testCommitWaitsForEveryResultToBeWritten() throws Exception {
+        final int threadCount = 8;
+        final int nodesPerThread = 500;
+        final CountDownLatch finished = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < nodesPerThread; j++) {
+                        dao.save(new ProfileResourceNode(URI.create("file:/test/" + j)), null);
+                    }
+                    finished.countDown();
+                }
+            }).start();
+        }
+        finished.await();
+        dao.commit();
+        assertEquals(threadCount * nodesPerThread, itemWriter.getWritten().size());
+    }
+
+    @Test
+    public void testSavedNodesAreGivenIdsInOrder() {
+        for (int i = 0; i < 10; i++) {
+            dao.save(new ProfileResourceNode(URI.create("file:/test/" + i)), null);
+        }
+        dao.commit();
+        List<ProfileResourceNode> written = itemWriter.getWritten();
+        assertEquals(10, written.size());
+        for (int i = 0; i < written.size(); i++) {
+            assertEquals(Long.valueOf(i + 1), written.get(i).getId());
+        }
+        assertNull(dao.loadNode(1L));
+    }
+
+    @Test
+    public void testCleanupWritesUncommittedResultsAndStopsTheWriter() {
+        for (int i = 0; i < 10; i++) {
+            dao.save(new ProfileResourceNode(URI.create("file:/test/" + i)), null);
+        }
+        dao.cleanup();
+        assertEquals(10, itemWriter.getWritten().size());
+        assertTrue(itemWriter.closed);
+    }
+
+    private static final class RecordingItemWriter implements ItemWriter<ProfileResourceNode> {
+
+        private final List<ProfileResourceNode> written = new ArrayList<>();
+        private volatile boolean opened;
+        private volatile boolean closed;
+
+        @Override
+        public synchronized void write(List<? extends ProfileResourceNode> items) {
+            written.addAll(items);
+        }
+
+        synchronized List<ProfileResourceNode> getWritten() {
+            return new ArrayList<>(written);
+        }
+
+        @Override
+        public void open(Writer writer) {
+            opened = true;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void setOptions(ExportOptions options) {
+        }
+
+        @Override
+        public void setHeaders(Map<String, String> headersToSet) {
+        }
+
+        @Override
+        public void setQuoteAllFields(boolean quoteAll) {
+        }
+
+        @Override
+        public void setColumnsToWrite(String columnNames) {
+        }
+    }
+}
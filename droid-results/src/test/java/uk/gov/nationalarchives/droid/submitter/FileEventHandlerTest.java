@@ -36,7 +36,9 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -44,6 +46,7 @@ import static org.mockito.ArgumentMatchers.any;
 
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -55,6 +58,7 @@ import org.mockito.ArgumentCaptor;
 import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
@@ -116,6 +120,27 @@ public class FileEventHandlerTest {
         verify(identificationEngine).submit(requestCaptor.capture());
     }
     
+    @Test
+    public void testFileEventHandlerCopiesForwardPreviousResultsWithoutReadingTheFile() throws Exception {
+
+        SubmissionThrottle throttle = mock(SubmissionThrottle.class);
+        fileEventHandler.setSubmissionThrottle(throttle);
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        fileEventHandler.setResultHandler(resultHandler);
+        IdentificationResultCollection results = mock(IdentificationResultCollection.class);
+        PreviousProfileResults previousResults = mock(PreviousProfileResults.class);
+        when(previousResults.getResults(request)).thenReturn(results);
+        fileEventHandler.setPreviousResults(previousResults);
+
+        final Path file = Paths.get("test_sig_files/DROID 5  Architecture.doc");
+        fileEventHandler.onEvent(file, new ResourceId(1L, ""), null);
+
+        verify(resultHandler).handle(results);
+        verify(request, never()).open(any(Path.class));
+        verify(identificationEngine, never()).submit(any(IdentificationRequest.class));
+        verify(throttle, never()).apply();
+    }
+
     @Test
     public void testFileEventHandlerAppliesThrottleAfterSubmittingAFile() throws Exception {
         
@@ -128,6 +153,25 @@ public class FileEventHandlerTest {
         verify(throttle).apply();
     }
 
+    @Test
+    public void testFileEventHandlerUsesAttributesAlreadyRead() throws IOException {
+
+        SubmissionThrottle throttle = mock(SubmissionThrottle.class);
+        fileEventHandler.setSubmissionThrottle(throttle);
+
+        final Path file = Paths.get("test_sig_files/DROID 5  Architecture.doc");
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+        fileEventHandler.onEvent(file, attributes, new ResourceId(1L, ""), null);
+
+        ArgumentCaptor<RequestMetaData> metaDataCaptor = ArgumentCaptor.forClass(RequestMetaData.class);
+        verify(requestFactory).newRequest(metaDataCaptor.capture(), any(RequestIdentifier.class));
+        final RequestMetaData metaData = metaDataCaptor.getValue();
+        assertEquals(Long.valueOf(attributes.size()), metaData.getSize());
+        assertEquals(Long.valueOf(attributes.lastModifiedTime().toMillis()), metaData.getTime());
+        assertEquals("DROID 5  Architecture.doc", metaData.getName());
+    }
+
     @Test
     public void testNonexistentFileSubmitsErrorToResultHandler() throws IOException {
         
@@ -35,7 +35,10 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
@@ -152,13 +155,13 @@ public class FileWalkerTest {
       fileWalker.setDirectoryHandler(directoryHandler);
       fileWalker.setFileHandler(fileHandler);
 
-      when(fileHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(fileHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
             final Path breakFile = files.get(FILES_TO_WALK);
             final Path thisFile = (Path) invocation.getArguments()[0];
-            int depth = (Integer) invocation.getArguments()[1];
+            int depth = (Integer) invocation.getArguments()[2];
             if (thisFile.equals(breakFile)) {
                throw new DirectoryWalker.CancelException(thisFile.toFile(), depth);
             }
@@ -170,7 +173,7 @@ public class FileWalkerTest {
          }
       });
 
-      when(directoryHandler.handle(any(Path.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(directoryHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -187,7 +190,7 @@ public class FileWalkerTest {
 
       FileWalkerHandler resumeHandler = mock(FileWalkerHandler.class);
       
-      when(resumeHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(resumeHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
          
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -230,13 +233,13 @@ public class FileWalkerTest {
       fileWalker.setDirectoryHandler(directoryHandler);
       fileWalker.setFileHandler(fileHandler);
 
-      when(fileHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(fileHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
             final Path breakFile = files.get(FILES_TO_WALK);
             final Path thisFile = (Path) invocation.getArguments()[0];
-            int depth = (Integer) invocation.getArguments()[1];
+            int depth = (Integer) invocation.getArguments()[2];
             if (thisFile.equals(breakFile)) {
                throw new DirectoryWalker.CancelException(thisFile.toFile(), depth);
             }
@@ -247,7 +250,7 @@ public class FileWalkerTest {
             return new ResourceId(nextId.incrementAndGet(), "");
          }
       });
-      when(directoryHandler.handle(any(Path.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(directoryHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -272,7 +275,7 @@ public class FileWalkerTest {
          fail("Error deleting test file: " + files.get(FILES_TO_WALK).toUri());
       
       FileWalkerHandler resumeHandler = mock(FileWalkerHandler.class);
-      when(resumeHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(resumeHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
          
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -315,13 +318,13 @@ public class FileWalkerTest {
       fileWalker.setDirectoryHandler(directoryHandler);
       fileWalker.setFileHandler(fileHandler);
 
-      when(fileHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(fileHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
             final Path breakFile = files.get(FILES_TO_WALK);
             final Path thisFile = (Path) invocation.getArguments()[0];
-            int depth = (Integer) invocation.getArguments()[1];
+            int depth = (Integer) invocation.getArguments()[2];
             if (thisFile.equals(breakFile)) {
                throw new DirectoryWalker.CancelException(thisFile.toFile(), depth);
             }
@@ -333,7 +336,7 @@ public class FileWalkerTest {
          }
       });
       
-      when(directoryHandler.handle(any(Path.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(directoryHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -367,7 +370,7 @@ public class FileWalkerTest {
       FileUtil.deleteQuietly(parentDir);
       
       FileWalkerHandler resumeHandler = mock(FileWalkerHandler.class);
-      when(resumeHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(resumeHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
          
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -409,13 +412,13 @@ public class FileWalkerTest {
       fileWalker.setDirectoryHandler(directoryHandler);
       fileWalker.setFileHandler(fileHandler);
 
-      when(fileHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(fileHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
             final Path breakFile = files.get(FILES_TO_WALK);
             final Path thisFile = (Path) invocation.getArguments()[0];
-            int depth = (Integer) invocation.getArguments()[1];
+            int depth = (Integer) invocation.getArguments()[2];
             if (thisFile.equals(breakFile)) {
                throw new DirectoryWalker.CancelException(thisFile.toFile(), depth);
             }
@@ -426,7 +429,7 @@ public class FileWalkerTest {
             return new ResourceId(nextId.incrementAndGet(), "");
          }
       });
-      when(directoryHandler.handle(any(Path.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(directoryHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -452,7 +455,7 @@ public class FileWalkerTest {
       assertEquals(0, FileUtil.listFiles(directoryToEmpty, true, (DirectoryStream.Filter<Path>) null).size());
 
       FileWalkerHandler resumeHandler = mock(FileWalkerHandler.class);
-      when(resumeHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(resumeHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
          
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -507,13 +510,13 @@ public class FileWalkerTest {
       fileWalker.setDirectoryHandler(directoryHandler);
       fileWalker.setFileHandler(fileHandler);
 
-      when(fileHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(fileHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
             final Path breakFile = files.get(FILES_TO_WALK);
             final Path thisFile = (Path) invocation.getArguments()[0];
-            int depth = (Integer) invocation.getArguments()[1];
+            int depth = (Integer) invocation.getArguments()[2];
             if (thisFile.equals(breakFile)) {
                throw new DirectoryWalker.CancelException(thisFile.toFile(), depth);
             }
@@ -524,7 +527,7 @@ public class FileWalkerTest {
             return new ResourceId(nextId.incrementAndGet(), "");
          }
       });
-      when(directoryHandler.handle(any(Path.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(directoryHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -545,7 +548,7 @@ public class FileWalkerTest {
       fileSet.add(newFile);   // represent the new file in the HashSet
 
       FileWalkerHandler resumeHandler = mock(FileWalkerHandler.class);
-      when(resumeHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(resumeHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
          
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -589,13 +592,13 @@ public class FileWalkerTest {
       fileWalker.setDirectoryHandler(directoryHandler);
       fileWalker.setFileHandler(fileHandler);
 
-      when(fileHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(fileHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
             final Path breakFile = files.get(FILES_TO_WALK);
             final Path thisFile = (Path) invocation.getArguments()[0];
-            int depth = (Integer) invocation.getArguments()[1];
+            int depth = (Integer) invocation.getArguments()[2];
             if (thisFile.equals(breakFile)) {
                throw new DirectoryWalker.CancelException(thisFile.toFile(), depth);
             }
@@ -606,7 +609,7 @@ public class FileWalkerTest {
             return new ResourceId(nextId.incrementAndGet(), "");
          }
       });
-      when(directoryHandler.handle(any(Path.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(directoryHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
 
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -631,7 +634,7 @@ public class FileWalkerTest {
       assertTrue(FileUtil.mkdirsQuietly(newFile));
 
       FileWalkerHandler resumeHandler = mock(FileWalkerHandler.class);
-      when(resumeHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
+      when(resumeHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(new Answer<ResourceId>() {
          
          @Override
          public ResourceId answer(InvocationOnMock invocation) throws Throwable {
@@ -650,4 +653,40 @@ public class FileWalkerTest {
       // Check the files have all been processed even with addition of directory
       assertEquals(fileSet.isEmpty(), true);
    }
-}
\ No newline at end of file
+
+   @Test
+   public void testConcurrentListingWalksInTheSameOrder() throws Exception {
+      final List<Path> sequential = walkInOrder(null);
+      final ExecutorService listingExecutor = new ForkJoinPool(4);
+      try {
+         assertEquals(sequential, walkInOrder(listingExecutor));
+      } finally {
+         listingExecutor.shutdownNow();
+      }
+      assertEquals(30 + 7, sequential.size()); // 30 files, and 7 directories including the root.
+   }
+
+   private List<Path> walkInOrder(ExecutorService listingExecutor) throws Exception {
+      final List<Path> visited = new ArrayList<>();
+      final AtomicLong nextId = new AtomicLong(0);
+      final Answer<ResourceId> recordVisit = new Answer<ResourceId>() {
+         @Override
+         public ResourceId answer(InvocationOnMock invocation) throws Throwable {
+            visited.add((Path) invocation.getArguments()[0]);
+            return new ResourceId(nextId.incrementAndGet(), "");
+         }
+      };
+      FileWalkerHandler directoryHandler = mock(FileWalkerHandler.class);
+      FileWalkerHandler fileHandler = mock(FileWalkerHandler.class);
+      when(directoryHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), nullable(ProgressEntry.class))).thenAnswer(recordVisit);
+      when(fileHandler.handle(any(Path.class), nullable(BasicFileAttributes.class), anyInt(), any(ProgressEntry.class))).thenAnswer(recordVisit);
+
+      FileWalker fileWalker = new FileWalker(TEST_ROOT.toUri(), true);
+      fileWalker.setDirectoryHandler(directoryHandler);
+      fileWalker.setFileHandler(fileHandler);
+      fileWalker.setListingExecutor(listingExecutor);
+      fileWalker.walk();
+      assertTrue(fileWalker.progress().isEmpty());
+      return visited;
+   }
+}
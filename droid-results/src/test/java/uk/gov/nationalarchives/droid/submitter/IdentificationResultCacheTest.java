@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultImpl;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
+public class IdentificationResultCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() {
+        IdentificationResultCache cache = new IdentificationResultCache(2, null);
+        cache.put("1-a", newResults("fmt/1"), false);
+        cache.put("2-b", newResults("fmt/2"), false);
+        assertNotNull(cache.get("1-a"));
+        cache.put("3-c", newResults("fmt/3"), false);
+
+        assertNotNull(cache.get("1-a"));
+        assertNull(cache.get("2-b"));
+        assertNotNull(cache.get("3-c"));
+    }
+
+    @Test
+    public void testEvictedEntriesAreReadBackFromDisk() throws Exception {
+        Path directory = Files.createTempDirectory("result-cache-test");
+        IdentificationResultCache cache = new IdentificationResultCache(1, directory);
+        cache.put("10-ab", newResults("fmt/1"), true);
+        cache.put("20-cd", newResults("fmt/2"), false);
+
+        IdentificationResultCache.Entry entry = cache.get("10-ab");
+        assertNotNull(entry);
+        assertTrue(entry.isContainer());
+        assertEquals("fmt/1", entry.toResults(newRequest()).getResults().get(0).getPuid());
+
+        entry = cache.get("20-cd");
+        assertNotNull(entry);
+        assertFalse(entry.isContainer());
+        assertNull(cache.get("30-ef"));
+
+        cache.close();
+        assertFalse(Files.exists(directory));
+    }
+
+    @Test
+    public void testCachedResultsAreCopiedForEachRequest() throws Exception {
+        Path directory = Files.createTempDirectory("result-cache-test");
+        IdentificationResultCache cache = new IdentificationResultCache(1, directory);
+        IdentificationResultCollection results = newResults("fmt/18");
+        IdentificationResultImpl result = (IdentificationResultImpl) results.getResults().get(0);
+        result.setName("Acrobat PDF 1.4 - Portable Document Format");
+        result.setMimeType("application/pdf");
+        result.setVersion("1.4");
+        result.setMethod(IdentificationMethod.BINARY_SIGNATURE);
+        cache.put(IdentificationResultCache.key(100, "ab"), results, false);
+        cache.put(IdentificationResultCache.key(200, "cd"), newResults("fmt/2"), false);
+
+        IdentificationRequest request = newRequest();
+        IdentificationResultCollection copy = cache.get("100-ab").toResults(request);
+        assertSame(request.getRequestMetaData(), copy.getRequestMetaData());
+        assertEquals(Long.valueOf(100), copy.getFileLength());
+        assertEquals(1, copy.getResults().size());
+        IdentificationResult copied = copy.getResults().get(0);
+        assertEquals("fmt/18", copied.getPuid());
+        assertEquals("Acrobat PDF 1.4 - Portable Document Format", copied.getName());
+        assertEquals("application/pdf", copied.getMimeType());
+        assertEquals("1.4", copied.getVersion());
+        assertEquals(IdentificationMethod.BINARY_SIGNATURE, copied.getMethod());
+        assertSame(request.getRequestMetaData(), copied.getMetaData());
+        cache.close();
+    }
+
+    private static IdentificationResultCollection newResults(String puid) {
+        IdentificationResultCollection results = new IdentificationResultCollection(newRequest());
+        IdentificationResultImpl result = new IdentificationResultImpl();
+        result.setPuid(puid);
+        results.addResult(result);
+        return results;
+    }
+
+    private static IdentificationRequest newRequest() {
+        IdentificationRequest request = mock(IdentificationRequest.class);
+        when(request.getRequestMetaData()).thenReturn(new RequestMetaData(100L, 0L, "file.pdf"));
+        when(request.getIdentifier()).thenReturn(new RequestIdentifier(URI.create("file:/file.pdf")));
+        when(request.size()).thenReturn(100L);
+        return request;
+    }
+}
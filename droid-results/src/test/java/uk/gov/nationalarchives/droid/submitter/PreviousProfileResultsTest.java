@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+public class PreviousProfileResultsTest {
+
+    private static final URI FILE_URI = URI.create("file:/share/document.doc");
+
+    @Test
+    public void testResultsForAnUnchangedFileAreCopiedForwardOnce() {
+        PreviousProfileResults previous = new PreviousProfileResults();
+        ProfileResourceNode node = newNode(FILE_URI, ResourceType.FILE, NodeStatus.DONE);
+        node.addFormatIdentification(new Format("fmt/40", "application/msword", "Microsoft Word Document", "97-2003"));
+        node.addFormatIdentification(new Format("fmt/111", "", "OLE2 Compound Document Format", ""));
+        node.setExtensionMismatch(true);
+        previous.add(node);
+        assertEquals(1, previous.size());
+
+        IdentificationRequest request = newRequest(FILE_URI, 100L, 1000L);
+        IdentificationResultCollection results = previous.getResults(request);
+        assertNotNull(results);
+        assertEquals(2, results.getResults().size());
+        assertEquals("fmt/40", results.getResults().get(0).getPuid());
+        assertEquals(IdentificationMethod.CONTAINER, results.getResults().get(0).getMethod());
+        assertEquals("fmt/111", results.getResults().get(1).getPuid());
+        assertEquals(Long.valueOf(100), results.getFileLength());
+        assertTrue(results.getExtensionMismatch());
+        assertEquals("abcdef", request.getRequestMetaData().getHash());
+        assertEquals(0, previous.size());
+
+        assertNull(previous.getResults(newRequest(FILE_URI, 100L, 1000L)));
+    }
+
+    @Test
+    public void testFilesWithoutAFormatAreCopiedForwardWithNoResults() {
+        PreviousProfileResults previous = new PreviousProfileResults();
+        ProfileResourceNode node = newNode(FILE_URI, ResourceType.FILE, NodeStatus.DONE);
+        node.addFormatIdentification(Format.NULL);
+        previous.add(node);
+
+        IdentificationResultCollection results = previous.getResults(newRequest(FILE_URI, 100L, 1000L));
+        assertNotNull(results);
+        assertTrue(results.getResults().isEmpty());
+    }
+
+    @Test
+    public void testChangedFilesAreIdentifiedAgain() {
+        PreviousProfileResults previous = new PreviousProfileResults();
+        previous.add(newNode(FILE_URI, ResourceType.FILE, NodeStatus.DONE));
+
+        assertNull(previous.getResults(newRequest(FILE_URI, 101L, 1000L)));
+        assertNull(previous.getResults(newRequest(FILE_URI, 100L, 1001L)));
+        assertNull(previous.getResults(newRequest(URI.create("file:/share/other.doc"), 100L, 1000L)));
+        assertNotNull(previous.getResults(newRequest(FILE_URI, 100L, 1000L)));
+    }
+
+    @Test
+    public void testOnlyFilesIdentifiedOnTheFileSystemAreIndexed() {
+        PreviousProfileResults previous = new PreviousProfileResults();
+        previous.add(newNode(URI.create("file:/share/archive.zip"), ResourceType.CONTAINER, NodeStatus.DONE));
+        previous.add(newNode(URI.create("file:/share/folder/"), ResourceType.FOLDER, NodeStatus.DONE));
+        previous.add(newNode(URI.create("file:/share/locked.doc"), ResourceType.FILE, NodeStatus.ACCESS_DENIED));
+        previous.add(newNode(URI.create("zip:file:/share/archive.zip!/entry.doc"), ResourceType.FILE, NodeStatus.DONE));
+        assertEquals(0, previous.size());
+    }
+
+    private static ProfileResourceNode newNode(URI uri, ResourceType type, NodeStatus status) {
+        ProfileResourceNode node = new ProfileResourceNode(uri);
+        NodeMetaData metaData = new NodeMetaData();
+        metaData.setSize(100L);
+        metaData.setLastModified(1000L);
+        metaData.setResourceType(type);
+        metaData.setNodeStatus(status);
+        metaData.setIdentificationMethod(IdentificationMethod.CONTAINER);
+        metaData.setHash("abcdef");
+        node.setMetaData(metaData);
+        return node;
+    }
+
+    private static IdentificationRequest newRequest(URI uri, long size, long lastModified) {
+        IdentificationRequest request = mock(IdentificationRequest.class);
+        when(request.getIdentifier()).thenReturn(new RequestIdentifier(uri));
+        when(request.getRequestMetaData()).thenReturn(new RequestMetaData(size, lastModified, "document.doc"));
+        return request;
+    }
+}
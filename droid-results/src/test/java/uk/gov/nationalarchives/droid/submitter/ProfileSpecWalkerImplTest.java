@@ -32,15 +32,19 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -180,18 +184,18 @@ public class ProfileSpecWalkerImplTest {
         walker.setProgressMonitor(progressMonitor);
         FileEventHandler fileEventHandler = mock(FileEventHandler.class);
         DirectoryEventHandler dirEventhandler = mock(DirectoryEventHandler.class);
-        when(dirEventhandler.onEvent(locations[0],
-                null, 0, false)).thenReturn(new ResourceId(1L, ""));
-        when(dirEventhandler.onEvent(locations[1],
-                null, 0, false)).thenReturn(new ResourceId(2L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1"), 
-                new ResourceId(1L, ""), 1, false)).thenReturn(new ResourceId(11L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2"),
-                new ResourceId(1L, ""), 1, false)).thenReturn(new ResourceId(12L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1"),
-                new ResourceId(2L, ""), 1, false)).thenReturn(new ResourceId(21L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2"), 
-                new ResourceId(2L, ""), 1, false)).thenReturn(new ResourceId(22L, ""));
+        when(dirEventhandler.onEvent(eq(locations[0]), nullable(BasicFileAttributes.class),
+                isNull(), eq(0), eq(false))).thenReturn(new ResourceId(1L, ""));
+        when(dirEventhandler.onEvent(eq(locations[1]), nullable(BasicFileAttributes.class),
+                isNull(), eq(0), eq(false))).thenReturn(new ResourceId(2L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir1")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(1L, "")), eq(1), eq(false))).thenReturn(new ResourceId(11L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir2")), nullable(BasicFileAttributes.class),
+                eq(new ResourceId(1L, "")), eq(1), eq(false))).thenReturn(new ResourceId(12L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir1")), nullable(BasicFileAttributes.class),
+                eq(new ResourceId(2L, "")), eq(1), eq(false))).thenReturn(new ResourceId(21L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir2")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(2L, "")), eq(1), eq(false))).thenReturn(new ResourceId(22L, ""));
         
         walker.setDirectoryEventHandler(dirEventhandler);
         walker.setFileEventHandler(fileEventHandler);
@@ -199,30 +203,34 @@ public class ProfileSpecWalkerImplTest {
         walker.walk(profileSpec, new ProfileWalkState());
 
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir1/file11.ext"), new ResourceId(1L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir1/file11.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir1/file12.ext"), new ResourceId(1L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir1/file12.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir1/file13.ext"), new ResourceId(1L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir1/file13.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir1/file14.ext"), new ResourceId(1L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir1/file14.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir1/file15.ext"), new ResourceId(1L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir1/file15.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
 
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
         verify(fileEventHandler).onEvent(
-                canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
+                eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
 
-        verify(fileEventHandler, times(10)).onEvent(any(Path.class), (ResourceId) any(),
+        verify(fileEventHandler, times(10)).onEvent(any(Path.class), nullable(BasicFileAttributes.class), (ResourceId) any(),
                 (ResourceId) isNull());
 
+        // The target is every entry found by the walk: each directory, its 5 files and 2 sub-directories.
+        verify(progressMonitor, times(16)).startJob(any(URI.class));
+        verify(progressMonitor).setTargetCount(16);
+
         verify(fileEventHandler, never()).onEvent(
                 argThat(new ArgumentMatcher<Path>() {
                     @Override
@@ -234,7 +242,7 @@ public class ProfileSpecWalkerImplTest {
                         return "A Node with a File containing the String 'sub'";
                     }
 
-                }), (ResourceId) any(), (ResourceId) isNull());
+                }), nullable(BasicFileAttributes.class), (ResourceId) any(), (ResourceId) isNull());
     }
 
     private List<AbstractProfileResource> buildFileResources(String[] locations) {
@@ -328,79 +336,79 @@ public class ProfileSpecWalkerImplTest {
         walker.setFileEventHandler(fileEventHandler);
 
         DirectoryEventHandler dirEventhandler = mock(DirectoryEventHandler.class);
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir1"), 
-                null, 0, false)).thenReturn(new ResourceId(1L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir2"), 
-                null, 0, false)).thenReturn(new ResourceId(2L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1"), 
-                new ResourceId(1L, ""), 1, false)).thenReturn(new ResourceId(11L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2"),
-                new ResourceId(1L, ""), 1, false)).thenReturn(new ResourceId(12L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1"),
-                new ResourceId(2L, ""), 1, false)).thenReturn(new ResourceId(21L, ""));
-        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2"), 
-                new ResourceId(2L, ""), 1, false)).thenReturn(new ResourceId(22L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir1")), nullable(BasicFileAttributes.class), 
+                isNull(), eq(0), eq(false))).thenReturn(new ResourceId(1L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir2")), nullable(BasicFileAttributes.class), 
+                isNull(), eq(0), eq(false))).thenReturn(new ResourceId(2L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir1")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(1L, "")), eq(1), eq(false))).thenReturn(new ResourceId(11L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir2")), nullable(BasicFileAttributes.class),
+                eq(new ResourceId(1L, "")), eq(1), eq(false))).thenReturn(new ResourceId(12L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir1")), nullable(BasicFileAttributes.class),
+                eq(new ResourceId(2L, "")), eq(1), eq(false))).thenReturn(new ResourceId(21L, ""));
+        when(dirEventhandler.onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir2")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(2L, "")), eq(1), eq(false))).thenReturn(new ResourceId(22L, ""));
         walker.setDirectoryEventHandler(dirEventhandler);
 
         walker.walk(profileSpec, new ProfileWalkState());
 
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/file11.ext"), new ResourceId(1L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/file12.ext"), new ResourceId(1L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/file13.ext"), new ResourceId(1L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/file14.ext"), new ResourceId(1L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/file15.ext"), new ResourceId(1L, ""), null);
-
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1/file111.ext"),
-                new ResourceId(11L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1/file112.ext"), 
-                new ResourceId(11L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1/file113.ext"),
-                new ResourceId(11L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1/file114.ext"), 
-                new ResourceId(11L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1/file115.ext"), 
-                new ResourceId(11L, ""), null);
-
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2/file121.ext"), 
-                new ResourceId(12L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2/file122.ext"), 
-                new ResourceId(12L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2/file123.ext"), 
-                new ResourceId(12L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2/file124.ext"), 
-                new ResourceId(12L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2/file125.ext"), 
-                new ResourceId(12L, ""), null);
-
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/file21.ext"), new ResourceId(2L, ""), null);
-
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1/file211.ext"), 
-                new ResourceId(21L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1/file212.ext"), 
-                new ResourceId(21L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1/file213.ext"), 
-                new ResourceId(21L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1/file214.ext"), 
-                new ResourceId(21L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1/file215.ext"), 
-                new ResourceId(21L, ""), null);
-
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2/file221.ext"), 
-                new ResourceId(22L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2/file222.ext"), 
-                new ResourceId(22L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2/file223.ext"), 
-                new ResourceId(22L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2/file224.ext"), 
-                new ResourceId(22L, ""), null);
-        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2/file225.ext"), 
-                new ResourceId(22L, ""), null);
-
-        verify(fileEventHandler, times(30)).onEvent(any(Path.class), (ResourceId) any(),
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/file11.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/file12.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/file13.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/file14.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/file15.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(1L, "")), isNull());
+
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir1/file111.ext")), nullable(BasicFileAttributes.class),
+                eq(new ResourceId(11L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir1/file112.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(11L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir1/file113.ext")), nullable(BasicFileAttributes.class),
+                eq(new ResourceId(11L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir1/file114.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(11L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir1/file115.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(11L, "")), isNull());
+
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir2/file121.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(12L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir2/file122.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(12L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir2/file123.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(12L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir2/file124.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(12L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir1/subdir2/file125.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(12L, "")), isNull());
+
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/file21.ext")), nullable(BasicFileAttributes.class), eq(new ResourceId(2L, "")), isNull());
+
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir1/file211.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(21L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir1/file212.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(21L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir1/file213.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(21L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir1/file214.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(21L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir1/file215.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(21L, "")), isNull());
+
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir2/file221.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(22L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir2/file222.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(22L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir2/file223.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(22L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir2/file224.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(22L, "")), isNull());
+        verify(fileEventHandler).onEvent(eq(canonicalFile(TEST_ROOT, "dir2/subdir2/file225.ext")), nullable(BasicFileAttributes.class), 
+                eq(new ResourceId(22L, "")), isNull());
+
+        verify(fileEventHandler, times(30)).onEvent(any(Path.class), nullable(BasicFileAttributes.class), (ResourceId) any(),
                 (ResourceId) isNull());
     }
 
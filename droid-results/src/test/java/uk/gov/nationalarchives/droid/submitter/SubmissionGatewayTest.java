@@ -31,21 +31,27 @@
  */
 package uk.gov.nationalarchives.droid.submitter;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -55,15 +61,22 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.DroidCore;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultImpl;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFormatResolver;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveHandlerFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.TrueZipArchiveHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ZipEntryRequestFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.control.PauseAspect;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.MD5HashGenerator;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.SHA256HashGenerator;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 import uk.gov.nationalarchives.droid.core.SignatureParseException;
@@ -222,4 +235,157 @@ public class SubmissionGatewayTest {
         assertEquals("I failed", e.getCause().getMessage());
         */
     }
+
+    @Test
+    public void testArchivesAreExpandedOnTheArchiveExecutorWhileTheRequestIsOpen() throws Exception {
+
+        SubmissionGateway submissionGateway = new SubmissionGateway();
+        DroidCore droid = mock(DroidCore.class);
+        when(droid.matchBinarySignatures(any(IdentificationRequest.class))).thenAnswer(invocation -> {
+            IdentificationResultCollection results = new IdentificationResultCollection(invocation.getArgument(0));
+            IdentificationResultImpl zip = new IdentificationResultImpl();
+            zip.setPuid("x-fmt/263");
+            results.addResult(zip);
+            return results;
+        });
+        submissionGateway.setDroidCore(droid);
+        submissionGateway.setPauseAspect(new PauseAspect());
+        submissionGateway.setSubmissionQueue(mock(SubmissionQueue.class));
+        submissionGateway.setProcessZip(true);
+        submissionGateway.setExecutorService(Executors.newFixedThreadPool(2));
+        ExecutorService archiveExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "archive-thread-test"));
+        submissionGateway.setArchiveExecutorService(archiveExecutor);
+
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        when(resultHandler.handle(any(IdentificationResultCollection.class))).thenReturn(new ResourceId(1L, ""));
+        submissionGateway.setResultHandler(resultHandler);
+
+        ArchiveFormatResolver archiveFormatResolver = mock(ArchiveFormatResolver.class);
+        when(archiveFormatResolver.forPuid("x-fmt/263")).thenReturn("ZIP");
+        submissionGateway.setArchiveFormatResolver(archiveFormatResolver);
+        submissionGateway.setContainerFormatResolver(mock(ArchiveFormatResolver.class));
+
+        final AtomicReference<String> expandedOn = new AtomicReference<>();
+        final AtomicReference<Boolean> readableWhileExpanding = new AtomicReference<>();
+        ArchiveHandler zipHandler = mock(ArchiveHandler.class);
+        doAnswer(invocation -> {
+            IdentificationRequest archive = invocation.getArgument(0);
+            expandedOn.set(Thread.currentThread().getName());
+            readableWhileExpanding.set(archive.getByte(0) == 'P');
+            return null;
+        }).when(zipHandler).handle(any(IdentificationRequest.class));
+        ArchiveHandlerFactory archiveHandlerFactory = mock(ArchiveHandlerFactory.class);
+        when(archiveHandlerFactory.getHandler("ZIP")).thenReturn(zipHandler);
+        submissionGateway.setArchiveHandlerFactory(archiveHandlerFactory);
+
+        final Path file = Paths.get("test_sig_files/persistence.zip");
+        RequestMetaData metaData = new RequestMetaData(
+                Files.size(file), Files.getLastModifiedTime(file).toMillis(), "persistence.zip");
+        RequestIdentifier identifier = new RequestIdentifier(file.toUri());
+        identifier.setParentId(1L);
+        FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(metaData, identifier);
+        request.open(file);
+
+        submissionGateway.submit(request).get();
+        submissionGateway.awaitFinished();
+
+        assertEquals("archive-thread-test", expandedOn.get());
+        assertTrue(readableWhileExpanding.get());
+        archiveExecutor.shutdown();
+    }
+
+    @Test
+    public void testDuplicateContentIsIdentifiedOnceWhenResultsAreCached() throws Exception {
+
+        DroidCore droid = newPdfDroidCore();
+        ResultHandler resultHandler = newResultHandler();
+        SubmissionGateway submissionGateway = newCachingGateway(droid, resultHandler);
+
+        final Path file = Paths.get("test_sig_files/sample.pdf");
+        for (String name : new String[] {"sample.pdf", "copy.pdf"}) {
+            RequestMetaData metaData = new RequestMetaData(
+                    Files.size(file), Files.getLastModifiedTime(file).toMillis(), name);
+            FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(
+                    metaData, new RequestIdentifier(file.toUri()));
+            request.open(file);
+            submissionGateway.submit(request).get();
+            submissionGateway.awaitIdle();
+        }
+
+        verify(droid, times(1)).matchBinarySignatures(any(IdentificationRequest.class));
+        verify(droid, times(2)).checkForExtensionsMismatches(any(IdentificationResultCollection.class), any());
+        ArgumentCaptor<IdentificationResultCollection> resultCaptor = ArgumentCaptor
+                .forClass(IdentificationResultCollection.class);
+        verify(resultHandler, times(2)).handle(resultCaptor.capture());
+        IdentificationResultCollection cached = resultCaptor.getAllValues().get(1);
+        assertEquals("copy.pdf", cached.getRequestMetaData().getName());
+        assertEquals(1, cached.getResults().size());
+        assertEquals("fmt/18", cached.getResults().get(0).getPuid());
+        submissionGateway.close();
+    }
+
+    @Test
+    public void testResultCacheHashesFilesFromTheIdentificationReads() throws Exception {
+
+        HashGenerator md5 = new MD5HashGenerator();
+        HashGenerator sha256 = new SHA256HashGenerator();
+        ResultHandler resultHandler = newResultHandler();
+        SubmissionGateway submissionGateway = newCachingGateway(newPdfDroidCore(), resultHandler);
+        submissionGateway.setResultCacheHashGenerator(sha256);
+        submissionGateway.setGenerateHash(true);
+        submissionGateway.setHashAlgorithm("md5");
+        submissionGateway.setHashGenerator(md5);
+
+        final Path file = Paths.get("test_sig_files/sample.pdf");
+        RequestMetaData metaData = new RequestMetaData(
+                Files.size(file), Files.getLastModifiedTime(file).toMillis(), "sample.pdf");
+        FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(
+                metaData, new RequestIdentifier(file.toUri()), Arrays.asList(md5, sha256));
+        request.open(file);
+        submissionGateway.submit(request).get();
+        submissionGateway.awaitIdle();
+
+        // Both hashes were calculated by the request, from the windows it read:
+        try (InputStream in = Files.newInputStream(file)) {
+            assertEquals(md5.hash(in), metaData.getHash());
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            assertEquals(sha256.hash(in), request.getHash(sha256));
+        }
+        submissionGateway.close();
+    }
+
+    private static DroidCore newPdfDroidCore() {
+        DroidCore droid = mock(DroidCore.class);
+        when(droid.matchBinarySignatures(any(IdentificationRequest.class))).thenAnswer(invocation -> {
+            IdentificationResultCollection results = new IdentificationResultCollection(invocation.getArgument(0));
+            IdentificationResultImpl pdf = new IdentificationResultImpl();
+            pdf.setPuid("fmt/18");
+            pdf.setName("Acrobat PDF 1.4 - Portable Document Format");
+            results.addResult(pdf);
+            return results;
+        });
+        return droid;
+    }
+
+    private static ResultHandler newResultHandler() {
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        when(resultHandler.handle(any(IdentificationResultCollection.class))).thenReturn(new ResourceId(1L, ""));
+        return resultHandler;
+    }
+
+    private static SubmissionGateway newCachingGateway(DroidCore droid, ResultHandler resultHandler) {
+        SubmissionGateway submissionGateway = new SubmissionGateway();
+        submissionGateway.setDroidCore(droid);
+        submissionGateway.setPauseAspect(new PauseAspect());
+        submissionGateway.setSubmissionQueue(mock(SubmissionQueue.class));
+        submissionGateway.setExecutorService(Executors.newSingleThreadExecutor());
+        submissionGateway.setArchiveFormatResolver(mock(ArchiveFormatResolver.class));
+        submissionGateway.setContainerFormatResolver(mock(ArchiveFormatResolver.class));
+        submissionGateway.setResultCacheEntries(10);
+        submissionGateway.setResultCacheHashGenerator(new SHA256HashGenerator());
+        submissionGateway.setResultHandler(resultHandler);
+        return submissionGateway;
+    }
 }
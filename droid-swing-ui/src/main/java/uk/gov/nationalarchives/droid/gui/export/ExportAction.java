@@ -122,7 +122,7 @@ public class ExportAction extends SwingWorker<Void, Integer> {
     @Override
     protected Void doInBackground() {
         //TODO: configure columns to write in UI.
-        exportTask = exportManager.exportProfiles(profileIds, destination.getPath(), null, options,
+        exportTask = exportManager.exportProfiles(profileIds, destination.getPath(), null, options, null,
                 outputEncoding, bom, quoteAllFields, columnsToWrite);
         try {
             exportTask.get();